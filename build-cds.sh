@@ -0,0 +1,78 @@
+#!/bin/sh
+#
+# Builds build/bl-parse.jar, whose main class is ParseCommand, and an AppCDS
+# archive build/bl-parse.jsa of the classes loaded by a few training runs,
+# then compares the cold-start time of the command with and without it.
+#
+# usage: OSU_CSE_LIBRARY=/path/to/components.jar ./build-cds.sh [runs]
+#
+# Run the command with the archive as:
+#   java -XX:SharedArchiveFile=build/bl-parse.jsa \
+#       -cp build/bl-parse.jar:$OSU_CSE_LIBRARY ParseCommand [file ...]
+#
+# @author Ben Walls, Matthew Chandran
+#
+
+set -e
+
+if [ -z "$OSU_CSE_LIBRARY" ] || [ ! -f "$OSU_CSE_LIBRARY" ]; then
+    echo "OSU_CSE_LIBRARY must name the components jar" >&2
+    exit 2
+fi
+RUNS=${1:-20}
+cd "$(dirname "$0")"
+BUILD=build
+CP="$BUILD/bl-parse.jar:$OSU_CSE_LIBRARY"
+
+# compile and package the parser
+rm -rf "$BUILD"
+mkdir -p "$BUILD/classes"
+javac -cp "$OSU_CSE_LIBRARY" -d "$BUILD/classes" src/*.java
+jar cfe "$BUILD/bl-parse.jar" ParseCommand -C "$BUILD/classes" .
+
+# record the classes loaded parsing and printing programs and statements
+java -Xshare:off -XX:DumpLoadedClassList="$BUILD/program.classlist" \
+    -cp "$CP" ParseCommand --print test/program.bl > /dev/null
+java -Xshare:off -XX:DumpLoadedClassList="$BUILD/statement.classlist" \
+    -cp "$CP" ParseCommand --statement --minify test/statement.bl > /dev/null
+java -Xshare:off -XX:DumpLoadedClassList="$BUILD/error.classlist" \
+    -cp "$CP" ParseCommand test/program-extra-token.bl 2> /dev/null || true
+sort -u "$BUILD"/*.classlist > "$BUILD/bl-parse.classlist"
+
+# dump the archive
+java -Xshare:dump -XX:SharedClassListFile="$BUILD/bl-parse.classlist" \
+    -XX:SharedArchiveFile="$BUILD/bl-parse.jsa" -cp "$CP" > /dev/null
+
+# runs its arguments, java options then runs and classpath, as one check of
+# test/program.bl per run
+CHECKS='cp=$1 runs=$2
+shift 2
+i=0
+while [ $i -lt "$runs" ]; do
+    java "$@" -cp "$cp" ParseCommand test/program.bl
+    i=$((i + 1))
+done'
+
+# average wall-clock time, in ms, of $RUNS checks of test/program.bl; date
+# has no portable sub-second format, so this uses the POSIX time utility,
+# or whole seconds where it is missing
+time_runs() {
+    if command -v time > /dev/null; then
+        LC_ALL=C time -p sh -c "$CHECKS" sh "$CP" "$RUNS" "$@" \
+            2>&1 > /dev/null |
+            awk -v runs="$RUNS" '$1 == "real" { print int($2 * 1000 / runs) }'
+    else
+        start=$(date +%s)
+        sh -c "$CHECKS" sh "$CP" "$RUNS" "$@"
+        end=$(date +%s)
+        echo $(((end - start) * 1000 / RUNS))
+    fi
+}
+
+# fail now if the archive cannot be mapped
+java -Xshare:on -XX:SharedArchiveFile="$BUILD/bl-parse.jsa" -cp "$CP" \
+    ParseCommand test/program.bl
+echo "Without sharing: $(time_runs -Xshare:off) ms"
+echo "JDK archive only: $(time_runs -Xshare:auto) ms"
+echo "Application archive:" \
+    "$(time_runs -XX:SharedArchiveFile="$BUILD/bl-parse.jsa") ms"
@@ -0,0 +1,242 @@
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Tokenizer;
+
+/**
+ * Parser that parses BL programs on an executor and returns each result as a
+ * {@code CompletableFuture}, so a caller never blocks on a large or
+ * adversarial input. Any executor may be used, including one that starts a
+ * virtual thread per task.
+ *
+ * <p>
+ * Each parse has a {@code ParseCancellation}, checked at every block
+ * boundary and before every instruction. Cancelling the future, or
+ * completing it any other way, cancels the token, so the parse stops at its
+ * next check and the partial trees it built are dropped at once. The future
+ * of a parse with a deadline completes with a {@code TimeoutException} at
+ * the deadline, even if the parse is still waiting for the executor; a parse
+ * already running then stops the same way, and one that has not started
+ * never does. A syntax error completes the future with the exception
+ * reporting it.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class AsyncParser {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The executor the parses run on.
+     */
+    private final Executor executor;
+
+    /**
+     * The limits enforced by each parse.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * Parses {@code tokens} with {@code cancellation} and completes
+     * {@code future} with the result, unless it is already done.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param cancellation
+     *            the cancellation token of the parse
+     * @param future
+     *            the future of the parse
+     * @updates tokens
+     */
+    private void run(Queue<String> tokens, ParseCancellation cancellation,
+            CompletableFuture<Program> future) {
+        if (!future.isDone()) {
+            try {
+                Program1Parse1 p = new Program1Parse1(this.limits);
+                p.parse(tokens, cancellation);
+                future.complete(p);
+            } catch (CancellationException e) {
+                if (cancellation.isCancelled()) {
+                    future.cancel(false);
+                } else {
+                    future.completeExceptionally(
+                            new TimeoutException(e.getMessage()));
+                }
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor: parses run on the common pool, without limits.
+     */
+    public AsyncParser() {
+        this(ForkJoinPool.commonPool(), ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a parser whose parses run on {@code executor}, without
+     * limits.
+     *
+     * @param executor
+     *            the executor the parses run on
+     */
+    public AsyncParser(Executor executor) {
+        this(executor, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a parser whose parses run on {@code executor} and
+     * reject input over {@code limits}.
+     *
+     * @param executor
+     *            the executor the parses run on
+     * @param limits
+     *            the limits enforced by each parse
+     */
+    public AsyncParser(Executor executor, ParseLimits limits) {
+        assert executor != null : "Violation of: executor is not null";
+        assert limits != null : "Violation of: limits is not null";
+        this.executor = executor;
+        this.limits = limits;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Starts parsing a BL program from {@code tokens}, without a deadline.
+     * The tokens are consumed by the parse, on the executor, so they must not
+     * be used until the returned future is done.
+     *
+     * @param tokens
+     *            the input tokens
+     * @return the future of the parsed program
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     */
+    public CompletableFuture<Program> parse(Queue<String> tokens) {
+        return this.parse(tokens, new ParseCancellation());
+    }
+
+    /**
+     * Starts parsing a BL program from {@code tokens}, to be given up
+     * {@code timeout} from now. The tokens are consumed by the parse, on the
+     * executor, so they must not be used until the returned future is done.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param timeout
+     *            the time the parse may take, including any wait for the
+     *            executor
+     * @return the future of the parsed program
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     */
+    public CompletableFuture<Program> parse(Queue<String> tokens,
+            Duration timeout) {
+        assert timeout != null : "Violation of: timeout is not null";
+        return this.parse(tokens, new ParseCancellation(timeout));
+    }
+
+    /**
+     * Starts parsing a BL program from {@code tokens}, stopping once
+     * {@code cancellation} is cancelled or expired. The tokens are consumed
+     * by the parse, on the executor, so they must not be used until the
+     * returned future is done. If {@code cancellation} has a deadline, the
+     * future completes with a {@code TimeoutException} once it passes,
+     * whether or not the parse has started.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param cancellation
+     *            the cancellation token of the parse
+     * @return the future of the parsed program
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     */
+    public CompletableFuture<Program> parse(Queue<String> tokens,
+            ParseCancellation cancellation) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert cancellation != null : "Violation of: cancellation is not null";
+        CompletableFuture<Program> future = new CompletableFuture<>();
+        future.whenComplete((p, e) -> cancellation.cancel());
+        long remaining = cancellation.remainingNanos();
+        if (remaining == 0) {
+            future.completeExceptionally(
+                    new TimeoutException("Error: Parse deadline passed"));
+        } else if (remaining != Long.MAX_VALUE) {
+            future.orTimeout(remaining, TimeUnit.NANOSECONDS);
+        }
+        try {
+            this.executor.execute(() -> this.run(tokens, cancellation, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name and deadline
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter the deadline in milliseconds: ");
+        long millis = Long.parseLong(in.nextLine().trim());
+        /*
+         * Parse input file on the common pool and wait for the result
+         */
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        CompletableFuture<Program> future = new AsyncParser().parse(tokens,
+                Duration.ofMillis(millis));
+        try {
+            Program p = future.get();
+            out.println("Parsed program " + p.name());
+        } catch (ExecutionException e) {
+            out.println(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,1043 @@
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Reporter;
+
+/**
+ * A BL program compiled to JVM bytecode. Each instruction of the context
+ * becomes a static method of a generated class, and so does the body; IF,
+ * IF_ELSE and WHILE statements become branches within the methods, and calls
+ * become method invocations, so the JIT compiles the logic of the bug like
+ * any other Java code. Blocks too large for one method are split across
+ * several.
+ *
+ * <p>
+ * The class is defined as a hidden class, in a class file of version 49,
+ * whose bytecode is checked by the type-inferencing verifier and so needs no
+ * stack map frames. It is not strongly reachable from its class loader:
+ * once the program is retired and no run is in progress, the class can be
+ * unloaded.
+ *
+ * <p>
+ * The program runs as in {@code ProgramProfiler}: the body runs again and
+ * again, each call of a primitive instruction is one turn of the bug, and
+ * the run stops after the given number of turns. As there, a run that stops
+ * calling primitive instructions is reported after
+ * {@code ProgramProfiler.MAX_IDLE_STEPS} steps, and a run whose instruction
+ * calls nest deeper than {@code ProgramProfiler.MAX_CALL_DEPTH} is reported
+ * before the nested method invocations overflow the stack: the method of
+ * each instruction counts itself in on entry and out on return.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class CompiledProgram {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Version of the class files generated.
+     */
+    private static final int CLASS_VERSION = 49;
+
+    /**
+     * Largest code size, in bytes, of a block compiled inline; larger blocks
+     * are split across methods. It keeps every method well under the 64K
+     * bytes the JVM allows, and small enough for the JIT to compile.
+     */
+    private static final int MAX_INLINE = 4096;
+
+    /**
+     * Largest code size of a CALL statement.
+     */
+    private static final int CALL_SIZE = 12;
+
+    /**
+     * Code size of a condition test and its branch.
+     */
+    private static final int TEST_SIZE = 10;
+
+    /**
+     * Code size of a jump.
+     */
+    private static final int GOTO_SIZE = 3;
+
+    /**
+     * Opcodes used.
+     */
+    private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, LDC_W = 0x13,
+            ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, IFEQ = 0x99, IFNE = 0x9a,
+            GOTO = 0xa7, IRETURN = 0xac, RETURN = 0xb1, GETSTATIC = 0xb2,
+            INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    /**
+     * Constant pool tags used.
+     */
+    private static final int UTF8 = 1, CLASS = 7, STRING = 8, FIELDREF = 9,
+            METHODREF = 10, NAME_AND_TYPE = 12;
+
+    /**
+     * Access flags used.
+     */
+    private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002,
+            ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    /**
+     * Name of the generated class; the JVM adds a suffix to make each hidden
+     * class unique.
+     */
+    private static final String CLASS_NAME = "CompiledProgram$BL";
+
+    /**
+     * Internal name of {@code Condition}.
+     */
+    private static final String CONDITION = internalName(Condition.class);
+
+    /**
+     * Internal name of {@code Turns}.
+     */
+    private static final String TURNS = internalName(Turns.class);
+
+    /**
+     * Descriptor of the generated methods.
+     */
+    private static final String METHOD = "(L" + TURNS + ";)Z";
+
+    /**
+     * The name of the program.
+     */
+    private final String name;
+
+    /**
+     * The compiled code, or {@code null} once the program is retired.
+     */
+    private Code code;
+
+    /**
+     * Returns the internal name of class {@code c}.
+     *
+     * @param c
+     *            the class
+     * @return the internal name
+     */
+    private static String internalName(Class<?> c) {
+        return c.getName().replace('.', '/');
+    }
+
+    /**
+     * Growable array of bytes.
+     */
+    private static final class Bytes {
+
+        /**
+         * Initial capacity.
+         */
+        private static final int INITIAL_CAPACITY = 256;
+
+        /**
+         * The bytes; only the first {@code length} are used.
+         */
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        /**
+         * Number of bytes.
+         */
+        private int length = 0;
+
+        /**
+         * Adds byte {@code b} at the end.
+         *
+         * @param b
+         *            the byte, in its low 8 bits
+         */
+        void u1(int b) {
+            if (this.length == this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, 2 * this.length);
+            }
+            this.bytes[this.length] = (byte) b;
+            this.length++;
+        }
+
+        /**
+         * Adds {@code v} at the end as 2 bytes, high byte first.
+         *
+         * @param v
+         *            the value, in its low 16 bits
+         */
+        void u2(int v) {
+            this.u1(v >>> 8);
+            this.u1(v);
+        }
+
+        /**
+         * Adds {@code v} at the end as 4 bytes, high byte first.
+         *
+         * @param v
+         *            the value
+         */
+        void u4(int v) {
+            this.u2(v >>> 16);
+            this.u2(v);
+        }
+
+        /**
+         * Adds the bytes of {@code b} at the end.
+         *
+         * @param b
+         *            the bytes
+         */
+        void append(Bytes b) {
+            for (int i = 0; i < b.length; i++) {
+                this.u1(b.bytes[i]);
+            }
+        }
+
+        /**
+         * Replaces the 2 bytes at {@code at} by {@code v}.
+         *
+         * @param at
+         *            the position of the first byte
+         * @param v
+         *            the value, in its low 16 bits
+         */
+        void patch(int at, int v) {
+            this.bytes[at] = (byte) (v >>> 8);
+            this.bytes[at + 1] = (byte) v;
+        }
+
+    }
+
+    /**
+     * Generator of the class file of a program.
+     */
+    private static final class Generator {
+
+        /**
+         * The program.
+         */
+        private final FrozenProgram program;
+
+        /**
+         * Code size of each node compiled inline, or {@code CALL_SIZE} for a
+         * block compiled as a call of a method of its own.
+         */
+        private final int[] sizes;
+
+        /**
+         * Whether each node is a block compiled as a method of its own.
+         */
+        private final boolean[] outlined;
+
+        /**
+         * The constant pool, after its count.
+         */
+        private final Bytes pool = new Bytes();
+
+        /**
+         * Index of each constant in the pool, by tag and value.
+         */
+        private final HashMap<String, Integer> constants = new HashMap<>();
+
+        /**
+         * Number of constants in the pool, plus one.
+         */
+        private int poolCount = 1;
+
+        /**
+         * The methods.
+         */
+        private final Bytes methods = new Bytes();
+
+        /**
+         * Number of methods.
+         */
+        private int methodCount = 0;
+
+        /**
+         * Number of methods generated for parts of blocks.
+         */
+        private int partCount = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param program
+         *            the program
+         */
+        Generator(FrozenProgram program) {
+            this.program = program;
+            this.sizes = new int[program.size()];
+            this.outlined = new boolean[program.size()];
+        }
+
+        /**
+         * Returns the index of the constant with tag {@code tag} and key
+         * {@code key}, adding it with {@code data} if it is not in the pool.
+         *
+         * @param tag
+         *            the tag
+         * @param key
+         *            the value, as a string
+         * @param data
+         *            the bytes of the constant after its tag
+         * @return the index
+         */
+        private int constant(int tag, String key, Bytes data) {
+            String k = tag + ":" + key;
+            Integer index = this.constants.get(k);
+            if (index == null) {
+                index = this.poolCount;
+                this.pool.u1(tag);
+                this.pool.append(data);
+                this.poolCount++;
+                this.constants.put(k, index);
+            }
+            return index;
+        }
+
+        /**
+         * Returns the index of UTF-8 constant {@code s}.
+         *
+         * @param s
+         *            the string, of ASCII characters
+         * @return the index
+         */
+        int utf8(String s) {
+            Bytes data = new Bytes();
+            data.u2(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                data.u1(s.charAt(i));
+            }
+            return this.constant(UTF8, s, data);
+        }
+
+        /**
+         * Returns the index of a constant made of tag {@code tag} and the
+         * indexes {@code a} and, unless negative, {@code b}.
+         *
+         * @param tag
+         *            the tag
+         * @param a
+         *            the first index
+         * @param b
+         *            the second index, or -1
+         * @return the index
+         */
+        private int pair(int tag, int a, int b) {
+            Bytes data = new Bytes();
+            data.u2(a);
+            if (b >= 0) {
+                data.u2(b);
+            }
+            return this.constant(tag, a + "," + b, data);
+        }
+
+        /**
+         * Returns the index of class constant {@code internalName}.
+         *
+         * @param internalName
+         *            the internal name of the class
+         * @return the index
+         */
+        int classRef(String internalName) {
+            return this.pair(CLASS, this.utf8(internalName), -1);
+        }
+
+        /**
+         * Returns the index of field or method constant of tag {@code tag}.
+         *
+         * @param tag
+         *            {@code FIELDREF} or {@code METHODREF}
+         * @param owner
+         *            the internal name of the owner
+         * @param member
+         *            the member name
+         * @param descriptor
+         *            the member descriptor
+         * @return the index
+         */
+        int memberRef(int tag, String owner, String member,
+                String descriptor) {
+            int nameAndType = this.pair(NAME_AND_TYPE, this.utf8(member),
+                    this.utf8(descriptor));
+            return this.pair(tag, this.classRef(owner), nameAndType);
+        }
+
+        /**
+         * Adds a method with the given access flags, name, descriptor, stack
+         * and local sizes and code.
+         *
+         * @param access
+         *            the access flags
+         * @param name
+         *            the name
+         * @param descriptor
+         *            the descriptor
+         * @param maxLocals
+         *            the number of local variables
+         * @param code
+         *            the bytecode
+         */
+        void method(int access, String name, String descriptor,
+                int maxLocals, Bytes code) {
+            this.methods.u2(access);
+            this.methods.u2(this.utf8(name));
+            this.methods.u2(this.utf8(descriptor));
+            this.methods.u2(1);
+            this.methods.u2(this.utf8("Code"));
+            this.methods.u4(2 + 2 + 4 + code.length + 2 + 2);
+            this.methods.u2(2);
+            this.methods.u2(maxLocals);
+            this.methods.u4(code.length);
+            this.methods.append(code);
+            this.methods.u2(0);
+            this.methods.u2(0);
+            this.methodCount++;
+        }
+
+        /**
+         * Computes the code size of the statement rooted at {@code node} and
+         * decides which of its blocks are compiled as methods of their own.
+         *
+         * @param node
+         *            the node
+         * @return the code size of the node
+         */
+        int size(int node) {
+            int n = this.program.childCount(node);
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                size += this.size(this.program.child(node, i));
+            }
+            switch (this.program.kind(node)) {
+                case BLOCK:
+                    if (size > MAX_INLINE) {
+                        this.outlined[node] = true;
+                        size = CALL_SIZE;
+                    }
+                    break;
+                case IF:
+                    size += TEST_SIZE;
+                    break;
+                case IF_ELSE:
+                case WHILE:
+                    size += TEST_SIZE + GOTO_SIZE;
+                    break;
+                default:
+                    size = CALL_SIZE;
+                    break;
+            }
+            this.sizes[node] = size;
+            return size;
+        }
+
+        /**
+         * Adds to {@code code} a jump with opcode {@code opcode} to be
+         * patched, and returns its position.
+         *
+         * @param code
+         *            the bytecode
+         * @param opcode
+         *            the opcode
+         * @return the position of the jump
+         */
+        private static int jump(Bytes code, int opcode) {
+            int at = code.length;
+            code.u1(opcode);
+            code.u2(0);
+            return at;
+        }
+
+        /**
+         * Points the jump at {@code at} in {@code code} to {@code target}.
+         *
+         * @param code
+         *            the bytecode
+         * @param at
+         *            the position of the jump
+         * @param target
+         *            the position jumped to
+         */
+        private static void land(Bytes code, int at, int target) {
+            code.patch(at + 1, target - at);
+        }
+
+        /**
+         * Adds to {@code code} the return of false when the value on the
+         * stack is false, which ends the run.
+         *
+         * @param code
+         *            the bytecode
+         */
+        private static void stopIfOut(Bytes code) {
+            code.u1(IFNE);
+            code.u2(3 + 1 + 1);
+            code.u1(ICONST_0);
+            code.u1(IRETURN);
+        }
+
+        /**
+         * Adds to {@code code} the call of generated method {@code name}.
+         *
+         * @param code
+         *            the bytecode
+         * @param name
+         *            the name of the method
+         */
+        private void callMethod(Bytes code, String name) {
+            code.u1(ALOAD_0);
+            code.u1(INVOKESTATIC);
+            code.u2(this.memberRef(METHODREF, CLASS_NAME, name, METHOD));
+            stopIfOut(code);
+        }
+
+        /**
+         * Adds to {@code code} the test of the condition of node
+         * {@code node}, leaving the result on the stack.
+         *
+         * @param code
+         *            the bytecode
+         * @param node
+         *            the node
+         */
+        private void test(Bytes code, int node) {
+            code.u1(ALOAD_0);
+            code.u1(GETSTATIC);
+            code.u2(this.memberRef(FIELDREF, CONDITION,
+                    this.program.condition(node).name(),
+                    "L" + CONDITION + ";"));
+            code.u1(INVOKEVIRTUAL);
+            code.u2(this.memberRef(METHODREF, TURNS, "test",
+                    "(L" + CONDITION + ";)Z"));
+        }
+
+        /**
+         * Adds to {@code code} the statement rooted at {@code node}.
+         *
+         * @param code
+         *            the bytecode
+         * @param node
+         *            the node
+         */
+        void statement(Bytes code, int node) {
+            switch (this.program.kind(node)) {
+                case BLOCK: {
+                    if (this.outlined[node]) {
+                        this.callMethod(code, this.part(node, 0,
+                                this.program.childCount(node)));
+                    } else {
+                        this.children(code, node, 0,
+                                this.program.childCount(node));
+                    }
+                    break;
+                }
+                case IF: {
+                    this.test(code, node);
+                    int skip = jump(code, IFEQ);
+                    this.statement(code, this.program.child(node, 0));
+                    land(code, skip, code.length);
+                    break;
+                }
+                case IF_ELSE: {
+                    this.test(code, node);
+                    int skip = jump(code, IFEQ);
+                    this.statement(code, this.program.child(node, 0));
+                    int end = jump(code, GOTO);
+                    land(code, skip, code.length);
+                    this.statement(code, this.program.child(node, 1));
+                    land(code, end, code.length);
+                    break;
+                }
+                case WHILE: {
+                    int top = code.length;
+                    this.test(code, node);
+                    int exit = jump(code, IFEQ);
+                    this.statement(code, this.program.child(node, 0));
+                    land(code, jump(code, GOTO), top);
+                    land(code, exit, code.length);
+                    break;
+                }
+                default: {
+                    int id = this.program.callId(node);
+                    if (SymbolTable.isPrimitive(id)) {
+                        code.u1(ALOAD_0);
+                        code.u1(ICONST_0 + id);
+                        code.u1(INVOKEVIRTUAL);
+                        code.u2(this.memberRef(METHODREF, TURNS, "act",
+                                "(I)Z"));
+                        stopIfOut(code);
+                    } else if (this.program.instruction(id) >= 0) {
+                        this.callMethod(code,
+                                "$" + this.program.symbol(id));
+                    } else {
+                        code.u1(ALOAD_0);
+                        code.u1(LDC_W);
+                        code.u2(this.pair(STRING,
+                                this.utf8(this.program.symbol(id)), -1));
+                        code.u1(INVOKEVIRTUAL);
+                        code.u2(this.memberRef(METHODREF, TURNS,
+                                "undefined", "(Ljava/lang/String;)Z"));
+                        stopIfOut(code);
+                    }
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Adds to {@code code} children {@code from} to {@code to} of block
+         * {@code block}, splitting them across new methods if they are too
+         * large for one.
+         *
+         * @param code
+         *            the bytecode
+         * @param block
+         *            the block
+         * @param from
+         *            the position of the first child
+         * @param to
+         *            the position just past the last child
+         */
+        void children(Bytes code, int block, int from, int to) {
+            int total = 0;
+            for (int i = from; i < to; i++) {
+                total += this.sizes[this.program.child(block, i)];
+            }
+            if (total <= MAX_INLINE || to - from < 2) {
+                for (int i = from; i < to; i++) {
+                    this.statement(code, this.program.child(block, i));
+                }
+            } else {
+                int middle = from;
+                int half = 0;
+                while (middle < to - 1 && half < total / 2) {
+                    half += this.sizes[this.program.child(block, middle)];
+                    middle++;
+                }
+                this.callMethod(code, this.part(block, from, middle));
+                this.callMethod(code, this.part(block, middle, to));
+            }
+        }
+
+        /**
+         * Adds a method running children {@code from} to {@code to} of block
+         * {@code block}, and returns its name.
+         *
+         * @param block
+         *            the block
+         * @param from
+         *            the position of the first child
+         * @param to
+         *            the position just past the last child
+         * @return the name of the method
+         */
+        private String part(int block, int from, int to) {
+            String name = "$" + this.partCount;
+            this.partCount++;
+            Bytes code = new Bytes();
+            this.children(code, block, from, to);
+            code.u1(ICONST_1);
+            code.u1(IRETURN);
+            this.method(ACC_PRIVATE | ACC_STATIC, name, METHOD, 1, code);
+            return name;
+        }
+
+        /**
+         * Adds to {@code code} the call of method {@code name} of the turns
+         * of the run, which takes no argument and returns nothing.
+         *
+         * @param code
+         *            the bytecode
+         * @param name
+         *            the name of the method
+         */
+        private void turnsMethod(Bytes code, String name) {
+            code.u1(ALOAD_0);
+            code.u1(INVOKEVIRTUAL);
+            code.u2(this.memberRef(METHODREF, TURNS, name, "()V"));
+        }
+
+        /**
+         * Adds a method running the statement rooted at {@code node}, which
+         * counts itself among the instruction calls in progress if
+         * {@code instruction}.
+         *
+         * @param name
+         *            the name of the method
+         * @param node
+         *            the node
+         * @param instruction
+         *            whether the statement is the body of an instruction
+         */
+        void root(String name, int node, boolean instruction) {
+            this.size(node);
+            this.outlined[node] = false;
+            Bytes code = new Bytes();
+            if (instruction) {
+                this.turnsMethod(code, "enter");
+            }
+            this.statement(code, node);
+            if (instruction) {
+                this.turnsMethod(code, "exit");
+            }
+            code.u1(ICONST_1);
+            code.u1(IRETURN);
+            this.method(ACC_PRIVATE | ACC_STATIC, name, METHOD, 1, code);
+        }
+
+        /**
+         * Returns the class file of the program.
+         *
+         * @return the class file
+         */
+        byte[] classFile() {
+            int n = this.program.instructionCount();
+            for (int i = 0; i < n; i++) {
+                String instruction = this.program.instructionName(i);
+                this.root("$" + instruction,
+                        this.program.instruction(instruction), true);
+            }
+            this.root("body", this.program.body(), false);
+
+            Bytes init = new Bytes();
+            init.u1(ALOAD_0);
+            init.u1(INVOKESPECIAL);
+            init.u2(this.memberRef(METHODREF, "java/lang/Object", "<init>",
+                    "()V"));
+            init.u1(RETURN);
+            this.method(ACC_PUBLIC, "<init>", "()V", 1, init);
+            Bytes run = new Bytes();
+            run.u1(ALOAD_1);
+            run.u1(INVOKESTATIC);
+            run.u2(this.memberRef(METHODREF, CLASS_NAME, "body", METHOD));
+            run.u1(IRETURN);
+            this.method(ACC_PUBLIC, "run", METHOD, 2, run);
+
+            int thisClass = this.classRef(CLASS_NAME);
+            int superClass = this.classRef("java/lang/Object");
+            int code = this.classRef(internalName(Code.class));
+            Bytes file = new Bytes();
+            file.u4(0xCAFEBABE);
+            file.u2(0);
+            file.u2(CLASS_VERSION);
+            file.u2(this.poolCount);
+            file.append(this.pool);
+            file.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            file.u2(thisClass);
+            file.u2(superClass);
+            file.u2(1);
+            file.u2(code);
+            file.u2(0);
+            file.u2(this.methodCount);
+            file.append(this.methods);
+            file.u2(0);
+            return Arrays.copyOf(file.bytes, file.length);
+        }
+
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * The compiled body of a program, implemented by the generated class.
+     */
+    interface Code {
+
+        /**
+         * Runs the body once and reports whether the run goes on.
+         *
+         * @param turns
+         *            the turns of the run
+         * @return false iff the run ran out of turns
+         */
+        boolean run(Turns turns);
+
+    }
+
+    /**
+     * The bug of a run and the number of turns it has left; the generated
+     * code calls it to test conditions and perform primitive instructions.
+     */
+    static final class Turns {
+
+        /**
+         * The bug.
+         */
+        private final ProgramProfiler.Bug bug;
+
+        /**
+         * Number of turns left.
+         */
+        private long left;
+
+        /**
+         * Number of condition tests and passes of the body since the last
+         * turn.
+         */
+        private int idle;
+
+        /**
+         * Number of instruction calls in progress.
+         */
+        private int callDepth;
+
+        /**
+         * Constructor.
+         *
+         * @param bug
+         *            the bug
+         * @param turns
+         *            the number of turns
+         */
+        Turns(ProgramProfiler.Bug bug, long turns) {
+            this.bug = bug;
+            this.left = turns;
+        }
+
+        /**
+         * Reports whether condition {@code c} holds for the bug.
+         *
+         * @param c
+         *            the condition
+         * @return true iff {@code c} holds
+         */
+        boolean test(Condition c) {
+            this.step();
+            return this.bug.test(c);
+        }
+
+        /**
+         * Counts one condition test or pass of the body, and reports an error
+         * if there have been {@code ProgramProfiler.MAX_IDLE_STEPS} since the
+         * last turn.
+         */
+        void step() {
+            this.idle++;
+            if (this.idle > ProgramProfiler.MAX_IDLE_STEPS) {
+                ProgramProfiler.reportIdle();
+            }
+        }
+
+        /**
+         * Counts the start of an instruction call, and reports an error if
+         * that makes more than {@code ProgramProfiler.MAX_CALL_DEPTH} in
+         * progress.
+         */
+        void enter() {
+            this.callDepth++;
+            if (this.callDepth > ProgramProfiler.MAX_CALL_DEPTH) {
+                ProgramProfiler.reportDeepCalls();
+            }
+        }
+
+        /**
+         * Counts the end of an instruction call.
+         */
+        void exit() {
+            this.callDepth--;
+        }
+
+        /**
+         * Performs primitive instruction {@code primitive} and reports
+         * whether the run goes on.
+         *
+         * @param primitive
+         *            the symbol id of the primitive instruction
+         * @return false iff the run ran out of turns
+         */
+        boolean act(int primitive) {
+            this.bug.act(primitive);
+            this.idle = 0;
+            this.left--;
+            return this.left > 0;
+        }
+
+        /**
+         * Reports a call of instruction {@code name}, which is not defined.
+         *
+         * @param name
+         *            the instruction name
+         * @return false
+         */
+        boolean undefined(String name) {
+            Reporter.fatalErrorToConsole(
+                    "Error: Instruction \"" + name + "\" " + "is not defined");
+            return false;
+        }
+
+    }
+
+    /**
+     * Returns the generated class, or {@code null} once the program is
+     * retired.
+     *
+     * @return the generated class
+     */
+    Class<?> codeClass() {
+        Class<?> c = null;
+        if (this.code != null) {
+            c = this.code.getClass();
+        }
+        return c;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor compiling {@code p}, which is not changed and may be
+     * changed afterwards without affecting the compiled program.
+     *
+     * @param p
+     *            the program
+     */
+    public CompiledProgram(Program p) {
+        assert p != null : "Violation of: p is not null";
+        FrozenProgram program = FrozenProgram.freeze(p);
+        this.name = program.name();
+        byte[] classFile = new Generator(program).classFile();
+        try {
+            Class<?> c = MethodHandles.lookup()
+                    .defineHiddenClass(classFile, true).lookupClass();
+            this.code = (Code) c.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the name of the program.
+     *
+     * @return the name of the program
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Runs the program for {@code bug} for {@code turns} turns.
+     *
+     * @param bug
+     *            the bug
+     * @param turns
+     *            the number of turns
+     * @requires [this is not retired]  and  turns > 0
+     * @ensures <pre>
+     * if [the run makes ProgramProfiler.MAX_IDLE_STEPS condition tests and
+     *     passes of the body in a row without calling a primitive
+     *     instruction]  or
+     *    [the run nests instruction calls deeper than
+     *     ProgramProfiler.MAX_CALL_DEPTH] then
+     *  [report an appropriate error message to the console and terminate client]
+     * else
+     *  [bug has performed the first turns primitive instructions of the
+     *   program]
+     * </pre>
+     */
+    public void run(ProgramProfiler.Bug bug, long turns) {
+        assert bug != null : "Violation of: bug is not null";
+        assert turns > 0 : "Violation of: turns > 0";
+        assert this.code != null : "Violation of: this is not retired";
+        Code body = this.code;
+        Turns t = new Turns(bug, turns);
+        do {
+            t.step();
+        } while (body.run(t));
+    }
+
+    /**
+     * Retires this program: drops the generated class, which can then be
+     * unloaded once no run is in progress.
+     *
+     * @ensures [this is retired]
+     */
+    public void retire() {
+        this.code = null;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Bug that counts its turns and always sees an empty cell next to it.
+     */
+    private static final class CountingBug implements ProgramProfiler.Bug {
+
+        /**
+         * Number of times each primitive instruction was performed.
+         */
+        private final long[] counts = new long[SymbolTable.PRIMITIVE_COUNT];
+
+        @Override
+        public boolean test(Condition c) {
+            return c == Condition.TRUE || c == Condition.NEXT_IS_EMPTY;
+        }
+
+        @Override
+        public void act(int primitive) {
+            this.counts[primitive]++;
+        }
+
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name and number of turns
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter the number of turns to run: ");
+        long turns = Long.parseLong(in.nextLine().trim());
+        /*
+         * Parse and compile input file
+         */
+        Program1Parse1 p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        CompiledProgram compiled = new CompiledProgram(p);
+        /*
+         * Run it and report the primitive instructions performed
+         */
+        CountingBug bug = new CountingBug();
+        long start = System.nanoTime();
+        compiled.run(bug, turns);
+        long time = System.nanoTime() - start;
+        SymbolTable symbols = new SymbolTable();
+        out.println("*** Run of " + compiled.name() + " ***");
+        for (int i = 0; i < SymbolTable.PRIMITIVE_COUNT; i++) {
+            out.println(symbols.name(i) + ": " + bug.counts[i]);
+        }
+        out.println("Time: " + time / 1_000_000 + " ms");
+        compiled.retire();
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,682 @@
+import java.util.Arrays;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Kind;
+
+/**
+ * Static worst-case cost bounds of the instructions and body of a BL program,
+ * computed without running it. For each instruction, and for the body, the
+ * analysis bounds the number of primitive actions one execution takes and the
+ * number of condition tests a bug can make in a row without a primitive
+ * action, that is, before it yields its turn; for the body, it also bounds
+ * the tests between two actions when the body runs again and again, as it
+ * does in BugsWorld.
+ *
+ * <p>
+ * A bound is {@code UNBOUNDED} when a WHILE loop may iterate without a
+ * primitive action (an unbounded loop, which is flagged), when instructions
+ * call each other recursively (which is flagged), or, for actions, whenever a
+ * WHILE loop may repeat. The instructions are analyzed bottom-up in the call
+ * graph, each once, with the cost of each kept for its callers, and the
+ * strongly connected components of the call graph are found without
+ * recursion, so the analysis takes time linear in the size of the program
+ * however long its chains of calls. Calls of undefined instructions cost
+ * nothing.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class CostAnalysis {
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * The bound of a cost that has none.
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Value of {@code Cost.through} when every way through a statement takes
+     * a primitive action.
+     */
+    private static final long NONE = -1;
+
+    /**
+     * Symbol id standing for the program body while it is analyzed.
+     */
+    private static final int BODY = -1;
+
+    /**
+     * Cost bounds of a statement, combined from those of its parts. A stretch
+     * is a sequence of condition tests with no primitive action between them.
+     */
+    private static final class Cost {
+
+        /**
+         * Primitive actions taken.
+         */
+        private final long actions;
+
+        /**
+         * Tests on a way through with no action, or {@code NONE}.
+         */
+        private final long through;
+
+        /**
+         * Tests before the first action, or through if there is none.
+         */
+        private final long lead;
+
+        /**
+         * Tests after the last action, or through if there is none.
+         */
+        private final long trail;
+
+        /**
+         * Tests in the longest stretch.
+         */
+        private final long stretch;
+
+        /**
+         * Constructor.
+         *
+         * @param actions
+         *            primitive actions taken
+         * @param through
+         *            tests on a way through with no action, or {@code NONE}
+         * @param lead
+         *            tests before the first action
+         * @param trail
+         *            tests after the last action
+         * @param stretch
+         *            tests in the longest stretch
+         */
+        Cost(long actions, long through, long lead, long trail,
+                long stretch) {
+            this.actions = actions;
+            this.through = through;
+            this.lead = lead;
+            this.trail = trail;
+            this.stretch = Math.max(stretch, Math.max(lead, trail));
+        }
+
+    }
+
+    /**
+     * Cost of an empty block.
+     */
+    private static final Cost EMPTY = new Cost(0, 0, 0, 0, 0);
+
+    /**
+     * Cost of a primitive action.
+     */
+    private static final Cost PRIMITIVE = new Cost(1, NONE, 0, 0, 0);
+
+    /**
+     * Cost of a statement with no bounds. It has no way through, so that a
+     * loop around it is not flagged on its account.
+     */
+    private static final Cost INFINITE = new Cost(UNBOUNDED, NONE, UNBOUNDED,
+            UNBOUNDED, UNBOUNDED);
+
+    /**
+     * The program, flattened.
+     */
+    private final FrozenProgram program;
+
+    /**
+     * Cost of each instruction, by symbol id of its name.
+     */
+    private final Cost[] costs;
+
+    /**
+     * Whether each instruction is recursive, by symbol id of its name.
+     */
+    private final boolean[] recursive;
+
+    /**
+     * Whether each instruction has an unbounded loop, by symbol id of its
+     * name.
+     */
+    private final boolean[] unboundedLoop;
+
+    /**
+     * Cost of the program body.
+     */
+    private final Cost body;
+
+    /**
+     * Whether the program body has an unbounded loop.
+     */
+    private boolean bodyUnboundedLoop = false;
+
+    /**
+     * Symbol id of the instruction being analyzed, or {@code BODY}.
+     */
+    private int current;
+
+    /**
+     * Returns {@code a + b}, or {@code UNBOUNDED} if either is or the sum
+     * overflows.
+     *
+     * @param a
+     *            a bound
+     * @param b
+     *            a bound
+     * @return the sum
+     * @requires a >= 0  and  b >= 0
+     */
+    private static long add(long a, long b) {
+        long sum = a + b;
+        if (a == UNBOUNDED || b == UNBOUNDED || sum < 0) {
+            sum = UNBOUNDED;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the cost of {@code a} followed by {@code b}.
+     *
+     * @param a
+     *            the cost of the first statement
+     * @param b
+     *            the cost of the second statement
+     * @return the cost of the sequence
+     */
+    private static Cost sequence(Cost a, Cost b) {
+        long through = NONE;
+        long lead = a.lead;
+        long trail = b.trail;
+        if (a.through != NONE) {
+            lead = Math.max(lead, add(a.through, b.lead));
+        }
+        if (b.through != NONE) {
+            trail = Math.max(trail, add(a.trail, b.through));
+        }
+        if (a.through != NONE && b.through != NONE) {
+            through = add(a.through, b.through);
+        }
+        return new Cost(add(a.actions, b.actions), through, lead, trail,
+                Math.max(Math.max(a.stretch, b.stretch),
+                        add(a.trail, b.lead)));
+    }
+
+    /**
+     * Returns the cost of a statement that tests a condition and then runs
+     * one of {@code a} and {@code b}.
+     *
+     * @param a
+     *            the cost of one branch
+     * @param b
+     *            the cost of the other branch
+     * @return the cost of the statement
+     */
+    private static Cost branch(Cost a, Cost b) {
+        long through = NONE;
+        if (a.through != NONE || b.through != NONE) {
+            through = add(1, Math.max(a.through, b.through));
+        }
+        return new Cost(Math.max(a.actions, b.actions), through,
+                add(1, Math.max(a.lead, b.lead)),
+                Math.max(Math.max(a.trail, b.trail), through),
+                Math.max(a.stretch, b.stretch));
+    }
+
+    /**
+     * Returns the cost of a WHILE loop with body of cost {@code b}, flagging
+     * the loop if it is unbounded.
+     *
+     * @param b
+     *            the cost of the loop body
+     * @return the cost of the loop
+     */
+    private Cost loop(Cost b) {
+        Cost cost;
+        if (b.through != NONE) {
+            if (this.current == BODY) {
+                this.bodyUnboundedLoop = true;
+            } else {
+                this.unboundedLoop[this.current] = true;
+            }
+            cost = INFINITE;
+        } else {
+            long lead = add(1, b.lead);
+            long trail = add(b.trail, 1);
+            cost = new Cost(UNBOUNDED, 1, lead, trail,
+                    Math.max(b.stretch, add(trail, b.lead)));
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the cost of the statement rooted at {@code node}.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @return the cost of the statement
+     */
+    private Cost cost(int node) {
+        Cost cost;
+        switch (this.program.kind(node)) {
+            case BLOCK: {
+                cost = EMPTY;
+                int n = this.program.childCount(node);
+                for (int i = 0; i < n; i++) {
+                    cost = sequence(cost,
+                            this.cost(this.program.child(node, i)));
+                }
+                break;
+            }
+            case IF: {
+                cost = branch(this.cost(this.program.child(node, 0)), EMPTY);
+                break;
+            }
+            case IF_ELSE: {
+                cost = branch(this.cost(this.program.child(node, 0)),
+                        this.cost(this.program.child(node, 1)));
+                break;
+            }
+            case WHILE: {
+                cost = this.loop(this.cost(this.program.child(node, 0)));
+                break;
+            }
+            default: {
+                int id = this.program.callId(node);
+                if (SymbolTable.isPrimitive(id)) {
+                    cost = PRIMITIVE;
+                } else if (this.program.instruction(id) < 0) {
+                    cost = EMPTY;
+                } else if (this.costs[id] == null) {
+                    /*
+                     * A call within the strongly connected component being
+                     * analyzed
+                     */
+                    cost = INFINITE;
+                } else {
+                    cost = this.costs[id];
+                }
+                break;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Adds to {@code calls} the symbol ids of the defined instructions called
+     * in the statement rooted at {@code node}, and returns the new number of
+     * entries.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @param calls
+     *            the symbol ids, with room for every node
+     * @param count
+     *            the number of entries of {@code calls}
+     * @return the new number of entries
+     * @updates calls
+     */
+    private int calls(int node, int[] calls, int count) {
+        int n = this.program.childCount(node);
+        int result = count;
+        if (n == 0 && this.program.kind(node) == Kind.CALL) {
+            int id = this.program.callId(node);
+            if (!SymbolTable.isPrimitive(id)
+                    && this.program.instruction(id) >= 0) {
+                calls[result] = id;
+                result++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            result = this.calls(this.program.child(node, i), calls, result);
+        }
+        return result;
+    }
+
+    /**
+     * Analyzes every instruction, callees before callers. The call graph is
+     * searched depth first with an explicit stack, finding its strongly
+     * connected components as in Tarjan's algorithm; each component is
+     * analyzed as soon as it is complete, when all it calls outside it has
+     * been.
+     */
+    private void analyzeInstructions() {
+        int symbolCount = this.program.symbolCount();
+        int instructionCount = this.program.instructionCount();
+        int[][] callees = new int[symbolCount][];
+        int[] scratch = new int[this.program.size()];
+        for (int i = 0; i < instructionCount; i++) {
+            int root = this.program.instruction(this.program
+                    .instructionName(i));
+            int id = this.program.id(this.program.instructionName(i));
+            callees[id] = Arrays.copyOf(scratch,
+                    this.calls(root, scratch, 0));
+        }
+
+        int[] index = new int[symbolCount];
+        int[] low = new int[symbolCount];
+        int[] next = new int[symbolCount];
+        boolean[] onStack = new boolean[symbolCount];
+        Arrays.fill(index, -1);
+        int[] frames = new int[instructionCount];
+        int[] component = new int[instructionCount];
+        int frameCount = 0;
+        int componentCount = 0;
+        int counter = 0;
+        for (int i = 0; i < instructionCount; i++) {
+            int start = this.program.id(this.program.instructionName(i));
+            if (index[start] >= 0) {
+                continue;
+            }
+            index[start] = counter;
+            low[start] = counter;
+            counter++;
+            frames[frameCount] = start;
+            frameCount++;
+            component[componentCount] = start;
+            componentCount++;
+            onStack[start] = true;
+            while (frameCount > 0) {
+                int u = frames[frameCount - 1];
+                if (next[u] < callees[u].length) {
+                    int v = callees[u][next[u]];
+                    next[u]++;
+                    if (index[v] < 0) {
+                        index[v] = counter;
+                        low[v] = counter;
+                        counter++;
+                        frames[frameCount] = v;
+                        frameCount++;
+                        component[componentCount] = v;
+                        componentCount++;
+                        onStack[v] = true;
+                    } else if (onStack[v]) {
+                        low[u] = Math.min(low[u], index[v]);
+                        if (v == u) {
+                            this.recursive[u] = true;
+                        }
+                    }
+                } else {
+                    frameCount--;
+                    if (frameCount > 0) {
+                        int caller = frames[frameCount - 1];
+                        low[caller] = Math.min(low[caller], low[u]);
+                    }
+                    if (low[u] == index[u]) {
+                        int first = componentCount - 1;
+                        while (component[first] != u) {
+                            first--;
+                        }
+                        this.analyzeComponent(component, first,
+                                componentCount);
+                        for (int k = first; k < componentCount; k++) {
+                            onStack[component[k]] = false;
+                        }
+                        componentCount = first;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Analyzes the instructions {@code component[first]} to
+     * {@code component[end - 1]}, a strongly connected component of the call
+     * graph all of whose callees outside it have been analyzed.
+     *
+     * @param component
+     *            the symbol ids of the instructions
+     * @param first
+     *            the position of the first instruction of the component
+     * @param end
+     *            the position just past the last instruction of the component
+     */
+    private void analyzeComponent(int[] component, int first, int end) {
+        if (end - first > 1) {
+            for (int k = first; k < end; k++) {
+                this.recursive[component[k]] = true;
+            }
+        }
+        Cost[] found = new Cost[end - first];
+        for (int k = first; k < end; k++) {
+            this.current = component[k];
+            found[k - first] = this.cost(this.program
+                    .instruction(component[k]));
+        }
+        for (int k = first; k < end; k++) {
+            if (this.recursive[component[k]]) {
+                this.costs[component[k]] = INFINITE;
+            } else {
+                this.costs[component[k]] = found[k - first];
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol id of instruction {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return the symbol id
+     * @requires hasInstruction(name)
+     */
+    private int instructionId(String name) {
+        assert this.hasInstruction(name) : ""
+                + "Violation of: hasInstruction(name)";
+        return this.program.id(name);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for the analysis of {@code p}, which is not changed.
+     *
+     * @param p
+     *            the program
+     */
+    public CostAnalysis(Program p) {
+        assert p != null : "Violation of: p is not null";
+        this.program = FrozenProgram.freeze(p);
+        int symbolCount = this.program.symbolCount();
+        this.costs = new Cost[symbolCount];
+        this.recursive = new boolean[symbolCount];
+        this.unboundedLoop = new boolean[symbolCount];
+        this.analyzeInstructions();
+        this.current = BODY;
+        this.body = this.cost(this.program.body());
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports whether the program has instruction {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff the program has instruction {@code name}
+     */
+    public boolean hasInstruction(String name) {
+        assert name != null : "Violation of: name is not null";
+        return this.program.instruction(name) >= 0;
+    }
+
+    /**
+     * Returns the bound of the primitive actions one call of instruction
+     * {@code name} takes.
+     *
+     * @param name
+     *            the instruction name
+     * @return the bound, or {@code UNBOUNDED}
+     * @requires hasInstruction(name)
+     */
+    public long actions(String name) {
+        return this.costs[this.instructionId(name)].actions;
+    }
+
+    /**
+     * Returns the bound of the condition tests a call of instruction
+     * {@code name} makes in a row without a primitive action.
+     *
+     * @param name
+     *            the instruction name
+     * @return the bound, or {@code UNBOUNDED}
+     * @requires hasInstruction(name)
+     */
+    public long tests(String name) {
+        return this.costs[this.instructionId(name)].stretch;
+    }
+
+    /**
+     * Reports whether instruction {@code name} calls itself, directly or
+     * through other instructions.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff {@code name} is recursive
+     * @requires hasInstruction(name)
+     */
+    public boolean isRecursive(String name) {
+        return this.recursive[this.instructionId(name)];
+    }
+
+    /**
+     * Reports whether the body of instruction {@code name} has a WHILE loop
+     * that may iterate without a primitive action.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff {@code name} has an unbounded loop
+     * @requires hasInstruction(name)
+     */
+    public boolean hasUnboundedLoop(String name) {
+        return this.unboundedLoop[this.instructionId(name)];
+    }
+
+    /**
+     * Returns the bound of the primitive actions one execution of the program
+     * body takes.
+     *
+     * @return the bound, or {@code UNBOUNDED}
+     */
+    public long bodyActions() {
+        return this.body.actions;
+    }
+
+    /**
+     * Returns the bound of the condition tests one execution of the program
+     * body makes in a row without a primitive action.
+     *
+     * @return the bound, or {@code UNBOUNDED}
+     */
+    public long bodyTests() {
+        return this.body.stretch;
+    }
+
+    /**
+     * Reports whether the program body has a WHILE loop that may iterate
+     * without a primitive action.
+     *
+     * @return true iff the program body has an unbounded loop
+     */
+    public boolean bodyHasUnboundedLoop() {
+        return this.bodyUnboundedLoop;
+    }
+
+    /**
+     * Returns the bound of the condition tests a bug makes before it yields
+     * its turn, when the program body runs again and again.
+     *
+     * @return the bound, or {@code UNBOUNDED}
+     */
+    public long testsPerTurn() {
+        long tests = UNBOUNDED;
+        if (this.body.through == NONE) {
+            tests = Math.max(this.body.stretch,
+                    add(this.body.trail, this.body.lead));
+        }
+        return tests;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Returns {@code bound} as text.
+     *
+     * @param bound
+     *            the bound
+     * @return "unbounded" or the bound
+     */
+    private static String text(long bound) {
+        String text = "unbounded";
+        if (bound != UNBOUNDED) {
+            text = Long.toString(bound);
+        }
+        return text;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse input file
+         */
+        Program1Parse1 p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        /*
+         * Analyze it and report the bounds
+         */
+        CostAnalysis analysis = new CostAnalysis(p);
+        FrozenProgram program = analysis.program;
+        for (int i = 0; i < program.instructionCount(); i++) {
+            String name = program.instructionName(i);
+            out.print(name + ": actions " + text(analysis.actions(name))
+                    + ", tests " + text(analysis.tests(name)));
+            if (analysis.isRecursive(name)) {
+                out.print(", recursive");
+            }
+            if (analysis.hasUnboundedLoop(name)) {
+                out.print(", unbounded loop");
+            }
+            out.println();
+        }
+        out.print("BEGIN: actions " + text(analysis.bodyActions())
+                + ", tests " + text(analysis.bodyTests()));
+        if (analysis.bodyHasUnboundedLoop()) {
+            out.print(", unbounded loop");
+        }
+        out.println();
+        out.println("Tests per turn: " + text(analysis.testsPerTurn()));
+
+        in.close();
+        out.close();
+    }
+
+}
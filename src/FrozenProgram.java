@@ -0,0 +1,806 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+
+/**
+ * Deeply immutable snapshot of a {@code Program}, for sharing one program
+ * among many threads without copying or locking. The statement trees of the
+ * context and body are flattened into arrays of nodes numbered in preorder;
+ * a node is read by its number, and its children are listed in a second
+ * array, so every read is a few array accesses. All fields are final and no
+ * array is changed after construction, so a snapshot is safely published to
+ * every thread that obtains a reference to it, and all threads share its
+ * memory.
+ *
+ * <p>
+ * Call targets are kept as symbol ids, together with the names of the ids
+ * when the snapshot was taken; the body of an instruction is found from the
+ * id of its name in a single array access.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class FrozenProgram {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * All statement kinds, by ordinal.
+     */
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * All conditions, by ordinal.
+     */
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /**
+     * Offset basis of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * Prime of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Program name.
+     */
+    private final String name;
+
+    /**
+     * Kind of each node, by ordinal.
+     */
+    private final byte[] kinds;
+
+    /**
+     * Condition of each IF, IF_ELSE and WHILE node, by ordinal.
+     */
+    private final byte[] conditions;
+
+    /**
+     * Symbol id of the call target of each CALL node.
+     */
+    private final int[] calls;
+
+    /**
+     * Position in {@code children} of the first child of each node; the
+     * children of node {@code n} are {@code children[childStart[n]]} to
+     * {@code children[childStart[n + 1] - 1]}.
+     */
+    private final int[] childStart;
+
+    /**
+     * Children of the nodes.
+     */
+    private final int[] children;
+
+    /**
+     * Names of the symbol ids.
+     */
+    private final String[] names;
+
+    /**
+     * Symbol ids, by name; never changed after construction.
+     */
+    private final HashMap<String, Integer> ids;
+
+    /**
+     * Instruction names, in the order of the context.
+     */
+    private final String[] instructionNames;
+
+    /**
+     * Root node of the body of each instruction, by symbol id of its name, or
+     * -1.
+     */
+    private final int[] instructionRoots;
+
+    /**
+     * Root node of the program body.
+     */
+    private final int body;
+
+    /**
+     * Hash of the name, context order and nodes, with call targets by name.
+     */
+    private final long contentHash;
+
+    /**
+     * Returns {@code hash} extended with the 32 bits of {@code value}.
+     *
+     * @param hash
+     *            the hash so far
+     * @param value
+     *            the value
+     * @return the extended hash
+     */
+    private static long hash(long hash, int value) {
+        long h = hash;
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            h = (h ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Returns {@code hash} extended with the length and characters of
+     * {@code value}.
+     *
+     * @param hash
+     *            the hash so far
+     * @param value
+     *            the string
+     * @return the extended hash
+     */
+    private static long hash(long hash, String value) {
+        long h = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            h = hash(h, value.charAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Growable arrays the nodes of a snapshot are collected in.
+     */
+    private static final class Builder {
+
+        /**
+         * Initial capacity of the arrays.
+         */
+        private static final int INITIAL_CAPACITY = 64;
+
+        /**
+         * Symbol table for the call targets.
+         */
+        private final SymbolTable symbols;
+
+        /**
+         * Kinds of the nodes.
+         */
+        private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+        /**
+         * Conditions of the nodes.
+         */
+        private byte[] conditions = new byte[INITIAL_CAPACITY];
+
+        /**
+         * Call targets of the nodes.
+         */
+        private int[] calls = new int[INITIAL_CAPACITY];
+
+        /**
+         * Positions of the first children of the nodes.
+         */
+        private int[] childStart = new int[INITIAL_CAPACITY + 1];
+
+        /**
+         * Children of the nodes.
+         */
+        private int[] children = new int[INITIAL_CAPACITY];
+
+        /**
+         * Number of nodes.
+         */
+        private int size = 0;
+
+        /**
+         * Number of entries of {@code children}.
+         */
+        private int childCount = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param symbols
+         *            the symbol table for the call targets
+         */
+        Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * Adds a node of kind {@code kind} with {@code n} children, to be
+         * filled in by the caller, and returns its number.
+         *
+         * @param kind
+         *            the kind of the node
+         * @param n
+         *            the number of children
+         * @return the number of the node
+         */
+        private int node(Kind kind, int n) {
+            if (this.size == this.kinds.length) {
+                int capacity = 2 * this.size;
+                this.kinds = Arrays.copyOf(this.kinds, capacity);
+                this.conditions = Arrays.copyOf(this.conditions, capacity);
+                this.calls = Arrays.copyOf(this.calls, capacity);
+                this.childStart = Arrays.copyOf(this.childStart,
+                        capacity + 1);
+            }
+            if (this.childCount + n > this.children.length) {
+                this.children = Arrays.copyOf(this.children,
+                        Math.max(2 * this.children.length,
+                                this.childCount + n));
+            }
+            int node = this.size;
+            this.kinds[node] = (byte) kind.ordinal();
+            this.calls[node] = -1;
+            this.childStart[node] = this.childCount;
+            this.childCount += n;
+            this.size++;
+            this.childStart[this.size] = this.childCount;
+            return node;
+        }
+
+        /**
+         * Adds the nodes of {@code s} and returns the number of its root,
+         * restoring {@code s} afterwards.
+         *
+         * @param s
+         *            the statement
+         * @return the number of the root node
+         */
+        int add(Statement s) {
+            int node;
+            switch (s.kind()) {
+                case BLOCK: {
+                    int length = s.lengthOfBlock();
+                    node = this.node(Kind.BLOCK, length);
+                    int first = this.childStart[node];
+                    for (int i = 0; i < length; i++) {
+                        Statement child = s.removeFromBlock(i);
+                        int childNode = this.add(child);
+                        this.children[first + i] = childNode;
+                        s.addToBlock(i, child);
+                    }
+                    break;
+                }
+                case IF: {
+                    Statement block = s.newInstance();
+                    Condition c = s.disassembleIf(block);
+                    node = this.node(Kind.IF, 1);
+                    this.conditions[node] = (byte) c.ordinal();
+                    int first = this.childStart[node];
+                    int blockNode = this.add(block);
+                    this.children[first] = blockNode;
+                    s.assembleIf(c, block);
+                    break;
+                }
+                case IF_ELSE: {
+                    Statement ifBlock = s.newInstance();
+                    Statement elseBlock = s.newInstance();
+                    Condition c = s.disassembleIfElse(ifBlock, elseBlock);
+                    node = this.node(Kind.IF_ELSE, 2);
+                    this.conditions[node] = (byte) c.ordinal();
+                    int first = this.childStart[node];
+                    int ifBlockNode = this.add(ifBlock);
+                    this.children[first] = ifBlockNode;
+                    int elseBlockNode = this.add(elseBlock);
+                    this.children[first + 1] = elseBlockNode;
+                    s.assembleIfElse(c, ifBlock, elseBlock);
+                    break;
+                }
+                case WHILE: {
+                    Statement block = s.newInstance();
+                    Condition c = s.disassembleWhile(block);
+                    node = this.node(Kind.WHILE, 1);
+                    this.conditions[node] = (byte) c.ordinal();
+                    int first = this.childStart[node];
+                    int blockNode = this.add(block);
+                    this.children[first] = blockNode;
+                    s.assembleWhile(c, block);
+                    break;
+                }
+                default: {
+                    String call = s.disassembleCall();
+                    node = this.node(Kind.CALL, 0);
+                    this.calls[node] = this.symbols.intern(call);
+                    s.assembleCall(call);
+                    break;
+                }
+            }
+            return node;
+        }
+
+    }
+
+    /**
+     * Constructor from the program {@code p}, whose identifiers are interned
+     * in {@code symbols}.
+     *
+     * @param p
+     *            the program
+     * @param symbols
+     *            the symbol table
+     */
+    private FrozenProgram(Program p, SymbolTable symbols) {
+        Builder builder = new Builder(symbols);
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        String[] instNames = new String[context.size()];
+        int[] instRoots = new int[context.size()];
+        int count = 0;
+        for (Map.Pair<String, Statement> instruction : context) {
+            instNames[count] = instruction.key();
+            instRoots[count] = builder.add(instruction.value());
+            count++;
+        }
+        p.swapContext(context);
+
+        Statement programBody = p.newBody();
+        p.swapBody(programBody);
+        this.body = builder.add(programBody);
+        p.swapBody(programBody);
+
+        for (String instName : instNames) {
+            symbols.intern(instName);
+        }
+        int symbolCount = symbols.size();
+        this.names = new String[symbolCount];
+        this.ids = new HashMap<>();
+        for (int id = 0; id < symbolCount; id++) {
+            this.names[id] = symbols.name(id);
+            this.ids.put(this.names[id], id);
+        }
+        this.instructionRoots = new int[symbolCount];
+        Arrays.fill(this.instructionRoots, -1);
+        for (int i = 0; i < count; i++) {
+            this.instructionRoots[symbols.id(instNames[i])] = instRoots[i];
+        }
+
+        this.name = p.name();
+        this.instructionNames = instNames;
+        this.kinds = Arrays.copyOf(builder.kinds, builder.size);
+        this.conditions = Arrays.copyOf(builder.conditions, builder.size);
+        this.calls = Arrays.copyOf(builder.calls, builder.size);
+        this.childStart = Arrays.copyOf(builder.childStart, builder.size + 1);
+        this.children = Arrays.copyOf(builder.children, builder.childCount);
+        this.contentHash = this.computeContentHash();
+    }
+
+    /**
+     * Computes the hash of the contents of this snapshot, which does not
+     * depend on the symbol ids.
+     *
+     * @return the content hash
+     */
+    private long computeContentHash() {
+        long h = hash(hash(FNV_OFFSET, this.name), this.body);
+        h = hash(h, this.instructionNames.length);
+        for (String instName : this.instructionNames) {
+            h = hash(h, instName);
+        }
+        h = hash(h, this.kinds.length);
+        for (int node = 0; node < this.kinds.length; node++) {
+            h = hash(hash(h, this.kinds[node]), this.conditions[node]);
+            h = hash(h, this.childStart[node + 1]);
+            if (this.kinds[node] == Kind.CALL.ordinal()) {
+                h = hash(h, this.names[this.calls[node]]);
+            }
+        }
+        for (int child : this.children) {
+            h = hash(h, child);
+        }
+        return h;
+    }
+
+    /**
+     * Builds the statement rooted at node {@code node} into {@code s}.
+     *
+     * @param node
+     *            the node
+     * @param s
+     *            the statement
+     * @replaces s
+     */
+    private void build(int node, Statement s) {
+        switch (this.kind(node)) {
+            case BLOCK: {
+                s.clear();
+                int length = this.childCount(node);
+                for (int i = 0; i < length; i++) {
+                    Statement child = s.newInstance();
+                    this.build(this.child(node, i), child);
+                    s.addToBlock(i, child);
+                }
+                break;
+            }
+            case IF: {
+                Statement block = s.newInstance();
+                this.build(this.child(node, 0), block);
+                s.assembleIf(this.condition(node), block);
+                break;
+            }
+            case IF_ELSE: {
+                Statement ifBlock = s.newInstance();
+                Statement elseBlock = s.newInstance();
+                this.build(this.child(node, 0), ifBlock);
+                this.build(this.child(node, 1), elseBlock);
+                s.assembleIfElse(this.condition(node), ifBlock, elseBlock);
+                break;
+            }
+            case WHILE: {
+                Statement block = s.newInstance();
+                this.build(this.child(node, 0), block);
+                s.assembleWhile(this.condition(node), block);
+                break;
+            }
+            default: {
+                s.assembleCall(this.call(node));
+                break;
+            }
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns a snapshot of {@code p}, with call targets interned in a new
+     * symbol table.
+     *
+     * @param p
+     *            the program
+     * @return the snapshot of {@code p}
+     * @ensures [freeze is a snapshot of p]
+     */
+    public static FrozenProgram freeze(Program p) {
+        return freeze(p, new SymbolTable());
+    }
+
+    /**
+     * Returns a snapshot of {@code p}, with call targets interned in
+     * {@code symbols}, which may be shared by the snapshots of other programs
+     * so that their ids agree.
+     *
+     * @param p
+     *            the program
+     * @param symbols
+     *            the symbol table
+     * @return the snapshot of {@code p}
+     * @updates symbols
+     * @ensures [freeze is a snapshot of p]
+     */
+    public static FrozenProgram freeze(Program p, SymbolTable symbols) {
+        assert p != null : "Violation of: p is not null";
+        assert symbols != null : "Violation of: symbols is not null";
+        return new FrozenProgram(p, symbols);
+    }
+
+    /**
+     * Returns the program name.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return this.kinds.length;
+    }
+
+    /**
+     * Returns the root node of the program body.
+     *
+     * @return the root node of the body
+     */
+    public int body() {
+        return this.body;
+    }
+
+    /**
+     * Returns the number of instructions in the context.
+     *
+     * @return the number of instructions
+     */
+    public int instructionCount() {
+        return this.instructionNames.length;
+    }
+
+    /**
+     * Returns the name of the {@code i}-th instruction of the context.
+     *
+     * @param i
+     *            the position of the instruction
+     * @return the instruction name
+     * @requires 0 <= i < instructionCount()
+     */
+    public String instructionName(int i) {
+        assert 0 <= i && i < this.instructionNames.length : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.instructionNames[i];
+    }
+
+    /**
+     * Returns the root node of the body of the instruction whose name has
+     * symbol id {@code id}, or -1 if there is no such instruction.
+     *
+     * @param id
+     *            the symbol id
+     * @return the root node of the instruction body, or -1
+     * @requires 0 <= id
+     */
+    public int instruction(int id) {
+        assert 0 <= id : "Violation of: 0 <= id";
+        int root = -1;
+        if (id < this.instructionRoots.length) {
+            root = this.instructionRoots[id];
+        }
+        return root;
+    }
+
+    /**
+     * Returns the root node of the body of instruction {@code name}, or -1
+     * if there is no such instruction.
+     *
+     * @param name
+     *            the instruction name
+     * @return the root node of the instruction body, or -1
+     */
+    public int instruction(String name) {
+        assert name != null : "Violation of: name is not null";
+        int root = -1;
+        int id = this.id(name);
+        if (id >= 0) {
+            root = this.instruction(id);
+        }
+        return root;
+    }
+
+    /**
+     * Returns the kind of node {@code node}.
+     *
+     * @param node
+     *            the node
+     * @return the kind of the node
+     * @requires 0 <= node < size()
+     */
+    public Kind kind(int node) {
+        return KINDS[this.kinds[node]];
+    }
+
+    /**
+     * Returns the condition of IF, IF_ELSE or WHILE node {@code node}.
+     *
+     * @param node
+     *            the node
+     * @return the condition of the node
+     * @requires 0 <= node < size()  and  [node is an IF, IF_ELSE or WHILE]
+     */
+    public Condition condition(int node) {
+        assert this.kind(node) != Kind.BLOCK
+                && this.kind(node) != Kind.CALL : ""
+                        + "Violation of: [node is an IF, IF_ELSE or WHILE]";
+        return CONDITIONS[this.conditions[node]];
+    }
+
+    /**
+     * Returns the number of children of node {@code node}: the length of a
+     * BLOCK, 1 for IF and WHILE, 2 for IF_ELSE and 0 for CALL.
+     *
+     * @param node
+     *            the node
+     * @return the number of children
+     * @requires 0 <= node < size()
+     */
+    public int childCount(int node) {
+        return this.childStart[node + 1] - this.childStart[node];
+    }
+
+    /**
+     * Returns the {@code i}-th child of node {@code node}.
+     *
+     * @param node
+     *            the node
+     * @param i
+     *            the position of the child
+     * @return the child
+     * @requires 0 <= node < size()  and  0 <= i < childCount(node)
+     */
+    public int child(int node, int i) {
+        assert 0 <= i && i < this.childCount(node) : ""
+                + "Violation of: 0 <= i < childCount(node)";
+        return this.children[this.childStart[node] + i];
+    }
+
+    /**
+     * Returns the symbol id of the call target of CALL node {@code node}.
+     *
+     * @param node
+     *            the node
+     * @return the symbol id of the call target
+     * @requires 0 <= node < size()  and  [node is a CALL]
+     */
+    public int callId(int node) {
+        assert this.kind(node) == Kind.CALL : ""
+                + "Violation of: [node is a CALL]";
+        return this.calls[node];
+    }
+
+    /**
+     * Returns the call target of CALL node {@code node}.
+     *
+     * @param node
+     *            the node
+     * @return the call target
+     * @requires 0 <= node < size()  and  [node is a CALL]
+     */
+    public String call(int node) {
+        return this.names[this.callId(node)];
+    }
+
+    /**
+     * Returns the number of symbol ids when the snapshot was taken.
+     *
+     * @return the number of symbol ids
+     */
+    public int symbolCount() {
+        return this.names.length;
+    }
+
+    /**
+     * Returns the name of symbol id {@code id}, as of when the snapshot was
+     * taken.
+     *
+     * @param id
+     *            the symbol id
+     * @return the name
+     * @requires 0 <= id < symbolCount()
+     */
+    public String symbol(int id) {
+        return this.names[id];
+    }
+
+    /**
+     * Returns the symbol id of {@code name}, or -1 if it had none when the
+     * snapshot was taken.
+     *
+     * @param name
+     *            the identifier
+     * @return the symbol id, or -1
+     */
+    public int id(String name) {
+        assert name != null : "Violation of: name is not null";
+        Integer id = this.ids.get(name);
+        int result = -1;
+        if (id != null) {
+            result = id;
+        }
+        return result;
+    }
+
+    /**
+     * Copies this snapshot into {@code p}, for a thread that needs a
+     * mutable program.
+     *
+     * @param p
+     *            the program
+     * @replaces p
+     * @ensures [p is the program this is a snapshot of]
+     */
+    public void copyTo(Program p) {
+        assert p != null : "Violation of: p is not null";
+        Map<String, Statement> context = p.newContext();
+        for (String instName : this.instructionNames) {
+            Statement instBody = p.newBody();
+            this.build(this.instruction(this.id(instName)), instBody);
+            context.add(instName, instBody);
+        }
+        Statement programBody = p.newBody();
+        this.build(this.body, programBody);
+        p.swapContext(context);
+        p.swapBody(programBody);
+        p.setName(this.name);
+    }
+
+    /**
+     * Returns a 64-bit hash of the contents of this snapshot: the name, the
+     * instructions in context order and all nodes, with call targets by name.
+     * Equal snapshots have equal content hashes whatever their symbol tables,
+     * so the hash identifies a program across processes, and node numbers
+     * recorded for one snapshot are valid for any snapshot with the same
+     * content hash.
+     *
+     * @return the content hash
+     */
+    public long contentHash() {
+        return this.contentHash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        boolean equal = obj == this;
+        if (!equal && obj instanceof FrozenProgram) {
+            FrozenProgram other = (FrozenProgram) obj;
+            equal = this.name.equals(other.name) && this.body == other.body
+                    && Arrays.equals(this.kinds, other.kinds)
+                    && Arrays.equals(this.conditions, other.conditions)
+                    && Arrays.equals(this.childStart, other.childStart)
+                    && Arrays.equals(this.children, other.children)
+                    && Arrays.equals(this.instructionNames,
+                            other.instructionNames);
+            for (int node = 0; node < this.kinds.length && equal; node++) {
+                if (this.kinds[node] == Kind.CALL.ordinal()) {
+                    equal = this.call(node).equals(other.call(node));
+                }
+            }
+        }
+        return equal;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.name.hashCode() * 31 + Arrays.hashCode(this.kinds);
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenProgram(" + this.name + ", " + this.kinds.length
+                + " nodes)";
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse input file and freeze the program
+         */
+        out.println("*** Parsing input file ***");
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        FrozenProgram frozen = FrozenProgram.freeze(p);
+        out.println(frozen.name() + ": " + frozen.instructionCount()
+                + " instructions, " + frozen.size() + " nodes");
+        /*
+         * Pretty print a copy of the snapshot
+         */
+        out.println("*** Pretty print of copy of snapshot ***");
+        Program copy = p.newInstance();
+        frozen.copyTo(copy);
+        copy.prettyPrint(out);
+
+        in.close();
+        out.close();
+    }
+
+}
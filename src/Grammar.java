@@ -0,0 +1,608 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * LL(1) grammar read from a declarative specification, with the parse table
+ * generated from it. A specification is a list of rules
+ *
+ * <pre>
+ * nonterminal ::= alternative
+ *               | alternative
+ * </pre>
+ *
+ * one alternative per line, where an alternative is a sequence of symbols
+ * separated by spaces, possibly none. A symbol starting with a lower case
+ * letter is a nonterminal; one starting with {@code @} is a semantic action,
+ * run by the parser when it is reached and ignored by the generator; any
+ * other symbol is a terminal: a keyword, a token class such as
+ * {@code <identifier>} or {@code <name>}, which is any token but the end of
+ * the input and is only matched, never looked ahead at, or {@code $} for
+ * {@code Tokenizer.END_OF_INPUT}. A
+ * line {@code %start} lists the nonterminals a parse may start from, which
+ * may be followed by the end of the input. Text from {@code #} to the end of
+ * a line is a comment.
+ *
+ * <p>
+ * Symbols are numbered: terminals from 0, then nonterminals, then actions, so
+ * that the parser tells them apart with two comparisons. The table maps a
+ * nonterminal and a lookahead terminal to the production to expand, or -1;
+ * a grammar that is not LL(1) is rejected with the conflicting entry.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class Grammar {
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Specification of the BL grammar.
+     */
+    public static final String BL_SPECIFICATION = ""
+            + "%start program block statement\n"
+            + "program      ::= PROGRAM <name> @program IS context"
+            + " BEGIN block END <name> @endProgram $\n"
+            + "context      ::= instruction context\n"
+            + "               |\n"
+            + "instruction  ::= INSTRUCTION <identifier> @instruction IS"
+            + " block END <identifier> @endInstruction\n"
+            + "block        ::= @block statements\n"
+            + "statements   ::= statement @add statements\n"
+            + "               |\n"
+            + "statement    ::= IF <condition> @condition THEN block ifTail\n"
+            + "               | WHILE <condition> @condition DO block"
+            + " END WHILE @while\n"
+            + "               | <identifier> @call\n"
+            + "ifTail       ::= END IF @if\n"
+            + "               | ELSE block END IF @ifElse\n";
+
+    /**
+     * The BL grammar.
+     */
+    public static final Grammar BL = new Grammar(BL_SPECIFICATION);
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Marker of no production in the table.
+     */
+    private static final short NO_PRODUCTION = -1;
+
+    /**
+     * Names of the terminals, by number.
+     */
+    private final String[] terminals;
+
+    /**
+     * Names of the nonterminals, by number less the number of terminals.
+     */
+    private final String[] nonterminals;
+
+    /**
+     * Names of the actions, without the {@code @}, by number less the number
+     * of terminals and nonterminals.
+     */
+    private final String[] actions;
+
+    /**
+     * Start nonterminals.
+     */
+    private final String[] starts;
+
+    /**
+     * Left side of each production, as a nonterminal number.
+     */
+    private final int[] lefts;
+
+    /**
+     * Position in {@code rights} of the first symbol of the right side of
+     * each production; the right side of production {@code p} is
+     * {@code rights[rightStart[p]]} to {@code rights[rightStart[p + 1] - 1]}.
+     */
+    private final int[] rightStart;
+
+    /**
+     * Right sides of the productions.
+     */
+    private final int[] rights;
+
+    /**
+     * The parse table: entry {@code n * terminalCount() + t} is the
+     * production for nonterminal number {@code terminalCount() + n} on
+     * lookahead {@code t}, or -1.
+     */
+    private final short[] table;
+
+    /**
+     * Returns the number of {@code name} in {@code names}, adding it if it
+     * is not there.
+     *
+     * @param names
+     *            the names
+     * @param numbers
+     *            the numbers of the names
+     * @param name
+     *            the name
+     * @return the number of the name
+     * @updates names, numbers
+     */
+    private static int number(List<String> names,
+            HashMap<String, Integer> numbers, String name) {
+        Integer n = numbers.get(name);
+        if (n == null) {
+            n = names.size();
+            names.add(name);
+            numbers.put(name, n);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the FIRST set of the symbols {@code rights[from]} to
+     * {@code rights[to - 1]}, adding the terminal number
+     * {@code terminalCount()} to stand for the empty string if they are
+     * nullable.
+     *
+     * @param from
+     *            the position of the first symbol
+     * @param to
+     *            the position just past the last symbol
+     * @param first
+     *            the FIRST sets of the nonterminals
+     * @return the FIRST set
+     */
+    private BitSet first(int from, int to, BitSet[] first) {
+        int t = this.terminals.length;
+        int n = this.nonterminals.length;
+        BitSet set = new BitSet(t + 1);
+        boolean nullable = true;
+        for (int i = from; nullable && i < to; i++) {
+            int symbol = this.rights[i];
+            if (symbol < t) {
+                set.set(symbol);
+                nullable = false;
+            } else if (symbol < t + n) {
+                BitSet f = first[symbol - t];
+                nullable = f.get(t);
+                set.or(f);
+                set.clear(t);
+            }
+        }
+        if (nullable) {
+            set.set(t);
+        }
+        return set;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from the specification {@code specification}, generating
+     * the parse table.
+     *
+     * @param specification
+     *            the specification
+     * @throws IllegalArgumentException
+     *             if the specification is malformed or the grammar it
+     *             specifies is not LL(1)
+     */
+    public Grammar(String specification) {
+        assert specification != null : "Violation of: specification is not null";
+        /*
+         * Read the rules: first number the nonterminals, then the other
+         * symbols, so that every kind of symbol gets a range of its own
+         */
+        List<String[]> alternatives = new ArrayList<>();
+        List<String> lefthands = new ArrayList<>();
+        List<String> startList = new ArrayList<>();
+        String left = null;
+        for (String rawLine : specification.split("\n")) {
+            String line = rawLine;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            String alternative;
+            if (line.isEmpty()) {
+                continue;
+            } else if (line.startsWith("%start")) {
+                startList.addAll(Arrays
+                        .asList(line.substring("%start".length()).trim()
+                                .split("\\s+")));
+                continue;
+            } else if (line.startsWith("|")) {
+                if (left == null) {
+                    throw new IllegalArgumentException(
+                            "Alternative outside a rule: " + line);
+                }
+                alternative = line.substring(1);
+            } else {
+                int arrow = line.indexOf("::=");
+                if (arrow < 0) {
+                    throw new IllegalArgumentException(
+                            "Expected \"::=\" in rule: " + line);
+                }
+                left = line.substring(0, arrow).trim();
+                alternative = line.substring(arrow + "::=".length());
+            }
+            alternative = alternative.trim();
+            lefthands.add(left);
+            if (alternative.isEmpty()) {
+                alternatives.add(new String[0]);
+            } else {
+                alternatives.add(alternative.split("\\s+"));
+            }
+        }
+        List<String> nonterminalList = new ArrayList<>();
+        HashMap<String, Integer> nonterminalNumbers = new HashMap<>();
+        for (String name : lefthands) {
+            number(nonterminalList, nonterminalNumbers, name);
+        }
+        List<String> terminalList = new ArrayList<>();
+        HashMap<String, Integer> terminalNumbers = new HashMap<>();
+        List<String> actionList = new ArrayList<>();
+        HashMap<String, Integer> actionNumbers = new HashMap<>();
+        for (String[] alternative : alternatives) {
+            for (String symbol : alternative) {
+                if (symbol.startsWith("@")) {
+                    number(actionList, actionNumbers, symbol.substring(1));
+                } else if (Character.isLowerCase(symbol.charAt(0))) {
+                    if (!nonterminalNumbers.containsKey(symbol)) {
+                        throw new IllegalArgumentException(
+                                "Nonterminal without a rule: " + symbol);
+                    }
+                } else {
+                    number(terminalList, terminalNumbers, symbol);
+                }
+            }
+        }
+        for (String start : startList) {
+            if (!nonterminalNumbers.containsKey(start)) {
+                throw new IllegalArgumentException(
+                        "Start symbol without a rule: " + start);
+            }
+        }
+        this.terminals = terminalList.toArray(new String[0]);
+        this.nonterminals = nonterminalList.toArray(new String[0]);
+        this.actions = actionList.toArray(new String[0]);
+        this.starts = startList.toArray(new String[0]);
+        int t = this.terminals.length;
+        int n = this.nonterminals.length;
+
+        /*
+         * Encode the productions
+         */
+        int productionCount = alternatives.size();
+        this.lefts = new int[productionCount];
+        this.rightStart = new int[productionCount + 1];
+        int symbolCount = 0;
+        for (String[] alternative : alternatives) {
+            symbolCount += alternative.length;
+        }
+        this.rights = new int[symbolCount];
+        int k = 0;
+        for (int p = 0; p < productionCount; p++) {
+            this.lefts[p] = nonterminalNumbers.get(lefthands.get(p));
+            this.rightStart[p] = k;
+            for (String symbol : alternatives.get(p)) {
+                if (symbol.startsWith("@")) {
+                    this.rights[k] = t + n
+                            + actionNumbers.get(symbol.substring(1));
+                } else if (Character.isLowerCase(symbol.charAt(0))) {
+                    this.rights[k] = t + nonterminalNumbers.get(symbol);
+                } else {
+                    this.rights[k] = terminalNumbers.get(symbol);
+                }
+                k++;
+            }
+        }
+        this.rightStart[productionCount] = k;
+
+        /*
+         * FIRST sets, with terminal number t standing for the empty string,
+         * computed to a fixed point
+         */
+        BitSet[] first = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            first[i] = new BitSet(t + 1);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionCount; p++) {
+                BitSet f = this.first(this.rightStart[p],
+                        this.rightStart[p + 1], first);
+                BitSet old = first[this.lefts[p]];
+                int before = old.cardinality();
+                old.or(f);
+                changed |= old.cardinality() != before;
+            }
+        }
+
+        /*
+         * FOLLOW sets, where the start symbols may be followed by $
+         */
+        BitSet[] follow = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            follow[i] = new BitSet(t);
+        }
+        Integer end = terminalNumbers.get("$");
+        if (end != null) {
+            for (String start : this.starts) {
+                follow[nonterminalNumbers.get(start)].set(end);
+            }
+        }
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionCount; p++) {
+                int last = this.rightStart[p + 1];
+                for (int i = this.rightStart[p]; i < last; i++) {
+                    int symbol = this.rights[i];
+                    if (t <= symbol && symbol < t + n) {
+                        BitSet f = this.first(i + 1, last, first);
+                        BitSet target = follow[symbol - t];
+                        int before = target.cardinality();
+                        if (f.get(t)) {
+                            f.clear(t);
+                            target.or(follow[this.lefts[p]]);
+                        }
+                        target.or(f);
+                        changed |= target.cardinality() != before;
+                    }
+                }
+            }
+        }
+
+        /*
+         * The table: a production goes under every terminal of the FIRST set
+         * of its right side, and under the FOLLOW set of its left side if its
+         * right side is nullable
+         */
+        this.table = new short[n * t];
+        Arrays.fill(this.table, NO_PRODUCTION);
+        for (int p = 0; p < productionCount; p++) {
+            BitSet f = this.first(this.rightStart[p], this.rightStart[p + 1],
+                    first);
+            if (f.get(t)) {
+                f.clear(t);
+                f.or(follow[this.lefts[p]]);
+            }
+            for (int a = f.nextSetBit(0); a >= 0; a = f.nextSetBit(a + 1)) {
+                int entry = this.lefts[p] * t + a;
+                if (this.table[entry] != NO_PRODUCTION) {
+                    throw new IllegalArgumentException("Not LL(1): "
+                            + this.nonterminals[this.lefts[p]] + " on "
+                            + this.terminals[a] + " has productions "
+                            + this.table[entry] + " and " + p);
+                }
+                this.table[entry] = (short) p;
+            }
+        }
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Returns the production for nonterminal number {@code nonterminal} on
+     * lookahead terminal number {@code terminal}, or -1 if there is none.
+     *
+     * @param nonterminal
+     *            the nonterminal number
+     * @param terminal
+     *            the terminal number
+     * @return the production, or -1
+     * @requires <pre>
+     * terminalCount() <= nonterminal < terminalCount() + nonterminalCount()  and
+     *  0 <= terminal < terminalCount()
+     * </pre>
+     */
+    int production(int nonterminal, int terminal) {
+        return this.table[(nonterminal - this.terminals.length)
+                * this.terminals.length + terminal];
+    }
+
+    /**
+     * Returns the position in {@code rights()} of the first symbol of the
+     * right side of production {@code p}.
+     *
+     * @param p
+     *            the production
+     * @return the position of the first symbol
+     */
+    int rightStart(int p) {
+        return this.rightStart[p];
+    }
+
+    /**
+     * Returns the position in {@code rights()} just past the last symbol of
+     * the right side of production {@code p}.
+     *
+     * @param p
+     *            the production
+     * @return the position past the last symbol
+     */
+    int rightEnd(int p) {
+        return this.rightStart[p + 1];
+    }
+
+    /**
+     * Returns the right sides of the productions, as symbol numbers. The
+     * array is shared and must not be changed.
+     *
+     * @return the right sides
+     */
+    int[] rights() {
+        return this.rights;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the number of terminals.
+     *
+     * @return the number of terminals
+     */
+    public int terminalCount() {
+        return this.terminals.length;
+    }
+
+    /**
+     * Returns the number of nonterminals.
+     *
+     * @return the number of nonterminals
+     */
+    public int nonterminalCount() {
+        return this.nonterminals.length;
+    }
+
+    /**
+     * Returns the number of actions.
+     *
+     * @return the number of actions
+     */
+    public int actionCount() {
+        return this.actions.length;
+    }
+
+    /**
+     * Returns the number of productions.
+     *
+     * @return the number of productions
+     */
+    public int productionCount() {
+        return this.lefts.length;
+    }
+
+    /**
+     * Returns the number of terminal {@code name}, or -1 if there is none.
+     *
+     * @param name
+     *            the name of the terminal
+     * @return the terminal number, or -1
+     */
+    public int terminal(String name) {
+        return Arrays.asList(this.terminals).indexOf(name);
+    }
+
+    /**
+     * Returns the number of nonterminal {@code name}, or -1 if there is
+     * none.
+     *
+     * @param name
+     *            the name of the nonterminal
+     * @return the nonterminal number, or -1
+     */
+    public int nonterminal(String name) {
+        int i = Arrays.asList(this.nonterminals).indexOf(name);
+        if (i >= 0) {
+            i += this.terminals.length;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the number of action {@code name}, without the {@code @}, or -1
+     * if there is none.
+     *
+     * @param name
+     *            the name of the action
+     * @return the action number, or -1
+     */
+    public int action(String name) {
+        int i = Arrays.asList(this.actions).indexOf(name);
+        if (i >= 0) {
+            i += this.terminals.length + this.nonterminals.length;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the name of symbol number {@code symbol}.
+     *
+     * @param symbol
+     *            the symbol number
+     * @return the name of the symbol
+     * @requires 0 <= symbol < [number of symbols]
+     */
+    public String name(int symbol) {
+        int t = this.terminals.length;
+        int n = this.nonterminals.length;
+        String name;
+        if (symbol < t) {
+            name = this.terminals[symbol];
+        } else if (symbol < t + n) {
+            name = this.nonterminals[symbol - t];
+        } else {
+            name = "@" + this.actions[symbol - t - n];
+        }
+        return name;
+    }
+
+    /**
+     * Returns the productions, one per line, followed by the parse table, one
+     * line per nonterminal listing the production for each lookahead.
+     *
+     * @return the productions and the parse table
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        int t = this.terminals.length;
+        for (int p = 0; p < this.lefts.length; p++) {
+            text.append(p).append(": ").append(this.nonterminals[this.lefts[p]])
+                    .append(" ::=");
+            for (int i = this.rightStart[p]; i < this.rightStart[p + 1]; i++) {
+                text.append(' ').append(this.name(this.rights[i]));
+            }
+            text.append('\n');
+        }
+        for (int nt = 0; nt < this.nonterminals.length; nt++) {
+            text.append(this.nonterminals[nt]).append(':');
+            for (int a = 0; a < t; a++) {
+                short p = this.table[nt * t + a];
+                if (p != NO_PRODUCTION) {
+                    text.append(' ').append(this.terminals[a]).append('=')
+                            .append(p);
+                }
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("*** BL grammar and LL(1) parse table ***");
+        out.print(BL.toString());
+        out.close();
+    }
+
+}
@@ -0,0 +1,271 @@
+import components.queue.Queue;
+import components.simplewriter.SimpleWriter;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * {@code Statement} whose value is a BL block that is kept as tokens until it
+ * is first used, and is then parsed by {@code Statement1Parse1.parseBlock}.
+ * Every method forces the parse; concurrent first uses parse the block exactly
+ * once and all observe the same result.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class LazyStatement implements Statement {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Tokens of the block still to be parsed, or {@code null} once the parse
+     * has been attempted.
+     */
+    private Queue<String> tokens;
+
+    /**
+     * The limits enforced while parsing the block.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * The parsed block, or {@code null} until it has been parsed.
+     */
+    private volatile Statement statement;
+
+    /**
+     * The error reported by a failed parse, or {@code null}.
+     */
+    private RuntimeException error;
+
+    /**
+     * Number of parses of the block attempted; at most one.
+     */
+    private int parses;
+
+    /**
+     * Returns the parsed block, parsing it first if it has not been parsed
+     * yet.
+     *
+     * @return the parsed block
+     * @ensures <pre>
+     * if [the pending tokens are a block string followed by
+     *     Tokenizer.END_OF_INPUT] then
+     *  body = [Statement corresponding to that block string]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    private Statement body() {
+        Statement s = this.statement;
+        if (s == null) {
+            synchronized (this) {
+                s = this.statement;
+                if (s == null) {
+                    if (this.error != null) {
+                        throw this.error;
+                    }
+                    Queue<String> pending = this.tokens;
+                    this.tokens = null;
+                    this.parses++;
+                    try {
+                        Statement1Parse1 block = new Statement1Parse1();
+                        block.parseBlock(pending, this.limits);
+                        s = block;
+                        ParseState.checkFront(
+                                pending.front().equals(Tokenizer.END_OF_INPUT),
+                                "Error: Keyword" + " \"" + "END" + "\" "
+                                        + "expected, found: " + "\""
+                                        + pending.front() + "\"",
+                                null, pending);
+                    } catch (RuntimeException e) {
+                        this.error = e;
+                        throw e;
+                    }
+                    this.statement = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Returns the number of parses of the block attempted, without parsing
+     * it.
+     *
+     * @return the number of parses attempted
+     * @ensures parseCount <= 1
+     */
+    synchronized int parseCount() {
+        return this.parses;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from the tokens of a block.
+     *
+     * @param tokens
+     *            the tokens of the block, followed by
+     *            {@code Tokenizer.END_OF_INPUT}
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     */
+    public LazyStatement(Queue<String> tokens) {
+        this(tokens, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor from the tokens of a block and the limits enforced when it
+     * is parsed.
+     *
+     * @param tokens
+     *            the tokens of the block, followed by
+     *            {@code Tokenizer.END_OF_INPUT}
+     * @param limits
+     *            the limits enforced while parsing the block
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     */
+    public LazyStatement(Queue<String> tokens, ParseLimits limits) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+        assert limits != null : "Violation of: limits is not null";
+        this.tokens = tokens;
+        this.limits = limits;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports whether the block has been parsed, without parsing it.
+     *
+     * @return true iff the block has been parsed
+     */
+    public boolean isParsed() {
+        return this.statement != null;
+    }
+
+    @Override
+    public void clear() {
+        this.body().clear();
+    }
+
+    @Override
+    public Statement newInstance() {
+        return this.body().newInstance();
+    }
+
+    @Override
+    public void transferFrom(Statement source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        if (source instanceof LazyStatement) {
+            this.body().transferFrom(((LazyStatement) source).body());
+        } else {
+            this.body().transferFrom(source);
+        }
+    }
+
+    @Override
+    public Kind kind() {
+        return this.body().kind();
+    }
+
+    @Override
+    public void addToBlock(int pos, Statement s) {
+        this.body().addToBlock(pos, s);
+    }
+
+    @Override
+    public Statement removeFromBlock(int pos) {
+        return this.body().removeFromBlock(pos);
+    }
+
+    @Override
+    public int lengthOfBlock() {
+        return this.body().lengthOfBlock();
+    }
+
+    @Override
+    public void assembleIf(Condition c, Statement s) {
+        this.body().assembleIf(c, s);
+    }
+
+    @Override
+    public Condition disassembleIf(Statement s) {
+        return this.body().disassembleIf(s);
+    }
+
+    @Override
+    public void assembleIfElse(Condition c, Statement s1, Statement s2) {
+        this.body().assembleIfElse(c, s1, s2);
+    }
+
+    @Override
+    public Condition disassembleIfElse(Statement s1, Statement s2) {
+        return this.body().disassembleIfElse(s1, s2);
+    }
+
+    @Override
+    public void assembleWhile(Condition c, Statement s) {
+        this.body().assembleWhile(c, s);
+    }
+
+    @Override
+    public Condition disassembleWhile(Statement s) {
+        return this.body().disassembleWhile(s);
+    }
+
+    @Override
+    public void assembleCall(String inst) {
+        this.body().assembleCall(inst);
+    }
+
+    @Override
+    public String disassembleCall() {
+        return this.body().disassembleCall();
+    }
+
+    @Override
+    public void prettyPrint(SimpleWriter out, int offset) {
+        this.body().prettyPrint(out, offset);
+    }
+
+    @Override
+    public void parse(Queue<String> tokens) {
+        this.body().parse(tokens);
+    }
+
+    @Override
+    public void parseBlock(Queue<String> tokens) {
+        this.body().parseBlock(tokens);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof LazyStatement) {
+            return this.body().equals(((LazyStatement) obj).body());
+        }
+        return this.body().equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.body().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.body().toString();
+    }
+
+}
@@ -0,0 +1,694 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Tokenizer that lexes a large input on several threads. The input is split
+ * into chunks that each start at a whitespace character, so that no token
+ * crosses a chunk, and the chunks are lexed concurrently. A file is split by
+ * byte ranges, at ASCII whitespace, which never occurs inside the UTF-8
+ * encoding of another character, and each chunk reads and decodes its own
+ * range, so no thread reads the whole file. A stream can only be read in
+ * order, so it is read into one string first. Each chunk counts its lines
+ * and bytes from its own start; the tokens and positions are then stitched
+ * together in order, with the lines, columns and offsets shifted by the
+ * chunks before, so the result is the same as that of
+ * {@code TokenPositions.tokens}. Inputs shorter than the threshold are lexed
+ * on the calling thread.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParallelTokenizer {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default threshold, in characters or bytes, from which an input is lexed
+     * in parallel.
+     */
+    private static final int DEFAULT_THRESHOLD = 1 << 20;
+
+    /**
+     * Number of bytes of a chunk of a file at most, not counting the bytes up
+     * to the whitespace it ends at.
+     */
+    private static final int MAX_CHUNK_BYTES = 1 << 26;
+
+    /**
+     * Number of bytes read at a time while looking for where a chunk of a
+     * file ends.
+     */
+    private static final int SCAN_BYTES = 1 << 12;
+
+    /**
+     * Initial capacity of the arrays of a chunk.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Number of characters, or bytes of a file, from which an input is lexed
+     * in parallel.
+     */
+    private final int threshold;
+
+    /**
+     * The pool the chunks are lexed in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Tokens of one chunk of the input, with their positions relative to the
+     * start of the chunk.
+     */
+    private static final class Chunk implements Runnable {
+
+        /**
+         * The file the chunk is read from, or {@code null}.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Byte offset in the file of the first byte of the chunk.
+         */
+        private final long from;
+
+        /**
+         * Byte offset in the file just past the last byte of the chunk.
+         */
+        private final long to;
+
+        /**
+         * The input, or the text of the chunk of a file once it is read.
+         */
+        private String text;
+
+        /**
+         * Position in {@code text} of the first character of the chunk.
+         */
+        private int start;
+
+        /**
+         * Position in {@code text} just past the last character of the chunk.
+         */
+        private int end;
+
+        /**
+         * The tokens; only the first {@code length} entries are used.
+         */
+        private String[] tokens = new String[INITIAL_CAPACITY];
+
+        /**
+         * Line of each token, counted from 0 at the start of the chunk.
+         */
+        private int[] lines = new int[INITIAL_CAPACITY];
+
+        /**
+         * Column of each token on the lines after the first, or the number of
+         * characters before it in the chunk on the first line, whose column
+         * depends on the chunks before.
+         */
+        private int[] columns = new int[INITIAL_CAPACITY];
+
+        /**
+         * Byte offset of each token from the start of the chunk.
+         */
+        private long[] offsets = new long[INITIAL_CAPACITY];
+
+        /**
+         * Number of tokens.
+         */
+        private int length = 0;
+
+        /**
+         * Number of line terminators in the chunk.
+         */
+        private int newlines = 0;
+
+        /**
+         * Column just past the last character of the chunk, if it has a line
+         * terminator, or the number of characters in the chunk otherwise.
+         */
+        private int tail = 0;
+
+        /**
+         * Number of bytes of the chunk.
+         */
+        private long bytes = 0;
+
+        /**
+         * Line, relative like the lines of the tokens, of the last line
+         * terminator in the chunk.
+         */
+        private int lastLine = 0;
+
+        /**
+         * Column, relative like the columns of the tokens, of the last line
+         * terminator in the chunk.
+         */
+        private int lastColumn = 0;
+
+        /**
+         * Byte offset from the start of the chunk of the last line terminator
+         * in the chunk.
+         */
+        private long lastOffset = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param text
+         *            the input
+         * @param start
+         *            the position of the first character of the chunk
+         * @param end
+         *            the position just past the last character of the chunk
+         */
+        Chunk(String text, int start, int end) {
+            this.channel = null;
+            this.from = 0;
+            this.to = 0;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Constructor for the chunk of the file read from {@code channel}
+         * between byte offsets {@code from} and {@code to}.
+         *
+         * @param channel
+         *            the file
+         * @param from
+         *            the byte offset of the first byte of the chunk
+         * @param to
+         *            the byte offset just past the last byte of the chunk
+         * @requires 0 <= to - from <= Integer.MAX_VALUE
+         */
+        Chunk(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Reads and decodes the bytes of the chunk into {@code text}.
+         *
+         * @throws IOException
+         *             if the file cannot be read
+         */
+        private void read() throws IOException {
+            byte[] bytes = new byte[(int) (this.to - this.from)];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int n = 0;
+            while (buffer.hasRemaining() && n >= 0) {
+                n = this.channel.read(buffer, this.from + buffer.position());
+            }
+            this.text = new String(bytes, 0, buffer.position(),
+                    StandardCharsets.UTF_8);
+            this.start = 0;
+            this.end = this.text.length();
+        }
+
+        /**
+         * Adds token {@code token} at line {@code line}, column
+         * {@code column} and byte offset {@code offset}.
+         *
+         * @param token
+         *            the token
+         * @param line
+         *            the line, relative to the chunk
+         * @param column
+         *            the column, relative on the first line of the chunk
+         * @param offset
+         *            the byte offset, relative to the chunk
+         */
+        private void add(String token, int line, int column, long offset) {
+            if (this.length == this.tokens.length) {
+                int capacity = 2 * this.length;
+                this.tokens = Arrays.copyOf(this.tokens, capacity);
+                this.lines = Arrays.copyOf(this.lines, capacity);
+                this.columns = Arrays.copyOf(this.columns, capacity);
+                this.offsets = Arrays.copyOf(this.offsets, capacity);
+            }
+            this.tokens[this.length] = token;
+            this.lines[this.length] = line;
+            this.columns[this.length] = column;
+            this.offsets[this.length] = offset;
+            this.length++;
+        }
+
+        @Override
+        public void run() {
+            if (this.channel != null) {
+                try {
+                    this.read();
+                } catch (IOException e) {
+                    Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+                }
+            }
+            String s = this.text;
+            int line = 0;
+            int column = 0;
+            long offset = 0;
+            boolean afterCr = false;
+            int i = this.start;
+            while (i < this.end) {
+                char c = s.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    if (c == '\r' || (c == '\n' && !afterCr)) {
+                        this.lastLine = line;
+                        this.lastColumn = column;
+                        this.lastOffset = offset;
+                        line++;
+                        column = 1;
+                    } else if (c != '\n') {
+                        column++;
+                    }
+                    afterCr = c == '\r';
+                    offset += TokenPositions.byteLength(c);
+                    i++;
+                } else {
+                    int tokenStart = i;
+                    int tokenColumn = column;
+                    long tokenOffset = offset;
+                    while (i < this.end
+                            && !Character.isWhitespace(s.charAt(i))) {
+                        offset += TokenPositions.byteLength(s.charAt(i));
+                        i++;
+                    }
+                    column += i - tokenStart;
+                    afterCr = false;
+                    this.add(s.substring(tokenStart, i), line, tokenColumn,
+                            tokenOffset);
+                }
+            }
+            this.newlines = line;
+            this.tail = column;
+            this.bytes = offset;
+        }
+
+    }
+
+    /**
+     * Reads the characters of {@code in} into one string, line terminators
+     * included.
+     *
+     * @param in
+     *            the input stream
+     * @return the input
+     * @updates in.content
+     * @requires in.is_open
+     * @ensures read = #in.content  and  in.content = <>
+     */
+    private static String read(SimpleReader in) {
+        StringBuilder text = new StringBuilder();
+        while (!in.atEOS()) {
+            text.append(in.read());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Splits {@code text} into {@code count} chunks of about the same length,
+     * each but the first starting at a whitespace character that does not
+     * end a "\r\n" line terminator.
+     *
+     * @param text
+     *            the input
+     * @param count
+     *            the number of chunks
+     * @return the chunks, in order
+     * @requires count > 0
+     */
+    private static Chunk[] split(String text, int count) {
+        int length = text.length();
+        Chunk[] chunks = new Chunk[count];
+        int start = 0;
+        for (int k = 0; k < count; k++) {
+            int end = length;
+            if (k < count - 1) {
+                end = Math.max(start,
+                        (int) ((long) length * (k + 1) / count));
+                while (end < length
+                        && !Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+                // keep "\r\n" in one chunk, as one line terminator
+                if (0 < end && end < length && text.charAt(end - 1) == '\r'
+                        && text.charAt(end) == '\n') {
+                    end++;
+                }
+            }
+            chunks[k] = new Chunk(text, start, end);
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the byte offset of the first ASCII whitespace byte at or after
+     * byte offset {@code from} of the file read from {@code channel} that
+     * does not end a "\r\n" line terminator, or {@code size} if there is
+     * none.
+     *
+     * @param channel
+     *            the file
+     * @param from
+     *            the byte offset from which to look
+     * @param size
+     *            the size of the file
+     * @return the byte offset of the whitespace byte, or {@code size}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long boundary(FileChannel channel, long from, long size)
+            throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_BYTES);
+        long p = Math.max(from - 1, 0);
+        int before = -1;
+        long boundary = size;
+        while (boundary == size && p < size) {
+            window.clear();
+            int n = channel.read(window, p);
+            if (n < 0) {
+                p = size;
+            }
+            for (int i = 0; i < n && boundary == size; i++) {
+                int b = window.get(i);
+                if (p + i >= from && b >= 0
+                        && Character.isWhitespace((char) b)
+                        && !(b == '\n' && before == '\r')) {
+                    boundary = p + i;
+                }
+                before = b;
+            }
+            p += n;
+        }
+        return boundary;
+    }
+
+    /**
+     * Splits the file read from {@code channel}, of {@code size} bytes, into
+     * {@code count} chunks of about the same number of bytes, each but the
+     * first starting at an ASCII whitespace byte that does not end a "\r\n"
+     * line terminator.
+     *
+     * @param channel
+     *            the file
+     * @param size
+     *            the size of the file
+     * @param count
+     *            the number of chunks
+     * @return the chunks, in order
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires count > 0
+     */
+    private static Chunk[] split(FileChannel channel, long size, int count)
+            throws IOException {
+        Chunk[] chunks = new Chunk[count];
+        long from = 0;
+        for (int k = 0; k < count; k++) {
+            long to = size;
+            if (k < count - 1) {
+                to = boundary(channel,
+                        Math.max(from, size * (k + 1) / count), size);
+            }
+            chunks[k] = new Chunk(channel, from, to);
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Lexes {@code chunks}, the first one on this thread and, if
+     * {@code parallel}, the others on the pool.
+     *
+     * @param chunks
+     *            the chunks
+     * @param parallel
+     *            whether to lex on the pool
+     */
+    private void lex(Chunk[] chunks, boolean parallel) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks.length];
+        for (int k = 1; k < chunks.length && parallel; k++) {
+            tasks[k] = this.pool.submit(chunks[k]);
+        }
+        chunks[0].run();
+        for (int k = 1; k < chunks.length; k++) {
+            if (parallel) {
+                tasks[k].join();
+            } else {
+                chunks[k].run();
+            }
+        }
+    }
+
+    /**
+     * Stitches the tokens of {@code chunks} together in order, replacing
+     * {@code positions} with their positions.
+     *
+     * @param chunks
+     *            the lexed chunks
+     * @param positions
+     *            the positions of the tokens
+     * @return the tokens of the chunks, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @replaces positions
+     */
+    private static Queue<String> stitch(Chunk[] chunks,
+            TokenPositions positions) {
+        positions.clear();
+        Queue<String> tokens = new TokenQueue();
+        int line = 1;
+        int column = 1;
+        long offset = 0;
+        int endLine = 1;
+        int endColumn = 1;
+        long endOffset = 0;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.length; i++) {
+                int tokenColumn = chunk.columns[i];
+                if (chunk.lines[i] == 0) {
+                    tokenColumn += column;
+                }
+                tokens.enqueue(chunk.tokens[i]);
+                positions.add(line + chunk.lines[i], tokenColumn,
+                        offset + chunk.offsets[i]);
+            }
+            if (chunk.newlines > 0) {
+                endLine = line + chunk.lastLine;
+                endColumn = chunk.lastColumn;
+                if (chunk.lastLine == 0) {
+                    endColumn += column;
+                }
+                endOffset = offset + chunk.lastOffset;
+                line += chunk.newlines;
+                column = chunk.tail;
+            } else {
+                column += chunk.tail;
+            }
+            offset += chunk.bytes;
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        if (column > 1) {
+            positions.add(line, column, offset);
+        } else {
+            positions.add(endLine, endColumn, endOffset);
+        }
+        return tokens;
+    }
+
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor: inputs from one million characters up are
+     * lexed in parallel on the common pool.
+     */
+    public ParallelTokenizer() {
+        this(DEFAULT_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a tokenizer that lexes inputs of {@code threshold}
+     * characters or more in parallel on the common pool.
+     *
+     * @param threshold
+     *            the number of characters from which an input is lexed in
+     *            parallel
+     * @requires threshold > 0
+     */
+    public ParallelTokenizer(int threshold) {
+        this(threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a tokenizer that lexes inputs of {@code threshold}
+     * characters or more in parallel on {@code pool}, in one chunk per thread
+     * of the pool and one for the calling thread.
+     *
+     * @param threshold
+     *            the number of characters from which an input is lexed in
+     *            parallel
+     * @param pool
+     *            the pool the chunks are lexed in
+     * @requires threshold > 0
+     */
+    public ParallelTokenizer(int threshold, ForkJoinPool pool) {
+        assert threshold > 0 : "Violation of: threshold > 0";
+        assert pool != null : "Violation of: pool is not null";
+        this.threshold = threshold;
+        this.pool = pool;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Tokenizes the input from {@code in} like {@code Tokenizer.tokens} and
+     * replaces {@code positions} with the positions of the tokens, the last
+     * one being the end of the input, where {@code Tokenizer.END_OF_INPUT}
+     * is. The tokens and positions are those given by
+     * {@code TokenPositions.tokens}.
+     *
+     * @param in
+     *            the input stream
+     * @param positions
+     *            the positions of the tokens
+     * @return the tokens of the input, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @updates in.content
+     * @replaces positions
+     * @requires in.is_open
+     * @ensures <pre>
+     * tokens = [the tokens in #in.content] * <Tokenizer.END_OF_INPUT>  and
+     *  positions = [the positions of tokens in #in.content]  and
+     *  in.content = <>
+     * </pre>
+     */
+    public Queue<String> tokens(SimpleReader in, TokenPositions positions) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        assert positions != null : "Violation of: positions is not null";
+        String text = read(in);
+        int count = 1;
+        if (text.length() >= this.threshold) {
+            count = this.pool.getParallelism() + 1;
+        }
+        Chunk[] chunks = split(text, count);
+        this.lex(chunks, count > 1);
+        return stitch(chunks, positions);
+    }
+
+    /**
+     * Tokenizes the UTF-8 file {@code fileName} like {@code Tokenizer.tokens}
+     * and replaces {@code positions} with the positions of the tokens, the
+     * last one being the end of the input, where
+     * {@code Tokenizer.END_OF_INPUT} is. The tokens and positions are those
+     * given by {@code TokenPositions.tokens}. A file of {@code threshold}
+     * bytes or more is read, as well as lexed, in parallel.
+     *
+     * @param fileName
+     *            the name of the file
+     * @param positions
+     *            the positions of the tokens
+     * @return the tokens of the file, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @replaces positions
+     * @ensures <pre>
+     * tokens = [the tokens in the file] * <Tokenizer.END_OF_INPUT>  and
+     *  positions = [the positions of tokens in the file]
+     * </pre>
+     */
+    public Queue<String> tokens(String fileName, TokenPositions positions) {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert positions != null : "Violation of: positions is not null";
+        Chunk[] chunks = null;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            long size = channel.size();
+            boolean parallel = size >= this.threshold;
+            int count = 1;
+            if (parallel) {
+                count = this.pool.getParallelism() + 1;
+            }
+            count = (int) Math.max(count, size / MAX_CHUNK_BYTES + 1);
+            chunks = split(channel, size, count);
+            this.lex(chunks, parallel);
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return stitch(chunks, positions);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter BL file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Tokenize input file on one thread, then in parallel
+         */
+        TokenPositions single = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(fileName);
+        long start = System.nanoTime();
+        Queue<String> singleTokens = single.tokens(file);
+        long singleTime = System.nanoTime() - start;
+        file.close();
+        TokenPositions parallel = new TokenPositions();
+        start = System.nanoTime();
+        Queue<String> parallelTokens = new ParallelTokenizer(1)
+                .tokens(fileName, parallel);
+        long parallelTime = System.nanoTime() - start;
+        /*
+         * Compare the results
+         */
+        boolean same = singleTokens.equals(parallelTokens)
+                && single.length() == parallel.length();
+        for (int i = 0; same && i < single.length(); i++) {
+            same = single.line(i) == parallel.line(i)
+                    && single.column(i) == parallel.column(i)
+                    && single.offset(i) == parallel.offset(i);
+        }
+        out.println("Tokens: " + (singleTokens.length() - 1));
+        out.println("One thread: " + singleTime / 1_000_000 + " ms");
+        out.println("Parallel: " + parallelTime / 1_000_000 + " ms");
+        out.println("Same tokens and positions: " + same);
+
+        in.close();
+        out.close();
+    }
+
+}
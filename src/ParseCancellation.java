@@ -0,0 +1,127 @@
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Token that stops a parse from another thread, or once a deadline passes.
+ * The parse checks the token when it starts a block, before each statement
+ * of a block and before each instruction of the context, and gives up with
+ * a {@code CancellationException} once the token is cancelled or expired.
+ * Nothing the parse built is kept: the program parsed into is left as it
+ * was, and the partial statement trees are dropped as the exception
+ * unwinds.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParseCancellation {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Value of {@code System.nanoTime()} at which the deadline passes.
+     */
+    private final long deadline;
+
+    /**
+     * Whether there is a deadline.
+     */
+    private final boolean hasDeadline;
+
+    /**
+     * Whether the token has been cancelled.
+     */
+    private volatile boolean cancelled = false;
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Reports an error if the token is cancelled or expired.
+     *
+     * @ensures <pre>
+     * if not (isCancelled() or isExpired()) then
+     *  [nothing happens]
+     * else
+     *  [throw a CancellationException]
+     * </pre>
+     */
+    void check() {
+        if (this.cancelled) {
+            throw new CancellationException("Error: Parse cancelled");
+        }
+        if (this.isExpired()) {
+            throw new CancellationException("Error: Parse deadline passed");
+        }
+    }
+
+    /**
+     * Returns the time left until the deadline, or {@code Long.MAX_VALUE} if
+     * there is no deadline.
+     *
+     * @return the time left, in nanoseconds, or {@code Long.MAX_VALUE}
+     */
+    long remainingNanos() {
+        long remaining = Long.MAX_VALUE;
+        if (this.hasDeadline) {
+            remaining = Math.max(0, this.deadline - System.nanoTime());
+        }
+        return remaining;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a token without a deadline.
+     */
+    public ParseCancellation() {
+        this.deadline = 0;
+        this.hasDeadline = false;
+    }
+
+    /**
+     * Constructor for a token that expires {@code timeout} from now.
+     *
+     * @param timeout
+     *            the time the parse may take
+     */
+    public ParseCancellation(Duration timeout) {
+        assert timeout != null : "Violation of: timeout is not null";
+        this.deadline = System.nanoTime() + timeout.toNanos();
+        this.hasDeadline = true;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Cancels the token, so the parse checking it stops at its next check.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Reports whether the token has been cancelled.
+     *
+     * @return true iff {@code cancel} has been called
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Reports whether the deadline of the token has passed.
+     *
+     * @return true iff there is a deadline and it has passed
+     */
+    public boolean isExpired() {
+        return this.hasDeadline && System.nanoTime() - this.deadline >= 0;
+    }
+
+}
@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * Non-interactive command-line entry point for parsing BL files, for use in
+ * scripts. It parses each file named on the command line, or the standard
+ * input if none is (or for the name {@code -}), and either only checks it or
+ * pretty prints it to the standard output. Syntax errors are reported on the
+ * standard error, prefixed with the name of the input, and the remaining
+ * inputs are still parsed.
+ *
+ * <pre>
+ * usage: ParseCommand [--check | --print | --minify] [--statement] [file ...]
+ *   --check      only check the syntax (the default)
+ *   --print      pretty print each input
+ *   --minify     print each input in minified form
+ *   --statement  parse each input as a block of statements, not a program
+ * </pre>
+ *
+ * The exit code is {@code 0} if every input is valid, {@code 1} if any has a
+ * syntax error, {@code 2} for a usage error or an input or output that cannot
+ * be read or written, and {@code 3} if the parser fails in any other way,
+ * which is a bug in the parser rather than in the input; the largest applies.
+ * All inputs are parsed with one {@code ParseSession}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParseCommand {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Exit code when every input is valid.
+     */
+    private static final int OK = 0;
+
+    /**
+     * Exit code when an input has a syntax error.
+     */
+    private static final int SYNTAX_ERROR = 1;
+
+    /**
+     * Exit code for a usage error or an input or output that cannot be read
+     * or written.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * Exit code for a failure of the parser other than a reported error.
+     */
+    private static final int INTERNAL_ERROR = 3;
+
+    /**
+     * The name standing for the standard input.
+     */
+    private static final String STDIN = "-";
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "usage: ParseCommand"
+            + " [--check | --print | --minify] [--statement] [file ...]";
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParseCommand() {
+    }
+
+    /**
+     * Returns the exit code for failure {@code e}, raised while parsing an
+     * input if {@code parsing}, or else while printing it. An error reported
+     * through {@code Reporter} is a {@code RuntimeException} of that exact
+     * class without a cause: it is a syntax error while parsing, and can only
+     * be an output error while printing. With assertions enabled, the parser
+     * also rejects some malformed inputs through the precondition of a nested
+     * parse, which is a syntax error too. A failure caused by an
+     * {@code IOException} is an input or output error; anything else,
+     * including a {@code StackOverflowError} on input nested too deeply, is a
+     * failure of the parser.
+     *
+     * @param e
+     *            the failure
+     * @param parsing
+     *            whether {@code e} was raised while parsing
+     * @return the exit code
+     */
+    private static int exitCode(Throwable e, boolean parsing) {
+        int code = INTERNAL_ERROR;
+        if (e instanceof UncheckedIOException
+                || e.getCause() instanceof IOException) {
+            code = USAGE_ERROR;
+        } else if (e.getClass() == RuntimeException.class
+                && e.getCause() == null) {
+            code = USAGE_ERROR;
+            if (parsing) {
+                code = SYNTAX_ERROR;
+            }
+        } else if (parsing && e.getClass() == AssertionError.class
+                && String.valueOf(e.getMessage())
+                        .startsWith("Violation of: ")) {
+            code = SYNTAX_ERROR;
+        }
+        return code;
+    }
+
+    /**
+     * Parses the input named {@code name} from {@code in} with
+     * {@code session} as a program, or as a block of statements if
+     * {@code statement}, prints it with {@code printer} unless it is
+     * {@code null}, and returns the exit code for the input, reporting any
+     * error on {@code err}.
+     *
+     * @param session
+     *            the parse session
+     * @param name
+     *            the name of the input
+     * @param in
+     *            the input stream
+     * @param statement
+     *            whether the input is a block of statements
+     * @param printer
+     *            the pretty printer, or {@code null} to only check
+     * @param err
+     *            the stream for the standard error
+     * @return the exit code
+     * @updates in.content, err
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [#in.content is a program, or a block if statement] then
+     *  [the input is printed by printer, if any]
+     * else
+     *  [an error message is printed on err]
+     * </pre>
+     */
+    private static int parse(ParseSession session, String name,
+            SimpleReader in, boolean statement, PrettyPrinter printer,
+            PrintStream err) {
+        boolean parsing = true;
+        int code = OK;
+        try {
+            if (statement) {
+                Queue<String> tokens = session.tokens(in);
+                Statement block = new Statement1Parse1();
+                block.parseBlock(tokens);
+                ParseState.check(
+                        tokens.front().equals(Tokenizer.END_OF_INPUT),
+                        "Error: Keyword" + " \"" + Tokenizer.END_OF_INPUT
+                                + "\" " + "expected, found: " + "\""
+                                + tokens.front() + "\"",
+                        null, tokens);
+                parsing = false;
+                if (printer != null) {
+                    printer.print(block, 0);
+                }
+            } else {
+                Program1Parse1 p = new Program1Parse1();
+                session.parse(in, p);
+                parsing = false;
+                if (printer != null) {
+                    printer.print(p);
+                }
+            }
+        } catch (RuntimeException | AssertionError | StackOverflowError e) {
+            code = exitCode(e, parsing);
+            String message = e.getMessage();
+            if (code == INTERNAL_ERROR || message == null) {
+                message = "internal error: " + e;
+            }
+            err.println(name + ": " + message);
+        }
+        return code;
+    }
+
+    /**
+     * Checks, or prints, the inputs named by {@code args} from position
+     * {@code first} on, or the standard input if there are none, writing the
+     * printed inputs to {@code out} and the diagnostics to {@code err}, and
+     * returns the highest exit code of the inputs.
+     *
+     * @param args
+     *            the command line arguments
+     * @param first
+     *            the position of the first input name in {@code args}
+     * @param print
+     *            whether to print the inputs
+     * @param minify
+     *            whether to print them minified
+     * @param statement
+     *            whether the inputs are blocks of statements
+     * @param out
+     *            the channel for the standard output
+     * @param err
+     *            the stream for the standard error
+     * @return the exit code
+     * @updates out, err
+     */
+    private static int runAll(String[] args, int first, boolean print,
+            boolean minify, boolean statement, WritableByteChannel out,
+            PrintStream err) {
+        String[] names = { STDIN };
+        if (first < args.length) {
+            names = new String[args.length - first];
+            System.arraycopy(args, first, names, 0, names.length);
+        }
+
+        PrettyPrinter printer = null;
+        if (print) {
+            printer = new PrettyPrinter(out, minify);
+        }
+        ParseSession session = new ParseSession();
+        int code = OK;
+        for (String name : names) {
+            if (!name.equals(STDIN) && !Files.isReadable(Paths.get(name))) {
+                err.println(name + ": cannot be read");
+                code = Math.max(code, USAGE_ERROR);
+            } else {
+                SimpleReader in;
+                if (name.equals(STDIN)) {
+                    in = new SimpleReader1L();
+                } else {
+                    in = new SimpleReader1L(name);
+                }
+                code = Math.max(code,
+                        parse(session, name, in, statement, printer, err));
+                in.close();
+            }
+        }
+        if (printer != null) {
+            try {
+                printer.flush();
+            } catch (RuntimeException e) {
+                err.println(e.getMessage());
+                code = Math.max(code, exitCode(e, false));
+            }
+        }
+        return code;
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Runs the command with arguments {@code args}, writing the printed
+     * inputs to {@code out} and the diagnostics to {@code err}, and returns
+     * the exit code.
+     *
+     * @param args
+     *            the command line arguments
+     * @param out
+     *            the channel for the standard output
+     * @param err
+     *            the stream for the standard error
+     * @return the exit code
+     * @updates out, err
+     */
+    static int run(String[] args, WritableByteChannel out, PrintStream err) {
+        boolean print = false;
+        boolean minify = false;
+        boolean statement = false;
+        boolean usage = false;
+        int first = 0;
+        while (!usage && first < args.length
+                && args[first].startsWith("--")) {
+            switch (args[first]) {
+                case "--check":
+                    print = false;
+                    break;
+                case "--print":
+                    print = true;
+                    minify = false;
+                    break;
+                case "--minify":
+                    print = true;
+                    minify = true;
+                    break;
+                case "--statement":
+                    statement = true;
+                    break;
+                default:
+                    usage = true;
+                    break;
+            }
+            first++;
+        }
+        int code = OK;
+        if (usage) {
+            err.println(USAGE);
+            code = USAGE_ERROR;
+        } else {
+            code = runAll(args, first, print, minify, statement, out, err);
+        }
+        return code;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, Channels.newChannel(System.out), System.err));
+    }
+
+}
@@ -0,0 +1,323 @@
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Caps on the size of a BL input: the number of characters, the number of
+ * tokens, the nesting depth of IF and WHILE statements and the number of
+ * instructions. The caps are checked while the input is read and parsed, so
+ * an input over a cap is rejected as soon as the cap is crossed, with an
+ * error message naming the cap. The input is read one character at a time,
+ * so a long line or token is never held whole beyond the character cap.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParseLimits {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Maximum number of characters, counting line separators.
+     */
+    private final long maxChars;
+
+    /**
+     * Maximum number of tokens, not counting
+     * {@code Tokenizer.END_OF_INPUT}.
+     */
+    private final int maxTokens;
+
+    /**
+     * Maximum nesting depth of IF and WHILE statements.
+     */
+    private final int maxDepth;
+
+    /**
+     * Maximum number of instructions in a program.
+     */
+    private final int maxInstructions;
+
+    /**
+     * Returns the token made of the characters of {@code text}, reusing the
+     * string in its slot of {@code cache} if it has the same characters.
+     *
+     * @param text
+     *            the characters of the token
+     * @param cache
+     *            the cache of token strings, or {@code null}
+     * @return the token
+     * @updates cache
+     * @ensures token = text
+     */
+    private static String token(CharSequence text, String[] cache) {
+        String token;
+        if (cache == null) {
+            token = text.toString();
+        } else {
+            int hash = 0;
+            for (int i = 0; i < text.length(); i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & (cache.length - 1);
+            token = cache[slot];
+            if (token == null || !token.contentEquals(text)) {
+                token = text.toString();
+                cache[slot] = token;
+            }
+        }
+        return token;
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Limits that accept every input.
+     */
+    public static final ParseLimits UNLIMITED = new ParseLimits(
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Long.MAX_VALUE);
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for limits on everything but the number of characters.
+     *
+     * @param maxTokens
+     *            the maximum number of tokens, not counting
+     *            {@code Tokenizer.END_OF_INPUT}
+     * @param maxDepth
+     *            the maximum nesting depth of IF and WHILE statements
+     * @param maxInstructions
+     *            the maximum number of instructions in a program
+     * @requires maxTokens >= 0 and maxDepth >= 0 and maxInstructions >= 0
+     */
+    public ParseLimits(int maxTokens, int maxDepth, int maxInstructions) {
+        this(maxTokens, maxDepth, maxInstructions, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxTokens
+     *            the maximum number of tokens, not counting
+     *            {@code Tokenizer.END_OF_INPUT}
+     * @param maxDepth
+     *            the maximum nesting depth of IF and WHILE statements
+     * @param maxInstructions
+     *            the maximum number of instructions in a program
+     * @param maxChars
+     *            the maximum number of characters, counting line separators
+     * @requires <pre>
+     * maxTokens >= 0 and maxDepth >= 0 and maxInstructions >= 0 and
+     * maxChars >= 0
+     * </pre>
+     */
+    public ParseLimits(int maxTokens, int maxDepth, int maxInstructions,
+            long maxChars) {
+        assert maxTokens >= 0 : "Violation of: maxTokens >= 0";
+        assert maxDepth >= 0 : "Violation of: maxDepth >= 0";
+        assert maxInstructions >= 0 : "Violation of: maxInstructions >= 0";
+        assert maxChars >= 0 : "Violation of: maxChars >= 0";
+        this.maxChars = maxChars;
+        this.maxTokens = maxTokens;
+        this.maxDepth = maxDepth;
+        this.maxInstructions = maxInstructions;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the maximum number of characters.
+     *
+     * @return the maximum number of characters
+     */
+    public long maxChars() {
+        return this.maxChars;
+    }
+
+    /**
+     * Returns the maximum number of tokens.
+     *
+     * @return the maximum number of tokens
+     */
+    public int maxTokens() {
+        return this.maxTokens;
+    }
+
+    /**
+     * Returns the maximum nesting depth of IF and WHILE statements.
+     *
+     * @return the maximum nesting depth
+     */
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Returns the maximum number of instructions in a program.
+     *
+     * @return the maximum number of instructions
+     */
+    public int maxInstructions() {
+        return this.maxInstructions;
+    }
+
+    /**
+     * Reports an error unless {@code count} characters are within the limit.
+     *
+     * @param count
+     *            the number of characters, counting line separators
+     */
+    public void checkChars(long count) {
+        if (count > this.maxChars) {
+            Reporter.fatalErrorToConsole("Error: Input exceeds the limit of "
+                    + this.maxChars + " characters");
+        }
+    }
+
+    /**
+     * Reports an error unless {@code count} tokens are within the limit.
+     *
+     * @param count
+     *            the number of tokens, not counting
+     *            {@code Tokenizer.END_OF_INPUT}
+     */
+    public void checkTokens(int count) {
+        if (count > this.maxTokens) {
+            Reporter.fatalErrorToConsole("Error: Input exceeds the limit of "
+                    + this.maxTokens + " tokens");
+        }
+    }
+
+    /**
+     * Reports an error unless nesting depth {@code depth} is within the limit.
+     *
+     * @param depth
+     *            the nesting depth of IF and WHILE statements
+     */
+    public void checkDepth(int depth) {
+        if (depth > this.maxDepth) {
+            Reporter.fatalErrorToConsole(
+                    "Error: Statements are nested deeper than the limit of "
+                            + this.maxDepth);
+        }
+    }
+
+    /**
+     * Reports an error unless {@code count} instructions are within the
+     * limit.
+     *
+     * @param count
+     *            the number of instructions
+     */
+    public void checkInstructions(int count) {
+        if (count > this.maxInstructions) {
+            Reporter.fatalErrorToConsole("Error: Program exceeds the limit of "
+                    + this.maxInstructions + " instructions");
+        }
+    }
+
+    /**
+     * Tokenizes the input from {@code in} like {@code Tokenizer.tokens},
+     * reporting an error as soon as more than {@code maxChars()} characters
+     * or {@code maxTokens()} tokens have been read, without reading the rest
+     * of the input.
+     *
+     * @param in
+     *            the input stream
+     * @return the tokens of the input, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @updates in.content
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [in.content has at most maxChars() characters and at most
+     *     maxTokens() tokens] then
+     *  tokens = [the tokens in #in.content] * <Tokenizer.END_OF_INPUT>  and
+     *  in.content = <>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public Queue<String> tokens(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Queue<String> tokens = new Queue1L<>();
+        this.tokens(in, tokens, null);
+        return tokens;
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Tokenizes the input from {@code in} like {@code tokens(in)}, but into
+     * {@code tokens}, so a caller parsing many inputs can reuse one queue.
+     * If {@code cache} is not {@code null}, a token with the same characters
+     * as the string in its slot of {@code cache} is that string, and any
+     * other token replaces the string in its slot.
+     *
+     * @param in
+     *            the input stream
+     * @param tokens
+     *            the queue the tokens are appended to
+     * @param cache
+     *            direct-mapped cache of token strings, by hash of their
+     *            characters, or {@code null}
+     * @updates in.content, tokens, cache
+     * @requires <pre>
+     * in.is_open  and
+     * (cache = null  or  |cache| is a power of 2)
+     * </pre>
+     * @ensures <pre>
+     * if [in.content has at most maxChars() characters and at most
+     *     maxTokens() tokens] then
+     *  tokens = #tokens * [the tokens in #in.content] *
+     *           <Tokenizer.END_OF_INPUT>  and
+     *  in.content = <>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    void tokens(SimpleReader in, Queue<String> tokens, String[] cache) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        assert tokens != null : "Violation of: tokens is not null";
+        assert cache == null || Integer.bitCount(cache.length) == 1 : ""
+                + "Violation of: |cache| is a power of 2";
+        StringBuilder token = new StringBuilder();
+        long chars = 0;
+        int count = 0;
+        while (!in.atEOS()) {
+            char c = in.read();
+            chars++;
+            this.checkChars(chars);
+            if (!Character.isWhitespace(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                count++;
+                this.checkTokens(count);
+                tokens.enqueue(token(token, cache));
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            count++;
+            this.checkTokens(count);
+            tokens.enqueue(token(token, cache));
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+    }
+
+}
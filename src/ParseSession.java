@@ -0,0 +1,209 @@
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Reusable parser for parsing many BL programs one after another. A session
+ * keeps the token queue, a cache of the token strings already seen and the
+ * parse state with its pool of scratch statements between parses, and the
+ * programs it parses share one symbol table, so once the session is warm a
+ * parse creates little more than the statements of the program it builds.
+ * The state is reset before each parse, so nothing of one parse is left for
+ * the next, and the statements a parse puts in its program are taken out of
+ * the pool, so they belong to that program alone. The symbol table is
+ * replaced by a new one once it holds {@code MAX_SYMBOLS} names, so it
+ * cannot grow without bound.
+ *
+ * <p>
+ * A session is not safe for use by more than one thread at a time; give each
+ * thread its own.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParseSession {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of entries of the token cache; a power of 2.
+     */
+    private static final int CACHE_SIZE = 1 << 12;
+
+    /**
+     * The limits enforced while parsing.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * The symbol table shared by the programs parsed since it was created.
+     */
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * The parse state, reset by every parse; replaced with the symbol table.
+     */
+    private ParseState state;
+
+    /**
+     * The token queue, refilled by every parse.
+     */
+    private final TokenQueue tokens = new TokenQueue();
+
+    /**
+     * Direct-mapped cache of token strings, by hash of their characters.
+     */
+    private final String[] cache = new String[CACHE_SIZE];
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Number of names in the symbol table at which the next parse starts a
+     * new one.
+     */
+    static final int MAX_SYMBOLS = 1 << 14;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ParseSession() {
+        this(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a session that rejects input over {@code limits}.
+     *
+     * @param limits
+     *            the limits enforced while parsing
+     */
+    public ParseSession(ParseLimits limits) {
+        assert limits != null : "Violation of: limits is not null";
+        this.limits = limits;
+        this.state = new ParseState(limits, null, 0, null, this.symbols);
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Tokenizes the input from {@code in} like {@code Tokenizer.tokens} into
+     * the token queue of this session, and returns that queue. The queue is
+     * refilled by the next call, so it must not be kept.
+     *
+     * @param in
+     *            the input stream
+     * @return the tokens of the input, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @updates in.content
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [in.content has at most limits.maxTokens() tokens] then
+     *  tokens = [the tokens in #in.content] * <Tokenizer.END_OF_INPUT>  and
+     *  in.content = <>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public Queue<String> tokens(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        this.tokens.clear();
+        this.limits.tokens(in, this.tokens, this.cache);
+        return this.tokens;
+    }
+
+    /**
+     * Parses a BL program from {@code in} into {@code p}, reusing the buffers
+     * of this session. The identifiers are interned in {@code symbols()},
+     * which {@code p.symbols()} then returns until {@code p} is parsed again;
+     * later parses of {@code p} by {@code p} itself use a table of its own.
+     *
+     * @param in
+     *            the input stream
+     * @param p
+     *            the parsed program
+     * @replaces p
+     * @updates in.content
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [in.content is a BL program within the limits of this session] then
+     *  p = [Program corresponding to #in.content]  and
+     *  in.content = <>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(SimpleReader in, Program1Parse1 p) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        assert p != null : "Violation of: p is not null";
+        Queue<String> input = this.tokens(in);
+        if (this.symbols.size() >= MAX_SYMBOLS) {
+            this.symbols = new SymbolTable();
+            this.state = new ParseState(this.limits, null, 0, null,
+                    this.symbols);
+        } else {
+            this.state.reset();
+        }
+        p.parseTokens(input, this.state);
+        this.tokens.clear();
+    }
+
+    /**
+     * Returns the symbol table shared by the programs parsed by this session
+     * since the table was created. Programs parsed before it was replaced
+     * keep the table they were parsed with.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file names
+         */
+        out.print("Enter valid BL program file names, separated by spaces: ");
+        String[] fileNames = in.nextLine().trim().split("\\s+");
+        /*
+         * Parse each input file with one session
+         */
+        ParseSession session = new ParseSession();
+        Program1Parse1 p = new Program1Parse1();
+        for (String fileName : fileNames) {
+            out.println("*** Parsing " + fileName + " ***");
+            SimpleReader file = new SimpleReader1L(fileName);
+            session.parse(file, p);
+            file.close();
+            p.prettyPrint(out);
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,389 @@
+import java.util.Arrays;
+
+import components.queue.Queue;
+import components.statement.Statement;
+import components.utilities.Reporter;
+
+/**
+ * Mutable state of one parse, shared by the {@code Statement1Parse1} objects
+ * that take part in it: the limits being enforced, the current nesting depth
+ * of IF and WHILE statements, the symbol table the identifiers are interned
+ * in, the token that cancels the parse, if any, and, when the parse is
+ * given token positions, the source map being recorded. It also keeps a pool
+ * of empty statements for the scratch statements of the parse, which a state
+ * reused across parses keeps from one parse to the next.
+ *
+ * <p>
+ * The position of a token is found from how many tokens are left: the parse
+ * starts with {@code total} tokens, so the token at the front of the queue
+ * has index {@code total - tokens.length()} in the positions.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+final class ParseState {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the pool of empty statements.
+     */
+    private static final int SPARE_CAPACITY = 16;
+
+    /**
+     * Largest pool of empty statements a reset keeps.
+     */
+    private static final int MAX_SPARE = 1 << 10;
+
+    /**
+     * The limits enforced by the parse.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * Positions of the tokens, or {@code null}.
+     */
+    private final TokenPositions positions;
+
+    /**
+     * Number of tokens at the start of the parse.
+     */
+    private final int total;
+
+    /**
+     * The source map being recorded, or {@code null}.
+     */
+    private final SourceMap sourceMap;
+
+    /**
+     * The symbol table identifiers are interned in, or {@code null}.
+     */
+    private final SymbolTable symbols;
+
+    /**
+     * The token that cancels the parse, or {@code null}.
+     */
+    private ParseCancellation cancellation = null;
+
+    /**
+     * Current nesting depth of IF and WHILE statements.
+     */
+    private int depth = 0;
+
+    /**
+     * Byte offset just past the last token that ended a node.
+     */
+    private long lastEnd = 0;
+
+    /**
+     * Pool of empty statements sharing this state.
+     */
+    private Statement[] spare = new Statement[SPARE_CAPACITY];
+
+    /**
+     * Number of statements in {@code spare}.
+     */
+    private int spareCount = 0;
+
+    /**
+     * Reports an error with message {@code message}, adding the position of
+     * the {@code i}-th token if {@code state} has positions.
+     *
+     * @param message
+     *            the error message
+     * @param state
+     *            the state of the parse, or {@code null}
+     * @param i
+     *            the index of the token the error is at
+     */
+    private static void report(String message, ParseState state, int i) {
+        String where = "";
+        if (state != null && state.positions != null && 0 <= i
+                && i < state.total) {
+            where = " (line " + state.positions.line(i) + ", column "
+                    + state.positions.column(i) + ")";
+        }
+        Reporter.fatalErrorToConsole(message + where);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a parse without positions.
+     *
+     * @param limits
+     *            the limits enforced by the parse
+     */
+    ParseState(ParseLimits limits) {
+        this(limits, null, 0, null, null);
+    }
+
+    /**
+     * Constructor for a parse of {@code total} tokens with positions
+     * {@code positions}, recording spans into {@code sourceMap} and interning
+     * identifiers in {@code symbols}.
+     *
+     * @param limits
+     *            the limits enforced by the parse
+     * @param positions
+     *            the positions of the tokens, or {@code null}
+     * @param total
+     *            the number of tokens at the start of the parse
+     * @param sourceMap
+     *            the source map to record, or {@code null}
+     * @param symbols
+     *            the symbol table, or {@code null}
+     * @requires positions = null or positions.length() = total
+     */
+    ParseState(ParseLimits limits, TokenPositions positions, int total,
+            SourceMap sourceMap, SymbolTable symbols) {
+        assert limits != null : "Violation of: limits is not null";
+        assert positions == null || positions.length() == total : ""
+                + "Violation of: positions.length() = total";
+        this.limits = limits;
+        this.positions = positions;
+        this.total = total;
+        this.sourceMap = positions == null ? null : sourceMap;
+        this.symbols = symbols;
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Reports an error with message {@code message} unless
+     * {@code condition}, adding the position of the last token consumed from
+     * {@code tokens} if {@code state} has positions.
+     *
+     * @param condition
+     *            the condition to check
+     * @param message
+     *            the error message
+     * @param state
+     *            the state of the parse, or {@code null}
+     * @param tokens
+     *            the tokens being parsed
+     */
+    static void check(boolean condition, String message, ParseState state,
+            Queue<String> tokens) {
+        if (!condition) {
+            int i = -1;
+            if (state != null) {
+                i = state.total - tokens.length() - 1;
+            }
+            report(message, state, i);
+        }
+    }
+
+    /**
+     * Reports an error with message {@code message} unless
+     * {@code condition}, adding the position of the token at the front of
+     * {@code tokens} if {@code state} has positions.
+     *
+     * @param condition
+     *            the condition to check
+     * @param message
+     *            the error message
+     * @param state
+     *            the state of the parse, or {@code null}
+     * @param tokens
+     *            the tokens being parsed
+     */
+    static void checkFront(boolean condition, String message,
+            ParseState state, Queue<String> tokens) {
+        if (!condition) {
+            int i = -1;
+            if (state != null) {
+                i = state.total - tokens.length();
+            }
+            report(message, state, i);
+        }
+    }
+
+    /**
+     * Returns the limits enforced by the parse.
+     *
+     * @return the limits
+     */
+    ParseLimits limits() {
+        return this.limits;
+    }
+
+    /**
+     * Returns the source map being recorded, or {@code null}.
+     *
+     * @return the source map
+     */
+    SourceMap sourceMap() {
+        return this.sourceMap;
+    }
+
+    /**
+     * Returns the symbol table identifiers are interned in, or {@code null}.
+     *
+     * @return the symbol table
+     */
+    SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Returns the instance of {@code name} held by the symbol table, interning
+     * it first, or {@code name} itself if there is no symbol table.
+     *
+     * @param name
+     *            the identifier
+     * @return the interned identifier
+     * @ensures intern = name
+     */
+    String intern(String name) {
+        String interned = name;
+        if (this.symbols != null) {
+            interned = this.symbols.name(this.symbols.intern(name));
+        }
+        return interned;
+    }
+
+    /**
+     * Makes the parse stop once {@code c} is cancelled or expired.
+     *
+     * @param c
+     *            the cancellation token, or {@code null} for none
+     */
+    void watch(ParseCancellation c) {
+        this.cancellation = c;
+    }
+
+    /**
+     * Reports an error if the cancellation token of the parse, if any, is
+     * cancelled or expired.
+     */
+    void checkCancelled() {
+        if (this.cancellation != null) {
+            this.cancellation.check();
+        }
+    }
+
+    /**
+     * Prepares this state for a new parse, keeping its pool, or the first
+     * {@code MAX_SPARE} statements of a larger one.
+     */
+    void reset() {
+        this.depth = 0;
+        this.lastEnd = 0;
+        this.cancellation = null;
+        if (this.spare.length > MAX_SPARE) {
+            this.spareCount = Math.min(this.spareCount, MAX_SPARE);
+            this.spare = Arrays.copyOf(this.spare, MAX_SPARE);
+        }
+    }
+
+    /**
+     * Returns an empty statement for the parse with this state, taken from
+     * the pool if it is not empty.
+     *
+     * @return the statement
+     * @ensures borrow = compose((BLOCK, ?, ?), <>)
+     */
+    Statement borrow() {
+        Statement s;
+        if (this.spareCount > 0) {
+            this.spareCount--;
+            s = this.spare[this.spareCount];
+            this.spare[this.spareCount] = null;
+        } else {
+            s = new Statement1Parse1();
+        }
+        return s;
+    }
+
+    /**
+     * Returns {@code s}, which was given out by {@code borrow} and has been
+     * emptied since, to the pool.
+     *
+     * @param s
+     *            the statement
+     * @requires s = compose((BLOCK, ?, ?), <>)
+     */
+    void release(Statement s) {
+        assert s.kind() == Statement.Kind.BLOCK
+                && s.lengthOfBlock() == 0 : ""
+                + "Violation of: s = compose((BLOCK, ?, ?), <>)";
+        if (this.spareCount == this.spare.length) {
+            this.spare = Arrays.copyOf(this.spare, 2 * this.spareCount);
+        }
+        this.spare[this.spareCount] = s;
+        this.spareCount++;
+    }
+
+    /**
+     * Records that the parse enters an IF or WHILE statement, reporting an
+     * error if that nests statements deeper than the limit.
+     */
+    void enterNested() {
+        this.depth++;
+        this.limits.checkDepth(this.depth);
+    }
+
+    /**
+     * Records that the parse leaves an IF or WHILE statement.
+     */
+    void exitNested() {
+        assert this.depth > 0 : "Violation of: depth > 0";
+        this.depth--;
+    }
+
+    /**
+     * Starts a node at the token at the front of {@code tokens} and returns
+     * its number, or -1 if no source map is recorded.
+     *
+     * @param tokens
+     *            the tokens being parsed
+     * @return the number of the node, or -1
+     */
+    int beginNode(Queue<String> tokens) {
+        int node = -1;
+        if (this.sourceMap != null) {
+            int i = this.total - tokens.length();
+            this.lastEnd = this.positions.offset(i);
+            node = this.sourceMap.add(this.positions.line(i),
+                    this.positions.column(i), this.lastEnd);
+        }
+        return node;
+    }
+
+    /**
+     * Records that the last token consumed from {@code tokens},
+     * {@code token}, ends the current node.
+     *
+     * @param tokens
+     *            the tokens being parsed
+     * @param token
+     *            the last token consumed
+     */
+    void endToken(Queue<String> tokens, String token) {
+        if (this.sourceMap != null) {
+            int i = this.total - tokens.length() - 1;
+            this.lastEnd = this.positions.offset(i)
+                    + TokenPositions.byteLength(token);
+        }
+    }
+
+    /**
+     * Ends node {@code node} at the end of the last token that ended a node.
+     *
+     * @param node
+     *            the number of the node, or -1
+     */
+    void endNode(int node) {
+        if (node >= 0) {
+            this.sourceMap.setEnd(node, this.lastEnd);
+        }
+    }
+
+}
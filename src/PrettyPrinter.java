@@ -0,0 +1,500 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import components.map.Map;
+import components.program.Program;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Pretty printer that writes BL programs and statements straight into a
+ * large byte buffer that is drained to a channel whenever it fills. Keywords,
+ * condition names and indentation are written from cached byte arrays, so no
+ * {@code String} is built per line. In normal mode the output is
+ * byte-identical to {@code prettyPrint}; in minified mode it is the canonical
+ * form for storage, the tokens separated by single spaces on one line.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class PrettyPrinter {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Size of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Number of spaces per indentation level, as in {@code prettyPrint}.
+     */
+    private static final int INDENT_SIZE = 4;
+
+    /**
+     * Line separator, as written by {@code SimpleWriter.println}.
+     */
+    private static final byte[] NEWLINE = bytes(System.lineSeparator());
+
+    /**
+     * Cached keywords.
+     */
+    private static final byte[] PROGRAM = bytes("PROGRAM"),
+            INSTRUCTION = bytes("INSTRUCTION"), IS = bytes("IS"),
+            BEGIN = bytes("BEGIN"), END = bytes("END"), IF = bytes("IF"),
+            THEN = bytes("THEN"), ELSE = bytes("ELSE"),
+            WHILE = bytes("WHILE"), DO = bytes("DO");
+
+    /**
+     * Cached condition names, by ordinal.
+     */
+    private static final byte[][] CONDITIONS = conditionNames();
+
+    /**
+     * The channel the output is written to.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Whether the output is minified.
+     */
+    private final boolean minified;
+
+    /**
+     * The output buffer.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Spaces for indentation, grown as needed.
+     */
+    private byte[] spaces = spaces(INDENT_SIZE * INDENT_SIZE);
+
+    /**
+     * Whether the next word needs a space before it.
+     */
+    private boolean needSpace = false;
+
+    /**
+     * Returns the bytes of {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return the UTF-8 bytes of {@code s}
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns an array of {@code n} spaces.
+     *
+     * @param n
+     *            the number of spaces
+     * @return the spaces
+     */
+    private static byte[] spaces(int n) {
+        byte[] b = new byte[n];
+        Arrays.fill(b, (byte) ' ');
+        return b;
+    }
+
+    /**
+     * Returns the BL names of the conditions, by ordinal.
+     *
+     * @return the condition names
+     */
+    private static byte[][] conditionNames() {
+        Condition[] conditions = Condition.values();
+        byte[][] names = new byte[conditions.length][];
+        for (Condition c : conditions) {
+            names[c.ordinal()] = bytes(
+                    c.name().toLowerCase().replace('_', '-'));
+        }
+        return names;
+    }
+
+    /**
+     * Writes the buffered bytes to {@code channel}.
+     */
+    private void drain() {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes {@code length} bytes of {@code b} from {@code offset} on.
+     *
+     * @param b
+     *            the bytes
+     * @param offset
+     *            the position of the first byte
+     * @param length
+     *            the number of bytes
+     */
+    private void put(byte[] b, int offset, int length) {
+        int off = offset;
+        int left = length;
+        while (left > this.buffer.remaining()) {
+            int n = this.buffer.remaining();
+            this.buffer.put(b, off, n);
+            off += n;
+            left -= n;
+            this.drain();
+        }
+        this.buffer.put(b, off, left);
+    }
+
+    /**
+     * Writes {@code word}, after a space if it follows another word on the
+     * same line.
+     *
+     * @param word
+     *            the bytes of the word
+     */
+    private void word(byte[] word) {
+        if (this.needSpace) {
+            if (!this.buffer.hasRemaining()) {
+                this.drain();
+            }
+            this.buffer.put((byte) ' ');
+        }
+        this.put(word, 0, word.length);
+        this.needSpace = true;
+    }
+
+    /**
+     * Writes identifier {@code name}, after a space if it follows another
+     * word on the same line.
+     *
+     * @param name
+     *            the identifier
+     */
+    private void word(String name) {
+        int length = name.length();
+        if (this.needSpace) {
+            length++;
+        }
+        if (length > this.buffer.remaining()) {
+            this.drain();
+        }
+        if (length > this.buffer.remaining()) {
+            this.word(bytes(name));
+        } else {
+            if (this.needSpace) {
+                this.buffer.put((byte) ' ');
+            }
+            boolean ascii = true;
+            int start = this.buffer.position();
+            for (int i = 0; i < name.length() && ascii; i++) {
+                char c = name.charAt(i);
+                ascii = c < 0x80;
+                this.buffer.put((byte) c);
+            }
+            if (!ascii) {
+                // rare: rewrite the name encoded as UTF-8
+                this.buffer.position(start);
+                byte[] b = bytes(name);
+                this.put(b, 0, b.length);
+            }
+            this.needSpace = true;
+        }
+    }
+
+    /**
+     * Starts a line indented by {@code offset} spaces; in minified mode,
+     * writes nothing.
+     *
+     * @param offset
+     *            the indentation
+     */
+    private void indent(int offset) {
+        if (!this.minified) {
+            if (offset > this.spaces.length) {
+                this.spaces = spaces(Math.max(offset, 2 * this.spaces.length));
+            }
+            this.put(this.spaces, 0, offset);
+            this.needSpace = false;
+        }
+    }
+
+    /**
+     * Ends the current line; in minified mode, writes nothing.
+     */
+    private void endLine() {
+        if (!this.minified) {
+            this.put(NEWLINE, 0, NEWLINE.length);
+            this.needSpace = false;
+        }
+    }
+
+    /**
+     * Writes an empty line; in minified mode, writes nothing.
+     */
+    private void blankLine() {
+        this.endLine();
+    }
+
+    /**
+     * Writes the lines "END" {@code keyword} at indentation {@code offset}.
+     *
+     * @param keyword
+     *            the keyword closed
+     * @param offset
+     *            the indentation
+     */
+    private void end(byte[] keyword, int offset) {
+        this.indent(offset);
+        this.word(END);
+        this.word(keyword);
+        this.endLine();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a pretty printer in normal mode.
+     *
+     * @param channel
+     *            the channel the output is written to
+     */
+    public PrettyPrinter(WritableByteChannel channel) {
+        this(channel, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            the channel the output is written to
+     * @param minified
+     *            whether the output is minified
+     */
+    public PrettyPrinter(WritableByteChannel channel, boolean minified) {
+        assert channel != null : "Violation of: channel is not null";
+        this.channel = channel;
+        this.minified = minified;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Writes {@code p}, followed by a line separator.
+     *
+     * @param p
+     *            the program
+     * @updates channel
+     * @ensures <pre>
+     * channel.content = #channel.content * [the pretty print of p, or its
+     *   minified form]
+     * </pre>
+     */
+    public void print(Program p) {
+        assert p != null : "Violation of: p is not null";
+        String name = p.name();
+        this.word(PROGRAM);
+        this.word(name);
+        this.word(IS);
+        this.endLine();
+        this.blankLine();
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        for (Map.Pair<String, Statement> instruction : context) {
+            this.indent(INDENT_SIZE);
+            this.word(INSTRUCTION);
+            this.word(instruction.key());
+            this.word(IS);
+            this.endLine();
+            this.print(instruction.value(), 2 * INDENT_SIZE);
+            this.indent(INDENT_SIZE);
+            this.word(END);
+            this.word(instruction.key());
+            this.endLine();
+            this.blankLine();
+        }
+        p.swapContext(context);
+
+        this.word(BEGIN);
+        this.endLine();
+        Statement body = p.newBody();
+        p.swapBody(body);
+        this.print(body, INDENT_SIZE);
+        p.swapBody(body);
+        this.word(END);
+        this.word(name);
+        this.put(NEWLINE, 0, NEWLINE.length);
+        this.needSpace = false;
+    }
+
+    /**
+     * Writes {@code s} indented by {@code offset} spaces, as
+     * {@code s.prettyPrint(out, offset)} does.
+     *
+     * @param s
+     *            the statement
+     * @param offset
+     *            the indentation
+     * @updates channel
+     * @requires 0 <= offset
+     * @ensures <pre>
+     * channel.content = #channel.content * [the pretty print of s, or its
+     *   minified form]
+     * </pre>
+     */
+    public void print(Statement s, int offset) {
+        assert s != null : "Violation of: s is not null";
+        assert 0 <= offset : "Violation of: 0 <= offset";
+        switch (s.kind()) {
+            case BLOCK: {
+                int length = s.lengthOfBlock();
+                for (int i = 0; i < length; i++) {
+                    Statement child = s.removeFromBlock(i);
+                    this.print(child, offset);
+                    s.addToBlock(i, child);
+                }
+                break;
+            }
+            case IF: {
+                Statement block = s.newInstance();
+                Condition c = s.disassembleIf(block);
+                this.indent(offset);
+                this.word(IF);
+                this.word(CONDITIONS[c.ordinal()]);
+                this.word(THEN);
+                this.endLine();
+                this.print(block, offset + INDENT_SIZE);
+                this.end(IF, offset);
+                s.assembleIf(c, block);
+                break;
+            }
+            case IF_ELSE: {
+                Statement ifBlock = s.newInstance();
+                Statement elseBlock = s.newInstance();
+                Condition c = s.disassembleIfElse(ifBlock, elseBlock);
+                this.indent(offset);
+                this.word(IF);
+                this.word(CONDITIONS[c.ordinal()]);
+                this.word(THEN);
+                this.endLine();
+                this.print(ifBlock, offset + INDENT_SIZE);
+                this.indent(offset);
+                this.word(ELSE);
+                this.endLine();
+                this.print(elseBlock, offset + INDENT_SIZE);
+                this.end(IF, offset);
+                s.assembleIfElse(c, ifBlock, elseBlock);
+                break;
+            }
+            case WHILE: {
+                Statement block = s.newInstance();
+                Condition c = s.disassembleWhile(block);
+                this.indent(offset);
+                this.word(WHILE);
+                this.word(CONDITIONS[c.ordinal()]);
+                this.word(DO);
+                this.endLine();
+                this.print(block, offset + INDENT_SIZE);
+                this.end(WHILE, offset);
+                s.assembleWhile(c, block);
+                break;
+            }
+            case CALL: {
+                String call = s.disassembleCall();
+                this.indent(offset);
+                this.word(call);
+                this.endLine();
+                s.assembleCall(call);
+                break;
+            }
+            default: {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered output to the channel.
+     *
+     * @updates channel
+     */
+    public void flush() {
+        this.drain();
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input and output file names
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter output file name: ");
+        String outName = in.nextLine();
+        out.print("Minified (y/n): ");
+        boolean minified = in.nextLine().startsWith("y");
+        /*
+         * Parse input file
+         */
+        out.println("*** Parsing input file ***");
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        p.parse(tokens);
+        /*
+         * Print the program to the output file
+         */
+        out.println("*** Printing parsed program ***");
+        try (FileChannel channel = FileChannel.open(Paths.get(outName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            PrettyPrinter printer = new PrettyPrinter(channel, minified);
+            printer.print(p);
+            printer.flush();
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
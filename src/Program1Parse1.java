@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 import components.map.Map;
 import components.program.Program;
 import components.program.Program1;
@@ -7,7 +9,6 @@ import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
 import components.simplewriter.SimpleWriter1L;
 import components.statement.Statement;
-import components.utilities.Reporter;
 import components.utilities.Tokenizer;
 
 /**
@@ -22,6 +23,311 @@ public final class Program1Parse1 extends Program1 {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Whether instruction bodies are parsed on first use.
+     */
+    private final boolean lazy;
+
+    /**
+     * The limits enforced while parsing.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * The symbol table identifiers are interned in.
+     */
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * Whether {@code symbols} is shared with other programs, and so kept from
+     * one parse to the next.
+     */
+    private boolean sharedSymbols = false;
+
+    /**
+     * Instruction bodies of the context built by the last parse, by id of
+     * the instruction name.
+     */
+    private Statement[] instructions = new Statement[0];
+
+    /**
+     * Returns the symbol table for a new parse: the shared one, or a new one
+     * to be owned by {@code this}.
+     *
+     * @return the symbol table
+     */
+    private SymbolTable newSymbols() {
+        SymbolTable table = this.symbols;
+        if (!this.sharedSymbols) {
+            table = new SymbolTable();
+        }
+        return table;
+    }
+
+    /**
+     * Matches a single BL instruction at the front of {@code tokens} without
+     * parsing its body, returning the instruction name as the value of the
+     * function and the tokens of the body of the instruction, followed by
+     * {@code Tokenizer.END_OF_INPUT}, in {@code body}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param body
+     *            the tokens of the instruction body
+     * @param state
+     *            the state of the parse
+     * @return the instruction name
+     * @replaces body
+     * @updates tokens
+     * @requires <pre>
+     * [<"INSTRUCTION"> is a prefix of tokens]  and
+     *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * </pre>
+     * @ensures <pre>
+     * if [the tokens at start of #tokens are "INSTRUCTION", a name and "IS",
+     *     followed by END-balanced tokens, "END" and the same name]  and
+     *    [the name of this instruction does not equal the name of a primitive
+     *     instruction in the BL language] then
+     *  skipInstruction = [name of instruction at start of #tokens]  and
+     *  body = [END-balanced tokens between "IS" and "END"] *
+     *          <Tokenizer.END_OF_INPUT>  and
+     *  #tokens = [instruction tokens at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    private static String skipInstruction(Queue<String> tokens,
+            Queue<String> body, ParseState state) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert body != null : "Violation of: body is not null";
+        assert tokens.length() > 0 && tokens.front().equals("INSTRUCTION") : ""
+                + "Violation of: <\"INSTRUCTION\"> is proper prefix of tokens";
+
+        // consume header tokens
+        tokens.dequeue();
+        String name = tokens.dequeue();
+        ParseState.check(Tokenizer.isIdentifier(name),
+                "Error: Instruction name must not be a primitive instruction",
+                state, tokens);
+        String isToken = tokens.dequeue();
+        ParseState.check(isToken.equals("IS"),
+                "Error: Keyword" + " \"" + "IS" + "\" " + "expected, found: "
+                        + "\"" + isToken + "\" ",
+                state, tokens);
+
+        // skip instruction body
+        body.clear();
+        skipBlock(tokens, body, state);
+        body.enqueue(Tokenizer.END_OF_INPUT);
+
+        // consume end tokens
+        String endToken = tokens.dequeue();
+        ParseState.check(endToken.equals("END"),
+                "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
+                        + "\"" + endToken + "\" ",
+                state, tokens);
+        String endName = tokens.dequeue();
+        ParseState.check(endName.equals(name),
+                "Error: Keyword" + " \"" + name + "\" " + "expected, found: "
+                        + "\"" + endName + "\"",
+                state, tokens);
+
+        return name;
+    }
+
+    /**
+     * Reports whether {@code body} is the body of the instruction whose name
+     * has id {@code id} in the context of {@code this} as it is now, or
+     * {@code null} if there is none; for assertions only, since it swaps the
+     * context out and back.
+     *
+     * @param id
+     *            the id of the instruction name in {@code symbols}
+     * @param body
+     *            the body, or {@code null}
+     * @return true iff {@code body} is in the context under that name
+     */
+    private boolean isLive(int id, Statement body) {
+        Map<String, Statement> context = this.newContext();
+        this.swapContext(context);
+        boolean live = body == null;
+        if (id < this.symbols.size() && !SymbolTable.isPrimitive(id)) {
+            String name = this.symbols.name(id);
+            if (context.hasKey(name)) {
+                live = context.value(name) == body;
+            }
+        }
+        this.swapContext(context);
+        return live;
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Parses a BL program from {@code tokens} into {@code this} with state
+     * {@code state}, enforcing its limits and interning the identifiers in its
+     * symbol table, which {@code symbols()} then returns.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param state
+     *            the state of the parse
+     * @replaces this
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a program string is a proper prefix of #tokens] then
+     *  this = [Program corresponding to program string at start of #tokens]  and
+     *  #tokens = [program string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    void parseTokens(Queue<String> tokens, ParseState state) {
+        ParseLimits parseLimits = state.limits();
+
+        // consume header tokens
+        String programToken = tokens.dequeue();
+        ParseState.check(programToken.equals("PROGRAM"),
+                "Error: Keyword" + " \"" + "PROGRAM" + "\" "
+                        + "expected, found: " + "\"" + programToken + "\" ",
+                state, tokens);
+        String name = tokens.dequeue();
+        String isToken = tokens.dequeue();
+        ParseState.check(isToken.equals("IS"),
+                "Error: Keyword" + " \"" + "IS" + "\" " + "expected, found: "
+                        + "\"" + isToken + "\"",
+                state, tokens);
+
+        // parse context
+        Map<String, Statement> context = this.newContext();
+        Statement[] byId = new Statement[state.symbols().size()];
+        while (!tokens.front().equals("BEGIN")) {
+            state.checkCancelled();
+            Statement instruction;
+            String instructionName;
+            if (this.lazy) {
+                Queue<String> instructionTokens = tokens.newInstance();
+                instructionName = skipInstruction(tokens, instructionTokens,
+                        state);
+                instruction = new LazyStatement(instructionTokens,
+                        parseLimits);
+            } else {
+                int first = -1;
+                if (state.sourceMap() != null) {
+                    first = state.sourceMap().size();
+                }
+                instruction = state.borrow();
+                instructionName = parseInstruction(tokens, instruction, state);
+                if (first >= 0) {
+                    state.sourceMap().addInstruction(instructionName, first);
+                }
+            }
+            ParseState.check(!context.hasKey(instructionName),
+                    "Error: There must be no repeat instruction names",
+                    state, tokens);
+            int id = state.symbols().intern(instructionName);
+            instructionName = state.symbols().name(id);
+            context.add(instructionName, instruction);
+            parseLimits.checkInstructions(context.size());
+            if (id >= byId.length) {
+                byId = Arrays.copyOf(byId, Math.max(2 * byId.length, id + 1));
+            }
+            byId[id] = instruction;
+        }
+
+        // consume "BEGIN" token
+        String beginToken = tokens.dequeue();
+        ParseState.check(beginToken.equals("BEGIN"),
+                "Error: Keyword" + " \"" + "BEGIN" + "\" " + "expected, found: "
+                        + "\"" + beginToken + "\"",
+                state, tokens);
+
+        // parse body as a block
+        if (state.sourceMap() != null) {
+            state.sourceMap().setBody(state.sourceMap().size());
+        }
+        Statement body = state.borrow();
+        Statement1Parse1.parseBlock(tokens, body, state);
+
+        // consume end tokens
+        String endToken = tokens.dequeue();
+        ParseState.check(endToken.equals("END"),
+                "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
+                        + "\"" + endToken + "\"",
+                state, tokens);
+        String endName = tokens.dequeue();
+        ParseState.check(endName.equals(name),
+                "Error: Keyword" + " \"" + name + "\" " + "expected, found: "
+                        + "\"" + endName + "\"",
+                state, tokens);
+
+        // check end of input token
+        ParseState.checkFront(tokens.front().equals(Tokenizer.END_OF_INPUT),
+                "Error: Keyword" + " \"" + Tokenizer.END_OF_INPUT + "\" "
+                        + "expected, found: " + "\"" + tokens.front() + "\"",
+                state, tokens);
+
+        this.swapContext(context);
+        this.swapBody(body);
+        this.setName(name);
+        this.symbols = state.symbols();
+        this.instructions = byId;
+    }
+
+    /**
+     * Moves the tokens of a block from the front of {@code tokens} to the end
+     * of {@code block}, counting IF and WHILE keywords against their matching
+     * END keywords so that nested statements are skipped as a whole. No
+     * statement is built and nothing but the nesting is checked.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param block
+     *            the tokens of the block
+     * @param state
+     *            the state of the parse
+     * @updates tokens, block
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [an END-balanced prefix of #tokens is followed by "END"] then
+     *  block = #block * [longest END-balanced prefix of #tokens]  and
+     *  #tokens = [longest END-balanced prefix of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static void skipBlock(Queue<String> tokens, Queue<String> block,
+            ParseState state) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert block != null : "Violation of: block is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+
+        int depth = 0;
+        while (depth > 0 || !tokens.front().equals("END")) {
+            ParseState.checkFront(
+                    !tokens.front().equals(Tokenizer.END_OF_INPUT),
+                    "Error: Keyword" + " \"" + "END" + "\" "
+                            + "expected, found: " + "\""
+                            + Tokenizer.END_OF_INPUT + "\"",
+                    state, tokens);
+            String token = tokens.dequeue();
+            block.enqueue(token);
+            if (token.equals("IF") || token.equals("WHILE")) {
+                depth++;
+            } else if (token.equals("END")) {
+                // the keyword closed by this END is not an opening one
+                depth--;
+                if (!tokens.front().equals(Tokenizer.END_OF_INPUT)) {
+                    block.enqueue(tokens.dequeue());
+                }
+            }
+        }
+    }
+
     /**
      * Parses a single BL instruction from {@code tokens} returning the
      * instruction name as the value of the function and the body of the
@@ -31,6 +337,8 @@ public final class Program1Parse1 extends Program1 {
      *            the input tokens
      * @param body
      *            the instruction body
+     * @param state
+     *            the state of the parse, or {@code null}
      * @return the instruction name
      * @replaces body
      * @updates tokens
@@ -51,8 +359,8 @@ public final class Program1Parse1 extends Program1 {
      *  [report an appropriate error message to the console and terminate client]
      * </pre>
      */
-    private static String parseInstruction(Queue<String> tokens,
-            Statement body) {
+    static String parseInstruction(Queue<String> tokens, Statement body,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert body != null : "Violation of: body is not null";
         assert tokens.length() > 0 && tokens.front().equals("INSTRUCTION") : ""
@@ -60,29 +368,34 @@ public final class Program1Parse1 extends Program1 {
 
         // consume header tokens
         String instToken = tokens.dequeue();
-        Reporter.assertElseFatalError(instToken.equals("INSTRUCTION"),
+        ParseState.check(instToken.equals("INSTRUCTION"),
                 "Error: Keyword" + " \"" + "INSTRUCTION" + "\" "
-                        + "expected, found: " + "\"" + instToken + "\"");
+                        + "expected, found: " + "\"" + instToken + "\"",
+                state, tokens);
         String name = tokens.dequeue();
-        Reporter.assertElseFatalError(Tokenizer.isIdentifier(name),
-                "Error: Instruction name must not be a primitive instruction");
+        ParseState.check(Tokenizer.isIdentifier(name),
+                "Error: Instruction name must not be a primitive instruction",
+                state, tokens);
         String isToken = tokens.dequeue();
-        Reporter.assertElseFatalError(isToken.equals("IS"),
+        ParseState.check(isToken.equals("IS"),
                 "Error: Keyword" + " \"" + "IS" + "\" " + "expected, found: "
-                        + "\"" + isToken + "\" ");
+                        + "\"" + isToken + "\" ",
+                state, tokens);
 
         // parse instruction body
-        body.parseBlock(tokens);
+        Statement1Parse1.parseBlock(tokens, body, state);
 
         // consume end tokens
         String endToken = tokens.dequeue();
-        Reporter.assertElseFatalError(endToken.equals("END"),
+        ParseState.check(endToken.equals("END"),
                 "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
-                        + "\"" + endToken + "\" ");
+                        + "\"" + endToken + "\" ",
+                state, tokens);
         String endName = tokens.dequeue();
-        Reporter.assertElseFatalError(endName.equals(name),
+        ParseState.check(endName.equals(name),
                 "Error: Keyword" + " \"" + name + "\" " + "expected, found: "
-                        + "\"" + endName + "\"");
+                        + "\"" + endName + "\"",
+                state, tokens);
 
         return name;
     }
@@ -95,7 +408,47 @@ public final class Program1Parse1 extends Program1 {
      * No-argument constructor.
      */
     public Program1Parse1() {
+        this(false, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor selecting whether {@code parse} builds the instruction
+     * bodies eagerly or leaves each one as a {@code LazyStatement} that is
+     * parsed the first time it is used. In lazy mode, syntax errors inside an
+     * instruction body are reported on first use instead of by {@code parse}.
+     *
+     * @param lazy
+     *            whether instruction bodies are parsed on first use
+     */
+    public Program1Parse1(boolean lazy) {
+        this(lazy, ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a parser that rejects input over {@code limits}. The
+     * token cap is checked while {@code parse(SimpleReader)} reads the input,
+     * and the depth and instruction caps while the tokens are parsed.
+     *
+     * @param limits
+     *            the limits enforced while parsing
+     */
+    public Program1Parse1(ParseLimits limits) {
+        this(false, limits);
+    }
+
+    /**
+     * Constructor selecting lazy mode and the limits enforced while parsing.
+     *
+     * @param lazy
+     *            whether instruction bodies are parsed on first use
+     * @param limits
+     *            the limits enforced while parsing
+     */
+    public Program1Parse1(boolean lazy, ParseLimits limits) {
         super();
+        assert limits != null : "Violation of: limits is not null";
+        this.lazy = lazy;
+        this.limits = limits;
     }
 
     /*
@@ -106,7 +459,12 @@ public final class Program1Parse1 extends Program1 {
     public void parse(SimpleReader in) {
         assert in != null : "Violation of: in is not null";
         assert in.isOpen() : "Violation of: in.is_open";
-        Queue<String> tokens = Tokenizer.tokens(in);
+        Queue<String> tokens;
+        if (this.limits == ParseLimits.UNLIMITED) {
+            tokens = Tokenizer.tokens(in);
+        } else {
+            tokens = this.limits.tokens(in);
+        }
         this.parse(tokens);
     }
 
@@ -115,59 +473,143 @@ public final class Program1Parse1 extends Program1 {
         assert tokens != null : "Violation of: tokens is not null";
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
-        Program program = new Program1Parse1();
-
-        // consume header tokens
-        String programToken = tokens.dequeue();
-        Reporter.assertElseFatalError(programToken.equals("PROGRAM"),
-                "Error: Keyword" + " \"" + "PROGRAM" + "\" "
-                        + "expected, found: " + "\"" + programToken + "\" ");
-        String name = tokens.dequeue();
-        String isToken = tokens.dequeue();
-        Reporter.assertElseFatalError(isToken.equals("IS"),
-                "Error: Keyword" + " \"" + "IS" + "\" " + "expected, found: "
-                        + "\"" + isToken + "\"");
-
-        // parse context
-        Map<String, Statement> context = program.newContext();
-        while (!tokens.front().equals("BEGIN")) {
-            Statement instruction = program.newBody();
-            String instructionName = parseInstruction(tokens, instruction);
-            Reporter.assertElseFatalError(!context.hasKey(instructionName),
-                    "Error: There must be no repeat instruction names");
-            context.add(instructionName, instruction);
-        }
-
-        // consume "BEGIN" token
-        String beginToken = tokens.dequeue();
-        Reporter.assertElseFatalError(beginToken.equals("BEGIN"),
-                "Error: Keyword" + " \"" + "BEGIN" + "\" " + "expected, found: "
-                        + "\"" + beginToken + "\"");
+        this.limits.checkTokens(tokens.length() - 1);
+        this.parseTokens(tokens,
+                new ParseState(this.limits, null, 0, null, this.newSymbols()));
+    }
 
-        // parse body as a block
-        Statement body = program.newBody();
-        body.parseBlock(tokens);
+    /**
+     * Parses a BL program from {@code tokens} into {@code this}, stopping
+     * with a {@code CancellationException} once {@code cancellation} is
+     * cancelled or expired. The token is checked at each block and before
+     * each statement of a block and each instruction; a parse that stops
+     * leaves {@code this} unchanged.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param cancellation
+     *            the cancellation token
+     * @replaces this
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [cancellation is cancelled or expires before the parse ends] then
+     *  [throw a CancellationException]
+     * else if [a program string is a proper prefix of #tokens] then
+     *  this = [Program corresponding to program string at start of #tokens]  and
+     *  #tokens = [program string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(Queue<String> tokens, ParseCancellation cancellation) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert cancellation != null : "Violation of: cancellation is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+        this.limits.checkTokens(tokens.length() - 1);
+        ParseState state = new ParseState(this.limits, null, 0, null,
+                this.newSymbols());
+        state.watch(cancellation);
+        this.parseTokens(tokens, state);
+    }
 
-        // consume end tokens
-        String endToken = tokens.dequeue();
-        Reporter.assertElseFatalError(endToken.equals("END"),
-                "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
-                        + "\"" + endToken + "\"");
-        String endName = tokens.dequeue();
-        Reporter.assertElseFatalError(endName.equals(name),
-                "Error: Keyword" + " \"" + name + "\" " + "expected, found: "
-                        + "\"" + endName + "\"");
+    /**
+     * Parses a BL program from {@code tokens}, whose source positions are
+     * {@code positions}, into {@code this}. Error messages give the line and
+     * column of the offending token, and the span of every statement node
+     * built is recorded in {@code sourceMap} (in lazy mode, only the nodes of
+     * the program body).
+     *
+     * @param tokens
+     *            the input tokens
+     * @param positions
+     *            the positions of the tokens
+     * @param sourceMap
+     *            the source map of the parsed program
+     * @replaces this, sourceMap
+     * @updates tokens
+     * @requires <pre>
+     * [<Tokenizer.END_OF_INPUT> is a suffix of tokens]  and
+     *  positions.length() = |tokens|
+     * </pre>
+     * @ensures <pre>
+     * if [a program string is a proper prefix of #tokens] then
+     *  this = [Program corresponding to program string at start of #tokens]  and
+     *  sourceMap = [spans of the nodes of this]  and
+     *  #tokens = [program string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(Queue<String> tokens, TokenPositions positions,
+            SourceMap sourceMap) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert positions != null : "Violation of: positions is not null";
+        assert sourceMap != null : "Violation of: sourceMap is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+        assert positions.length() == tokens.length() : ""
+                + "Violation of: positions.length() = |tokens|";
+        this.limits.checkTokens(tokens.length() - 1);
+        sourceMap.clear();
+        this.parseTokens(tokens, new ParseState(this.limits, positions,
+                tokens.length(), sourceMap, this.newSymbols()));
+    }
 
-        // check end of input token
-        Reporter.assertElseFatalError(
-                tokens.front().equals(Tokenizer.END_OF_INPUT),
-                "Error: Keyword" + " \"" + Tokenizer.END_OF_INPUT + "\" "
-                        + "expected, found: " + "\"" + tokens.front() + "\"");
+    /**
+     * Makes every later parse intern identifiers in {@code symbols}, which
+     * may be shared with other programs, instead of in a new table owned by
+     * {@code this}.
+     *
+     * @param symbols
+     *            the symbol table
+     */
+    public void shareSymbols(SymbolTable symbols) {
+        assert symbols != null : "Violation of: symbols is not null";
+        this.symbols = symbols;
+        this.sharedSymbols = true;
+    }
 
-        this.swapContext(context);
-        this.swapBody(body);
-        this.setName(name);
+    /**
+     * Returns the symbol table the identifiers of the last parse were
+     * interned in. The names of the instructions in the context and of the
+     * CALL statements built by the parse (in lazy mode, only those of the
+     * program body) are the instances held by the table.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
 
+    /**
+     * Returns the body of the instruction whose name has id {@code id} in the
+     * context built by the last parse, or {@code null} if there is none (as
+     * for the primitive instructions). The lookup is a single array access.
+     * The kernel methods of {@code Program1} are final, so a change to the
+     * context by {@code swapContext}, {@code clear} or {@code transferFrom}
+     * cannot be seen here; the context must not have changed since the last
+     * parse, which is checked when assertions are enabled.
+     *
+     * @param id
+     *            the id of the instruction name in {@code symbols()}
+     * @return the body of the instruction, or {@code null}
+     * @requires <pre>
+     * 0 <= id  and
+     *  [the context of this is the one built by the last parse]
+     * </pre>
+     */
+    public Statement instruction(int id) {
+        assert 0 <= id : "Violation of: 0 <= id";
+        Statement body = null;
+        if (id < this.instructions.length) {
+            body = this.instructions[id];
+        }
+        assert this.isLive(id, body) : ""
+                + "Violation of: [the context of this is the one built by"
+                + " the last parse]";
+        return body;
     }
 
     /*
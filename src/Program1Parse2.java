@@ -0,0 +1,125 @@
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * Layered implementation of secondary method {@code parse} for {@code Program}
+ * that walks the LL(1) parse table generated from {@code Grammar.BL}, instead
+ * of following the grammar in hand-written methods as {@code Program1Parse1}
+ * does. It builds the same programs.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class Program1Parse2 extends Program1 {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The limits enforced while parsing.
+     */
+    private final ParseLimits limits;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Program1Parse2() {
+        this(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a parser that rejects input over {@code limits}.
+     *
+     * @param limits
+     *            the limits enforced while parsing
+     */
+    public Program1Parse2(ParseLimits limits) {
+        super();
+        assert limits != null : "Violation of: limits is not null";
+        this.limits = limits;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void parse(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Queue<String> tokens;
+        if (this.limits == ParseLimits.UNLIMITED) {
+            tokens = Tokenizer.tokens(in);
+        } else {
+            tokens = this.limits.tokens(in);
+        }
+        this.parse(tokens);
+    }
+
+    @Override
+    public void parse(Queue<String> tokens) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+        this.limits.checkTokens(tokens.length() - 1);
+        Map<String, Statement> context = this.newContext();
+        Statement prototype = this.newBody();
+        TableParser parser = new TableParser(new ParseState(this.limits),
+                prototype, context);
+        Statement body = parser.parse(tokens, "program");
+        this.swapContext(context);
+        this.swapBody(body);
+        this.setName(parser.programName());
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse input file
+         */
+        out.println("*** Parsing input file ***");
+        Program p = new Program1Parse2();
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        p.parse(tokens);
+        /*
+         * Pretty print the program
+         */
+        out.println("*** Pretty print of parsed program ***");
+        p.prettyPrint(out);
+
+        in.close();
+        out.close();
+    }
+
+}
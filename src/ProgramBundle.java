@@ -0,0 +1,579 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Bundle of BL programs stored one after another in a single file. The
+ * programs are read as a stream, one {@code PROGRAM ... END name} unit at a
+ * time: each unit is split off by counting END-balanced keywords and parsed
+ * on its own by {@code Program1Parse1.parse}, so only one program is held in
+ * memory at a time. An index of the byte offset of each unit gives random
+ * access to individual programs.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramBundle implements Iterable<Program> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Initial size of the token buffer.
+     */
+    private static final int WORD_SIZE = 64;
+
+    /**
+     * Maximum number of bytes of the UTF-8 encoding of a code point.
+     */
+    private static final int MAX_CODE_POINT_BYTES = 4;
+
+    /**
+     * Code point read in place of a malformed UTF-8 sequence.
+     */
+    private static final int REPLACEMENT = 0xFFFD;
+
+    /**
+     * Name of the bundle file.
+     */
+    private final String fileName;
+
+    /**
+     * Byte offsets of the programs in the bundle, or {@code null} until the
+     * index has been built.
+     */
+    private long[] offsets = null;
+
+    /**
+     * Splits the tokens read from a byte stream into program units and keeps
+     * track of the byte offset of each unit.
+     */
+    private static final class UnitReader {
+
+        /**
+         * The input stream.
+         */
+        private final InputStream in;
+
+        /**
+         * Bytes of the token being read.
+         */
+        private byte[] word = new byte[WORD_SIZE];
+
+        /**
+         * Bytes of the last code point read.
+         */
+        private final byte[] bytes = new byte[MAX_CODE_POINT_BYTES];
+
+        /**
+         * Number of bytes of the last code point read.
+         */
+        private int size;
+
+        /**
+         * Byte offset of the next byte of {@code in}.
+         */
+        private long offset;
+
+        /**
+         * Byte offset of the last token read.
+         */
+        private long tokenOffset;
+
+        /**
+         * Byte offset of the first token of the last unit read.
+         */
+        private long unitOffset;
+
+        /**
+         * Constructor.
+         *
+         * @param in
+         *            the input stream
+         * @param offset
+         *            the byte offset of the first byte of {@code in}
+         */
+        UnitReader(InputStream in, long offset) {
+            this.in = new BufferedInputStream(in, BUFFER_SIZE);
+            this.offset = offset;
+        }
+
+        /**
+         * Reads the next code point, decoding it from UTF-8, into
+         * {@code bytes} and {@code size}, or returns -1 at end of stream. A
+         * malformed sequence is read as {@code REPLACEMENT}, as
+         * {@code String} decodes it.
+         *
+         * @return the next code point, or -1
+         * @throws IOException
+         *             if reading fails
+         */
+        private int nextCodePoint() throws IOException {
+            int b = this.in.read();
+            int c = b;
+            this.size = 0;
+            if (b >= 0) {
+                this.bytes[0] = (byte) b;
+                this.size = 1;
+                int continuations = 0;
+                if (b >= 0xC0 && b < 0xE0) {
+                    continuations = 1;
+                    c = b & 0x1F;
+                } else if (b >= 0xE0 && b < 0xF0) {
+                    continuations = 2;
+                    c = b & 0x0F;
+                } else if (b >= 0xF0 && b < 0xF8) {
+                    continuations = 3;
+                    c = b & 0x07;
+                } else if (b >= 0x80) {
+                    c = REPLACEMENT;
+                }
+                while (continuations > 0) {
+                    this.in.mark(1);
+                    int next = this.in.read();
+                    if ((next & 0xC0) == 0x80) {
+                        this.bytes[this.size] = (byte) next;
+                        this.size++;
+                        c = (c << 6) | (next & 0x3F);
+                        continuations--;
+                    } else {
+                        this.in.reset();
+                        c = REPLACEMENT;
+                        continuations = 0;
+                    }
+                }
+            }
+            return c;
+        }
+
+        /**
+         * Reads the next token, or returns {@code null} at end of stream.
+         * Tokens are separated by whitespace code points, as in
+         * {@code Tokenizer.tokens}.
+         *
+         * @return the next token
+         * @throws IOException
+         *             if reading fails
+         */
+        private String nextToken() throws IOException {
+            int length = 0;
+            int c = this.nextCodePoint();
+            while (c >= 0 && Character.isWhitespace(c)) {
+                this.offset += this.size;
+                c = this.nextCodePoint();
+            }
+            this.tokenOffset = this.offset;
+            while (c >= 0 && !Character.isWhitespace(c)) {
+                if (length + this.size > this.word.length) {
+                    this.word = Arrays.copyOf(this.word, 2 * length);
+                }
+                System.arraycopy(this.bytes, 0, this.word, length, this.size);
+                length += this.size;
+                this.offset += this.size;
+                c = this.nextCodePoint();
+            }
+            this.offset += this.size;
+            String token = null;
+            if (length > 0) {
+                token = new String(this.word, 0, length,
+                        StandardCharsets.UTF_8);
+            }
+            return token;
+        }
+
+        /**
+         * Reads the tokens of the next program unit, followed by
+         * {@code Tokenizer.END_OF_INPUT}, into {@code unit}, and reports
+         * whether there was one.
+         *
+         * @param unit
+         *            the tokens of the unit
+         * @return true iff a unit was read
+         * @throws IOException
+         *             if reading fails
+         * @replaces unit
+         */
+        boolean nextUnit(Queue<String> unit) throws IOException {
+            unit.clear();
+            String token = this.nextToken();
+            this.unitOffset = this.tokenOffset;
+            int depth = 0;
+            boolean afterEnd = false;
+            boolean inBody = false;
+            boolean done = token == null;
+            while (!done) {
+                unit.enqueue(token);
+                if (afterEnd) {
+                    afterEnd = false;
+                    done = inBody && depth < 0;
+                    if (depth < 0) {
+                        depth = 0;
+                    }
+                } else if (token.equals("IF") || token.equals("WHILE")) {
+                    depth++;
+                } else if (token.equals("END")) {
+                    depth--;
+                    afterEnd = true;
+                } else if (token.equals("BEGIN") && depth == 0) {
+                    inBody = true;
+                }
+                if (!done) {
+                    token = this.nextToken();
+                    done = token == null;
+                }
+            }
+            boolean found = unit.length() > 0;
+            unit.enqueue(Tokenizer.END_OF_INPUT);
+            return found;
+        }
+
+        /**
+         * Closes the input stream.
+         */
+        void close() {
+            try {
+                this.in.close();
+            } catch (IOException e) {
+                Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Iterator that parses the programs of a bundle one at a time, in order,
+     * and closes the bundle file when the last one has been returned or when
+     * it is closed.
+     */
+    public static final class Programs
+            implements Iterator<Program>, AutoCloseable {
+
+        /**
+         * The reader of the units.
+         */
+        private final UnitReader reader;
+
+        /**
+         * Tokens of the next unit.
+         */
+        private final Queue<String> unit = new Queue1L<>();
+
+        /**
+         * Whether {@code unit} holds the next unit, or {@code null} if not
+         * known yet.
+         */
+        private Boolean hasNext = null;
+
+        /**
+         * Constructor.
+         *
+         * @param reader
+         *            the reader of the units
+         */
+        private Programs(UnitReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.hasNext == null) {
+                this.hasNext = nextUnit(this.reader, this.unit);
+                if (!this.hasNext) {
+                    this.reader.close();
+                }
+            }
+            return this.hasNext;
+        }
+
+        @Override
+        public Program next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.hasNext = null;
+            return parseUnit(this.unit);
+        }
+
+        /**
+         * Closes the bundle file; no further programs are returned.
+         */
+        @Override
+        public void close() {
+            this.hasNext = false;
+            this.reader.close();
+        }
+
+    }
+
+    /**
+     * Opens the bundle file positioned at byte {@code offset}.
+     *
+     * @param offset
+     *            the byte offset
+     * @return a reader of the units from {@code offset} on
+     */
+    private UnitReader open(long offset) {
+        UnitReader reader = null;
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(this.fileName),
+                    StandardOpenOption.READ);
+            channel.position(offset);
+            reader = new UnitReader(Channels.newInputStream(channel), offset);
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return reader;
+    }
+
+    /**
+     * Reads the next unit from {@code reader} into {@code unit}, reporting
+     * read failures as errors.
+     *
+     * @param reader
+     *            the reader
+     * @param unit
+     *            the tokens of the unit
+     * @return true iff a unit was read
+     */
+    private static boolean nextUnit(UnitReader reader, Queue<String> unit) {
+        boolean found = false;
+        try {
+            found = reader.nextUnit(unit);
+        } catch (IOException e) {
+            reader.close();
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return found;
+    }
+
+    /**
+     * Parses the tokens of a unit into a new program.
+     *
+     * @param unit
+     *            the tokens of the unit
+     * @return the parsed program
+     */
+    private static Program parseUnit(Queue<String> unit) {
+        Program p = new Program1Parse1();
+        p.parse(unit);
+        return p;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor.
+     *
+     * @param fileName
+     *            the name of the bundle file
+     */
+    public ProgramBundle(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+        this.fileName = fileName;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns an iterator that parses the programs of the bundle one at a
+     * time, in order. The file is closed when the last program has been
+     * returned, or by {@code close} if the iteration is abandoned before.
+     *
+     * @return an iterator over the programs of the bundle
+     */
+    @Override
+    public Programs iterator() {
+        return new Programs(this.open(0));
+    }
+
+    /**
+     * Parses the programs of the bundle one at a time, in order, and hands
+     * each one to {@code action}. The file is closed even if parsing or
+     * {@code action} fails.
+     *
+     * @param action
+     *            the callback receiving each program
+     */
+    @Override
+    public void forEach(Consumer<? super Program> action) {
+        assert action != null : "Violation of: action is not null";
+        UnitReader reader = this.open(0);
+        try {
+            Queue<String> unit = new Queue1L<>();
+            while (nextUnit(reader, unit)) {
+                action.accept(parseUnit(unit));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the number of programs in the bundle, building the offset index
+     * if needed.
+     *
+     * @return the number of programs
+     */
+    public int size() {
+        return this.offsets().length;
+    }
+
+    /**
+     * Parses and returns the {@code i}-th program of the bundle, seeking
+     * directly to it through the offset index.
+     *
+     * @param i
+     *            the position of the program
+     * @return the parsed program
+     * @requires 0 <= i < size()
+     */
+    public Program program(int i) {
+        long[] index = this.offsets();
+        assert 0 <= i && i < index.length : "Violation of: 0 <= i < size()";
+        UnitReader reader = this.open(index[i]);
+        try {
+            Queue<String> unit = new Queue1L<>();
+            nextUnit(reader, unit);
+            return parseUnit(unit);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the byte offsets of the programs in the bundle. The index is
+     * built by one pass that splits the units without parsing them, and is
+     * then kept.
+     *
+     * @return the byte offsets of the programs
+     */
+    public long[] offsets() {
+        if (this.offsets == null) {
+            long[] index = new long[2];
+            int count = 0;
+            UnitReader reader = this.open(0);
+            try {
+                Queue<String> unit = new Queue1L<>();
+                while (nextUnit(reader, unit)) {
+                    if (count == index.length) {
+                        index = Arrays.copyOf(index, 2 * count);
+                    }
+                    index[count] = reader.unitOffset;
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+            this.offsets = Arrays.copyOf(index, count);
+        }
+        return Arrays.copyOf(this.offsets, this.offsets.length);
+    }
+
+    /**
+     * Writes the offset index to {@code out}, one offset per line.
+     *
+     * @param out
+     *            the output stream
+     * @updates out.content
+     * @requires out.is_open
+     * @ensures out.content = #out.content * [offsets(), one per line]
+     */
+    public void writeIndex(SimpleWriter out) {
+        assert out != null : "Violation of: out is not null";
+        assert out.isOpen() : "Violation of: out.is_open";
+        for (long offset : this.offsets()) {
+            out.println(offset);
+        }
+    }
+
+    /**
+     * Reads an offset index written by {@code writeIndex} from {@code in} and
+     * uses it instead of building one.
+     *
+     * @param in
+     *            the input stream
+     * @updates in.content
+     * @requires in.is_open and [in.content was written by writeIndex for this
+     *           bundle]
+     * @ensures in.content = <>
+     */
+    public void readIndex(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        long[] index = new long[2];
+        int count = 0;
+        while (!in.atEOS()) {
+            String line = in.nextLine();
+            if (!line.isEmpty()) {
+                if (count == index.length) {
+                    index = Arrays.copyOf(index, 2 * count);
+                }
+                index[count] = Long.parseLong(line);
+                count++;
+            }
+        }
+        this.offsets = Arrays.copyOf(index, count);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        final SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter BL bundle file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse and pretty print each program in the bundle
+         */
+        out.println("*** Parsing bundle ***");
+        ProgramBundle bundle = new ProgramBundle(fileName);
+        bundle.forEach(p -> {
+            out.println("*** Pretty print of parsed program ***");
+            p.prettyPrint(out);
+        });
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,682 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Event-driven parser for BL programs that builds no tree. Instead of
+ * assembling {@code Statement} nodes, it reports each construct to a
+ * {@code Handler} as it is recognized, in source order: identifiers as their
+ * ids in the symbol table of the parser, and conditions as {@code Condition}
+ * constants. The input is checked with the same rules, and the same error
+ * messages, as {@code Program1Parse1}.
+ *
+ * <p>
+ * Every {@code start} event is matched by exactly one later {@code end}
+ * event, so the events nest like the program: the program holds its
+ * instructions and then its body, and an IF statement may hold one
+ * {@code startElse} event at its own level, between the blocks. The parser
+ * keeps its symbol table, its parse state and its stack of open statements
+ * from one parse to the next, so once it has seen the identifiers of its
+ * input a parse creates almost nothing. Once a parse leaves the symbol table
+ * holding {@code ParseSession.MAX_SYMBOLS} names, a new one is started, so a
+ * long-lived parser cannot grow without bound.
+ *
+ * <p>
+ * A parser is not safe for use by more than one thread at a time.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramEventParser {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the stack of open statements.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Kind of an open IF statement, before its ELSE.
+     */
+    private static final int OPEN_IF = 0;
+
+    /**
+     * Kind of an open IF statement, after its ELSE.
+     */
+    private static final int OPEN_ELSE = 1;
+
+    /**
+     * Kind of an open WHILE statement.
+     */
+    private static final int OPEN_WHILE = 2;
+
+    /**
+     * The conditions, by their condition strings.
+     */
+    private static final HashMap<String, Condition> CONDITIONS = conditions();
+
+    /**
+     * The limits enforced while parsing.
+     */
+    private final ParseLimits limits;
+
+    /**
+     * The symbol table identifiers are interned in, kept from one parse to
+     * the next until it is full.
+     */
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * The parse state, reused by every parse; replaced with the symbol table.
+     */
+    private ParseState state;
+
+    /**
+     * Kinds of the open IF and WHILE statements, innermost last.
+     */
+    private int[] open = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of open IF and WHILE statements.
+     */
+    private int openCount = 0;
+
+    /**
+     * Number of the parse each instruction name was last declared in, by id.
+     */
+    private int[] declared = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of the current parse.
+     */
+    private int generation = 0;
+
+    /**
+     * Whether each id is the id of an identifier, by id; a token is checked
+     * with {@code Tokenizer.isIdentifier} only the first time it is seen.
+     */
+    private boolean[] identifiers = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Returns the conditions, by their condition strings.
+     *
+     * @return the map from condition strings to conditions
+     */
+    private static HashMap<String, Condition> conditions() {
+        HashMap<String, Condition> conditions = new HashMap<>();
+        for (Condition c : Condition.values()) {
+            conditions.put(c.name().replace('_', '-').toLowerCase(), c);
+        }
+        return conditions;
+    }
+
+    /**
+     * Pushes an open statement of kind {@code kind}.
+     *
+     * @param kind
+     *            the kind of the statement
+     */
+    private void push(int kind) {
+        if (this.openCount == this.open.length) {
+            this.open = Arrays.copyOf(this.open, 2 * this.openCount);
+        }
+        this.open[this.openCount] = kind;
+        this.openCount++;
+    }
+
+    /**
+     * Returns the id of {@code token} if it is an identifier, interning it
+     * first, or -1 if it is not.
+     *
+     * @param token
+     *            the token
+     * @return the id of {@code token}, or -1
+     * @ensures <pre>
+     * if Tokenizer.isIdentifier(token) then
+     *  symbols.name(identifier) = token
+     * else
+     *  identifier = -1
+     * </pre>
+     */
+    private int identifier(String token) {
+        int id = this.symbols.id(token);
+        if (id < 0 || id >= this.identifiers.length
+                || !this.identifiers[id]) {
+            id = -1;
+            if (Tokenizer.isIdentifier(token)) {
+                id = this.symbols.intern(token);
+                if (id >= this.identifiers.length) {
+                    this.identifiers = Arrays.copyOf(this.identifiers,
+                            Math.max(2 * this.identifiers.length, id + 1));
+                }
+                this.identifiers[id] = true;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Starts a new symbol table, with a new parse state and new tables by
+     * id, if the current one holds {@code ParseSession.MAX_SYMBOLS} names.
+     * It is called once a parse is over, so the ids reported by a parse are
+     * those of the table {@code symbols()} returned when it started.
+     */
+    private void boundSymbols() {
+        if (this.symbols.size() >= ParseSession.MAX_SYMBOLS) {
+            this.symbols = new SymbolTable();
+            this.state = new ParseState(this.limits, null, 0, null,
+                    this.symbols);
+            this.declared = new int[INITIAL_CAPACITY];
+            this.identifiers = new boolean[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Reports an error unless {@code found}, the last token consumed from
+     * {@code tokens}, is {@code expected}. The message is built only for the
+     * error, so a parse that succeeds creates no strings.
+     *
+     * @param expected
+     *            the token expected
+     * @param found
+     *            the token found
+     * @param tokens
+     *            the tokens being parsed
+     */
+    private void expect(String expected, String found, Queue<String> tokens) {
+        if (!found.equals(expected)) {
+            ParseState.check(false,
+                    "Error: Keyword" + " \"" + expected + "\" "
+                            + "expected, found: " + "\"" + found + "\"",
+                    this.state, tokens);
+        }
+    }
+
+    /**
+     * Records that the instruction whose name has id {@code id} is declared
+     * by the current parse, reporting an error if it already was.
+     *
+     * @param id
+     *            the id of the instruction name
+     * @param tokens
+     *            the tokens being parsed
+     */
+    private void declare(int id, Queue<String> tokens) {
+        if (id >= this.declared.length) {
+            this.declared = Arrays.copyOf(this.declared,
+                    Math.max(2 * this.declared.length, id + 1));
+        }
+        ParseState.check(this.declared[id] != this.generation,
+                "Error: There must be no repeat instruction names",
+                this.state, tokens);
+        this.declared[id] = this.generation;
+    }
+
+    /**
+     * Parses an IF or WHILE header from {@code tokens}, from the keyword
+     * through THEN or DO, and reports it to {@code handler}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param handler
+     *            the handler
+     * @updates tokens
+     * @requires <pre>
+     * [<"IF"> or <"WHILE"> is a prefix of tokens]  and
+     *  [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * </pre>
+     */
+    private void parseHeader(Queue<String> tokens, Handler handler) {
+        boolean isIf = tokens.dequeue().equals("IF");
+        String keyword = "WHILE";
+        String separator = "DO";
+        if (isIf) {
+            keyword = "IF";
+            separator = "THEN";
+        }
+        this.state.enterNested();
+        String conditionToken = tokens.dequeue();
+        Condition condition = CONDITIONS.get(conditionToken);
+        if (condition == null) {
+            ParseState.check(false, "Error: Violated of valid condition after "
+                    + keyword + " token", this.state, tokens);
+        }
+        String separatorToken = tokens.dequeue();
+        this.expect(separator, separatorToken, tokens);
+        if (isIf) {
+            this.push(OPEN_IF);
+            handler.startIf(condition);
+        } else {
+            this.push(OPEN_WHILE);
+            handler.startWhile(condition);
+        }
+    }
+
+    /**
+     * Parses "END IF" or "END WHILE" closing the innermost open statement
+     * from {@code tokens}, and reports it to {@code handler}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param handler
+     *            the handler
+     * @updates tokens
+     * @requires openCount > 0
+     */
+    private void parseEnd(Queue<String> tokens, Handler handler) {
+        String keyword = "IF";
+        if (this.open[this.openCount - 1] == OPEN_WHILE) {
+            keyword = "WHILE";
+        }
+        String endToken = tokens.dequeue();
+        this.expect("END", endToken, tokens);
+        String keywordToken = tokens.dequeue();
+        this.expect(keyword, keywordToken, tokens);
+        this.state.exitNested();
+        this.openCount--;
+        handler.end();
+    }
+
+    /**
+     * Parses a block from {@code tokens} and reports its statements to
+     * {@code handler}, stopping at the first "END", "ELSE" or
+     * {@code Tokenizer.END_OF_INPUT} that is not part of a statement. Nested
+     * statements are followed with the stack of open statements, not by
+     * recursion.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param handler
+     *            the handler
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a block string is a prefix of #tokens] then
+     *  [the statements of the longest block string at start of #tokens are
+     *   reported to handler]  and
+     *  #tokens = [longest block string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    private void parseBlock(Queue<String> tokens, Handler handler) {
+        int base = this.openCount;
+        boolean done = false;
+        while (!done) {
+            String front = tokens.front();
+            if (front.equals("END") || front.equals("ELSE")
+                    || front.equals(Tokenizer.END_OF_INPUT)) {
+                if (this.openCount == base) {
+                    done = true;
+                } else if (front.equals("ELSE")
+                        && this.open[this.openCount - 1] == OPEN_IF) {
+                    tokens.dequeue();
+                    this.open[this.openCount - 1] = OPEN_ELSE;
+                    handler.startElse();
+                } else {
+                    this.parseEnd(tokens, handler);
+                }
+            } else if (front.equals("IF") || front.equals("WHILE")) {
+                this.parseHeader(tokens, handler);
+            } else {
+                int id = this.identifier(front);
+                if (id < 0) {
+                    ParseState.checkFront(false,
+                            "Error: Expect an Identifier, \"IF\", "
+                                    + "\"IF_ELSE\", \"WHILE\", "
+                                    + "\"### END OF INPUT ### \" found: \""
+                                    + front + "\"",
+                            this.state, tokens);
+                }
+                tokens.dequeue();
+                handler.call(id);
+            }
+        }
+    }
+
+    /**
+     * Parses a BL program from {@code tokens} and reports it to
+     * {@code handler}, with the state already reset for the parse.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param handler
+     *            the handler
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a program string is a proper prefix of #tokens] then
+     *  [the events of the program at start of #tokens are reported to
+     *   handler]  and
+     *  #tokens = [program string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    private void parseProgram(Queue<String> tokens, Handler handler) {
+        // consume header tokens
+        String programToken = tokens.dequeue();
+        this.expect("PROGRAM", programToken, tokens);
+        String name = tokens.dequeue();
+        String isToken = tokens.dequeue();
+        this.expect("IS", isToken, tokens);
+        handler.startProgram(this.symbols.intern(name));
+
+        // parse context
+        int instructionCount = 0;
+        while (!tokens.front().equals("BEGIN")) {
+            String instToken = tokens.dequeue();
+            this.expect("INSTRUCTION", instToken, tokens);
+            String instructionName = tokens.dequeue();
+            int id = this.identifier(instructionName);
+            ParseState.check(id >= 0,
+                    "Error: Instruction name must not be a primitive "
+                            + "instruction",
+                    this.state, tokens);
+            String instIsToken = tokens.dequeue();
+            this.expect("IS", instIsToken, tokens);
+            handler.startInstruction(id);
+            this.parseBlock(tokens, handler);
+            String endToken = tokens.dequeue();
+            this.expect("END", endToken, tokens);
+            String endName = tokens.dequeue();
+            this.expect(instructionName, endName, tokens);
+            this.declare(id, tokens);
+            instructionCount++;
+            this.limits.checkInstructions(instructionCount);
+            handler.end();
+        }
+
+        // consume "BEGIN" token
+        tokens.dequeue();
+
+        // parse body as a block
+        handler.startBody();
+        this.parseBlock(tokens, handler);
+        handler.end();
+
+        // consume end tokens
+        String endToken = tokens.dequeue();
+        this.expect("END", endToken, tokens);
+        String endName = tokens.dequeue();
+        this.expect(name, endName, tokens);
+
+        // check end of input token
+        Reporter.assertElseFatalError(
+                tokens.front().equals(Tokenizer.END_OF_INPUT),
+                "Error: Keyword" + " \"" + Tokenizer.END_OF_INPUT + "\" "
+                        + "expected, found: " + "\"" + tokens.front() + "\"");
+        handler.end();
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ProgramEventParser() {
+        this(ParseLimits.UNLIMITED);
+    }
+
+    /**
+     * Constructor for a parser that rejects input over {@code limits}.
+     *
+     * @param limits
+     *            the limits enforced while parsing
+     */
+    public ProgramEventParser(ParseLimits limits) {
+        assert limits != null : "Violation of: limits is not null";
+        this.limits = limits;
+        this.state = new ParseState(limits, null, 0, null, this.symbols);
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Receiver of the events of a parse.
+     */
+    public interface Handler {
+
+        /**
+         * Reports the start of the program named by {@code name}.
+         *
+         * @param name
+         *            the id of the program name
+         */
+        void startProgram(int name);
+
+        /**
+         * Reports the start of the instruction named by {@code name}.
+         *
+         * @param name
+         *            the id of the instruction name
+         */
+        void startInstruction(int name);
+
+        /**
+         * Reports the start of the body of the program.
+         */
+        void startBody();
+
+        /**
+         * Reports the start of an IF statement testing {@code condition}.
+         *
+         * @param condition
+         *            the condition
+         */
+        void startIf(Condition condition);
+
+        /**
+         * Reports the end of the first block of the innermost open IF
+         * statement and the start of its ELSE block.
+         */
+        void startElse();
+
+        /**
+         * Reports the start of a WHILE statement testing {@code condition}.
+         *
+         * @param condition
+         *            the condition
+         */
+        void startWhile(Condition condition);
+
+        /**
+         * Reports a CALL statement of the instruction named by
+         * {@code instruction}.
+         *
+         * @param instruction
+         *            the id of the instruction name
+         */
+        void call(int instruction);
+
+        /**
+         * Reports the end of the innermost open program, instruction, body,
+         * IF or WHILE statement.
+         */
+        void end();
+
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the symbol table the identifiers of the next parse are
+     * interned in; the ids of the primitive instructions are the reserved
+     * ones. A parse that leaves the table full replaces it once it is over.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Parses a BL program from {@code in} and reports it to {@code handler}.
+     *
+     * @param in
+     *            the input stream
+     * @param handler
+     *            the handler
+     * @updates in
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [in.content is a program string] then
+     *  [the events of the program are reported to handler]  and
+     *  in.content = <>
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(SimpleReader in, Handler handler) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Queue<String> tokens;
+        if (this.limits == ParseLimits.UNLIMITED) {
+            tokens = Tokenizer.tokens(in);
+        } else {
+            tokens = this.limits.tokens(in);
+        }
+        this.parse(tokens, handler);
+    }
+
+    /**
+     * Parses a BL program from {@code tokens} and reports it to
+     * {@code handler}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param handler
+     *            the handler
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a program string is a proper prefix of #tokens] then
+     *  [the events of the program at start of #tokens are reported to
+     *   handler]  and
+     *  #tokens = [program string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(Queue<String> tokens, Handler handler) {
+        assert tokens != null : "Violation of: tokens is not null";
+        assert handler != null : "Violation of: handler is not null";
+        assert tokens.length() > 0 : ""
+                + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
+        this.limits.checkTokens(tokens.length() - 1);
+        this.state.reset();
+        this.openCount = 0;
+        this.generation++;
+
+        try {
+            this.parseProgram(tokens, handler);
+        } finally {
+            this.boundSymbols();
+        }
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Handler counting the events of a parse.
+     */
+    private static final class Counter implements Handler {
+
+        /**
+         * Numbers of instructions, IF, WHILE and CALL statements.
+         */
+        private int instructions, ifs, whiles, calls;
+
+        @Override
+        public void startProgram(int name) {
+        }
+
+        @Override
+        public void startInstruction(int name) {
+            this.instructions++;
+        }
+
+        @Override
+        public void startBody() {
+        }
+
+        @Override
+        public void startIf(Condition condition) {
+            this.ifs++;
+        }
+
+        @Override
+        public void startElse() {
+        }
+
+        @Override
+        public void startWhile(Condition condition) {
+            this.whiles++;
+        }
+
+        @Override
+        public void call(int instruction) {
+            this.calls++;
+        }
+
+        @Override
+        public void end() {
+        }
+
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        /*
+         * Parse input file
+         */
+        out.println("*** Parsing input file ***");
+        ProgramEventParser parser = new ProgramEventParser();
+        Counter counter = new Counter();
+        SimpleReader file = new SimpleReader1L(fileName);
+        parser.parse(file, counter);
+        file.close();
+        /*
+         * Report the counts
+         */
+        out.println("Instructions: " + counter.instructions);
+        out.println("IF statements: " + counter.ifs);
+        out.println("WHILE statements: " + counter.whiles);
+        out.println("CALL statements: " + counter.calls);
+
+        in.close();
+        out.close();
+    }
+
+}
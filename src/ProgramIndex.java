@@ -0,0 +1,585 @@
+import components.map.Map;
+import components.map.Map1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Reporter;
+
+/**
+ * Index record of a BL program: its name, the names and sizes of its
+ * instructions and the primitive instructions it calls. Records are built by
+ * {@code scan}, which reads the program text once without building any
+ * {@code Statement}, and are stored one per line in an index file that
+ * {@code load} reads back without reparsing the programs.
+ *
+ * <p>
+ * The size of an instruction (or of the program body) is the number of
+ * statements in it, nested ones included. The scanner checks the program
+ * header, the instruction headers and the END names, but not the syntax of
+ * the statements; use {@code Program1Parse1} to validate a program.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramIndex {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Names of the primitive instructions, in the order of their bits in
+     * {@code primitives}.
+     */
+    private static final String[] PRIMITIVES = { "move", "turnleft",
+            "turnright", "infect", "skip" };
+
+    /**
+     * Separator between the fields of an index line.
+     */
+    private static final char FIELD_SEPARATOR = '\t';
+
+    /**
+     * Separator between an instruction name and its size in an index line.
+     */
+    private static final char SIZE_SEPARATOR = ':';
+
+    /**
+     * Program name.
+     */
+    private final String name;
+
+    /**
+     * Instruction names, in the order they appear in the program.
+     */
+    private final String[] instructions;
+
+    /**
+     * Instruction sizes, parallel to {@code instructions}.
+     */
+    private final int[] sizes;
+
+    /**
+     * Size of the program body.
+     */
+    private final int bodySize;
+
+    /**
+     * Bit set of the primitive instructions called by the program.
+     */
+    private final int primitives;
+
+    /**
+     * Returns the bit of {@code word} in {@code primitives}, or 0 if
+     * {@code word} is not a primitive instruction.
+     *
+     * @param word
+     *            the word
+     * @return the bit of {@code word}
+     */
+    private static int primitiveBit(String word) {
+        int bit = 0;
+        for (int i = 0; i < PRIMITIVES.length && bit == 0; i++) {
+            if (PRIMITIVES[i].equals(word)) {
+                bit = 1 << i;
+            }
+        }
+        return bit;
+    }
+
+    /**
+     * State of a scan of one program. Words are fed one at a time to
+     * {@code accept}; only names are kept, every other word is dropped as
+     * soon as it has been looked at.
+     */
+    private static final class Scan {
+
+        /**
+         * Scanner states.
+         */
+        private enum State {
+            PROGRAM, NAME, IS, CONTEXT, INSTRUCTION_NAME, INSTRUCTION_IS,
+            BLOCK, END_NAME, DONE
+        }
+
+        /**
+         * Current state.
+         */
+        private State state = State.PROGRAM;
+
+        /**
+         * Program name.
+         */
+        private String name;
+
+        /**
+         * Name of the instruction being scanned, or {@code null} while in the
+         * program body.
+         */
+        private String instruction;
+
+        /**
+         * Instruction names found so far.
+         */
+        private String[] instructions = new String[2];
+
+        /**
+         * Instruction sizes found so far.
+         */
+        private int[] sizes = new int[2];
+
+        /**
+         * Number of instructions found so far.
+         */
+        private int count = 0;
+
+        /**
+         * Number of statements in the block being scanned.
+         */
+        private int size;
+
+        /**
+         * Size of the program body.
+         */
+        private int bodySize;
+
+        /**
+         * Nesting depth of IF and WHILE statements in the block.
+         */
+        private int depth;
+
+        /**
+         * Number of following words that are not statements (a condition and
+         * THEN or DO, or the keyword closed by an END).
+         */
+        private int skip;
+
+        /**
+         * Bit set of the primitive instructions called.
+         */
+        private int primitives = 0;
+
+        /**
+         * Reports an error unless {@code word} equals {@code expected}.
+         *
+         * @param word
+         *            the word found
+         * @param expected
+         *            the word expected
+         */
+        private static void expect(String word, String expected) {
+            Reporter.assertElseFatalError(word.equals(expected),
+                    "Error: Keyword" + " \"" + expected + "\" "
+                            + "expected, found: " + "\"" + word + "\"");
+        }
+
+        /**
+         * Feeds the next word of the program to the scan.
+         *
+         * @param word
+         *            the next word
+         */
+        private void accept(String word) {
+            switch (this.state) {
+                case PROGRAM: {
+                    expect(word, "PROGRAM");
+                    this.state = State.NAME;
+                    break;
+                }
+                case NAME: {
+                    this.name = word;
+                    this.state = State.IS;
+                    break;
+                }
+                case IS: {
+                    expect(word, "IS");
+                    this.state = State.CONTEXT;
+                    break;
+                }
+                case CONTEXT: {
+                    if (word.equals("BEGIN")) {
+                        this.instruction = null;
+                        this.startBlock();
+                    } else {
+                        expect(word, "INSTRUCTION");
+                        this.state = State.INSTRUCTION_NAME;
+                    }
+                    break;
+                }
+                case INSTRUCTION_NAME: {
+                    Reporter.assertElseFatalError(primitiveBit(word) == 0,
+                            "Error: Instruction name must not be a primitive "
+                                    + "instruction");
+                    this.instruction = word;
+                    this.state = State.INSTRUCTION_IS;
+                    break;
+                }
+                case INSTRUCTION_IS: {
+                    expect(word, "IS");
+                    this.startBlock();
+                    break;
+                }
+                case BLOCK: {
+                    this.acceptInBlock(word);
+                    break;
+                }
+                case END_NAME: {
+                    if (this.instruction == null) {
+                        expect(word, this.name);
+                        this.bodySize = this.size;
+                        this.state = State.DONE;
+                    } else {
+                        expect(word, this.instruction);
+                        this.addInstruction();
+                        this.state = State.CONTEXT;
+                    }
+                    break;
+                }
+                default: {
+                    Reporter.fatalErrorToConsole(
+                            "Error: Unexpected word after end of program: \""
+                                    + word + "\"");
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Starts scanning a block.
+         */
+        private void startBlock() {
+            this.size = 0;
+            this.depth = 0;
+            this.skip = 0;
+            this.state = State.BLOCK;
+        }
+
+        /**
+         * Feeds the next word of a block to the scan.
+         *
+         * @param word
+         *            the next word
+         */
+        private void acceptInBlock(String word) {
+            if (this.skip > 0) {
+                this.skip--;
+            } else if (word.equals("IF") || word.equals("WHILE")) {
+                this.size++;
+                this.depth++;
+                this.skip = 2;
+            } else if (word.equals("END")) {
+                if (this.depth == 0) {
+                    this.state = State.END_NAME;
+                } else {
+                    this.depth--;
+                    this.skip = 1;
+                }
+            } else if (!word.equals("ELSE")) {
+                this.size++;
+                this.primitives |= primitiveBit(word);
+            }
+        }
+
+        /**
+         * Records the instruction just scanned.
+         */
+        private void addInstruction() {
+            if (this.count == this.instructions.length) {
+                String[] names = new String[2 * this.count];
+                int[] lengths = new int[2 * this.count];
+                System.arraycopy(this.instructions, 0, names, 0, this.count);
+                System.arraycopy(this.sizes, 0, lengths, 0, this.count);
+                this.instructions = names;
+                this.sizes = lengths;
+            }
+            this.instructions[this.count] = this.instruction;
+            this.sizes[this.count] = this.size;
+            this.count++;
+        }
+
+    }
+
+    /**
+     * Feeds each whitespace-separated word of {@code line} to {@code scan}
+     * until the scan is done.
+     *
+     * @param line
+     *            the line
+     * @param scan
+     *            the scan
+     */
+    private static void scanLine(String line, Scan scan) {
+        int length = line.length();
+        int i = 0;
+        while (i < length && scan.state != Scan.State.DONE) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                scan.accept(line.substring(start, i));
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from the fields of an index record.
+     *
+     * @param name
+     *            the program name
+     * @param instructions
+     *            the instruction names
+     * @param sizes
+     *            the instruction sizes
+     * @param bodySize
+     *            the size of the program body
+     * @param primitives
+     *            the bit set of primitive instructions called
+     */
+    private ProgramIndex(String name, String[] instructions, int[] sizes,
+            int bodySize, int primitives) {
+        this.name = name;
+        this.instructions = instructions;
+        this.sizes = sizes;
+        this.bodySize = bodySize;
+        this.primitives = primitives;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Scans the BL program read from {@code in} and returns its index record.
+     *
+     * @param in
+     *            the input stream
+     * @return the index record of the program
+     * @updates in.content
+     * @requires in.is_open
+     * @ensures <pre>
+     * if [in.content begins with a program whose header and END names are
+     *     well formed] then
+     *  scan = [index record of that program]  and
+     *  in.content = [the rest of #in.content after the program's last line]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public static ProgramIndex scan(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Scan scan = new Scan();
+        while (scan.state != Scan.State.DONE && !in.atEOS()) {
+            scanLine(in.nextLine(), scan);
+        }
+        Reporter.assertElseFatalError(scan.state == Scan.State.DONE,
+                "Error: Unexpected end of input while scanning program");
+        String[] instructions = new String[scan.count];
+        int[] sizes = new int[scan.count];
+        System.arraycopy(scan.instructions, 0, instructions, 0, scan.count);
+        System.arraycopy(scan.sizes, 0, sizes, 0, scan.count);
+        return new ProgramIndex(scan.name, instructions, sizes, scan.bodySize,
+                scan.primitives);
+    }
+
+    /**
+     * Returns the index record written as {@code line} by {@code writeTo}.
+     *
+     * @param line
+     *            the index line
+     * @return the index record
+     * @requires [line was written by writeTo]
+     * @ensures valueOf = [index record written as line]
+     */
+    public static ProgramIndex valueOf(String line) {
+        assert line != null : "Violation of: line is not null";
+        int nameEnd = line.indexOf(FIELD_SEPARATOR);
+        int primitivesEnd = line.indexOf(FIELD_SEPARATOR, nameEnd + 1);
+        int bodyEnd = line.indexOf(FIELD_SEPARATOR, primitivesEnd + 1);
+        String name = line.substring(0, nameEnd);
+        int primitives = Integer
+                .parseInt(line.substring(nameEnd + 1, primitivesEnd));
+        int bodySize = Integer
+                .parseInt(line.substring(primitivesEnd + 1, bodyEnd));
+        String rest = line.substring(bodyEnd + 1);
+        String[] fields = rest.isEmpty() ? new String[0] : rest.split(" ");
+        String[] instructions = new String[fields.length];
+        int[] sizes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            int colon = fields[i].lastIndexOf(SIZE_SEPARATOR);
+            instructions[i] = fields[i].substring(0, colon);
+            sizes[i] = Integer.parseInt(fields[i].substring(colon + 1));
+        }
+        return new ProgramIndex(name, instructions, sizes, bodySize,
+                primitives);
+    }
+
+    /**
+     * Reads the index file written by {@code writeTo} from {@code in} and
+     * returns its records keyed by program name.
+     *
+     * @param in
+     *            the input stream
+     * @return the index records keyed by program name
+     * @updates in.content
+     * @requires in.is_open and [in.content was written by writeTo]
+     * @ensures load = [records of #in.content keyed by program name] and
+     *          in.content = <>
+     */
+    public static Map<String, ProgramIndex> load(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        Map<String, ProgramIndex> index = new Map1L<>();
+        while (!in.atEOS()) {
+            String line = in.nextLine();
+            if (!line.isEmpty()) {
+                ProgramIndex record = valueOf(line);
+                if (!index.hasKey(record.name)) {
+                    index.add(record.name, record);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index record to {@code out} as one line.
+     *
+     * @param out
+     *            the output stream
+     * @updates out.content
+     * @requires out.is_open
+     * @ensures out.content = #out.content * [this written as one line]
+     */
+    public void writeTo(SimpleWriter out) {
+        assert out != null : "Violation of: out is not null";
+        assert out.isOpen() : "Violation of: out.is_open";
+        StringBuilder line = new StringBuilder(this.name);
+        line.append(FIELD_SEPARATOR).append(this.primitives)
+                .append(FIELD_SEPARATOR).append(this.bodySize)
+                .append(FIELD_SEPARATOR);
+        for (int i = 0; i < this.instructions.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(this.instructions[i]).append(SIZE_SEPARATOR)
+                    .append(this.sizes[i]);
+        }
+        out.println(line.toString());
+    }
+
+    /**
+     * Returns the program name.
+     *
+     * @return the program name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of instructions.
+     *
+     * @return the number of instructions
+     */
+    public int instructionCount() {
+        return this.instructions.length;
+    }
+
+    /**
+     * Returns the name of the {@code i}-th instruction.
+     *
+     * @param i
+     *            the position of the instruction
+     * @return the name of the instruction
+     * @requires 0 <= i < instructionCount()
+     */
+    public String instructionName(int i) {
+        assert 0 <= i && i < this.instructions.length : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.instructions[i];
+    }
+
+    /**
+     * Returns the number of statements in the {@code i}-th instruction.
+     *
+     * @param i
+     *            the position of the instruction
+     * @return the size of the instruction
+     * @requires 0 <= i < instructionCount()
+     */
+    public int instructionSize(int i) {
+        assert 0 <= i && i < this.instructions.length : ""
+                + "Violation of: 0 <= i < instructionCount()";
+        return this.sizes[i];
+    }
+
+    /**
+     * Returns the number of statements in the program body.
+     *
+     * @return the size of the program body
+     */
+    public int bodySize() {
+        return this.bodySize;
+    }
+
+    /**
+     * Reports whether the program calls the primitive instruction
+     * {@code primitive}.
+     *
+     * @param primitive
+     *            the name of a primitive instruction
+     * @return true iff the program calls {@code primitive}
+     */
+    public boolean callsPrimitive(String primitive) {
+        assert primitive != null : "Violation of: primitive is not null";
+        return (this.primitives & primitiveBit(primitive)) != 0;
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get file names
+         */
+        out.print("Enter index file name: ");
+        SimpleWriter index = new SimpleWriter1L(in.nextLine());
+        out.print("Enter BL program file names (blank line to finish): ");
+        String fileName = in.nextLine();
+        while (!fileName.isEmpty()) {
+            /*
+             * Scan input file
+             */
+            SimpleReader file = new SimpleReader1L(fileName);
+            ProgramIndex record = scan(file);
+            file.close();
+            record.writeTo(index);
+            out.println("*** Indexed " + record.name() + " ***");
+            fileName = in.nextLine();
+        }
+
+        index.close();
+        in.close();
+        out.close();
+    }
+
+}
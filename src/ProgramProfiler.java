@@ -0,0 +1,640 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+import components.utilities.Reporter;
+
+/**
+ * Runs a parsed BL program for a bug and counts how many times each statement
+ * node executes. The counters are kept in one flat array indexed by the node
+ * numbers the parse assigned in its {@code SourceMap}, so a hit costs a single
+ * array increment, and the report maps the hot spots back to instruction
+ * names and source lines. Counting a node of a BLOCK that is the body of an
+ * IF, IF_ELSE or WHILE counts the times that branch was taken.
+ *
+ * <p>
+ * The program runs as in BugsWorld: the body runs again and again, each call
+ * of a primitive instruction is one turn of the bug, and the run stops after
+ * the given number of turns. A run that makes {@code MAX_IDLE_STEPS}
+ * condition tests and passes of the body in a row without calling a
+ * primitive instruction, such as a run of an empty body, would otherwise
+ * never end, and a run whose instruction calls nest deeper than
+ * {@code MAX_CALL_DEPTH}, through recursion, would overflow the stack; both
+ * are reported as errors. Bodies the source map does not cover (the
+ * instruction bodies of a lazy parse) are counted under numbers past
+ * {@code sourceMap.size()} and reported without a source line.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramProfiler {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of hot spots reported.
+     */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * Width of the count column of the report.
+     */
+    private static final int COUNT_WIDTH = 12;
+
+    /**
+     * The program, flattened.
+     */
+    private final FrozenProgram program;
+
+    /**
+     * The source map of the parse of the program.
+     */
+    private final SourceMap sourceMap;
+
+    /**
+     * Node number assigned by the parse to each node of {@code program}.
+     */
+    private final int[] ids;
+
+    /**
+     * Hit count of each node, by the number assigned by the parse.
+     */
+    private final long[] counts;
+
+    /**
+     * The bug of the current run.
+     */
+    private Bug bug;
+
+    /**
+     * Number of turns left in the current run.
+     */
+    private long turnsLeft;
+
+    /**
+     * Number of condition tests and passes of the body since the last turn.
+     */
+    private int idle;
+
+    /**
+     * Number of instruction calls in progress.
+     */
+    private int callDepth;
+
+    /**
+     * Reports an error if the run has made {@code MAX_IDLE_STEPS} condition
+     * tests and passes of the body since the last turn, counting one more.
+     */
+    private void step() {
+        this.idle++;
+        if (this.idle > MAX_IDLE_STEPS) {
+            reportIdle();
+        }
+    }
+
+    /**
+     * Tests the condition of IF, IF_ELSE or WHILE node {@code node} for the
+     * bug, as one step of the run.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @return true iff the condition holds
+     */
+    private boolean test(int node) {
+        this.step();
+        return this.bug.test(this.program.condition(node));
+    }
+
+    /**
+     * Numbers the nodes of the statement rooted at {@code node} in preorder,
+     * as the parse does, starting with {@code id}, and returns the number
+     * after the last one used.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @param id
+     *            the number of the root
+     * @return the next free number
+     */
+    private int number(int node, int id) {
+        this.ids[node] = id;
+        int next = id + 1;
+        int n = this.program.childCount(node);
+        for (int i = 0; i < n; i++) {
+            next = this.number(this.program.child(node, i), next);
+        }
+        return next;
+    }
+
+    /**
+     * Executes the statement rooted at {@code node} and reports whether the
+     * run goes on.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @return false iff the run ran out of turns
+     */
+    private boolean execute(int node) {
+        this.counts[this.ids[node]]++;
+        boolean more = true;
+        switch (this.program.kind(node)) {
+            case BLOCK: {
+                int n = this.program.childCount(node);
+                for (int i = 0; more && i < n; i++) {
+                    more = this.execute(this.program.child(node, i));
+                }
+                break;
+            }
+            case IF: {
+                if (this.test(node)) {
+                    more = this.execute(this.program.child(node, 0));
+                }
+                break;
+            }
+            case IF_ELSE: {
+                if (this.test(node)) {
+                    more = this.execute(this.program.child(node, 0));
+                } else {
+                    more = this.execute(this.program.child(node, 1));
+                }
+                break;
+            }
+            case WHILE: {
+                while (more && this.test(node)) {
+                    more = this.execute(this.program.child(node, 0));
+                }
+                break;
+            }
+            default: {
+                int id = this.program.callId(node);
+                if (SymbolTable.isPrimitive(id)) {
+                    this.bug.act(id);
+                    this.idle = 0;
+                    this.turnsLeft--;
+                    more = this.turnsLeft > 0;
+                } else {
+                    int root = this.program.instruction(id);
+                    if (root < 0) {
+                        Reporter.fatalErrorToConsole("Error: Instruction \""
+                                + this.program.symbol(id) + "\" "
+                                + "is not defined");
+                    }
+                    this.callDepth++;
+                    if (this.callDepth > MAX_CALL_DEPTH) {
+                        reportDeepCalls();
+                    }
+                    more = this.execute(root);
+                    this.callDepth--;
+                }
+                break;
+            }
+        }
+        return more;
+    }
+
+    /**
+     * Records in {@code labels} a description of each node of the statement
+     * rooted at {@code node}, by the number assigned by the parse.
+     *
+     * @param node
+     *            the node of {@code program}
+     * @param owner
+     *            the instruction name, or "BEGIN" for the program body
+     * @param role
+     *            what the node is to its parent, or "" if nothing to note
+     * @param labels
+     *            the descriptions
+     * @updates labels
+     */
+    private void label(int node, String owner, String role, String[] labels) {
+        Kind kind = this.program.kind(node);
+        StringBuilder label = new StringBuilder(owner).append(": ");
+        switch (kind) {
+            case BLOCK:
+                label.append(role.isEmpty() ? "BLOCK" : role);
+                break;
+            case CALL:
+                label.append(this.program.call(node));
+                break;
+            default:
+                label.append(kind == Kind.WHILE ? "WHILE " : "IF ").append(
+                        this.program.condition(node).name().toLowerCase()
+                                .replace('_', '-'));
+                break;
+        }
+        labels[this.ids[node]] = label.toString();
+        int n = this.program.childCount(node);
+        for (int i = 0; i < n; i++) {
+            String childRole = "";
+            if (kind == Kind.WHILE) {
+                childRole = "WHILE body";
+            } else if (kind != Kind.BLOCK) {
+                childRole = i == 0 ? "THEN branch" : "ELSE branch";
+            }
+            this.label(this.program.child(node, i), owner, childRole, labels);
+        }
+    }
+
+    /**
+     * Returns the source position of node number {@code id}, as
+     * "line:column", or "?" if the source map does not cover it.
+     *
+     * @param id
+     *            the node number
+     * @return the source position
+     */
+    private String where(int id) {
+        String where = "?";
+        if (id < this.sourceMap.size()) {
+            where = this.sourceMap.startLine(id) + ":"
+                    + this.sourceMap.startColumn(id);
+        }
+        return where;
+    }
+
+    /**
+     * Returns the number assigned by the parse to the root of the body of
+     * instruction {@code i}, in the order of the context.
+     *
+     * @param i
+     *            the position of the instruction in the context
+     * @return the node number of the body
+     */
+    private int instructionId(int i) {
+        return this.ids[this.program
+                .instruction(this.program.instructionName(i))];
+    }
+
+    /**
+     * Prints {@code count} right-aligned in the count column, then
+     * {@code text}, on one line.
+     *
+     * @param out
+     *            the output stream
+     * @param count
+     *            the count
+     * @param text
+     *            the text
+     * @updates out.content
+     */
+    private static void printRow(SimpleWriter out, long count, String text) {
+        String number = Long.toString(count);
+        for (int i = number.length(); i < COUNT_WIDTH; i++) {
+            out.print(' ');
+        }
+        out.println(number + "  " + text);
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Number of condition tests and passes of the body a run may make in a
+     * row without calling a primitive instruction. Without recursion, a run
+     * that never calls one again keeps testing a WHILE condition or running
+     * the body, so it reaches this bound.
+     */
+    static final int MAX_IDLE_STEPS = 1 << 20;
+
+    /**
+     * Number of instruction calls a run may have in progress at once. Only a
+     * recursive instruction can nest calls deeper than the context has
+     * instructions.
+     */
+    static final int MAX_CALL_DEPTH = 1 << 8;
+
+    /**
+     * Reports that a run has more than {@code MAX_CALL_DEPTH} instruction
+     * calls in progress.
+     */
+    static void reportDeepCalls() {
+        Reporter.fatalErrorToConsole(
+                "Error: Instruction calls are nested deeper than the limit of "
+                        + MAX_CALL_DEPTH);
+    }
+
+    /**
+     * Reports that a run has made {@code MAX_IDLE_STEPS} condition tests and
+     * passes of the body without calling a primitive instruction.
+     */
+    static void reportIdle() {
+        Reporter.fatalErrorToConsole(
+                "Error: No primitive instruction called in " + MAX_IDLE_STEPS
+                        + " steps");
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * The bug a program runs for: it answers the conditions tested and
+     * performs the primitive instructions called.
+     */
+    public interface Bug {
+
+        /**
+         * Reports whether condition {@code c} holds for the bug now.
+         *
+         * @param c
+         *            the condition
+         * @return true iff {@code c} holds
+         */
+        boolean test(Condition c);
+
+        /**
+         * Performs the primitive instruction {@code primitive}, which ends the
+         * turn of the bug.
+         *
+         * @param primitive
+         *            the symbol id of the primitive instruction, from
+         *            {@code SymbolTable.MOVE} to {@code SymbolTable.SKIP}
+         */
+        void act(int primitive);
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a profiler of {@code p}, whose parse recorded
+     * {@code sourceMap}. Neither is changed by the profiler, and {@code p}
+     * may be changed afterwards without affecting it.
+     *
+     * @param p
+     *            the program
+     * @param sourceMap
+     *            the source map of the parse of {@code p}
+     * @requires [sourceMap was recorded by the parse that built p]
+     */
+    public ProgramProfiler(Program p, SourceMap sourceMap) {
+        assert p != null : "Violation of: p is not null";
+        assert sourceMap != null : "Violation of: sourceMap is not null";
+        this.program = FrozenProgram.freeze(p);
+        this.sourceMap = sourceMap;
+        this.ids = new int[this.program.size()];
+        int instructionCount = this.program.instructionCount();
+        int next = sourceMap.size();
+        for (int i = 0; i < instructionCount; i++) {
+            String name = this.program.instructionName(i);
+            int root = this.program.instruction(name);
+            if (sourceMap.hasInstruction(name)) {
+                this.number(root, sourceMap.instructionNode(name));
+            } else {
+                next = this.number(root, next);
+            }
+        }
+        if (sourceMap.bodyNode() >= 0) {
+            this.number(this.program.body(), sourceMap.bodyNode());
+        } else {
+            next = this.number(this.program.body(), next);
+        }
+        this.counts = new long[next];
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Runs the program for {@code bug} for {@code turns} turns, adding the
+     * hits to the counts.
+     *
+     * @param bug
+     *            the bug
+     * @param turns
+     *            the number of turns
+     * @requires turns > 0
+     * @ensures <pre>
+     * if [the run makes MAX_IDLE_STEPS condition tests and passes of the body
+     *     in a row without calling a primitive instruction]  or
+     *    [the run nests instruction calls deeper than MAX_CALL_DEPTH] then
+     *  [report an appropriate error message to the console and terminate client]
+     * else
+     *  [bug has performed the first turns primitive instructions of the
+     *   program, and the counts include the nodes executed]
+     * </pre>
+     */
+    public void run(Bug bug, long turns) {
+        assert bug != null : "Violation of: bug is not null";
+        assert turns > 0 : "Violation of: turns > 0";
+        this.bug = bug;
+        this.turnsLeft = turns;
+        this.idle = 0;
+        this.callDepth = 0;
+        int body = this.program.body();
+        try {
+            do {
+                this.step();
+            } while (this.execute(body));
+        } finally {
+            this.bug = null;
+        }
+    }
+
+    /**
+     * Returns the number of counters: the nodes of the program.
+     *
+     * @return the number of counters
+     */
+    public int size() {
+        return this.counts.length;
+    }
+
+    /**
+     * Returns the number of times node number {@code id}, as assigned by the
+     * parse, has executed.
+     *
+     * @param id
+     *            the node number
+     * @return the hit count
+     * @requires 0 <= id < size()
+     */
+    public long count(int id) {
+        assert 0 <= id && id < this.counts.length : ""
+                + "Violation of: 0 <= id < size()";
+        return this.counts[id];
+    }
+
+    /**
+     * Sets all counts to 0.
+     */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+    }
+
+    /**
+     * Prints the profile to {@code out}: the number of times each instruction
+     * was called, most called first, then the {@code limit} nodes with the
+     * most hits, with their source positions.
+     *
+     * @param out
+     *            the output stream
+     * @param limit
+     *            the number of hot spots
+     * @updates out.content
+     * @requires out.is_open  and  limit >= 0
+     */
+    public void report(SimpleWriter out, int limit) {
+        assert out != null : "Violation of: out is not null";
+        assert out.isOpen() : "Violation of: out.is_open";
+        assert limit >= 0 : "Violation of: limit >= 0";
+        String[] labels = new String[this.counts.length];
+        int instructionCount = this.program.instructionCount();
+        Integer[] instructions = new Integer[instructionCount];
+        for (int i = 0; i < instructionCount; i++) {
+            String name = this.program.instructionName(i);
+            this.label(this.program.instruction(name), name, "", labels);
+            instructions[i] = i;
+        }
+        this.label(this.program.body(), "BEGIN", "", labels);
+        Integer[] nodes = new Integer[this.counts.length];
+        for (int id = 0; id < nodes.length; id++) {
+            nodes[id] = id;
+        }
+        Arrays.sort(instructions, (a, b) -> Long.compare(
+                this.counts[this.instructionId(b)],
+                this.counts[this.instructionId(a)]));
+        Arrays.sort(nodes,
+                (a, b) -> Long.compare(this.counts[b], this.counts[a]));
+
+        out.println("*** Profile of " + this.program.name() + " ***");
+        out.println("Instruction calls:");
+        for (int i : instructions) {
+            int id = this.instructionId(i);
+            printRow(out, this.counts[id], this.program.instructionName(i)
+                    + " (" + this.where(id) + ")");
+        }
+        out.println("Hot spots:");
+        for (int i = 0; i < Math.min(limit, nodes.length); i++) {
+            int id = nodes[i];
+            printRow(out, this.counts[id],
+                    this.where(id) + "  " + labels[id]);
+        }
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Bug that sees a random neighbor every turn.
+     */
+    private static final class RandomBug implements Bug {
+
+        /**
+         * The random numbers.
+         */
+        private final Random random;
+
+        /**
+         * What is next to the bug: 0 empty, 1 wall, 2 friend, 3 enemy.
+         */
+        private int next;
+
+        /**
+         * Constructor.
+         *
+         * @param seed
+         *            the seed of the random numbers
+         */
+        RandomBug(long seed) {
+            this.random = new Random(seed);
+            this.next = this.random.nextInt(4);
+        }
+
+        @Override
+        public boolean test(Condition c) {
+            boolean holds;
+            switch (c) {
+                case NEXT_IS_EMPTY:
+                    holds = this.next == 0;
+                    break;
+                case NEXT_IS_NOT_EMPTY:
+                    holds = this.next != 0;
+                    break;
+                case NEXT_IS_WALL:
+                    holds = this.next == 1;
+                    break;
+                case NEXT_IS_NOT_WALL:
+                    holds = this.next != 1;
+                    break;
+                case NEXT_IS_FRIEND:
+                    holds = this.next == 2;
+                    break;
+                case NEXT_IS_NOT_FRIEND:
+                    holds = this.next != 2;
+                    break;
+                case NEXT_IS_ENEMY:
+                    holds = this.next == 3;
+                    break;
+                case NEXT_IS_NOT_ENEMY:
+                    holds = this.next != 3;
+                    break;
+                case RANDOM:
+                    holds = this.random.nextBoolean();
+                    break;
+                default:
+                    holds = true;
+                    break;
+            }
+            return holds;
+        }
+
+        @Override
+        public void act(int primitive) {
+            this.next = this.random.nextInt(4);
+        }
+
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name and number of turns
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter the number of turns to run: ");
+        long turns = Long.parseLong(in.nextLine().trim());
+        /*
+         * Parse input file with its source map
+         */
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap sourceMap = new SourceMap();
+        p.parse(tokens, positions, sourceMap);
+        /*
+         * Run it for a bug with random surroundings and report the profile
+         */
+        ProgramProfiler profiler = new ProgramProfiler(p, sourceMap);
+        profiler.run(new RandomBug(0), turns);
+        profiler.report(out, DEFAULT_LIMIT);
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,400 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+import components.map.Map;
+import components.program.Program;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.statement.Statement;
+import components.utilities.Reporter;
+import components.utilities.Tokenizer;
+
+/**
+ * Resumable parser for a BL program that arrives in chunks. Bytes (UTF-8) or
+ * characters are pushed with {@code feed} as they arrive, and a token may span
+ * any number of chunks. Each instruction is parsed as soon as its
+ * {@code END name} arrives, so parsing overlaps with the transfer, and the
+ * first syntax error is reported by the {@code feed} call that completes the
+ * offending instruction (or the header token that is wrong). {@code finish}
+ * parses the program body and delivers the finished program.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramPushParser {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Parser states.
+     */
+    private enum State {
+        PROGRAM, NAME, IS, CONTEXT, HEADER, BLOCK, END_NAME, DONE
+    }
+
+    /**
+     * Size of the buffer of decoded characters.
+     */
+    private static final int CHAR_BUFFER_SIZE = 4096;
+
+    /**
+     * Maximum number of bytes of an incomplete UTF-8 character.
+     */
+    private static final int MAX_PARTIAL_BYTES = 3;
+
+    /**
+     * Number of tokens of an instruction header after "INSTRUCTION".
+     */
+    private static final int HEADER_LENGTH = 2;
+
+    /**
+     * The program that receives the result.
+     */
+    private final Program program;
+
+    /**
+     * The context parsed so far.
+     */
+    private final Map<String, Statement> context;
+
+    /**
+     * Decoder for byte chunks.
+     */
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8
+            .newDecoder();
+
+    /**
+     * Bytes of a character split across byte chunks.
+     */
+    private final ByteBuffer partialBytes = ByteBuffer
+            .allocate(MAX_PARTIAL_BYTES);
+
+    /**
+     * Buffer of decoded characters.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    /**
+     * Characters of a token split across chunks.
+     */
+    private final StringBuilder word = new StringBuilder();
+
+    /**
+     * Tokens of the instruction or body being collected.
+     */
+    private final Queue<String> unit = new Queue1L<>();
+
+    /**
+     * Current state.
+     */
+    private State state = State.PROGRAM;
+
+    /**
+     * Program name.
+     */
+    private String name;
+
+    /**
+     * Whether the unit being collected is the program body.
+     */
+    private boolean inBody = false;
+
+    /**
+     * Number of header tokens still expected.
+     */
+    private int headerLeft;
+
+    /**
+     * Nesting depth of IF and WHILE statements in the block being collected.
+     */
+    private int depth;
+
+    /**
+     * Whether the previous token was an END closing an IF or WHILE.
+     */
+    private boolean afterEnd;
+
+    /**
+     * Reports an error unless {@code token} equals {@code expected}.
+     *
+     * @param token
+     *            the token found
+     * @param expected
+     *            the token expected
+     */
+    private static void expect(String token, String expected) {
+        Reporter.assertElseFatalError(token.equals(expected),
+                "Error: Keyword" + " \"" + expected + "\" "
+                        + "expected, found: " + "\"" + token + "\"");
+    }
+
+    /**
+     * Feeds the next token of the program to the parser.
+     *
+     * @param token
+     *            the next token
+     */
+    private void accept(String token) {
+        switch (this.state) {
+            case PROGRAM: {
+                expect(token, "PROGRAM");
+                this.state = State.NAME;
+                break;
+            }
+            case NAME: {
+                this.name = token;
+                this.state = State.IS;
+                break;
+            }
+            case IS: {
+                expect(token, "IS");
+                this.state = State.CONTEXT;
+                break;
+            }
+            case CONTEXT: {
+                if (token.equals("BEGIN")) {
+                    this.inBody = true;
+                    this.startBlock();
+                } else {
+                    expect(token, "INSTRUCTION");
+                    this.unit.enqueue(token);
+                    this.headerLeft = HEADER_LENGTH;
+                    this.state = State.HEADER;
+                }
+                break;
+            }
+            case HEADER: {
+                this.unit.enqueue(token);
+                this.headerLeft--;
+                if (this.headerLeft == 0) {
+                    this.startBlock();
+                }
+                break;
+            }
+            case BLOCK: {
+                this.unit.enqueue(token);
+                if (this.afterEnd) {
+                    this.afterEnd = false;
+                } else if (token.equals("IF") || token.equals("WHILE")) {
+                    this.depth++;
+                } else if (token.equals("END")) {
+                    if (this.depth == 0) {
+                        this.state = State.END_NAME;
+                    } else {
+                        this.depth--;
+                        this.afterEnd = true;
+                    }
+                }
+                break;
+            }
+            case END_NAME: {
+                this.unit.enqueue(token);
+                this.unit.enqueue(Tokenizer.END_OF_INPUT);
+                if (this.inBody) {
+                    this.parseBody();
+                    this.state = State.DONE;
+                } else {
+                    this.parseUnitInstruction();
+                    this.state = State.CONTEXT;
+                }
+                this.unit.clear();
+                break;
+            }
+            default: {
+                expect(token, Tokenizer.END_OF_INPUT);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Starts collecting the tokens of a block.
+     */
+    private void startBlock() {
+        this.depth = 0;
+        this.afterEnd = false;
+        this.state = State.BLOCK;
+    }
+
+    /**
+     * Parses the collected instruction and adds it to the context.
+     */
+    private void parseUnitInstruction() {
+        Statement body = this.program.newBody();
+        String instructionName = Program1Parse1.parseInstruction(this.unit,
+                body, null);
+        expect(this.unit.front(), Tokenizer.END_OF_INPUT);
+        Reporter.assertElseFatalError(!this.context.hasKey(instructionName),
+                "Error: There must be no repeat instruction names");
+        this.context.add(instructionName, body);
+    }
+
+    /**
+     * Parses the collected program body and stores the result in
+     * {@code program}.
+     */
+    private void parseBody() {
+        Statement body = this.program.newBody();
+        body.parseBlock(this.unit);
+        expect(this.unit.dequeue(), "END");
+        expect(this.unit.dequeue(), this.name);
+        this.program.swapContext(this.context);
+        this.program.swapBody(body);
+        this.program.setName(this.name);
+    }
+
+    /**
+     * Ends the token under construction, if any.
+     */
+    private void endWord() {
+        if (this.word.length() > 0) {
+            String token = this.word.toString();
+            this.word.setLength(0);
+            this.accept(token);
+        }
+    }
+
+    /**
+     * Decodes the bytes remaining in {@code in} and feeds the characters to
+     * the parser, keeping the bytes of an incomplete character.
+     *
+     * @param in
+     *            the bytes to decode
+     * @param endOfInput
+     *            whether no more bytes will follow
+     */
+    private void decode(ByteBuffer in, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = this.decoder.decode(in, this.chars, endOfInput);
+            this.chars.flip();
+            this.feed(this.chars);
+            this.chars.clear();
+        } while (result.isOverflow());
+        Reporter.assertElseFatalError(!result.isError(),
+                "Error: Input is not valid UTF-8");
+        this.partialBytes.put(in);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor.
+     *
+     * @param program
+     *            the program that receives the result of the parse
+     */
+    public ProgramPushParser(Program program) {
+        assert program != null : "Violation of: program is not null";
+        this.program = program;
+        this.context = program.newContext();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Feeds the next chunk of characters of the program to the parser.
+     *
+     * @param chunk
+     *            the next chunk
+     * @requires [finish has not been called]
+     * @ensures <pre>
+     * if [the characters fed so far are a prefix of a BL program string up
+     *     to and including every complete instruction in them] then
+     *  [the complete instructions are parsed]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void feed(CharSequence chunk) {
+        assert chunk != null : "Violation of: chunk is not null";
+        int length = chunk.length();
+        for (int i = 0; i < length; i++) {
+            char c = chunk.charAt(i);
+            if (Character.isWhitespace(c)) {
+                this.endWord();
+            } else {
+                this.word.append(c);
+            }
+        }
+    }
+
+    /**
+     * Feeds the next chunk of UTF-8 bytes of the program to the parser. A
+     * character may be split across chunks.
+     *
+     * @param bytes
+     *            the array holding the chunk
+     * @param offset
+     *            the position of the chunk in {@code bytes}
+     * @param length
+     *            the length of the chunk
+     * @requires <pre>
+     * 0 <= offset  and  0 <= length  and  offset + length <= |bytes|  and
+     *  [finish has not been called]
+     * </pre>
+     * @ensures <pre>
+     * if [the characters fed so far are a prefix of a BL program string up
+     *     to and including every complete instruction in them] then
+     *  [the complete instructions are parsed]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert 0 <= offset && 0 <= length
+                && offset + length <= bytes.length : ""
+                        + "Violation of: [chunk is within bytes]";
+        ByteBuffer in;
+        if (this.partialBytes.position() > 0) {
+            this.partialBytes.flip();
+            in = ByteBuffer.allocate(this.partialBytes.remaining() + length);
+            in.put(this.partialBytes).put(bytes, offset, length).flip();
+            this.partialBytes.clear();
+        } else {
+            in = ByteBuffer.wrap(bytes, offset, length);
+        }
+        this.decode(in, false);
+    }
+
+    /**
+     * Ends the input and returns the parsed program.
+     *
+     * @return the program given to the constructor, holding the parse result
+     * @ensures <pre>
+     * if [the characters fed are a BL program string] then
+     *  finish = [Program corresponding to the characters fed]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public Program finish() {
+        this.partialBytes.flip();
+        ByteBuffer rest = ByteBuffer.allocate(this.partialBytes.remaining());
+        rest.put(this.partialBytes).flip();
+        this.partialBytes.clear();
+        this.decode(rest, true);
+        CoderResult result;
+        do {
+            result = this.decoder.flush(this.chars);
+            this.chars.flip();
+            this.feed(this.chars);
+            this.chars.clear();
+        } while (result.isOverflow());
+        this.endWord();
+        Reporter.assertElseFatalError(this.state == State.DONE,
+                "Error: Unexpected end of input before end of program");
+        return this.program;
+    }
+
+}
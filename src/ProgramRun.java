@@ -0,0 +1,372 @@
+import java.util.Arrays;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+import components.utilities.Reporter;
+
+/**
+ * Run of a parsed BL program for one bug that can be stopped after any turn
+ * and continued later, in this process or, through a {@code RunCheckpoint},
+ * in another one. The program is executed as by {@code ProgramProfiler}, but
+ * with an explicit stack of the statement nodes being executed instead of
+ * the Java stack, so the position of the run is a few integers that can be
+ * saved and restored exactly.
+ *
+ * <p>
+ * Each frame of the stack is a node of the snapshot and, for a BLOCK, the
+ * position of the next statement to execute in it, or for a CALL, 1 once the
+ * body of its instruction is pushed. An IF or IF_ELSE frame is replaced by
+ * the branch taken, so frames are only kept for BLOCK, WHILE and CALL nodes,
+ * which have more to do once the statement pushed after them is done.
+ *
+ * <p>
+ * As in {@code ProgramProfiler}, a run that stops calling primitive
+ * instructions is reported after {@code ProgramProfiler.MAX_IDLE_STEPS}
+ * condition tests and passes of the body, and a run whose instruction calls
+ * nest deeper than {@code ProgramProfiler.MAX_CALL_DEPTH} is reported too,
+ * so recursion cannot grow the stack, or the checkpoints that record it,
+ * without bound.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramRun {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the stack.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The program.
+     */
+    private final FrozenProgram program;
+
+    /**
+     * Node of each frame of the stack, from the bottom.
+     */
+    private int[] nodes;
+
+    /**
+     * Position in its block of the next statement of each BLOCK frame, or 0.
+     */
+    private int[] next;
+
+    /**
+     * Number of frames.
+     */
+    private int depth;
+
+    /**
+     * Number of turns performed since the start of the run.
+     */
+    private long turns;
+
+    /**
+     * Number of CALL frames whose instruction body has been pushed.
+     */
+    private int callDepth;
+
+    /**
+     * Returns {@code idle} condition tests and passes of the body since the
+     * last turn, counting one more, and reports an error if that makes more
+     * than {@code ProgramProfiler.MAX_IDLE_STEPS}.
+     *
+     * @param idle
+     *            the number of steps since the last turn
+     * @return idle + 1
+     */
+    private static int step(int idle) {
+        if (idle >= ProgramProfiler.MAX_IDLE_STEPS) {
+            ProgramProfiler.reportIdle();
+        }
+        return idle + 1;
+    }
+
+    /**
+     * Pushes a frame for node {@code node}.
+     *
+     * @param node
+     *            the node
+     */
+    private void push(int node) {
+        if (this.depth == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, 2 * this.depth);
+            this.next = Arrays.copyOf(this.next, 2 * this.depth);
+        }
+        this.nodes[this.depth] = node;
+        this.next[this.depth] = 0;
+        this.depth++;
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Constructor for a run of {@code program} resumed after {@code turns}
+     * turns, with the first {@code depth} entries of {@code nodes} and
+     * {@code next} as its stack.
+     *
+     * @param program
+     *            the program
+     * @param turns
+     *            the number of turns already performed
+     * @param nodes
+     *            the node of each frame
+     * @param next
+     *            the position of the next statement of each frame
+     * @param depth
+     *            the number of frames
+     * @requires [the stack was recorded by a run of program]
+     */
+    ProgramRun(FrozenProgram program, long turns, int[] nodes, int[] next,
+            int depth) {
+        this.program = program;
+        this.turns = turns;
+        int capacity = Math.max(INITIAL_CAPACITY, depth);
+        this.nodes = Arrays.copyOf(nodes, capacity);
+        this.next = Arrays.copyOf(next, capacity);
+        this.depth = depth;
+        this.callDepth = 0;
+        for (int i = 0; i < depth; i++) {
+            if (program.kind(nodes[i]) == Kind.CALL && next[i] == 1) {
+                this.callDepth++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames of the stack.
+     *
+     * @return the depth of the stack
+     */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the node of frame {@code i}, counted from the bottom.
+     *
+     * @param i
+     *            the frame
+     * @return the node
+     * @requires 0 <= i < depth()
+     */
+    int node(int i) {
+        return this.nodes[i];
+    }
+
+    /**
+     * Returns the position of the next statement of frame {@code i}, counted
+     * from the bottom.
+     *
+     * @param i
+     *            the frame
+     * @return the position of the next statement
+     * @requires 0 <= i < depth()
+     */
+    int next(int i) {
+        return this.next[i];
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a run of {@code program} that has not started.
+     *
+     * @param program
+     *            the program
+     */
+    public ProgramRun(FrozenProgram program) {
+        this(program, 0, new int[0], new int[0], 0);
+        assert program != null : "Violation of: program is not null";
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the program.
+     *
+     * @return the program
+     */
+    public FrozenProgram program() {
+        return this.program;
+    }
+
+    /**
+     * Returns the number of turns performed since the start of the run.
+     *
+     * @return the number of turns
+     */
+    public long turns() {
+        return this.turns;
+    }
+
+    /**
+     * Continues the run for {@code bug} for {@code turns} more turns. The
+     * turns are those {@code ProgramProfiler.run} would perform in one call
+     * for the total number of turns.
+     *
+     * @param bug
+     *            the bug
+     * @param turns
+     *            the number of turns
+     * @requires turns > 0
+     * @ensures <pre>
+     * if [the run makes ProgramProfiler.MAX_IDLE_STEPS condition tests and
+     *     passes of the body in a row without calling a primitive
+     *     instruction]  or
+     *    [the run nests instruction calls deeper than
+     *     ProgramProfiler.MAX_CALL_DEPTH] then
+     *  [report an appropriate error message to the console and terminate client]
+     * else
+     *  [bug has performed the next turns primitive instructions of the
+     *   program]  and  this.turns = #this.turns + turns
+     * </pre>
+     */
+    public void run(ProgramProfiler.Bug bug, long turns) {
+        assert bug != null : "Violation of: bug is not null";
+        assert turns > 0 : "Violation of: turns > 0";
+        FrozenProgram p = this.program;
+        long end = this.turns + turns;
+        int idle = 0;
+        while (this.turns < end) {
+            if (this.depth == 0) {
+                idle = step(idle);
+                this.push(p.body());
+            }
+            int top = this.depth - 1;
+            int node = this.nodes[top];
+            switch (p.kind(node)) {
+                case BLOCK: {
+                    int i = this.next[top];
+                    if (i < p.childCount(node)) {
+                        this.next[top] = i + 1;
+                        this.push(p.child(node, i));
+                    } else {
+                        this.depth--;
+                    }
+                    break;
+                }
+                case IF: {
+                    this.depth--;
+                    idle = step(idle);
+                    if (bug.test(p.condition(node))) {
+                        this.push(p.child(node, 0));
+                    }
+                    break;
+                }
+                case IF_ELSE: {
+                    this.depth--;
+                    idle = step(idle);
+                    if (bug.test(p.condition(node))) {
+                        this.push(p.child(node, 0));
+                    } else {
+                        this.push(p.child(node, 1));
+                    }
+                    break;
+                }
+                case WHILE: {
+                    idle = step(idle);
+                    if (bug.test(p.condition(node))) {
+                        this.push(p.child(node, 0));
+                    } else {
+                        this.depth--;
+                    }
+                    break;
+                }
+                default: {
+                    int id = p.callId(node);
+                    if (SymbolTable.isPrimitive(id)) {
+                        this.depth--;
+                        bug.act(id);
+                        idle = 0;
+                        this.turns++;
+                    } else if (this.next[top] == 1) {
+                        // the body of the instruction is done
+                        this.depth--;
+                        this.callDepth--;
+                    } else {
+                        int root = p.instruction(id);
+                        if (root < 0) {
+                            Reporter.fatalErrorToConsole("Error: Instruction"
+                                    + " \"" + p.symbol(id) + "\" "
+                                    + "is not defined");
+                        }
+                        this.callDepth++;
+                        if (this.callDepth > ProgramProfiler.MAX_CALL_DEPTH) {
+                            ProgramProfiler.reportDeepCalls();
+                        }
+                        this.next[top] = 1;
+                        this.push(root);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name and number of turns
+         */
+        out.print("Enter BL file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter the number of turns to run: ");
+        long turns = Long.parseLong(in.nextLine().trim());
+        /*
+         * Parse input file and run it one turn at a time
+         */
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        ProgramRun run = new ProgramRun(FrozenProgram.freeze(p));
+        ProgramProfiler.Bug bug = new ProgramProfiler.Bug() {
+            @Override
+            public boolean test(Condition c) {
+                return c != Condition.NEXT_IS_EMPTY;
+            }
+
+            @Override
+            public void act(int primitive) {
+                // the surroundings never change
+            }
+        };
+        for (long turn = 1; turn <= turns; turn++) {
+            run.run(bug, 1);
+            out.println("Turn " + run.turns() + ": stack depth "
+                    + run.depth());
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,999 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+import components.utilities.Reporter;
+
+/**
+ * Store of many parsed BL programs kept off the Java heap, in direct or
+ * memory-mapped byte buffers. Each program added is written as one record of
+ * fixed-size nodes in preorder, with its own table of names, so the heap holds
+ * nothing per program but one {@code long} offset. A file-backed store is
+ * memory-mapped and can be reopened later without parsing anything. Programs
+ * are read through a {@code Cursor}, a flyweight that walks the nodes of a
+ * record in place and allocates nothing except for the names it returns.
+ *
+ * <p>
+ * The store is split into segments, none of which a record crosses. A
+ * segment of a file-backed store is mapped only as far as its records reach,
+ * and the mapping grows, by doubling, as records are added, so a small store
+ * is a small file. Adding
+ * programs is not safe while other threads read the store; once it is loaded,
+ * any number of threads may read it, each with its own cursor.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramStore {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Magic number at the start of a store file.
+     */
+    private static final int MAGIC = 0x424c5053;
+
+    /**
+     * Version of the store format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the store header.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Position in the header of the segment size.
+     */
+    private static final int HEADER_SEGMENT_SIZE = 8;
+
+    /**
+     * Position in the header of the end offset of the records.
+     */
+    private static final int HEADER_END = 16;
+
+    /**
+     * Default segment size of a file-backed store.
+     */
+    private static final int FILE_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Smallest mapping of a segment of a file-backed store.
+     */
+    private static final int MIN_MAPPING = 1 << 16;
+
+    /**
+     * Default segment size of an in-memory store.
+     */
+    private static final int MEMORY_SEGMENT_SIZE = 1 << 26;
+
+    /**
+     * Size of the fixed part of a record.
+     */
+    private static final int RECORD_HEADER_SIZE = 28;
+
+    /**
+     * Largest number of UTF-8 bytes of a name, whose length is stored in an
+     * unsigned 16-bit number.
+     */
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    /**
+     * Positions in a record of its fields.
+     */
+    private static final int LENGTH = 0, NODE_COUNT = 4, BODY = 8,
+            INSTRUCTION_COUNT = 12, SYMBOL_COUNT = 16, NAME = 20,
+            NODES = 24;
+
+    /**
+     * Size of a node.
+     */
+    private static final int NODE_SIZE = 12;
+
+    /**
+     * Positions in a node of its fields: kind and condition (1 byte each),
+     * number of children or call target, and number of nodes in the subtree.
+     */
+    private static final int NODE_KIND = 0, NODE_CONDITION = 1,
+            NODE_VALUE = 4, NODE_SUBTREE = 8;
+
+    /**
+     * All statement kinds, by ordinal.
+     */
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * All conditions, by ordinal.
+     */
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /**
+     * The file channel of a file-backed store, or {@code null}.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of a segment.
+     */
+    private final int segmentSize;
+
+    /**
+     * The segments; the store header is at the start of the first.
+     */
+    private ByteBuffer[] segments = new ByteBuffer[1];
+
+    /**
+     * Number of segments.
+     */
+    private int segmentCount = 0;
+
+    /**
+     * Offsets of the records, by program number.
+     */
+    private long[] offsets = new long[16];
+
+    /**
+     * Number of programs.
+     */
+    private int size = 0;
+
+    /**
+     * Offset just past the last record.
+     */
+    private long end = HEADER_SIZE;
+
+    /**
+     * Maps {@code size} bytes of segment {@code i} of the file.
+     *
+     * @param i
+     *            the segment number
+     * @param size
+     *            the number of bytes mapped
+     * @return the mapping
+     */
+    private ByteBuffer map(int i, long size) {
+        ByteBuffer segment = null;
+        try {
+            segment = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) i * this.segmentSize, size);
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return segment.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns segment {@code i}, creating or mapping it if needed. A segment
+     * of a file is mapped as far as the file reaches, but at least
+     * {@code MIN_MAPPING} bytes.
+     *
+     * @param i
+     *            the segment number
+     * @return the segment
+     */
+    private ByteBuffer segment(int i) {
+        while (this.segmentCount <= i) {
+            if (this.segmentCount == this.segments.length) {
+                this.segments = Arrays.copyOf(this.segments,
+                        2 * this.segmentCount);
+            }
+            ByteBuffer segment;
+            if (this.channel == null) {
+                segment = ByteBuffer.allocateDirect(this.segmentSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                long size = 0;
+                try {
+                    size = this.channel.size()
+                            - (long) this.segmentCount * this.segmentSize;
+                } catch (IOException e) {
+                    Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+                }
+                segment = this.map(this.segmentCount, Math.min(
+                        this.segmentSize, Math.max(MIN_MAPPING, size)));
+            }
+            this.segments[this.segmentCount] = segment;
+            this.segmentCount++;
+        }
+        return this.segments[i];
+    }
+
+    /**
+     * Returns segment {@code i}, mapping more of it first if its first
+     * {@code limit} bytes are not all mapped.
+     *
+     * @param i
+     *            the segment number
+     * @param limit
+     *            the number of bytes needed
+     * @return the segment
+     * @requires limit <= segmentSize
+     */
+    private ByteBuffer segment(int i, int limit) {
+        ByteBuffer segment = this.segment(i);
+        if (segment.capacity() < limit) {
+            // both mappings share the pages of the file, so nothing is copied
+            segment = this.map(i, Math.min(this.segmentSize,
+                    Math.max(limit, 2L * segment.capacity())));
+            this.segments[i] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * Records that there is a record at {@code offset}.
+     *
+     * @param offset
+     *            the offset of the record
+     */
+    private void addOffset(long offset) {
+        if (this.size == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+        }
+        this.offsets[this.size] = offset;
+        this.size++;
+    }
+
+    /**
+     * Writes the end offset into the store header.
+     */
+    private void writeEnd() {
+        this.segment(0).putLong(HEADER_END, this.end);
+    }
+
+    /**
+     * Writes the nodes of the tree of {@code frozen} rooted at {@code node}
+     * into {@code segment} from node number {@code next} on, and returns the
+     * number of nodes written.
+     *
+     * @param frozen
+     *            the program
+     * @param node
+     *            the root node
+     * @param segment
+     *            the segment
+     * @param nodes
+     *            the position of the nodes of the record in {@code segment}
+     * @param next
+     *            the number of the next node of the record
+     * @return the number of nodes written
+     */
+    private static int writeTree(FrozenProgram frozen, int node,
+            ByteBuffer segment, int nodes, int next) {
+        int at = nodes + next * NODE_SIZE;
+        Kind kind = frozen.kind(node);
+        segment.put(at + NODE_KIND, (byte) kind.ordinal());
+        int count = 1;
+        if (kind == Kind.CALL) {
+            segment.put(at + NODE_CONDITION, (byte) 0);
+            segment.putInt(at + NODE_VALUE, frozen.callId(node));
+        } else {
+            if (kind == Kind.BLOCK) {
+                segment.put(at + NODE_CONDITION, (byte) 0);
+            } else {
+                segment.put(at + NODE_CONDITION,
+                        (byte) frozen.condition(node).ordinal());
+            }
+            int children = frozen.childCount(node);
+            segment.putInt(at + NODE_VALUE, children);
+            for (int i = 0; i < children; i++) {
+                count += writeTree(frozen, frozen.child(node, i), segment,
+                        nodes, next + count);
+            }
+        }
+        segment.putInt(at + NODE_SUBTREE, count);
+        return count;
+    }
+
+    /**
+     * Rebuilds the offsets of the records from their lengths.
+     */
+    private void reindex() {
+        this.size = 0;
+        long offset = HEADER_SIZE;
+        while (offset < this.end) {
+            int segment = (int) (offset / this.segmentSize);
+            int at = (int) (offset % this.segmentSize);
+            int length = 0;
+            if (at + RECORD_HEADER_SIZE <= this.segmentSize) {
+                length = this.segment(segment).getInt(at + LENGTH);
+            }
+            if (length == 0) {
+                offset = (long) (segment + 1) * this.segmentSize;
+            } else {
+                this.addOffset(offset);
+                offset += length;
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            the file channel, or {@code null} for an in-memory store
+     * @param segmentSize
+     *            the size of a segment
+     */
+    private ProgramStore(FileChannel channel, int segmentSize) {
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+    }
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Returns a new empty store held in direct buffers of
+     * {@code segmentSize} bytes.
+     *
+     * @param segmentSize
+     *            the size of a segment
+     * @return the new store
+     * @requires HEADER_SIZE < segmentSize
+     */
+    static ProgramStore inMemory(int segmentSize) {
+        assert HEADER_SIZE < segmentSize : ""
+                + "Violation of: HEADER_SIZE < segmentSize";
+        ProgramStore store = new ProgramStore(null, segmentSize);
+        store.segment(0).putInt(0, MAGIC).putInt(4, VERSION)
+                .putInt(HEADER_SEGMENT_SIZE, segmentSize);
+        store.writeEnd();
+        return store;
+    }
+
+    /**
+     * Opens the store in file {@code fileName}, creating it with segments of
+     * {@code segmentSize} bytes if it does not exist.
+     *
+     * @param fileName
+     *            the name of the file
+     * @param segmentSize
+     *            the size of a segment of a new store
+     * @return the store
+     * @requires HEADER_SIZE < segmentSize
+     */
+    static ProgramStore open(String fileName, int segmentSize) {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert HEADER_SIZE < segmentSize : ""
+                + "Violation of: HEADER_SIZE < segmentSize";
+        ProgramStore store = null;
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            int size = segmentSize;
+            boolean exists = channel.size() >= HEADER_SIZE;
+            if (exists) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(header, 0);
+                Reporter.assertElseFatalError(
+                        header.getInt(0) == MAGIC
+                                && header.getInt(4) == VERSION,
+                        "Error: " + fileName + " is not a program store");
+                size = header.getInt(HEADER_SEGMENT_SIZE);
+            }
+            store = new ProgramStore(channel, size);
+            ByteBuffer first = store.segment(0);
+            if (exists) {
+                store.end = first.getLong(HEADER_END);
+                store.reindex();
+            } else {
+                first.putInt(0, MAGIC).putInt(4, VERSION)
+                        .putInt(HEADER_SEGMENT_SIZE, size);
+                store.writeEnd();
+            }
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return store;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns a new empty store held in direct buffers.
+     *
+     * @return the new store
+     */
+    public static ProgramStore inMemory() {
+        return inMemory(MEMORY_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the store in file {@code fileName}, creating it if it does not
+     * exist. The file is memory-mapped, so the programs of an existing store
+     * are available at once.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the store
+     */
+    public static ProgramStore open(String fileName) {
+        return open(fileName, FILE_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the number of programs in the store.
+     *
+     * @return the number of programs
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds {@code p} to the store and returns its program number.
+     *
+     * @param p
+     *            the program
+     * @return the program number
+     * @ensures <pre>
+     * if [every name of p is at most 65535 bytes in UTF-8] then
+     *  add = #size()  and  [program add of the store is p]
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public int add(Program p) {
+        assert p != null : "Violation of: p is not null";
+        FrozenProgram frozen = FrozenProgram.freeze(p);
+
+        // names: the symbols of the program, then its name if not among them
+        int symbolCount = frozen.symbolCount();
+        int nameId = frozen.id(frozen.name());
+        if (nameId < 0) {
+            nameId = symbolCount;
+            symbolCount++;
+        }
+        byte[][] names = new byte[symbolCount][];
+        int namesLength = 0;
+        for (int id = 0; id < symbolCount; id++) {
+            String symbol;
+            if (id < frozen.symbolCount()) {
+                symbol = frozen.symbol(id);
+            } else {
+                symbol = frozen.name();
+            }
+            names[id] = symbol.getBytes(StandardCharsets.UTF_8);
+            Reporter.assertElseFatalError(
+                    names[id].length <= MAX_NAME_LENGTH,
+                    "Error: Program has a name longer than the limit of "
+                            + MAX_NAME_LENGTH + " bytes");
+            namesLength += 2 + names[id].length;
+        }
+
+        int instructionCount = frozen.instructionCount();
+        int instructions = RECORD_HEADER_SIZE;
+        int nodes = instructions + 2 * 4 * instructionCount;
+        int symbols = nodes + frozen.size() * NODE_SIZE;
+        long length = symbols + 4L * symbolCount + namesLength;
+        Reporter.assertElseFatalError(
+                length <= this.segmentSize - HEADER_SIZE,
+                "Error: Program " + frozen.name()
+                        + " is too large for the store");
+
+        // find room for the record in the current segment or the next one
+        int segmentNumber = (int) (this.end / this.segmentSize);
+        int at = (int) (this.end % this.segmentSize);
+        if (at + length > this.segmentSize) {
+            if (at + RECORD_HEADER_SIZE <= this.segmentSize) {
+                this.segment(segmentNumber, at + RECORD_HEADER_SIZE)
+                        .putInt(at + LENGTH, 0);
+            }
+            segmentNumber++;
+            at = 0;
+        }
+        ByteBuffer segment = this.segment(segmentNumber, (int) (at + length));
+
+        segment.putInt(at + NODE_COUNT, frozen.size());
+        segment.putInt(at + INSTRUCTION_COUNT, instructionCount);
+        segment.putInt(at + SYMBOL_COUNT, symbolCount);
+        segment.putInt(at + NAME, nameId);
+        segment.putInt(at + NODES, nodes);
+        int next = 0;
+        for (int i = 0; i < instructionCount; i++) {
+            String instruction = frozen.instructionName(i);
+            segment.putInt(at + instructions + 2 * 4 * i,
+                    frozen.id(instruction));
+            segment.putInt(at + instructions + 2 * 4 * i + 4, next);
+            next += writeTree(frozen, frozen.instruction(instruction),
+                    segment, at + nodes, next);
+        }
+        segment.putInt(at + BODY, next);
+        writeTree(frozen, frozen.body(), segment, at + nodes, next);
+        int nameAt = symbols + 4 * symbolCount;
+        for (int id = 0; id < symbolCount; id++) {
+            segment.putInt(at + symbols + 4 * id, nameAt);
+            segment.putShort(at + nameAt, (short) names[id].length);
+            for (int k = 0; k < names[id].length; k++) {
+                segment.put(at + nameAt + 2 + k, names[id][k]);
+            }
+            nameAt += 2 + names[id].length;
+        }
+        // the length is written last, so a torn record is never indexed
+        segment.putInt(at + LENGTH, (int) length);
+
+        long offset = (long) segmentNumber * this.segmentSize + at;
+        this.addOffset(offset);
+        this.end = offset + length;
+        this.writeEnd();
+        return this.size - 1;
+    }
+
+    /**
+     * Returns a new cursor over the programs of the store.
+     *
+     * @return the new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Copies program {@code i} of the store into {@code p}.
+     *
+     * @param i
+     *            the program number
+     * @param p
+     *            the program
+     * @replaces p
+     * @requires 0 <= i < size()
+     * @ensures [p is program i of the store]
+     */
+    public void program(int i, Program p) {
+        assert 0 <= i && i < this.size : "Violation of: 0 <= i < size()";
+        assert p != null : "Violation of: p is not null";
+        Cursor cursor = this.cursor();
+        cursor.moveTo(i);
+        Map<String, Statement> context = p.newContext();
+        for (int k = 0; k < cursor.instructionCount(); k++) {
+            String name = cursor.symbol(cursor.instructionNameId(k));
+            Statement body = p.newBody();
+            cursor.instruction(k);
+            cursor.build(body);
+            context.add(name, body);
+        }
+        Statement body = p.newBody();
+        cursor.body();
+        cursor.build(body);
+        p.swapContext(context);
+        p.swapBody(body);
+        p.setName(cursor.name());
+    }
+
+    /**
+     * Writes any changes of a file-backed store to the file.
+     */
+    public void flush() {
+        if (this.channel != null) {
+            for (int i = 0; i < this.segmentCount; i++) {
+                ((MappedByteBuffer) this.segments[i]).force();
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the store. The store and its cursors must not be
+     * used afterwards.
+     */
+    public void close() {
+        this.flush();
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+            }
+        }
+        this.segments = new ByteBuffer[1];
+        this.segmentCount = 0;
+    }
+
+    /**
+     * Flyweight over the nodes of the programs of the store. A cursor is
+     * positioned on one program and one node of it; moving it changes only
+     * its fields, so walking a tree allocates nothing. The path from the root
+     * is kept so that {@code parent} can return to it.
+     */
+    public final class Cursor {
+
+        /**
+         * The segment of the current program.
+         */
+        private ByteBuffer segment;
+
+        /**
+         * Position in {@code segment} of the current program.
+         */
+        private int record;
+
+        /**
+         * Position in {@code segment} of the nodes of the current program.
+         */
+        private int nodes;
+
+        /**
+         * The current node.
+         */
+        private int node;
+
+        /**
+         * The ancestors of the current node, from the root.
+         */
+        private int[] path = new int[16];
+
+        /**
+         * Number of ancestors of the current node.
+         */
+        private int depth;
+
+        /**
+         * Constructor.
+         */
+        Cursor() {
+        }
+
+        /**
+         * Returns the position in {@code segment} of the current node.
+         *
+         * @return the position of the current node
+         */
+        private int at() {
+            return this.nodes + this.node * NODE_SIZE;
+        }
+
+        /**
+         * Moves to root node {@code root} of the current program.
+         *
+         * @param root
+         *            the root node
+         */
+        private void root(int root) {
+            this.node = root;
+            this.depth = 0;
+        }
+
+        /**
+         * Builds the statement at the current node into {@code s}, leaving
+         * the cursor where it was.
+         *
+         * @param s
+         *            the statement
+         * @replaces s
+         */
+        void build(Statement s) {
+            switch (this.kind()) {
+                case BLOCK: {
+                    s.clear();
+                    int i = 0;
+                    if (this.firstChild()) {
+                        do {
+                            Statement child = s.newInstance();
+                            this.build(child);
+                            s.addToBlock(i, child);
+                            i++;
+                        } while (this.nextSibling());
+                        this.parent();
+                    }
+                    break;
+                }
+                case IF: {
+                    Statement block = s.newInstance();
+                    this.firstChild();
+                    this.build(block);
+                    this.parent();
+                    s.assembleIf(this.condition(), block);
+                    break;
+                }
+                case IF_ELSE: {
+                    Statement ifBlock = s.newInstance();
+                    Statement elseBlock = s.newInstance();
+                    this.firstChild();
+                    this.build(ifBlock);
+                    this.nextSibling();
+                    this.build(elseBlock);
+                    this.parent();
+                    s.assembleIfElse(this.condition(), ifBlock, elseBlock);
+                    break;
+                }
+                case WHILE: {
+                    Statement block = s.newInstance();
+                    this.firstChild();
+                    this.build(block);
+                    this.parent();
+                    s.assembleWhile(this.condition(), block);
+                    break;
+                }
+                default: {
+                    s.assembleCall(this.symbol(this.callId()));
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Moves to program {@code i}, at the root of its body.
+         *
+         * @param i
+         *            the program number
+         * @requires 0 <= i < size()
+         */
+        public void moveTo(int i) {
+            assert 0 <= i && i < ProgramStore.this.size : ""
+                    + "Violation of: 0 <= i < size()";
+            long offset = ProgramStore.this.offsets[i];
+            this.segment = ProgramStore.this
+                    .segment((int) (offset / ProgramStore.this.segmentSize));
+            this.record = (int) (offset % ProgramStore.this.segmentSize);
+            this.nodes = this.record + this.segment.getInt(this.record + NODES);
+            this.body();
+        }
+
+        /**
+         * Returns the name of the current program.
+         *
+         * @return the program name
+         */
+        public String name() {
+            return this.symbol(this.segment.getInt(this.record + NAME));
+        }
+
+        /**
+         * Returns the number of nodes of the current program.
+         *
+         * @return the number of nodes
+         */
+        public int nodeCount() {
+            return this.segment.getInt(this.record + NODE_COUNT);
+        }
+
+        /**
+         * Returns the number of instructions of the current program.
+         *
+         * @return the number of instructions
+         */
+        public int instructionCount() {
+            return this.segment.getInt(this.record + INSTRUCTION_COUNT);
+        }
+
+        /**
+         * Returns the symbol id of the name of the {@code k}-th instruction of
+         * the current program.
+         *
+         * @param k
+         *            the position of the instruction
+         * @return the symbol id of the instruction name
+         * @requires 0 <= k < instructionCount()
+         */
+        public int instructionNameId(int k) {
+            assert 0 <= k && k < this.instructionCount() : ""
+                    + "Violation of: 0 <= k < instructionCount()";
+            return this.segment.getInt(this.record + RECORD_HEADER_SIZE + 8 * k);
+        }
+
+        /**
+         * Moves to the root of the body of the {@code k}-th instruction of the
+         * current program.
+         *
+         * @param k
+         *            the position of the instruction
+         * @requires 0 <= k < instructionCount()
+         */
+        public void instruction(int k) {
+            assert 0 <= k && k < this.instructionCount() : ""
+                    + "Violation of: 0 <= k < instructionCount()";
+            this.root(this.segment
+                    .getInt(this.record + RECORD_HEADER_SIZE + 8 * k + 4));
+        }
+
+        /**
+         * Moves to the root of the body of the current program.
+         */
+        public void body() {
+            this.root(this.segment.getInt(this.record + BODY));
+        }
+
+        /**
+         * Returns the current node number.
+         *
+         * @return the current node
+         */
+        public int node() {
+            return this.node;
+        }
+
+        /**
+         * Returns the kind of the current node.
+         *
+         * @return the kind
+         */
+        public Kind kind() {
+            return KINDS[this.segment.get(this.at() + NODE_KIND)];
+        }
+
+        /**
+         * Returns the condition of the current node.
+         *
+         * @return the condition
+         * @requires [the current node is an IF, IF_ELSE or WHILE]
+         */
+        public Condition condition() {
+            return CONDITIONS[this.segment.get(this.at() + NODE_CONDITION)];
+        }
+
+        /**
+         * Returns the symbol id of the call target of the current node.
+         *
+         * @return the symbol id of the call target
+         * @requires [the current node is a CALL]
+         */
+        public int callId() {
+            assert this.kind() == Kind.CALL : ""
+                    + "Violation of: [the current node is a CALL]";
+            return this.segment.getInt(this.at() + NODE_VALUE);
+        }
+
+        /**
+         * Returns the number of children of the current node.
+         *
+         * @return the number of children
+         */
+        public int childCount() {
+            int count = 0;
+            if (this.kind() != Kind.CALL) {
+                count = this.segment.getInt(this.at() + NODE_VALUE);
+            }
+            return count;
+        }
+
+        /**
+         * Moves to the first child of the current node if it has one, and
+         * reports whether it did.
+         *
+         * @return true iff the cursor moved
+         */
+        public boolean firstChild() {
+            boolean moved = this.childCount() > 0;
+            if (moved) {
+                if (this.depth == this.path.length) {
+                    this.path = Arrays.copyOf(this.path, 2 * this.depth);
+                }
+                this.path[this.depth] = this.node;
+                this.depth++;
+                this.node++;
+            }
+            return moved;
+        }
+
+        /**
+         * Moves to the next sibling of the current node if it has one, and
+         * reports whether it did.
+         *
+         * @return true iff the cursor moved
+         */
+        public boolean nextSibling() {
+            boolean moved = false;
+            if (this.depth > 0) {
+                int parent = this.path[this.depth - 1];
+                int parentEnd = parent + this.segment.getInt(this.nodes
+                        + parent * NODE_SIZE + NODE_SUBTREE);
+                int next = this.node
+                        + this.segment.getInt(this.at() + NODE_SUBTREE);
+                moved = next < parentEnd;
+                if (moved) {
+                    this.node = next;
+                }
+            }
+            return moved;
+        }
+
+        /**
+         * Moves to the parent of the current node if it has one, and reports
+         * whether it did.
+         *
+         * @return true iff the cursor moved
+         */
+        public boolean parent() {
+            boolean moved = this.depth > 0;
+            if (moved) {
+                this.depth--;
+                this.node = this.path[this.depth];
+            }
+            return moved;
+        }
+
+        /**
+         * Returns the name with symbol id {@code id} in the current program.
+         *
+         * @param id
+         *            the symbol id
+         * @return the name
+         * @requires [id is a symbol id of the current program]
+         */
+        public String symbol(int id) {
+            assert 0 <= id
+                    && id < this.segment.getInt(this.record + SYMBOL_COUNT) : ""
+                            + "Violation of: [id is a symbol id of the current program]";
+            int symbols = this.nodes + this.nodeCount() * NODE_SIZE;
+            int at = this.record + this.segment.getInt(symbols + 4 * id);
+            int length = this.segment.getShort(at) & MAX_NAME_LENGTH;
+            byte[] bytes = new byte[length];
+            for (int k = 0; k < length; k++) {
+                bytes[k] = this.segment.get(at + 2 + k);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get store and input file names
+         */
+        out.print("Enter program store file name: ");
+        String storeName = in.nextLine();
+        out.print("Enter valid BL program file name (empty to list): ");
+        String fileName = in.nextLine();
+        ProgramStore store = ProgramStore.open(storeName);
+        if (!fileName.isEmpty()) {
+            /*
+             * Parse input file and add it to the store
+             */
+            Program p = new Program1Parse1();
+            SimpleReader file = new SimpleReader1L(fileName);
+            p.parse(file);
+            file.close();
+            out.println("Added program " + store.add(p));
+        }
+        /*
+         * List the programs in the store
+         */
+        ProgramStore.Cursor cursor = store.cursor();
+        for (int i = 0; i < store.size(); i++) {
+            cursor.moveTo(i);
+            out.println(i + ": " + cursor.name() + ", "
+                    + cursor.instructionCount() + " instructions, "
+                    + cursor.nodeCount() + " nodes");
+        }
+        store.close();
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,731 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Reporter;
+
+/**
+ * Watch mode for a directory tree of BL programs. The tree is monitored with
+ * a {@code WatchService}; the events for a {@code .bl} file are debounced, so
+ * a burst of events causes one reparse once the file has been quiet for the
+ * debounce delay, and only the files that changed are reparsed, on a bounded
+ * pool of worker threads; the watcher thread itself never parses, so it does
+ * not fall behind the events. A file waits for a worker at most once at a
+ * time, so the queue of waiting files is bounded by the size of the tree.
+ * The latest result for each file, either a
+ * {@code FrozenProgram} or the diagnostic of the parse error, is kept in
+ * memory, and the listener hears only of results that differ from the
+ * previous ones.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramWatcher {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Suffix of the names of BL files.
+     */
+    private static final String SUFFIX = ".bl";
+
+    /**
+     * How long the watcher waits for events when nothing is pending, in
+     * milliseconds.
+     */
+    private static final long POLL_MILLIS = 1000;
+
+    /**
+     * Limits of the parses: statements nested deeper than this are reported
+     * before they could overflow the stack of a worker.
+     */
+    private static final ParseLimits LIMITS = new ParseLimits(
+            Integer.MAX_VALUE, 1 << 10, Integer.MAX_VALUE);
+
+    /**
+     * Stack size of a worker, in bytes: ample for statements nested as deep
+     * as {@code LIMITS} allows, whatever the default thread stack size.
+     */
+    private static final long WORKER_STACK_SIZE = 1L << 24;
+
+    /**
+     * The root of the watched tree.
+     */
+    private final Path root;
+
+    /**
+     * The debounce delay, in milliseconds.
+     */
+    private final long debounceMillis;
+
+    /**
+     * The listener told of changed results.
+     */
+    private final Listener listener;
+
+    /**
+     * The watch service.
+     */
+    private final WatchService watchService;
+
+    /**
+     * The worker pool.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * The watched directories, by watch key; used by the watcher thread only.
+     */
+    private final HashMap<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Files waiting for their debounce delay to end, with the time it ends;
+     * used by the watcher thread only.
+     */
+    private final HashMap<Path, Long> pending = new HashMap<>();
+
+    /**
+     * Latest result for each file.
+     */
+    private final ConcurrentHashMap<Path, Result> results = new ConcurrentHashMap<>();
+
+    /**
+     * Files waiting for a worker.
+     */
+    private final ConcurrentHashMap<Path, Boolean> queued = new ConcurrentHashMap<>();
+
+    /**
+     * Whether events may have been lost, so every file must be looked at
+     * again.
+     */
+    private final AtomicBoolean lost = new AtomicBoolean(false);
+
+    /**
+     * Files being parsed.
+     */
+    private final ConcurrentHashMap<Path, Boolean> running = new ConcurrentHashMap<>();
+
+    /**
+     * Files that changed again while being parsed.
+     */
+    private final ConcurrentHashMap<Path, Boolean> rerun = new ConcurrentHashMap<>();
+
+    /**
+     * Parse session of each worker thread.
+     */
+    private final ThreadLocal<ParseSession> sessions = ThreadLocal
+            .withInitial(() -> new ParseSession(LIMITS));
+
+    /**
+     * The watcher thread, or {@code null} until started.
+     */
+    private Thread watcher = null;
+
+    /**
+     * Whether the watcher has been closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Reports whether {@code file} is named like a BL file.
+     *
+     * @param file
+     *            the file
+     * @return true iff the name of {@code file} ends with {@code SUFFIX}
+     */
+    private static boolean isProgramFile(Path file) {
+        return file.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Registers {@code dir} and the directories below it with the watch
+     * service, and hands each BL file in them to {@code found}.
+     *
+     * @param dir
+     *            the directory
+     * @param found
+     *            the callback receiving each BL file
+     */
+    private void register(Path dir, Consumer<Path> found) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d,
+                        BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = d.register(ProgramWatcher.this.watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                    ProgramWatcher.this.directories.put(key, d);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isProgramFile(file)) {
+                        found.accept(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks {@code file} as changed, restarting its debounce delay.
+     *
+     * @param file
+     *            the file
+     */
+    private void touch(Path file) {
+        this.pending.put(file,
+                System.currentTimeMillis() + this.debounceMillis);
+    }
+
+    /**
+     * Hands the files whose debounce delay has ended to the workers, and
+     * returns how long until the next delay ends.
+     *
+     * @return the time until the next debounce delay ends, in milliseconds
+     */
+    private long submitDue() {
+        long now = System.currentTimeMillis();
+        long wait = POLL_MILLIS;
+        Iterator<Map.Entry<Path, Long>> it = this.pending.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> entry = it.next();
+            long left = entry.getValue() - now;
+            if (left <= 0) {
+                it.remove();
+                this.submit(entry.getKey());
+            } else {
+                wait = Math.min(wait, left);
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Has a worker reparse {@code file}, unless it is waiting for one
+     * already; if it is being parsed already, it is parsed again once that
+     * parse ends.
+     *
+     * @param file
+     *            the file
+     */
+    private void submit(final Path file) {
+        if (!this.closed
+                && this.queued.putIfAbsent(file, Boolean.TRUE) == null) {
+            try {
+                this.workers.execute(() -> {
+                    this.queued.remove(file);
+                    this.reparse(file);
+                });
+            } catch (RejectedExecutionException e) {
+                // closed
+                this.queued.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Reparses {@code file} until it has not changed during the parse, then
+     * records and reports the result.
+     *
+     * @param file
+     *            the file
+     */
+    private void reparse(Path file) {
+        if (this.running.putIfAbsent(file, Boolean.TRUE) != null) {
+            this.rerun.put(file, Boolean.TRUE);
+        } else {
+            try {
+                do {
+                    this.rerun.remove(file);
+                    this.update(file, this.parse(file));
+                } while (this.rerun.remove(file) != null);
+            } finally {
+                this.running.remove(file);
+                if (this.rerun.remove(file) != null) {
+                    this.submit(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses {@code file}, returning {@code null} if it no longer exists. An
+     * error of the parse, including a violated assertion or an overflow of
+     * the stack, is the diagnostic of the result; after either of those the
+     * worker starts a new session, in case the old one was left mid-update.
+     *
+     * @param file
+     *            the file
+     * @return the result of the parse, or {@code null}
+     */
+    private Result parse(Path file) {
+        Result result = null;
+        if (Files.isRegularFile(file)) {
+            Program1Parse1 p = new Program1Parse1();
+            String diagnostic = null;
+            try {
+                SimpleReader in = new SimpleReader1L(file.toString());
+                try {
+                    this.sessions.get().parse(in, p);
+                } finally {
+                    in.close();
+                }
+            } catch (RuntimeException e) {
+                diagnostic = e.getMessage();
+                if (diagnostic == null) {
+                    diagnostic = e.toString();
+                }
+            } catch (AssertionError e) {
+                this.sessions.remove();
+                diagnostic = "Error: " + e.getMessage();
+            } catch (StackOverflowError e) {
+                this.sessions.remove();
+                diagnostic = "Error: Program is nested too deeply to parse";
+            }
+            if (diagnostic == null) {
+                result = new Result(FrozenProgram.freeze(p), null);
+            } else {
+                result = new Result(null, diagnostic);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records {@code result} as the result for {@code file} and tells the
+     * listener if it differs from the previous one.
+     *
+     * @param file
+     *            the file
+     * @param result
+     *            the result, or {@code null} if the file no longer exists
+     */
+    private void update(Path file, Result result) {
+        Result previous;
+        if (result == null) {
+            previous = this.results.remove(file);
+            if (previous != null) {
+                this.listener.removed(file);
+            }
+        } else {
+            previous = this.results.put(file, result);
+            if (!result.equals(previous)) {
+                this.listener.changed(file, result);
+            }
+        }
+    }
+
+    /**
+     * Handles the events of the watch service until the watcher is closed.
+     */
+    private void watch() {
+        try {
+            long wait = POLL_MILLIS;
+            while (!this.closed) {
+                WatchKey key = this.watchService.poll(wait,
+                        TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    this.handle(key);
+                }
+                if (this.lost.getAndSet(false)) {
+                    this.rescan();
+                }
+                wait = this.submitDue();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Looks at every file of the tree again, after events were lost: the
+     * files with a result are reparsed, which reports those removed, and the
+     * tree is registered again, which finds new files and directories.
+     */
+    private void rescan() {
+        for (Path file : this.results.keySet()) {
+            this.touch(file);
+        }
+        this.register(this.root, this::touch);
+    }
+
+    /**
+     * Handles the deletion of {@code path}, or its move out of the tree. If
+     * it was a directory, the events for the files below it may never come,
+     * so those with a result are reparsed, which reports them removed, and
+     * the directories below it are no longer watched.
+     *
+     * @param path
+     *            the path deleted
+     */
+    private void deleted(Path path) {
+        for (Path file : this.results.keySet()) {
+            if (file.startsWith(path)) {
+                this.touch(file);
+            }
+        }
+        Iterator<Map.Entry<WatchKey, Path>> it = this.directories.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = it.next();
+            if (entry.getValue().startsWith(path)) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Handles the events of {@code key}.
+     *
+     * @param key
+     *            the watch key
+     */
+    private void handle(WatchKey key) {
+        Path dir = this.directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                this.rescan();
+            } else if (dir != null) {
+                Path file = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(file)) {
+                    this.register(file, this::touch);
+                } else if (event
+                        .kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    this.deleted(file);
+                }
+                if (isProgramFile(file)) {
+                    this.touch(file);
+                }
+            }
+        }
+        if (!key.reset()) {
+            this.directories.remove(key);
+        }
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Reports that events may have been lost, as an overflow of the watch
+     * service does: the watcher looks at every file of the tree again.
+     */
+    void lostEvents() {
+        this.lost.set(true);
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Receiver of the changes of the results. Its methods are called from the
+     * worker threads, so they must be thread-safe.
+     */
+    public interface Listener {
+
+        /**
+         * Reports that the result for {@code file} is now {@code result}.
+         *
+         * @param file
+         *            the file
+         * @param result
+         *            the new result
+         */
+        void changed(Path file, Result result);
+
+        /**
+         * Reports that {@code file} no longer exists.
+         *
+         * @param file
+         *            the file
+         */
+        void removed(Path file);
+
+    }
+
+    /**
+     * Immutable result of parsing a file: the program, or the diagnostic of
+     * the parse error.
+     */
+    public static final class Result {
+
+        /**
+         * The parsed program, or {@code null}.
+         */
+        private final FrozenProgram program;
+
+        /**
+         * The diagnostic, or {@code null}.
+         */
+        private final String diagnostic;
+
+        /**
+         * Constructor.
+         *
+         * @param program
+         *            the parsed program, or {@code null}
+         * @param diagnostic
+         *            the diagnostic, or {@code null}
+         */
+        Result(FrozenProgram program, String diagnostic) {
+            this.program = program;
+            this.diagnostic = diagnostic;
+        }
+
+        /**
+         * Reports whether the parse succeeded.
+         *
+         * @return true iff the parse succeeded
+         */
+        public boolean isValid() {
+            return this.program != null;
+        }
+
+        /**
+         * Returns the parsed program.
+         *
+         * @return the parsed program
+         * @requires isValid()
+         */
+        public FrozenProgram program() {
+            assert this.isValid() : "Violation of: isValid()";
+            return this.program;
+        }
+
+        /**
+         * Returns the diagnostic of the parse error.
+         *
+         * @return the diagnostic
+         * @requires not isValid()
+         */
+        public String diagnostic() {
+            assert !this.isValid() : "Violation of: not isValid()";
+            return this.diagnostic;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Result)) {
+                return false;
+            }
+            Result other = (Result) obj;
+            boolean equal;
+            if (this.program != null) {
+                equal = this.program.equals(other.program);
+            } else {
+                equal = other.program == null
+                        && this.diagnostic.equals(other.diagnostic);
+            }
+            return equal;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash;
+            if (this.program != null) {
+                hash = this.program.hashCode();
+            } else {
+                hash = this.diagnostic.hashCode();
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            String s;
+            if (this.program != null) {
+                s = this.program.toString();
+            } else {
+                s = this.diagnostic;
+            }
+            return s;
+        }
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            the root of the watched tree
+     * @param workerCount
+     *            the number of worker threads
+     * @param debounceMillis
+     *            the debounce delay, in milliseconds
+     * @param listener
+     *            the listener told of changed results
+     * @requires workerCount > 0  and  debounceMillis >= 0
+     */
+    public ProgramWatcher(Path root, int workerCount, long debounceMillis,
+            Listener listener) {
+        assert root != null : "Violation of: root is not null";
+        assert workerCount > 0 : "Violation of: workerCount > 0";
+        assert debounceMillis >= 0 : "Violation of: debounceMillis >= 0";
+        assert listener != null : "Violation of: listener is not null";
+        this.root = root;
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        this.watchService = service;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                r -> {
+                    Thread t = new Thread(null, r, "bl-watch-worker",
+                            WORKER_STACK_SIZE);
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Starts watching: every BL file in the tree is parsed and reported, and
+     * from then on the files that change are reparsed.
+     */
+    public void start() {
+        assert this.watcher == null : "Violation of: [not started]";
+        this.register(this.root, this::submit);
+        this.watcher = new Thread(this::watch, "bl-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Returns the latest result for {@code file}, or {@code null} if there is
+     * none.
+     *
+     * @param file
+     *            the file
+     * @return the latest result, or {@code null}
+     */
+    public Result result(Path file) {
+        assert file != null : "Violation of: file is not null";
+        return this.results.get(file);
+    }
+
+    /**
+     * Stops watching and waits for the parses under way to end.
+     */
+    public void close() {
+        this.closed = true;
+        try {
+            this.watchService.close();
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        this.workers.shutdown();
+        try {
+            if (this.watcher != null) {
+                this.watcher.join();
+            }
+            this.workers.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        final SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get directory name
+         */
+        out.print("Enter directory of BL programs to watch: ");
+        String dirName = in.nextLine();
+        /*
+         * Watch the directory until the user presses enter
+         */
+        ProgramWatcher watcher = new ProgramWatcher(Paths.get(dirName),
+                Runtime.getRuntime().availableProcessors(), 200,
+                new Listener() {
+                    @Override
+                    public void changed(Path file, Result result) {
+                        synchronized (out) {
+                            if (result.isValid()) {
+                                out.println("OK    " + file + ": "
+                                        + result.program());
+                            } else {
+                                out.println("ERROR " + file + ": "
+                                        + result.diagnostic());
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void removed(Path file) {
+                        synchronized (out) {
+                            out.println("GONE  " + file);
+                        }
+                    }
+                });
+        watcher.start();
+        out.println("*** Watching " + dirName + "; press enter to stop ***");
+        in.nextLine();
+        watcher.close();
+
+        in.close();
+        out.close();
+    }
+
+}
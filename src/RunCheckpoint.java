@@ -0,0 +1,619 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+import components.utilities.Reporter;
+
+/**
+ * Binary checkpoint of the runs of many bugs, for continuing a long execution
+ * after a crash. A checkpoint holds, for each {@code ProgramRun}, the content
+ * hash of its program, the number of turns performed and its stack, followed
+ * by the state of the world as bytes the caller supplies, so a run is
+ * resumed exactly where it stopped and, for bugs that behave as the world
+ * says, goes on deterministically.
+ *
+ * <p>
+ * A checkpoint is written by a {@code Writer}: the runs are encoded and the
+ * world is copied on the calling thread between turns, which costs a few
+ * bytes per frame of their stacks and one copy of the world into a buffer
+ * the writer reuses, and the file is written on a background thread while
+ * the runs and the world go on. A checkpoint saved while the one before it
+ * is still waiting to be written replaces it, so at most one waits. Each
+ * checkpoint is written whole to a temporary file that then replaces the
+ * previous one, so a crash while writing leaves the last complete
+ * checkpoint; a checkpoint that cannot be written leaves no temporary file
+ * and is reported by the next call of the writer. A checkpoint is read by
+ * memory-mapping the file; nothing is copied but the stacks of the runs
+ * resumed.
+ *
+ * <pre>
+ * header:  magic, version, run count (int), world offset, world length (long)
+ * run:     content hash, turns (long), depth (int), then node and next
+ *          position (int) of each frame, from the bottom
+ * world:   the bytes supplied, at an offset that is a multiple of 8
+ * </pre>
+ *
+ * All numbers are little-endian.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class RunCheckpoint {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Magic number at the start of a checkpoint file.
+     */
+    private static final int MAGIC = 0x424c4350;
+
+    /**
+     * Version of the checkpoint format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the checkpoint header.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Positions in the header of its fields.
+     */
+    private static final int HEADER_COUNT = 8, HEADER_WORLD = 16,
+            HEADER_WORLD_LENGTH = 24;
+
+    /**
+     * Size of the fixed part of a run record.
+     */
+    private static final int RUN_HEADER_SIZE = 20;
+
+    /**
+     * Positions in a run record of its fields.
+     */
+    private static final int RUN_HASH = 0, RUN_TURNS = 8, RUN_DEPTH = 16;
+
+    /**
+     * Size of a frame of a run record.
+     */
+    private static final int FRAME_SIZE = 8;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Offsets of the run records, by run number.
+     */
+    private final int[] offsets;
+
+    /**
+     * Constructor from the contents of a checkpoint file.
+     *
+     * @param buffer
+     *            the contents of the file
+     * @param fileName
+     *            the name of the file, for error messages
+     */
+    private RunCheckpoint(ByteBuffer buffer, String fileName) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        String error = "Error: " + fileName + " is not a run checkpoint";
+        Reporter.assertElseFatalError(buffer.capacity() >= HEADER_SIZE
+                && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION,
+                error);
+        int count = buffer.getInt(HEADER_COUNT);
+        long world = buffer.getLong(HEADER_WORLD);
+        long worldLength = buffer.getLong(HEADER_WORLD_LENGTH);
+        Reporter.assertElseFatalError(count >= 0 && world >= HEADER_SIZE
+                && worldLength >= 0
+                && world + worldLength <= buffer.capacity(), error);
+        this.offsets = new int[count];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            Reporter.assertElseFatalError(
+                    offset + RUN_HEADER_SIZE <= world, error);
+            this.offsets[i] = offset;
+            int depth = buffer.getInt(offset + RUN_DEPTH);
+            Reporter.assertElseFatalError(depth >= 0
+                    && depth <= (world - offset) / FRAME_SIZE, error);
+            offset += RUN_HEADER_SIZE + depth * FRAME_SIZE;
+        }
+        Reporter.assertElseFatalError(offset <= world, error);
+    }
+
+    /**
+     * Encodes the records of {@code runs} into a new buffer, followed by
+     * room for the header and for padding up to the world.
+     *
+     * @param runs
+     *            the runs
+     * @param worldLength
+     *            the number of bytes of the world
+     * @return the header and records, ready to be written
+     */
+    private static ByteBuffer encode(ProgramRun[] runs, long worldLength) {
+        int size = HEADER_SIZE;
+        for (ProgramRun run : runs) {
+            size += RUN_HEADER_SIZE + run.depth() * FRAME_SIZE;
+        }
+        int world = (size + Long.BYTES - 1) & -Long.BYTES;
+        ByteBuffer records = ByteBuffer.allocate(world)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        records.putInt(MAGIC).putInt(VERSION).putInt(runs.length).putInt(0)
+                .putLong(world).putLong(worldLength);
+        for (ProgramRun run : runs) {
+            int depth = run.depth();
+            records.putLong(run.program().contentHash()).putLong(run.turns())
+                    .putInt(depth);
+            for (int i = 0; i < depth; i++) {
+                records.putInt(run.node(i)).putInt(run.next(i));
+            }
+        }
+        records.position(0);
+        return records;
+    }
+
+    /**
+     * Writes {@code records} and then {@code world} to a temporary file, and
+     * replaces the file {@code target} with it once it is on disk. If either
+     * step fails, the temporary file is deleted and the error is reported.
+     *
+     * @param target
+     *            the checkpoint file
+     * @param records
+     *            the header and run records
+     * @param world
+     *            the world
+     */
+    private static void write(Path target, ByteBuffer records,
+            ByteBuffer world) {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                while (world.hasRemaining()) {
+                    channel.write(world);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the error reported is the one that stopped the write
+            }
+            Reporter.fatalErrorToConsole("Error: Checkpoint " + target
+                    + " could not be written: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Writer of the checkpoints of a long execution to one file, each
+     * replacing the one before. The checkpoints are written in order on a
+     * background thread; a checkpoint saved while another is waiting to be
+     * written takes its place, and both futures are done once the later one
+     * is on disk. The first checkpoint that cannot be written is reported by
+     * the next call of {@code save} or {@code close}, as well as by its
+     * future, so a caller that drops the futures still learns of it.
+     *
+     * <p>
+     * Every checkpoint is written whole rather than as the ranges of the
+     * world changed since the one before: it replaces the file only once it
+     * is complete, so there is no earlier file to apply a difference to
+     * without a journal, and the world is one copy into a reused buffer on
+     * the calling thread, where tracking changed ranges would cost a check
+     * on every change to the world.
+     */
+    public static final class Writer {
+
+        /**
+         * A checkpoint saved and not yet written.
+         */
+        private static final class Pending {
+
+            /**
+             * The header and run records.
+             */
+            private ByteBuffer records;
+
+            /**
+             * The copy of the world.
+             */
+            private ByteBuffer world;
+
+            /**
+             * Done once the checkpoint is on disk, or has failed.
+             */
+            private final CompletableFuture<Void> done =
+                    new CompletableFuture<>();
+
+        }
+
+        /**
+         * The checkpoint file.
+         */
+        private final Path target;
+
+        /**
+         * The thread the files are written on.
+         */
+        private final ThreadPoolExecutor thread;
+
+        /**
+         * The checkpoint waiting to be written, or {@code null}; guarded by
+         * {@code this}.
+         */
+        private Pending pending = null;
+
+        /**
+         * A buffer for the next copy of the world, left by the last
+         * checkpoint written, or {@code null}; guarded by {@code this}.
+         */
+        private ByteBuffer spare = null;
+
+        /**
+         * The error of the first checkpoint that could not be written, or
+         * {@code null}.
+         */
+        private volatile RuntimeException failure = null;
+
+        /**
+         * Copies the bytes of {@code world} from its position to its limit
+         * into {@code buffer} if it is large enough, or else into a new
+         * buffer.
+         *
+         * @param buffer
+         *            the buffer to reuse, or {@code null}
+         * @param world
+         *            the world
+         * @return the copy, from position 0
+         */
+        private static ByteBuffer copy(ByteBuffer buffer, ByteBuffer world) {
+            ByteBuffer copy = buffer;
+            if (copy == null || copy.capacity() < world.remaining()) {
+                copy = ByteBuffer.allocate(world.remaining());
+            }
+            copy.clear();
+            copy.put(world.duplicate());
+            copy.flip();
+            return copy;
+        }
+
+        /**
+         * Writes the checkpoint waiting to be written, recording the error
+         * if it cannot be written, and keeps its copy of the world for the
+         * next one.
+         */
+        private void writePending() {
+            Pending next;
+            synchronized (this) {
+                next = this.pending;
+                this.pending = null;
+            }
+            try {
+                RunCheckpoint.write(this.target, next.records, next.world);
+                next.done.complete(null);
+            } catch (RuntimeException e) {
+                if (this.failure == null) {
+                    this.failure = e;
+                }
+                next.done.completeExceptionally(e);
+            }
+            synchronized (this) {
+                this.spare = next.world;
+            }
+        }
+
+        /**
+         * Reports the error of the first checkpoint that could not be
+         * written, if any.
+         */
+        private void checkFailure() {
+            RuntimeException e = this.failure;
+            if (e != null) {
+                Reporter.fatalErrorToConsole(e.getMessage());
+            }
+        }
+
+        /**
+         * Constructor for a writer to the file {@code fileName}.
+         *
+         * @param fileName
+         *            the name of the checkpoint file
+         */
+        public Writer(String fileName) {
+            assert fileName != null : "Violation of: fileName is not null";
+            this.target = Paths.get(fileName);
+            // a task is queued only while no checkpoint is waiting
+            this.thread = new ThreadPoolExecutor(1, 1, 0,
+                    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), r -> {
+                        Thread t = new Thread(r, "bl-checkpoint");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        /**
+         * Records the current position of each of {@code runs}, which must
+         * be between turns, and a copy of the bytes of {@code world} from
+         * its position to its limit, and starts writing them as the next
+         * checkpoint, in place of the checkpoint waiting to be written if
+         * there is one. The runs and the world may go on as soon as this
+         * returns.
+         *
+         * @param runs
+         *            the runs
+         * @param world
+         *            the state of the world
+         * @return a future that is done once this checkpoint, or one saved
+         *         after it, is on disk, or has failed
+         * @ensures <pre>
+         * if [an earlier checkpoint of this writer could not be written] then
+         *  [report an appropriate error message to the console and terminate client]
+         * </pre>
+         */
+        public Future<?> save(ProgramRun[] runs, ByteBuffer world) {
+            assert runs != null : "Violation of: runs is not null";
+            assert world != null : "Violation of: world is not null";
+            this.checkFailure();
+            ByteBuffer records = encode(runs, world.remaining());
+            Future<?> done;
+            synchronized (this) {
+                Pending next = this.pending;
+                if (next == null) {
+                    next = new Pending();
+                    next.world = copy(this.spare, world);
+                    this.spare = null;
+                    this.pending = next;
+                    this.thread.execute(this::writePending);
+                } else {
+                    next.world = copy(next.world, world);
+                }
+                next.records = records;
+                done = next.done;
+            }
+            return done;
+        }
+
+        /**
+         * Waits for the checkpoints being written, then stops the background
+         * thread. The writer must not be used afterwards.
+         *
+         * @ensures <pre>
+         * if [a checkpoint of this writer could not be written] then
+         *  [report an appropriate error message to the console and terminate client]
+         * </pre>
+         */
+        public void close() {
+            this.thread.shutdown();
+            try {
+                this.thread.awaitTermination(Long.MAX_VALUE,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.checkFailure();
+        }
+
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Opens the checkpoint in file {@code fileName} by memory-mapping it.
+     *
+     * @param fileName
+     *            the name of the checkpoint file
+     * @return the checkpoint
+     */
+    public static RunCheckpoint open(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+        RunCheckpoint checkpoint = null;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkpoint = new RunCheckpoint(mapped, fileName);
+        } catch (IOException e) {
+            Reporter.fatalErrorToConsole("Error: " + e.getMessage());
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Returns the number of runs in the checkpoint.
+     *
+     * @return the number of runs
+     */
+    public int size() {
+        return this.offsets.length;
+    }
+
+    /**
+     * Returns the content hash of the program of run {@code i}.
+     *
+     * @param i
+     *            the run number
+     * @return the content hash of the program
+     * @requires 0 <= i < size()
+     */
+    public long contentHash(int i) {
+        assert 0 <= i && i < this.size() : "Violation of: 0 <= i < size()";
+        return this.buffer.getLong(this.offsets[i] + RUN_HASH);
+    }
+
+    /**
+     * Returns the number of turns run {@code i} had performed.
+     *
+     * @param i
+     *            the run number
+     * @return the number of turns
+     * @requires 0 <= i < size()
+     */
+    public long turns(int i) {
+        assert 0 <= i && i < this.size() : "Violation of: 0 <= i < size()";
+        return this.buffer.getLong(this.offsets[i] + RUN_TURNS);
+    }
+
+    /**
+     * Returns run {@code i} resumed with {@code program}, whose content hash
+     * must be the one recorded.
+     *
+     * @param i
+     *            the run number
+     * @param program
+     *            the program of the run
+     * @return the run, at the position it had when saved
+     * @requires 0 <= i < size()
+     * @ensures <pre>
+     * if program.contentHash() = contentHash(i)  and
+     *    [every frame of run i is a node of program with a valid position] then
+     *  [resume is run i as saved]
+     * else
+     *  [report an appropriate error message and terminate client]
+     * </pre>
+     */
+    public ProgramRun resume(int i, FrozenProgram program) {
+        assert 0 <= i && i < this.size() : "Violation of: 0 <= i < size()";
+        assert program != null : "Violation of: program is not null";
+        Reporter.assertElseFatalError(
+                program.contentHash() == this.contentHash(i),
+                "Error: Run " + i + " was saved for another program than "
+                        + program.name());
+        int offset = this.offsets[i];
+        int depth = this.buffer.getInt(offset + RUN_DEPTH);
+        int[] nodes = new int[depth];
+        int[] next = new int[depth];
+        int frame = offset + RUN_HEADER_SIZE;
+        String error = "Error: Run " + i + " has an invalid stack";
+        for (int k = 0; k < depth; k++) {
+            nodes[k] = this.buffer.getInt(frame);
+            next[k] = this.buffer.getInt(frame + Integer.BYTES);
+            Reporter.assertElseFatalError(
+                    0 <= nodes[k] && nodes[k] < program.size(), error);
+            /*
+             * only a BLOCK frame has a position, which may be past the end,
+             * and a CALL frame 1 once its instruction body is pushed
+             */
+            int positions = 0;
+            if (program.kind(nodes[k]) == Kind.BLOCK) {
+                positions = program.childCount(nodes[k]);
+            } else if (program.kind(nodes[k]) == Kind.CALL) {
+                positions = 1;
+            }
+            Reporter.assertElseFatalError(
+                    0 <= next[k] && next[k] <= positions, error);
+            frame += FRAME_SIZE;
+        }
+        return new ProgramRun(program, this.turns(i), nodes, next, depth);
+    }
+
+    /**
+     * Returns the state of the world saved with the runs, as a read-only
+     * little-endian view of the mapped file.
+     *
+     * @return the world
+     */
+    public ByteBuffer world() {
+        ByteBuffer world = this.buffer.duplicate();
+        int start = (int) this.buffer.getLong(HEADER_WORLD);
+        int length = (int) this.buffer.getLong(HEADER_WORLD_LENGTH);
+        world.position(start).limit(start + length);
+        return world.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Main test method -------------------------------------------------------
+     */
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file names and number of turns
+         */
+        out.print("Enter valid BL program file name: ");
+        String fileName = in.nextLine();
+        out.print("Enter checkpoint file name: ");
+        String checkpointName = in.nextLine();
+        out.print("Enter the number of turns to run: ");
+        long turns = Long.parseLong(in.nextLine().trim());
+        /*
+         * Parse input file, then resume its run from the checkpoint if there
+         * is one
+         */
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        FrozenProgram program = FrozenProgram.freeze(p);
+        ProgramRun run = new ProgramRun(program);
+        if (Files.exists(Paths.get(checkpointName))) {
+            run = open(checkpointName).resume(0, program);
+            out.println("Resumed after " + run.turns() + " turns");
+        }
+        /*
+         * Run it for a bug that always sees a wall, then save the checkpoint
+         */
+        run.run(new ProgramProfiler.Bug() {
+            @Override
+            public boolean test(Condition c) {
+                return c != Condition.NEXT_IS_EMPTY
+                        && c != Condition.NEXT_IS_NOT_WALL;
+            }
+
+            @Override
+            public void act(int primitive) {
+                // the surroundings never change
+            }
+        }, turns);
+        Writer writer = new Writer(checkpointName);
+        writer.save(new ProgramRun[] { run }, ByteBuffer.allocate(0));
+        writer.close();
+        out.println("Saved after " + run.turns() + " turns");
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Source spans of the {@code Statement} nodes built by a parse. Nodes are
+ * numbered in the order the parse creates them, which is preorder within each
+ * instruction body and within the program body; the nodes of one body are
+ * numbered consecutively, starting with its BLOCK node. Each node has the
+ * position (see {@code TokenPositions}) of its first token and the byte
+ * offset just past its last token; an empty block starts and ends at the
+ * token that follows it.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class SourceMap {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the span arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Start lines, by node number.
+     */
+    private int[] lines = new int[INITIAL_CAPACITY];
+
+    /**
+     * Start columns, by node number.
+     */
+    private int[] columns = new int[INITIAL_CAPACITY];
+
+    /**
+     * Start offsets, by node number.
+     */
+    private long[] starts = new long[INITIAL_CAPACITY];
+
+    /**
+     * End offsets, by node number.
+     */
+    private long[] ends = new long[INITIAL_CAPACITY];
+
+    /**
+     * Number of nodes.
+     */
+    private int size = 0;
+
+    /**
+     * Number of the first node of each instruction body, by instruction name.
+     */
+    private Map<String, Integer> instructions = new Map1L<>();
+
+    /**
+     * Number of the first node of the program body, or -1.
+     */
+    private int body = -1;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public SourceMap() {
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Adds a node whose first token is at line {@code line}, column
+     * {@code column} and byte offset {@code offset} and returns its number.
+     *
+     * @param line
+     *            the line of the first token of the node
+     * @param column
+     *            the column of the first token of the node
+     * @param offset
+     *            the byte offset of the first token of the node
+     * @return the number of the node
+     */
+    int add(int line, int column, long offset) {
+        if (this.size == this.starts.length) {
+            int capacity = 2 * this.size;
+            this.lines = Arrays.copyOf(this.lines, capacity);
+            this.columns = Arrays.copyOf(this.columns, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+        }
+        this.lines[this.size] = line;
+        this.columns[this.size] = column;
+        this.starts[this.size] = offset;
+        this.ends[this.size] = offset;
+        this.size++;
+        return this.size - 1;
+    }
+
+    /**
+     * Sets the end offset of node {@code node}.
+     *
+     * @param node
+     *            the number of the node
+     * @param endOffset
+     *            the byte offset just past the last token of the node
+     */
+    void setEnd(int node, long endOffset) {
+        assert 0 <= node && node < this.size : ""
+                + "Violation of: 0 <= node < size()";
+        this.ends[node] = endOffset;
+    }
+
+    /**
+     * Records that the body of instruction {@code name} starts at node
+     * {@code node}.
+     *
+     * @param name
+     *            the instruction name
+     * @param node
+     *            the number of the first node of the body
+     */
+    void addInstruction(String name, int node) {
+        if (!this.instructions.hasKey(name)) {
+            this.instructions.add(name, node);
+        }
+    }
+
+    /**
+     * Records that the program body starts at node {@code node}.
+     *
+     * @param node
+     *            the number of the first node of the body
+     */
+    void setBody(int node) {
+        this.body = node;
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Removes all spans.
+     */
+    public void clear() {
+        this.size = 0;
+        this.instructions = new Map1L<>();
+        this.body = -1;
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the line of the first token of node {@code node}.
+     *
+     * @param node
+     *            the number of the node
+     * @return the start line, 1-based
+     * @requires 0 <= node < size()
+     */
+    public int startLine(int node) {
+        assert 0 <= node && node < this.size : ""
+                + "Violation of: 0 <= node < size()";
+        return this.lines[node];
+    }
+
+    /**
+     * Returns the column of the first token of node {@code node}.
+     *
+     * @param node
+     *            the number of the node
+     * @return the start column, 1-based
+     * @requires 0 <= node < size()
+     */
+    public int startColumn(int node) {
+        assert 0 <= node && node < this.size : ""
+                + "Violation of: 0 <= node < size()";
+        return this.columns[node];
+    }
+
+    /**
+     * Returns the byte offset of the first token of node {@code node}.
+     *
+     * @param node
+     *            the number of the node
+     * @return the start offset
+     * @requires 0 <= node < size()
+     */
+    public long startOffset(int node) {
+        assert 0 <= node && node < this.size : ""
+                + "Violation of: 0 <= node < size()";
+        return this.starts[node];
+    }
+
+    /**
+     * Returns the byte offset just past the last token of node
+     * {@code node}.
+     *
+     * @param node
+     *            the number of the node
+     * @return the end offset
+     * @requires 0 <= node < size()
+     */
+    public long endOffset(int node) {
+        assert 0 <= node && node < this.size : ""
+                + "Violation of: 0 <= node < size()";
+        return this.ends[node];
+    }
+
+    /**
+     * Reports whether the body of instruction {@code name} is mapped.
+     *
+     * @param name
+     *            the instruction name
+     * @return true iff the body of {@code name} is mapped
+     */
+    public boolean hasInstruction(String name) {
+        return this.instructions.hasKey(name);
+    }
+
+    /**
+     * Returns the number of the first node of the body of instruction
+     * {@code name}.
+     *
+     * @param name
+     *            the instruction name
+     * @return the number of the first node of the body
+     * @requires hasInstruction(name)
+     */
+    public int instructionNode(String name) {
+        assert this.instructions.hasKey(name) : ""
+                + "Violation of: hasInstruction(name)";
+        return this.instructions.value(name);
+    }
+
+    /**
+     * Returns the number of the first node of the program body, or -1 if the
+     * program body is not mapped.
+     *
+     * @return the number of the first node of the program body
+     */
+    public int bodyNode() {
+        return this.body;
+    }
+
+}
@@ -5,13 +5,18 @@ import components.simplewriter.SimpleWriter;
 import components.simplewriter.SimpleWriter1L;
 import components.statement.Statement;
 import components.statement.Statement1;
-import components.utilities.Reporter;
 import components.utilities.Tokenizer;
 
 /**
  * Layered implementation of secondary methods {@code parse} and
  * {@code parseBlock} for {@code Statement}.
  *
+ * <p>
+ * The state of a parse (its limits, nesting depth, positions, source map and
+ * pool of scratch statements) is passed down the calls of that parse and is
+ * never stored in a statement, so the statements a parse builds do not refer
+ * to it once the parse returns.
+ *
  * @author Ben Walls, Matthew Chandran
  *
  */
@@ -21,6 +26,44 @@ public final class Statement1Parse1 extends Statement1 {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Returns an empty statement to be parsed as part of the parse with state
+     * {@code state}, reusing one from the pool of {@code state} if it has
+     * one.
+     *
+     * @param s
+     *            a statement of the dynamic type to create
+     * @param state
+     *            the state of the parse, or {@code null}
+     * @return the new statement
+     * @ensures newStatement = compose((BLOCK, ?, ?), <>)
+     */
+    private static Statement newStatement(Statement s, ParseState state) {
+        Statement ns;
+        if (state == null) {
+            ns = s.newInstance();
+        } else {
+            ns = state.borrow();
+        }
+        return ns;
+    }
+
+    /**
+     * Returns {@code s}, an emptied statement from {@code newStatement}, to
+     * the pool of {@code state}.
+     *
+     * @param s
+     *            the statement
+     * @param state
+     *            the state of the parse, or {@code null}
+     * @requires s = compose((BLOCK, ?, ?), <>)
+     */
+    private static void releaseStatement(Statement s, ParseState state) {
+        if (state != null) {
+            state.release(s);
+        }
+    }
+
     /**
      * Converts {@code c} into the corresponding {@code Condition}.
      *
@@ -44,6 +87,8 @@ public final class Statement1Parse1 extends Statement1 {
      *            the input tokens
      * @param s
      *            the parsed statement
+     * @param state
+     *            the state of the parse, or {@code null}
      * @replaces s
      * @updates tokens
      * @requires <pre>
@@ -58,7 +103,8 @@ public final class Statement1Parse1 extends Statement1 {
      *  [reports an appropriate error message to the console and terminates client]
      * </pre>
      */
-    private static void parseIf(Queue<String> tokens, Statement s) {
+    private static void parseIf(Queue<String> tokens, Statement s,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert s != null : "Violation of: s is not null";
         assert tokens.length() > 0 && tokens.front().equals("IF") : ""
@@ -66,39 +112,53 @@ public final class Statement1Parse1 extends Statement1 {
 
         // consume start tokens
         tokens.dequeue();
-        Reporter.assertElseFatalError(Tokenizer.isCondition(tokens.front()),
-                "Error: Violated of valid condition after IF token");
-        Condition condition = parseCondition(tokens.dequeue());
+        if (state != null) {
+            state.enterNested();
+        }
+        String conditionToken = tokens.dequeue();
+        ParseState.check(Tokenizer.isCondition(conditionToken),
+                "Error: Violated of valid condition after IF token", state,
+                tokens);
+        Condition condition = parseCondition(conditionToken);
         String thenToken = tokens.dequeue();
-        Reporter.assertElseFatalError(thenToken.equals("THEN"),
+        ParseState.check(thenToken.equals("THEN"),
                 "Error: Keyword" + " \"" + "THEN" + "\" " + "expected, found: "
-                        + "\"" + thenToken + "\"");
+                        + "\"" + thenToken + "\"",
+                state, tokens);
 
         // parse if block
-        Statement ifStatement = s.newInstance();
-        ifStatement.parseBlock(tokens);
+        Statement ifStatement = newStatement(s, state);
+        parseBlock(tokens, ifStatement, state);
         if (tokens.front().equals("ELSE")) {
             // consume "ELSE" token
             tokens.dequeue();
             // parse else block
-            Statement elseStatement = s.newInstance();
-            elseStatement.parseBlock(tokens);
+            Statement elseStatement = newStatement(s, state);
+            parseBlock(tokens, elseStatement, state);
             // assemble if else statement
             s.assembleIfElse(condition, ifStatement, elseStatement);
+            releaseStatement(elseStatement, state);
         } else {
             // assemble if statement
             s.assembleIf(condition, ifStatement);
         }
+        releaseStatement(ifStatement, state);
 
         // consume end tokens
         String endToken = tokens.dequeue();
-        Reporter.assertElseFatalError(endToken.equals("END"),
+        ParseState.check(endToken.equals("END"),
                 "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
-                        + "\"" + endToken + "\"");
+                        + "\"" + endToken + "\"",
+                state, tokens);
         String ifToken = tokens.dequeue();
-        Reporter.assertElseFatalError(ifToken.equals("IF"),
+        ParseState.check(ifToken.equals("IF"),
                 "Error: Keyword" + " \"" + "IF" + "\" " + "expected, found: "
-                        + "\"" + ifToken + "\"");
+                        + "\"" + ifToken + "\"",
+                state, tokens);
+        if (state != null) {
+            state.exitNested();
+            state.endToken(tokens, ifToken);
+        }
 
     }
 
@@ -109,6 +169,8 @@ public final class Statement1Parse1 extends Statement1 {
      *            the input tokens
      * @param s
      *            the parsed statement
+     * @param state
+     *            the state of the parse, or {@code null}
      * @replaces s
      * @updates tokens
      * @requires <pre>
@@ -123,7 +185,8 @@ public final class Statement1Parse1 extends Statement1 {
      *  [reports an appropriate error message to the console and terminates client]
      * </pre>
      */
-    private static void parseWhile(Queue<String> tokens, Statement s) {
+    private static void parseWhile(Queue<String> tokens, Statement s,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert s != null : "Violation of: s is not null";
         assert tokens.length() > 0 && tokens.front().equals("WHILE") : ""
@@ -131,29 +194,42 @@ public final class Statement1Parse1 extends Statement1 {
 
         // consume start tokens
         tokens.dequeue();
-        Reporter.assertElseFatalError(Tokenizer.isCondition(tokens.front()),
-                "Error: Violated of valid condition after WHILE token");
-        Condition condition = parseCondition(tokens.dequeue());
+        if (state != null) {
+            state.enterNested();
+        }
+        String conditionToken = tokens.dequeue();
+        ParseState.check(Tokenizer.isCondition(conditionToken),
+                "Error: Violated of valid condition after WHILE token", state,
+                tokens);
+        Condition condition = parseCondition(conditionToken);
         String doToken = tokens.dequeue();
-        Reporter.assertElseFatalError(doToken.equals("DO"),
+        ParseState.check(doToken.equals("DO"),
                 "Error: Keyword" + " \"" + "DO" + "\" " + "expected, found: "
-                        + "\"" + doToken + "\"");
+                        + "\"" + doToken + "\"",
+                state, tokens);
         // parse block
-        Statement ns = s.newInstance();
-        ns.parseBlock(tokens);
+        Statement ns = newStatement(s, state);
+        parseBlock(tokens, ns, state);
 
         // consume end tokens
         String endToken = tokens.dequeue();
-        Reporter.assertElseFatalError(endToken.equals("END"),
+        ParseState.check(endToken.equals("END"),
                 "Error: Keyword" + " \"" + "END" + "\" " + "expected, found: "
-                        + "\"" + endToken + "\"");
+                        + "\"" + endToken + "\"",
+                state, tokens);
         String whileToken = tokens.dequeue();
-        Reporter.assertElseFatalError(whileToken.equals("WHILE"),
+        ParseState.check(whileToken.equals("WHILE"),
                 "Error: Keyword" + " \"" + "WHILE" + "\" " + "expected, found: "
-                        + "\"" + whileToken + "\"");
+                        + "\"" + whileToken + "\"",
+                state, tokens);
+        if (state != null) {
+            state.exitNested();
+            state.endToken(tokens, whileToken);
+        }
 
         // assemble if statement
         s.assembleWhile(condition, ns);
+        releaseStatement(ns, state);
 
     }
 
@@ -164,6 +240,8 @@ public final class Statement1Parse1 extends Statement1 {
      *            the input tokens
      * @param s
      *            the parsed statement
+     * @param state
+     *            the state of the parse, or {@code null}
      * @replaces s
      * @updates tokens
      * @requires [identifier string is a proper prefix of tokens]
@@ -173,7 +251,8 @@ public final class Statement1Parse1 extends Statement1 {
      *  #tokens = [identifier string at start of #tokens] * tokens
      * </pre>
      */
-    private static void parseCall(Queue<String> tokens, Statement s) {
+    private static void parseCall(Queue<String> tokens, Statement s,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert s != null : "Violation of: s is not null";
         assert tokens.length() > 0
@@ -181,87 +260,224 @@ public final class Statement1Parse1 extends Statement1 {
                         + "Violation of: identifier string is proper prefix of tokens";
 
         String instruction = tokens.dequeue();
-        Reporter.assertElseFatalError(
+        ParseState.check(
                 Tokenizer.isIdentifier(instruction)
                         || Tokenizer.isKeyword(instruction),
                 "Error: identifier or keyword expected, found: " + "\""
-                        + instruction + "\"");
+                        + instruction + "\"",
+                state, tokens);
+        if (state != null) {
+            instruction = state.intern(instruction);
+            state.endToken(tokens, instruction);
+        }
         s.assembleCall(instruction);
     }
 
     /*
-     * Constructors -----------------------------------------------------------
+     * Package-private members ------------------------------------------------
      */
 
     /**
-     * No-argument constructor.
-     */
-    public Statement1Parse1() {
-        super();
-    }
-
-    /*
-     * Public methods ---------------------------------------------------------
+     * Parses a single BL statement from {@code tokens} into {@code s}, as
+     * part of the parse with state {@code state}.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed statement
+     * @param state
+     *            the state of the parse, or {@code null} if no limits are
+     *            enforced and no positions are tracked
+     * @replaces s
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a statement string is a proper prefix of #tokens] then
+     *  s = [Statement corresponding to statement string at start of #tokens]  and
+     *  #tokens = [statement string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
      */
-
-    @Override
-    public void parse(Queue<String> tokens) {
+    static void parse(Queue<String> tokens, Statement s, ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
 
         // parse statement
-        Statement tmpStatement = this.newInstance();
+        int node = -1;
+        if (state != null) {
+            node = state.beginNode(tokens);
+        }
+        Statement tmpStatement = newStatement(s, state);
         switch (tokens.front()) {
             case "IF": {
-                parseIf(tokens, tmpStatement);
+                parseIf(tokens, tmpStatement, state);
                 break;
             }
             case "IF_ELSE": {
-                parseIf(tokens, tmpStatement);
+                parseIf(tokens, tmpStatement, state);
                 break;
             }
             case "WHILE": {
-                parseWhile(tokens, tmpStatement);
+                parseWhile(tokens, tmpStatement, state);
                 break;
             }
             default: {
-                Reporter.assertElseFatalError(
+                ParseState.checkFront(
                         Tokenizer.isIdentifier(tokens.front()) || tokens.front()
                                 .equals(Tokenizer.END_OF_INPUT),
                         "Error: Expect an Identifier, \"IF\", \"IF_ELSE\", \"WHILE\", \"### END OF INPUT ### \" found: \""
-                                + tokens.front() + "\"");
-                parseCall(tokens, tmpStatement);
+                                + tokens.front() + "\"",
+                        state, tokens);
+                parseCall(tokens, tmpStatement, state);
                 break;
             }
         }
 
-        // replace this with temporary statement
-        this.transferFrom(tmpStatement);
+        if (state != null) {
+            state.endNode(node);
+        }
+
+        // replace s with temporary statement
+        s.transferFrom(tmpStatement);
+        releaseStatement(tmpStatement, state);
     }
 
-    @Override
-    public void parseBlock(Queue<String> tokens) {
+    /**
+     * Parses a maximally long sequence of BL statements from {@code tokens}
+     * into the block {@code s}, as part of the parse with state
+     * {@code state}. The parse stops at the next statement boundary if the
+     * cancellation token of {@code state} is cancelled or expired.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param s
+     *            the parsed block
+     * @param state
+     *            the state of the parse, or {@code null} if no limits are
+     *            enforced and no positions are tracked
+     * @replaces s
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [there is a block string at start of #tokens] then
+     *  s = [BLOCK Statement corresponding to block string at start of #tokens]  and
+     *  #tokens = [block string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    static void parseBlock(Queue<String> tokens, Statement s,
+            ParseState state) {
         assert tokens != null : "Violation of: tokens is not null";
         assert tokens.length() > 0 : ""
                 + "Violation of: Tokenizer.END_OF_INPUT is a suffix of tokens";
 
-        Statement tmpBlock = this.newInstance();
+        int node = -1;
+        if (state != null) {
+            state.checkCancelled();
+            node = state.beginNode(tokens);
+        }
+        Statement tmpBlock = newStatement(s, state);
         int counter = 0;
         while (!tokens.front().equals(Tokenizer.END_OF_INPUT)
                 && !tokens.front().equals("END")
                 && !tokens.front().equals("ELSE")) {
-            Statement child = this.newInstance();
+            if (state != null) {
+                state.checkCancelled();
+            }
+            Statement child = newStatement(s, state);
             // parse child
-            child.parse(tokens);
+            parse(tokens, child, state);
             // add child statement to block
             tmpBlock.addToBlock(counter, child);
+            releaseStatement(child, state);
             counter++;
         }
 
-        // replace this with temporary block
-        this.transferFrom(tmpBlock);
+        if (state != null) {
+            state.endNode(node);
+        }
+
+        // replace s with temporary block
+        s.transferFrom(tmpBlock);
+        releaseStatement(tmpBlock, state);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
 
+    /**
+     * No-argument constructor.
+     */
+    public Statement1Parse1() {
+        super();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void parse(Queue<String> tokens) {
+        parse(tokens, this, null);
+    }
+
+    @Override
+    public void parseBlock(Queue<String> tokens) {
+        parseBlock(tokens, this, null);
+    }
+
+    /**
+     * Parses a single BL statement from {@code tokens} into {@code this},
+     * rejecting a statement that nests IF and WHILE statements deeper than
+     * {@code limits} allows.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param limits
+     *            the limits enforced while parsing
+     * @replaces this
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [a statement string within limits is a proper prefix of #tokens] then
+     *  this = [Statement corresponding to statement string at start of #tokens]  and
+     *  #tokens = [statement string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parse(Queue<String> tokens, ParseLimits limits) {
+        assert limits != null : "Violation of: limits is not null";
+        parse(tokens, this, new ParseState(limits));
+    }
+
+    /**
+     * Parses a maximally long sequence of BL statements from {@code tokens}
+     * into the block {@code this}, rejecting a block that nests IF and WHILE
+     * statements deeper than {@code limits} allows.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param limits
+     *            the limits enforced while parsing
+     * @replaces this
+     * @updates tokens
+     * @requires [<Tokenizer.END_OF_INPUT> is a suffix of tokens]
+     * @ensures <pre>
+     * if [there is a block string within limits at start of #tokens] then
+     *  this = [BLOCK Statement corresponding to block string at start of #tokens]  and
+     *  #tokens = [block string at start of #tokens] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    public void parseBlock(Queue<String> tokens, ParseLimits limits) {
+        assert limits != null : "Violation of: limits is not null";
+        parseBlock(tokens, this, new ParseState(limits));
     }
 
     /*
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Table that interns the identifiers of BL programs to dense int ids. The
+ * primitive instructions have the fixed reserved ids {@code MOVE} to
+ * {@code SKIP}; every other identifier gets the next free id the first time it
+ * is interned. Each id maps back to a single {@code String} instance, so the
+ * names stored by a parse that uses the table are shared, and anything indexed
+ * by id can be looked up in an array. A table may be owned by one program or
+ * shared by the parses of many, one after another. A table is not safe for
+ * use by more than one thread at a time; give the parses on each thread a
+ * table of their own.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class SymbolTable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Names of the primitive instructions, by reserved id.
+     */
+    private static final String[] PRIMITIVES = { "move", "turnleft",
+            "turnright", "infect", "skip" };
+
+    /**
+     * Initial capacity of the name array.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Names, by id.
+     */
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    /**
+     * Ids, by name.
+     */
+    private final Map<String, Integer> ids = new Map1L<>();
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * Reserved id of primitive instruction "move".
+     */
+    public static final int MOVE = 0;
+
+    /**
+     * Reserved id of primitive instruction "turnleft".
+     */
+    public static final int TURNLEFT = 1;
+
+    /**
+     * Reserved id of primitive instruction "turnright".
+     */
+    public static final int TURNRIGHT = 2;
+
+    /**
+     * Reserved id of primitive instruction "infect".
+     */
+    public static final int INFECT = 3;
+
+    /**
+     * Reserved id of primitive instruction "skip".
+     */
+    public static final int SKIP = 4;
+
+    /**
+     * Number of reserved ids.
+     */
+    public static final int PRIMITIVE_COUNT = PRIMITIVES.length;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor; the table holds only the primitive
+     * instructions.
+     */
+    public SymbolTable() {
+        for (String primitive : PRIMITIVES) {
+            this.intern(primitive);
+        }
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the id of {@code name}, giving it the next free id if it has
+     * none yet.
+     *
+     * @param name
+     *            the identifier
+     * @return the id of {@code name}
+     * @ensures name(intern) = name
+     */
+    public int intern(String name) {
+        assert name != null : "Violation of: name is not null";
+        int id;
+        if (this.ids.hasKey(name)) {
+            id = this.ids.value(name);
+        } else {
+            id = this.ids.size();
+            if (id == this.names.length) {
+                this.names = Arrays.copyOf(this.names, 2 * id);
+            }
+            this.names[id] = name;
+            this.ids.add(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of {@code name}, or -1 if it has not been interned.
+     *
+     * @param name
+     *            the identifier
+     * @return the id of {@code name}, or -1
+     */
+    public int id(String name) {
+        assert name != null : "Violation of: name is not null";
+        int id = -1;
+        if (this.ids.hasKey(name)) {
+            id = this.ids.value(name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the name with id {@code id}; every call with the same id returns
+     * the same instance.
+     *
+     * @param id
+     *            the id
+     * @return the name with id {@code id}
+     * @requires 0 <= id < size()
+     */
+    public String name(int id) {
+        assert 0 <= id && id < this.ids.size() : ""
+                + "Violation of: 0 <= id < size()";
+        return this.names[id];
+    }
+
+    /**
+     * Returns the number of ids given out, including the reserved ones.
+     *
+     * @return the number of ids
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Reports whether {@code id} is the id of a primitive instruction.
+     *
+     * @param id
+     *            the id
+     * @return true iff {@code id} is a reserved id
+     */
+    public static boolean isPrimitive(int id) {
+        return 0 <= id && id < PRIMITIVE_COUNT;
+    }
+
+}
@@ -0,0 +1,570 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+import components.map.Map;
+import components.queue.Queue;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * Driver of the table-driven BL parser: a single loop that walks the LL(1)
+ * parse table of {@code Grammar.BL} with a stack of grammar symbols, and runs
+ * the semantic actions of the grammar on stacks of statements, conditions
+ * and names to build the {@code Statement}s and context. Each token is
+ * classified once, as a terminal number, so choosing a production is a
+ * single table access however many alternatives there are.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+final class TableParser {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The grammar.
+     */
+    private static final Grammar GRAMMAR = Grammar.BL;
+
+    /**
+     * Number of terminals.
+     */
+    private static final int TERMINALS = GRAMMAR.terminalCount();
+
+    /**
+     * Number of terminals and nonterminals; the actions are numbered from
+     * here.
+     */
+    private static final int ACTIONS = TERMINALS
+            + GRAMMAR.nonterminalCount();
+
+    /**
+     * The right sides of the productions.
+     */
+    private static final int[] RIGHTS = GRAMMAR.rights();
+
+    /**
+     * Terminal number of {@code Tokenizer.END_OF_INPUT}.
+     */
+    private static final int END_OF_INPUT = GRAMMAR.terminal("$");
+
+    /**
+     * Terminal number of identifiers.
+     */
+    private static final int IDENTIFIER = GRAMMAR.terminal("<identifier>");
+
+    /**
+     * Terminal number of conditions.
+     */
+    private static final int CONDITION = GRAMMAR.terminal("<condition>");
+
+    /**
+     * Terminal number of names, which match any token but the end of the
+     * input.
+     */
+    private static final int NAME = GRAMMAR.terminal("<name>");
+
+    /**
+     * Nonterminal numbers of contexts and statements, and terminal number of
+     * "BEGIN", for {@code checkNested}.
+     */
+    private static final int CONTEXT = GRAMMAR.nonterminal("context"),
+            STATEMENT = GRAMMAR.nonterminal("statement"),
+            BEGIN = GRAMMAR.terminal("BEGIN");
+
+    /**
+     * Terminal number of each keyword, by its text.
+     */
+    private static final HashMap<String, Integer> KEYWORDS = keywords();
+
+    /**
+     * Codes of the actions of the grammar.
+     */
+    private static final int PROGRAM = 0, END_PROGRAM = 1, INSTRUCTION = 2,
+            END_INSTRUCTION = 3, BLOCK = 4, ADD = 5, CONDITION_ACTION = 6,
+            IF = 7, IF_ELSE = 8, WHILE = 9, CALL = 10;
+
+    /**
+     * Names of the actions, by code.
+     */
+    private static final String[] ACTION_NAMES = { "program", "endProgram",
+        "instruction", "endInstruction", "block", "add", "condition", "if",
+        "ifElse", "while", "call" };
+
+    /**
+     * Code of each action of the grammar, by action number less
+     * {@code ACTIONS}.
+     */
+    private static final int[] ACTION_CODES = actionCodes();
+
+    /**
+     * All conditions, by ordinal.
+     */
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /**
+     * Initial capacity of the stacks.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The state of the parse, for limits, interning and error positions.
+     */
+    private final ParseState state;
+
+    /**
+     * Statement of the dynamic type to build.
+     */
+    private final Statement prototype;
+
+    /**
+     * The context built, or {@code null} if no program is parsed.
+     */
+    private final Map<String, Statement> context;
+
+    /**
+     * The stack of grammar symbols.
+     */
+    private int[] symbols = new int[INITIAL_CAPACITY];
+
+    /**
+     * The stack of statements built.
+     */
+    private Statement[] statements = new Statement[INITIAL_CAPACITY];
+
+    /**
+     * Number of statements on the stack.
+     */
+    private int statementCount = 0;
+
+    /**
+     * The stack of conditions, by ordinal.
+     */
+    private int[] conditions = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of conditions on the stack.
+     */
+    private int conditionCount = 0;
+
+    /**
+     * The program name, or {@code null}.
+     */
+    private String programName = null;
+
+    /**
+     * The name of the instruction being parsed, or {@code null}.
+     */
+    private String instructionName = null;
+
+    /**
+     * Empty statements to reuse.
+     */
+    private Statement[] spare = new Statement[INITIAL_CAPACITY];
+
+    /**
+     * Number of empty statements to reuse.
+     */
+    private int spareCount = 0;
+
+    /**
+     * Returns the terminal number of each keyword of the grammar.
+     *
+     * @return the keyword numbers
+     */
+    private static HashMap<String, Integer> keywords() {
+        HashMap<String, Integer> keywords = new HashMap<>();
+        for (int t = 0; t < TERMINALS; t++) {
+            if (t != END_OF_INPUT && t != IDENTIFIER && t != CONDITION
+                    && t != NAME) {
+                keywords.put(GRAMMAR.name(t), t);
+            }
+        }
+        return keywords;
+    }
+
+    /**
+     * Returns the code of each action of the grammar.
+     *
+     * @return the action codes
+     * @throws IllegalStateException
+     *             if the grammar has an action this parser does not know
+     */
+    private static int[] actionCodes() {
+        int[] codes = new int[GRAMMAR.actionCount()];
+        Arrays.fill(codes, -1);
+        for (int code = 0; code < ACTION_NAMES.length; code++) {
+            int action = GRAMMAR.action(ACTION_NAMES[code]);
+            if (action >= 0) {
+                codes[action - ACTIONS] = code;
+            }
+        }
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] < 0) {
+                throw new IllegalStateException("Grammar action without code: "
+                        + GRAMMAR.name(ACTIONS + i));
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the terminal number of {@code token}, or -1 if it is no
+     * terminal of the grammar.
+     *
+     * @param token
+     *            the token
+     * @return the terminal number, or -1
+     */
+    private static int classify(String token) {
+        Integer keyword = KEYWORDS.get(token);
+        int terminal = -1;
+        if (keyword != null) {
+            terminal = keyword;
+        } else if (token.equals(Tokenizer.END_OF_INPUT)) {
+            terminal = END_OF_INPUT;
+        } else if (Tokenizer.isCondition(token)) {
+            terminal = CONDITION;
+        } else if (Tokenizer.isIdentifier(token)) {
+            terminal = IDENTIFIER;
+        }
+        return terminal;
+    }
+
+    /**
+     * Returns an empty statement of the type of {@code prototype}.
+     *
+     * @return the statement
+     * @ensures borrow = compose((BLOCK, ?, ?), <>)
+     */
+    private Statement borrow() {
+        Statement s;
+        if (this.spareCount > 0) {
+            this.spareCount--;
+            s = this.spare[this.spareCount];
+            this.spare[this.spareCount] = null;
+        } else {
+            s = this.prototype.newInstance();
+        }
+        return s;
+    }
+
+    /**
+     * Keeps {@code s}, an emptied statement, for reuse.
+     *
+     * @param s
+     *            the statement
+     * @requires s = compose((BLOCK, ?, ?), <>)
+     */
+    private void release(Statement s) {
+        if (this.spareCount == this.spare.length) {
+            this.spare = Arrays.copyOf(this.spare, 2 * this.spareCount);
+        }
+        this.spare[this.spareCount] = s;
+        this.spareCount++;
+    }
+
+    /**
+     * Pushes {@code s} on the stack of statements.
+     *
+     * @param s
+     *            the statement
+     */
+    private void push(Statement s) {
+        if (this.statementCount == this.statements.length) {
+            this.statements = Arrays.copyOf(this.statements,
+                    2 * this.statementCount);
+        }
+        this.statements[this.statementCount] = s;
+        this.statementCount++;
+    }
+
+    /**
+     * Pops the stack of statements.
+     *
+     * @return the statement popped
+     */
+    private Statement pop() {
+        this.statementCount--;
+        Statement s = this.statements[this.statementCount];
+        this.statements[this.statementCount] = null;
+        return s;
+    }
+
+    /**
+     * Pops the stack of conditions.
+     *
+     * @return the condition popped
+     */
+    private Condition popCondition() {
+        this.conditionCount--;
+        this.state.exitNested();
+        return CONDITIONS[this.conditions[this.conditionCount]];
+    }
+
+    /**
+     * Runs the action with code {@code code}, where {@code last} is the last
+     * token matched.
+     *
+     * @param code
+     *            the action code
+     * @param last
+     *            the last token matched
+     * @param tokens
+     *            the tokens being parsed, for error positions
+     */
+    private void act(int code, String last, Queue<String> tokens) {
+        switch (code) {
+            case PROGRAM: {
+                this.programName = last;
+                break;
+            }
+            case END_PROGRAM: {
+                ParseState.check(last.equals(this.programName),
+                        "Error: Keyword" + " \"" + this.programName + "\" "
+                                + "expected, found: " + "\"" + last + "\"",
+                        this.state, tokens);
+                break;
+            }
+            case INSTRUCTION: {
+                this.instructionName = last;
+                break;
+            }
+            case END_INSTRUCTION: {
+                ParseState.check(last.equals(this.instructionName),
+                        "Error: Keyword" + " \"" + this.instructionName
+                                + "\" " + "expected, found: " + "\"" + last
+                                + "\"",
+                        this.state, tokens);
+                ParseState.check(!this.context.hasKey(this.instructionName),
+                        "Error: There must be no repeat instruction names",
+                        this.state, tokens);
+                this.context.add(this.state.intern(this.instructionName),
+                        this.pop());
+                this.state.limits().checkInstructions(this.context.size());
+                break;
+            }
+            case BLOCK: {
+                this.push(this.borrow());
+                break;
+            }
+            case ADD: {
+                Statement child = this.pop();
+                Statement block = this.statements[this.statementCount - 1];
+                block.addToBlock(block.lengthOfBlock(), child);
+                this.release(child);
+                break;
+            }
+            case CONDITION_ACTION: {
+                if (this.conditionCount == this.conditions.length) {
+                    this.conditions = Arrays.copyOf(this.conditions,
+                            2 * this.conditionCount);
+                }
+                this.conditions[this.conditionCount] = Condition
+                        .valueOf(last.replace('-', '_').toUpperCase())
+                        .ordinal();
+                this.conditionCount++;
+                this.state.enterNested();
+                break;
+            }
+            case IF: {
+                Statement block = this.pop();
+                Statement s = this.borrow();
+                s.assembleIf(this.popCondition(), block);
+                this.release(block);
+                this.push(s);
+                break;
+            }
+            case IF_ELSE: {
+                Statement elseBlock = this.pop();
+                Statement ifBlock = this.pop();
+                Statement s = this.borrow();
+                s.assembleIfElse(this.popCondition(), ifBlock, elseBlock);
+                this.release(elseBlock);
+                this.release(ifBlock);
+                this.push(s);
+                break;
+            }
+            case WHILE: {
+                Statement block = this.pop();
+                Statement s = this.borrow();
+                s.assembleWhile(this.popCondition(), block);
+                this.release(block);
+                this.push(s);
+                break;
+            }
+            default: {
+                Statement s = this.borrow();
+                s.assembleCall(this.state.intern(last));
+                this.push(s);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reports the error of finding {@code token} where grammar symbol
+     * {@code expected} was expected.
+     *
+     * @param expected
+     *            the symbol expected
+     * @param token
+     *            the token found
+     * @param tokens
+     *            the tokens being parsed, for error positions
+     */
+    private void error(int expected, String token, Queue<String> tokens) {
+        String what;
+        if (expected < TERMINALS) {
+            what = "\"" + GRAMMAR.name(expected) + "\"";
+        } else {
+            StringBuilder list = new StringBuilder();
+            for (int t = 0; t < TERMINALS; t++) {
+                if (GRAMMAR.production(expected, t) >= 0) {
+                    if (list.length() > 0) {
+                        list.append(", ");
+                    }
+                    list.append('"').append(GRAMMAR.name(t)).append('"');
+                }
+            }
+            what = "One of " + list;
+        }
+        ParseState.check(false, "Error: " + what + " expected, found: " + "\""
+                + token + "\"", this.state, tokens);
+    }
+
+    /**
+     * Fails on lookahead {@code terminal} for {@code nonterminal}, which has
+     * no production on it, as {@code Program1Parse1} and
+     * {@code Statement1Parse1} do with assertions enabled: they start a
+     * nested parse on any token but "BEGIN" in a context, as an instruction,
+     * and on the end of the input in a statement, as a call, whose
+     * precondition then fails. So both parsers reject each input the same
+     * way.
+     *
+     * @param nonterminal
+     *            the nonterminal expanded
+     * @param terminal
+     *            the lookahead terminal, or -1
+     */
+    private static void checkNested(int nonterminal, int terminal) {
+        assert nonterminal != CONTEXT || terminal == BEGIN : ""
+                + "Violation of: <\"INSTRUCTION\"> is proper prefix of tokens";
+        assert nonterminal != STATEMENT || terminal != END_OF_INPUT : ""
+                + "Violation of: identifier string is proper prefix of tokens";
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for a parse with state {@code state}, building statements
+     * of the type of {@code prototype} and, if a program is parsed, its
+     * context in {@code context}.
+     *
+     * @param state
+     *            the state of the parse
+     * @param prototype
+     *            a statement of the dynamic type to build
+     * @param context
+     *            the context built, or {@code null} if no program is parsed
+     */
+    TableParser(ParseState state, Statement prototype,
+            Map<String, Statement> context) {
+        assert state != null : "Violation of: state is not null";
+        assert prototype != null : "Violation of: prototype is not null";
+        this.state = state;
+        this.prototype = prototype;
+        this.context = context;
+    }
+
+    /*
+     * Package-private methods ------------------------------------------------
+     */
+
+    /**
+     * Parses the longest prefix of {@code tokens} derived from nonterminal
+     * {@code start} of {@code Grammar.BL} and returns the statement built
+     * last: the body of a program, a block or a statement.
+     *
+     * @param tokens
+     *            the input tokens
+     * @param start
+     *            the name of the start nonterminal
+     * @return the statement built
+     * @updates tokens
+     * @requires <pre>
+     * [<Tokenizer.END_OF_INPUT> is a suffix of tokens]  and
+     *  [start is a start symbol of Grammar.BL]
+     * </pre>
+     * @ensures <pre>
+     * if [a string derived from start is a prefix of #tokens, followed by a
+     *     token that may follow start] then
+     *  #tokens = [that string] * tokens
+     * else
+     *  [report an appropriate error message to the console and terminate client]
+     * </pre>
+     */
+    Statement parse(Queue<String> tokens, String start) {
+        int top = 0;
+        this.symbols[top] = GRAMMAR.nonterminal(start);
+        top++;
+        String token = tokens.front();
+        int terminal = classify(token);
+        String last = null;
+        while (top > 0) {
+            top--;
+            int symbol = this.symbols[top];
+            if (symbol < TERMINALS) {
+                if (symbol != terminal
+                        && (symbol != NAME || terminal == END_OF_INPUT)) {
+                    this.error(symbol, token, tokens);
+                }
+                if (symbol != END_OF_INPUT) {
+                    last = tokens.dequeue();
+                    token = tokens.front();
+                    terminal = classify(token);
+                }
+            } else if (symbol < ACTIONS) {
+                int p = -1;
+                if (terminal >= 0) {
+                    p = GRAMMAR.production(symbol, terminal);
+                }
+                if (p < 0) {
+                    checkNested(symbol, terminal);
+                    this.error(symbol, token, tokens);
+                }
+                int from = GRAMMAR.rightStart(p);
+                int to = GRAMMAR.rightEnd(p);
+                if (top + to - from > this.symbols.length) {
+                    this.symbols = Arrays.copyOf(this.symbols,
+                            2 * (top + to - from));
+                }
+                for (int i = to - 1; i >= from; i--) {
+                    this.symbols[top] = RIGHTS[i];
+                    top++;
+                }
+            } else {
+                this.act(ACTION_CODES[symbol - ACTIONS], last, tokens);
+            }
+        }
+        assert this.statementCount == 1 : ""
+                + "Violation of: [the grammar builds one statement]";
+        return this.pop();
+    }
+
+    /**
+     * Returns the program name parsed, or {@code null} if no program was
+     * parsed.
+     *
+     * @return the program name
+     */
+    String programName() {
+        return this.programName;
+    }
+
+}
@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.utilities.Tokenizer;
+
+/**
+ * Source positions of a sequence of tokens, kept in primitive arrays parallel
+ * to the tokens so that no object is created per token: the line (1-based),
+ * the column (1-based, in characters) and the byte offset (0-based, in the
+ * UTF-8 encoding of the input) of the first character of each token. A line
+ * ends at "\n", "\r\n" or "\r", like the lines of {@code SimpleReader}, and
+ * each terminator counts for as many bytes as it has.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class TokenPositions {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the position arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Line of each token; only the first {@code length} entries are used.
+     */
+    private int[] lines = new int[INITIAL_CAPACITY];
+
+    /**
+     * Column of each token; only the first {@code length} entries are used.
+     */
+    private int[] columns = new int[INITIAL_CAPACITY];
+
+    /**
+     * Byte offset of each token; only the first {@code length} entries are
+     * used.
+     */
+    private long[] offsets = new long[INITIAL_CAPACITY];
+
+    /**
+     * Number of positions.
+     */
+    private int length = 0;
+
+    /*
+     * Package-private members ------------------------------------------------
+     */
+
+    /**
+     * Returns the number of bytes of {@code c} in UTF-8, counting each half
+     * of a surrogate pair as half of the four bytes of the pair.
+     *
+     * @param c
+     *            the character
+     * @return the number of bytes of {@code c}
+     */
+    static int byteLength(char c) {
+        int n = 3;
+        if (c < 0x80) {
+            n = 1;
+        } else if (c < 0x800 || Character.isSurrogate(c)) {
+            n = 2;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of bytes of {@code s} in UTF-8.
+     *
+     * @param s
+     *            the string
+     * @return the number of bytes of {@code s}
+     */
+    static int byteLength(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            n += byteLength(s.charAt(i));
+        }
+        return n;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public TokenPositions() {
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the number of positions.
+     *
+     * @return the number of positions
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns the line of the {@code i}-th token.
+     *
+     * @param i
+     *            the index of the token
+     * @return the line, 1-based
+     * @requires 0 <= i < length()
+     */
+    public int line(int i) {
+        assert 0 <= i && i < this.length : "Violation of: 0 <= i < length()";
+        return this.lines[i];
+    }
+
+    /**
+     * Returns the column of the {@code i}-th token.
+     *
+     * @param i
+     *            the index of the token
+     * @return the column, 1-based
+     * @requires 0 <= i < length()
+     */
+    public int column(int i) {
+        assert 0 <= i && i < this.length : "Violation of: 0 <= i < length()";
+        return this.columns[i];
+    }
+
+    /**
+     * Returns the byte offset of the {@code i}-th token.
+     *
+     * @param i
+     *            the index of the token
+     * @return the byte offset, 0-based
+     * @requires 0 <= i < length()
+     */
+    public long offset(int i) {
+        assert 0 <= i && i < this.length : "Violation of: 0 <= i < length()";
+        return this.offsets[i];
+    }
+
+    /**
+     * Removes all positions.
+     */
+    public void clear() {
+        this.length = 0;
+    }
+
+    /**
+     * Adds the position at line {@code line}, column {@code column} and byte
+     * offset {@code offset} at the end.
+     *
+     * @param line
+     *            the line, 1-based
+     * @param column
+     *            the column, 1-based
+     * @param offset
+     *            the byte offset, 0-based
+     * @requires 1 <= line  and  1 <= column  and  0 <= offset
+     */
+    public void add(int line, int column, long offset) {
+        assert 1 <= line : "Violation of: 1 <= line";
+        assert 1 <= column : "Violation of: 1 <= column";
+        assert 0 <= offset : "Violation of: 0 <= offset";
+        if (this.length == this.lines.length) {
+            int capacity = 2 * this.length;
+            this.lines = Arrays.copyOf(this.lines, capacity);
+            this.columns = Arrays.copyOf(this.columns, capacity);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+        }
+        this.lines[this.length] = line;
+        this.columns[this.length] = column;
+        this.offsets[this.length] = offset;
+        this.length++;
+    }
+
+    /**
+     * Tokenizes the input from {@code in} like {@code Tokenizer.tokens} and
+     * replaces these positions with the positions of the tokens, the last one
+     * being the end of the input, where {@code Tokenizer.END_OF_INPUT} is.
+     *
+     * @param in
+     *            the input stream
+     * @return the tokens of the input, followed by
+     *         {@code Tokenizer.END_OF_INPUT}
+     * @updates in.content
+     * @replaces this
+     * @requires in.is_open
+     * @ensures <pre>
+     * tokens = [the tokens in #in.content] * <Tokenizer.END_OF_INPUT>  and
+     *  this = [the positions of tokens in #in.content]  and
+     *  in.content = <>
+     * </pre>
+     */
+    public Queue<String> tokens(SimpleReader in) {
+        assert in != null : "Violation of: in is not null";
+        assert in.isOpen() : "Violation of: in.is_open";
+        this.clear();
+        Queue<String> tokens = new Queue1L<>();
+        StringBuilder token = new StringBuilder();
+        int line = 1;
+        int column = 1;
+        long offset = 0;
+        int tokenColumn = 0;
+        long tokenOffset = 0;
+        int endLine = 1;
+        int endColumn = 1;
+        long endOffset = 0;
+        boolean afterCr = false;
+        while (!in.atEOS()) {
+            char c = in.read();
+            if (!Character.isWhitespace(c)) {
+                if (token.length() == 0) {
+                    tokenColumn = column;
+                    tokenOffset = offset;
+                }
+                token.append(c);
+            } else if (token.length() > 0) {
+                tokens.enqueue(token.toString());
+                this.add(line, tokenColumn, tokenOffset);
+                token.setLength(0);
+            }
+            if (c == '\n' || c == '\r') {
+                if (!(c == '\n' && afterCr)) {
+                    endLine = line;
+                    endColumn = column;
+                    endOffset = offset;
+                    line++;
+                    column = 1;
+                }
+            } else {
+                column++;
+            }
+            afterCr = c == '\r';
+            offset += byteLength(c);
+        }
+        if (token.length() > 0) {
+            tokens.enqueue(token.toString());
+            this.add(line, tokenColumn, tokenOffset);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        if (column > 1) {
+            this.add(line, column, offset);
+        } else {
+            this.add(endLine, endColumn, endOffset);
+        }
+        return tokens;
+    }
+
+}
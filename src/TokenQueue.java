@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.queue.Queue;
+import components.queue.QueueSecondary;
+
+/**
+ * {@code Queue<String>} of tokens kept in a circular array, so that
+ * {@code enqueue} and {@code dequeue} create no objects and {@code front} is a
+ * single array access. Unlike the other kernel implementations, {@code clear}
+ * keeps the array, so one queue can be refilled for parse after parse.
+ *
+ * @convention <pre>
+ * 0 <= $this.head < |$this.items|  and
+ * 0 <= $this.length <= |$this.items|  and
+ * [the entries of $this.items outside the queue are null]
+ * </pre>
+ * @correspondence <pre>
+ * this = [the $this.length entries of $this.items from $this.head on,
+ *         wrapping around at the end]
+ * </pre>
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+final class TokenQueue extends QueueSecondary<String> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The entries.
+     */
+    private String[] items;
+
+    /**
+     * Position of the front entry.
+     */
+    private int head;
+
+    /**
+     * Number of entries.
+     */
+    private int length;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.items = new String[INITIAL_CAPACITY];
+        this.head = 0;
+        this.length = 0;
+    }
+
+    /**
+     * Returns the position in {@code items} of entry {@code i} of the queue.
+     *
+     * @param i
+     *            the position in the queue
+     * @return the position in {@code items}
+     */
+    private int slot(int i) {
+        int slot = this.head + i;
+        if (slot >= this.items.length) {
+            slot -= this.items.length;
+        }
+        return slot;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    TokenQueue() {
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public Queue<String> newInstance() {
+        return new TokenQueue();
+    }
+
+    @Override
+    public void clear() {
+        if (this.head + this.length <= this.items.length) {
+            Arrays.fill(this.items, this.head, this.head + this.length, null);
+        } else {
+            Arrays.fill(this.items, this.head, this.items.length, null);
+            Arrays.fill(this.items, 0, this.slot(this.length), null);
+        }
+        this.head = 0;
+        this.length = 0;
+    }
+
+    @Override
+    public void transferFrom(Queue<String> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof TokenQueue : ""
+                + "Violation of: source is of dynamic type TokenQueue";
+        TokenQueue localSource = (TokenQueue) source;
+        this.items = localSource.items;
+        this.head = localSource.head;
+        this.length = localSource.length;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void enqueue(String x) {
+        assert x != null : "Violation of: x is not null";
+        if (this.length == this.items.length) {
+            String[] grown = new String[2 * this.length];
+            for (int i = 0; i < this.length; i++) {
+                grown[i] = this.items[this.slot(i)];
+            }
+            this.items = grown;
+            this.head = 0;
+        }
+        this.items[this.slot(this.length)] = x;
+        this.length++;
+    }
+
+    @Override
+    public String dequeue() {
+        assert this.length > 0 : "Violation of: this /= <>";
+        String x = this.items[this.head];
+        this.items[this.head] = null;
+        this.head = this.slot(1);
+        this.length--;
+        return x;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            /**
+             * Position in the queue of the next entry.
+             */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < TokenQueue.this.length;
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String x = TokenQueue.this.items[TokenQueue.this.slot(this.i)];
+                this.i++;
+                return x;
+            }
+
+        };
+    }
+
+    /*
+     * Other methods (overridden for performance) -----------------------------
+     */
+
+    @Override
+    public String front() {
+        assert this.length > 0 : "Violation of: this /= <>";
+        return this.items[this.head];
+    }
+
+    @Override
+    public String replaceFront(String x) {
+        assert this.length > 0 : "Violation of: this /= <>";
+        String front = this.items[this.head];
+        this.items[this.head] = x;
+        return front;
+    }
+
+}
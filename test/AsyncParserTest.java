@@ -0,0 +1,304 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.Statement1;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code AsyncParser} and the cancellation of
+ * {@code Program1Parse1}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class AsyncParserTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * The name of a file containing a valid BL block.
+     */
+    private static final String STATEMENT_FILE_NAME = "test/statement.bl";
+
+    /**
+     * Deadline of the parses that outlive it, in milliseconds.
+     */
+    private static final long DEADLINE = 200;
+
+    /**
+     * Time within which a future must complete once its deadline passes, in
+     * milliseconds.
+     */
+    private static final long TIMEOUT = 10_000;
+
+    /**
+     * Returns the tokens of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the tokens of the file
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Returns a view of {@code tokens} that cancels {@code cancellation} once
+     * {@code count} tokens have been dequeued.
+     *
+     * @param tokens
+     *            the tokens
+     * @param cancellation
+     *            the cancellation token
+     * @param count
+     *            the number of tokens dequeued before cancelling
+     * @return the view of the tokens
+     */
+    @SuppressWarnings("unchecked")
+    private static Queue<String> cancelAfter(Queue<String> tokens,
+            ParseCancellation cancellation, int count) {
+        int[] dequeued = { 0 };
+        return (Queue<String>) Proxy.newProxyInstance(
+                Queue.class.getClassLoader(), new Class<?>[] { Queue.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("dequeue")) {
+                        dequeued[0]++;
+                        if (dequeued[0] == count) {
+                            cancellation.cancel();
+                        }
+                    }
+                    try {
+                        return method.invoke(tokens, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Parses the block in {@code STATEMENT_FILE_NAME} into each instruction
+     * body and into the body of {@code p}, and checks each against
+     * {@code sRef}.
+     *
+     * @param p
+     *            the program
+     * @param sRef
+     *            the block in {@code STATEMENT_FILE_NAME}
+     */
+    private static void assertReparses(Program p, Statement sRef) {
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        for (Map.Pair<String, Statement> instruction : context) {
+            instruction.value().parseBlock(tokens(STATEMENT_FILE_NAME));
+            assertEquals(sRef, instruction.value());
+        }
+        Statement body = p.newBody();
+        p.swapBody(body);
+        body.parseBlock(tokens(STATEMENT_FILE_NAME));
+        assertEquals(sRef, body);
+    }
+
+    /**
+     * Returns the program the future {@code future} completed with.
+     *
+     * @param future
+     *            the future
+     * @return the program
+     */
+    private static Program join(CompletableFuture<Program> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the exception the future {@code future} completed with.
+     *
+     * @param future
+     *            the future
+     * @return the cause of the failure
+     */
+    private static Throwable failure(CompletableFuture<Program> future) {
+        Throwable cause = null;
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            cause = e.getCause();
+        } catch (InterruptedException | CancellationException e) {
+            cause = e;
+        }
+        return cause;
+    }
+
+    /**
+     * Test of parsing on the default executor.
+     */
+    @Test
+    public final void testParse() {
+        Program expected = new Program1();
+        expected.parse(tokens(FILE_NAME));
+        Program p = join(new AsyncParser().parse(tokens(FILE_NAME)));
+        assertEquals(expected, p);
+        p = join(new AsyncParser(Runnable::run).parse(tokens(FILE_NAME),
+                Duration.ofMinutes(1)));
+        assertEquals(expected, p);
+    }
+
+    /**
+     * Test of a syntax error.
+     */
+    @Test
+    public final void testParseError() {
+        Throwable cause = failure(new AsyncParser(Runnable::run)
+                .parse(tokens("test/program-invalid-end.bl")));
+        assertTrue(cause instanceof RuntimeException);
+        assertTrue(!(cause instanceof CancellationException));
+    }
+
+    /**
+     * Test of a parse over its limits.
+     */
+    @Test
+    public final void testParseLimits() {
+        Throwable cause = failure(
+                new AsyncParser(Runnable::run, new ParseLimits(10, 10, 10))
+                        .parse(tokens(FILE_NAME)));
+        assertTrue(cause instanceof RuntimeException);
+    }
+
+    /**
+     * Test of a parse whose deadline has passed.
+     */
+    @Test
+    public final void testDeadline() {
+        Queue<String> tokens = tokens(FILE_NAME);
+        int length = tokens.length();
+        Throwable cause = failure(new AsyncParser(Runnable::run)
+                .parse(tokens, Duration.ZERO));
+        assertTrue(cause instanceof TimeoutException);
+        assertTrue(tokens.length() > length - 10);
+    }
+
+    /**
+     * Test that the future of a parse still waiting for the executor at its
+     * deadline completes then, and that the parse does not run afterwards.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testDeadlineQueued() {
+        List<Runnable> queued = new ArrayList<>();
+        Queue<String> tokens = tokens(FILE_NAME);
+        int length = tokens.length();
+        CompletableFuture<Program> future = new AsyncParser(queued::add)
+                .parse(tokens, Duration.ofMillis(DEADLINE));
+        Throwable cause = failure(future);
+        assertTrue(cause instanceof TimeoutException);
+        for (Runnable task : queued) {
+            task.run();
+        }
+        assertEquals(length, tokens.length());
+    }
+
+    /**
+     * Test of cancelling a parse before it starts.
+     */
+    @Test
+    public final void testCancelQueued() {
+        List<Runnable> queued = new ArrayList<>();
+        Queue<String> tokens = tokens(FILE_NAME);
+        int length = tokens.length();
+        CompletableFuture<Program> future = new AsyncParser(queued::add)
+                .parse(tokens);
+        future.cancel(true);
+        for (Runnable task : queued) {
+            task.run();
+        }
+        assertTrue(future.isCancelled());
+        assertEquals(length, tokens.length());
+    }
+
+    /**
+     * Test of cancelling a parse in the middle of the body.
+     */
+    @Test
+    public final void testCancelRunning() {
+        ParseCancellation cancellation = new ParseCancellation();
+        Queue<String> tokens = tokens(FILE_NAME);
+        int length = tokens.length();
+        CompletableFuture<Program> future = new AsyncParser(Runnable::run)
+                .parse(cancelAfter(tokens, cancellation, length / 2),
+                        cancellation);
+        assertTrue(future.isCancelled());
+        assertTrue(tokens.length() > 1);
+    }
+
+    /**
+     * Test that a cancelled synchronous parse leaves the program unchanged.
+     */
+    @Test
+    public final void testCancelLeavesProgram() {
+        Program expected = new Program1();
+        expected.parse(tokens(FILE_NAME));
+        Program1Parse1 p = new Program1Parse1();
+        p.parse(tokens(FILE_NAME));
+        ParseCancellation cancellation = new ParseCancellation();
+        Queue<String> tokens = tokens("test/program-empty-body.bl");
+        try {
+            p.parse(cancelAfter(tokens, cancellation, 5), cancellation);
+            throw new AssertionError("parse not cancelled");
+        } catch (CancellationException e) {
+            assertTrue(cancellation.isCancelled());
+        }
+        assertEquals(expected, p);
+    }
+
+    /**
+     * Test that the statements of a program parsed with a cancellation token
+     * can be parsed into again once the token is cancelled or expired.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the deadline
+     */
+    @Test
+    public final void testReparseAfterParse() throws InterruptedException {
+        Statement sRef = new Statement1();
+        sRef.parseBlock(tokens(STATEMENT_FILE_NAME));
+
+        Program p = join(new AsyncParser(Runnable::run)
+                .parse(tokens(FILE_NAME)));
+        assertReparses(p, sRef);
+
+        Program1Parse1 pDeadline = new Program1Parse1();
+        pDeadline.parse(tokens(FILE_NAME),
+                new ParseCancellation(Duration.ofMillis(DEADLINE)));
+        Thread.sleep(2 * DEADLINE);
+        assertReparses(pDeadline, sRef);
+    }
+
+}
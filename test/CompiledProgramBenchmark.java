@@ -0,0 +1,216 @@
+import java.util.Random;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+
+/**
+ * Benchmark of the time per turn of a bug running a BL program, walking the
+ * tree of a {@code FrozenProgram} and running a {@code CompiledProgram}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class CompiledProgramBenchmark {
+
+    /**
+     * Number of turns run before measuring.
+     */
+    private static final long WARMUP = 20_000_000;
+
+    /**
+     * Number of turns measured.
+     */
+    private static final long TURNS = 100_000_000;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CompiledProgramBenchmark() {
+    }
+
+    /**
+     * Bug that sees random surroundings.
+     */
+    private static final class Bug implements ProgramProfiler.Bug {
+
+        /**
+         * The random numbers.
+         */
+        private final Random random = new Random(0);
+
+        @Override
+        public boolean test(Condition c) {
+            return c == Condition.TRUE || this.random.nextBoolean();
+        }
+
+        @Override
+        public void act(int primitive) {
+        }
+
+    }
+
+    /**
+     * A program run for a number of turns.
+     */
+    private interface Run {
+
+        /**
+         * Runs the program for {@code bug} for {@code turns} turns.
+         *
+         * @param bug
+         *            the bug
+         * @param turns
+         *            the number of turns
+         */
+        void run(ProgramProfiler.Bug bug, long turns);
+
+    }
+
+    /**
+     * Tree-walking interpreter of a {@code FrozenProgram}.
+     */
+    private static final class TreeWalker implements Run {
+
+        /**
+         * The program.
+         */
+        private final FrozenProgram program;
+
+        /**
+         * The bug of the current run.
+         */
+        private ProgramProfiler.Bug bug;
+
+        /**
+         * Number of turns left in the current run.
+         */
+        private long turnsLeft;
+
+        /**
+         * Constructor.
+         *
+         * @param program
+         *            the program
+         */
+        TreeWalker(FrozenProgram program) {
+            this.program = program;
+        }
+
+        /**
+         * Executes the statement rooted at {@code node} and reports whether
+         * the run goes on.
+         *
+         * @param node
+         *            the node
+         * @return false iff the run ran out of turns
+         */
+        private boolean execute(int node) {
+            FrozenProgram p = this.program;
+            boolean more = true;
+            switch (p.kind(node)) {
+                case BLOCK: {
+                    int n = p.childCount(node);
+                    for (int i = 0; more && i < n; i++) {
+                        more = this.execute(p.child(node, i));
+                    }
+                    break;
+                }
+                case IF: {
+                    if (this.bug.test(p.condition(node))) {
+                        more = this.execute(p.child(node, 0));
+                    }
+                    break;
+                }
+                case IF_ELSE: {
+                    if (this.bug.test(p.condition(node))) {
+                        more = this.execute(p.child(node, 0));
+                    } else {
+                        more = this.execute(p.child(node, 1));
+                    }
+                    break;
+                }
+                case WHILE: {
+                    while (more && this.bug.test(p.condition(node))) {
+                        more = this.execute(p.child(node, 0));
+                    }
+                    break;
+                }
+                default: {
+                    int id = p.callId(node);
+                    if (SymbolTable.isPrimitive(id)) {
+                        this.bug.act(id);
+                        this.turnsLeft--;
+                        more = this.turnsLeft > 0;
+                    } else {
+                        more = this.execute(p.instruction(id));
+                    }
+                    break;
+                }
+            }
+            return more;
+        }
+
+        @Override
+        public void run(ProgramProfiler.Bug b, long turns) {
+            this.bug = b;
+            this.turnsLeft = turns;
+            int body = this.program.body();
+            while (this.execute(body)) {
+                /*
+                 * The body runs again until the turns run out
+                 */
+            }
+        }
+
+    }
+
+    /**
+     * Runs {@code run} and reports the time per turn.
+     *
+     * @param out
+     *            the output stream
+     * @param label
+     *            the label of the run
+     * @param run
+     *            the run
+     */
+    private static void measure(SimpleWriter out, String label, Run run) {
+        run.run(new Bug(), WARMUP);
+        long start = System.nanoTime();
+        run.run(new Bug(), TURNS);
+        long time = System.nanoTime() - start;
+        out.println(label + ": " + String.format("%.2f", (double) time / TURNS)
+                + " ns/turn");
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the first, if any, is the name of
+     *            the program file run
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        String fileName = "test/program.bl";
+        if (args.length > 0) {
+            fileName = args[0];
+        }
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        out.println("*** Time per turn of " + fileName + " ***");
+        measure(out, "tree walking (FrozenProgram)",
+                new TreeWalker(FrozenProgram.freeze(p)));
+        CompiledProgram compiled = new CompiledProgram(p);
+        measure(out, "compiled (CompiledProgram)", compiled::run);
+        compiled.retire();
+        out.close();
+    }
+
+}
@@ -0,0 +1,256 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code CompiledProgram}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class CompiledProgramTest {
+
+    /**
+     * Number of turns of each run.
+     */
+    private static final int TURNS = 10_000;
+
+    /**
+     * Number of garbage collections tried before giving up on the generated
+     * class being unloaded.
+     */
+    private static final int COLLECTIONS = 50;
+
+    /**
+     * Time within which a run that would never end must be reported, in
+     * milliseconds.
+     */
+    private static final long TIMEOUT = 10_000;
+
+    /**
+     * Programs whose runs stop calling primitive instructions.
+     */
+    private static final String[] IDLE_PROGRAMS = {
+        "PROGRAM Idle IS BEGIN END Idle",
+        "PROGRAM Idle IS BEGIN IF random THEN END IF END Idle",
+        "PROGRAM Idle IS BEGIN move WHILE true DO END WHILE END Idle" };
+
+    /**
+     * Programs with recursive instructions that call themselves after every
+     * turn.
+     */
+    private static final String[] RECURSIVE_PROGRAMS = {
+        "PROGRAM R IS INSTRUCTION r IS move r END r BEGIN r END R",
+        "PROGRAM R IS INSTRUCTION a IS move b END a "
+                + "INSTRUCTION b IS IF true THEN a END IF END b "
+                + "BEGIN a END R" };
+
+    /**
+     * The message reporting instruction calls nested too deep.
+     */
+    private static final String DEEP_CALLS_ERROR = ""
+            + "Error: Instruction calls are nested deeper than the limit of "
+            + ProgramProfiler.MAX_CALL_DEPTH;
+
+    /**
+     * The message reporting a run that stopped calling primitives.
+     */
+    private static final String IDLE_ERROR = ""
+            + "Error: No primitive instruction called in "
+            + ProgramProfiler.MAX_IDLE_STEPS + " steps";
+
+    /**
+     * Bug that sees random surroundings and records its turns.
+     */
+    private static final class Bug implements ProgramProfiler.Bug {
+
+        /**
+         * The random numbers.
+         */
+        private final Random random = new Random(0);
+
+        /**
+         * The primitive instructions performed, in order.
+         */
+        private final List<Integer> turns = new ArrayList<>();
+
+        @Override
+        public boolean test(Condition c) {
+            return c == Condition.TRUE || this.random.nextBoolean();
+        }
+
+        @Override
+        public void act(int primitive) {
+            this.turns.add(primitive);
+        }
+
+    }
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Checks that the compiled program {@code p} performs the same turns as
+     * the interpreter of {@code ProgramProfiler}.
+     *
+     * @param p
+     *            the program
+     */
+    private static void checkRun(Program p) {
+        Bug expected = new Bug();
+        new ProgramProfiler(p, new SourceMap()).run(expected, TURNS);
+        Bug bug = new Bug();
+        new CompiledProgram(p).run(bug, TURNS);
+        assertEquals(TURNS, bug.turns.size());
+        assertEquals(expected.turns, bug.turns);
+    }
+
+    /**
+     * Returns the program with text {@code text}.
+     *
+     * @param text
+     *            the BL text of the program
+     * @return the parsed program
+     */
+    private static Program programOf(String text) {
+        Queue<String> tokens = new Queue1L<>();
+        for (String token : text.trim().split("\\s+")) {
+            tokens.enqueue(token);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        Program p = new Program1();
+        p.parse(tokens);
+        return p;
+    }
+
+    /**
+     * Runs {@code run} and returns the message of the error it reports.
+     *
+     * @param run
+     *            the run, which must report an error
+     * @return the message of the error
+     */
+    private static String error(Runnable run) {
+        String message = null;
+        try {
+            run.run();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertTrue("no error reported", message != null);
+        return message;
+    }
+
+    /**
+     * Test of run on small programs.
+     */
+    @Test
+    public final void testRun() {
+        checkRun(program("test/program.bl"));
+        checkRun(program("test/bundle.bl"));
+    }
+
+    /**
+     * Test of run on the large generated programs, whose long blocks are
+     * split across methods.
+     *
+     * @throws IOException
+     *             if a program cannot be written to a file
+     */
+    @Test
+    public final void testRunGenerated() throws IOException {
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            checkRun(program(PerfCorpus.write(PerfCorpus.program(shape))));
+        }
+    }
+
+    /**
+     * Test of a call of an undefined instruction.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testRunUndefined() {
+        Program p = new Program1();
+        Statement body = p.newBody();
+        Statement call = body.newInstance();
+        call.assembleCall("missing");
+        body.addToBlock(0, call);
+        p.swapBody(body);
+        new CompiledProgram(p).run(new Bug(), TURNS);
+    }
+
+    /**
+     * Test that the generated class is unloaded once the program is
+     * retired.
+     */
+    @Test
+    public final void testRetireUnloads() {
+        CompiledProgram compiled = new CompiledProgram(
+                program("test/program.bl"));
+        compiled.run(new Bug(), TURNS);
+        WeakReference<Class<?>> codeClass = new WeakReference<>(
+                compiled.codeClass());
+        compiled.retire();
+        assertNull(compiled.codeClass());
+        for (int i = 0; i < COLLECTIONS && codeClass.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(codeClass.get());
+    }
+
+    /**
+     * Test that a run that stops calling primitive instructions is reported
+     * instead of running forever.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRunWithoutPrimitive() {
+        for (String text : IDLE_PROGRAMS) {
+            CompiledProgram p = new CompiledProgram(programOf(text));
+            assertEquals(text, IDLE_ERROR, error(() -> p.run(new Bug(), 2)));
+        }
+    }
+
+    /**
+     * Test that a recursive instruction that nests too deep is reported
+     * instead of overflowing the stack.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRecursive() {
+        for (String text : RECURSIVE_PROGRAMS) {
+            CompiledProgram p = new CompiledProgram(programOf(text));
+            String message = error(() -> p.run(new Bug(),
+                    2 * ProgramProfiler.MAX_CALL_DEPTH));
+            assertEquals(text, DEEP_CALLS_ERROR, message);
+        }
+    }
+
+}
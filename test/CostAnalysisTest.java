@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+
+/**
+ * JUnit test fixture for {@code CostAnalysis}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class CostAnalysisTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME_1 = "test/program.bl",
+            FILE_NAME_2 = "test/program-cost.bl";
+
+    /**
+     * Number of instructions of the long chain of calls.
+     */
+    private static final int CHAIN_LENGTH = 100_000;
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Test of the bounds of a program with bounded instructions.
+     */
+    @Test
+    public final void testBoundedProgram() {
+        CostAnalysis analysis = new CostAnalysis(program(FILE_NAME_1));
+
+        assertEquals(2, analysis.actions("one"));
+        assertEquals(0, analysis.tests("one"));
+        assertEquals(6, analysis.actions("two"));
+        assertEquals(1, analysis.tests("two"));
+        assertFalse(analysis.isRecursive("two"));
+        assertFalse(analysis.hasUnboundedLoop("two"));
+        assertEquals(CostAnalysis.UNBOUNDED, analysis.bodyActions());
+        assertEquals(1, analysis.bodyTests());
+        assertFalse(analysis.bodyHasUnboundedLoop());
+        assertEquals(1, analysis.testsPerTurn());
+    }
+
+    /**
+     * Test that recursion and unbounded loops are flagged.
+     */
+    @Test
+    public final void testRecursionAndUnboundedLoop() {
+        CostAnalysis analysis = new CostAnalysis(program(FILE_NAME_2));
+
+        assertTrue(analysis.hasUnboundedLoop("spin"));
+        assertFalse(analysis.isRecursive("spin"));
+        assertEquals(CostAnalysis.UNBOUNDED, analysis.tests("spin"));
+        assertTrue(analysis.isRecursive("ping"));
+        assertTrue(analysis.isRecursive("pong"));
+        assertFalse(analysis.hasUnboundedLoop("ping"));
+        assertFalse(analysis.isRecursive("caller"));
+        assertEquals(CostAnalysis.UNBOUNDED, analysis.actions("caller"));
+        assertFalse(analysis.bodyHasUnboundedLoop());
+        assertEquals(CostAnalysis.UNBOUNDED, analysis.testsPerTurn());
+    }
+
+    /**
+     * Test on a chain of calls too long to follow with recursion: each
+     * instruction calls the one before it, then moves.
+     */
+    @Test(timeout = 30_000)
+    public final void testLongChain() {
+        Program p = new Program1();
+        Map<String, Statement> context = p.newContext();
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            Statement block = p.newBody();
+            if (i > 0) {
+                Statement call = block.newInstance();
+                call.assembleCall("instr" + (i - 1));
+                block.addToBlock(0, call);
+            }
+            Statement move = block.newInstance();
+            move.assembleCall("move");
+            block.addToBlock(block.lengthOfBlock(), move);
+            context.add("instr" + i, block);
+        }
+        p.swapContext(context);
+        Statement body = p.newBody();
+        Statement call = body.newInstance();
+        call.assembleCall("instr" + (CHAIN_LENGTH - 1));
+        body.addToBlock(0, call);
+        p.swapBody(body);
+
+        CostAnalysis analysis = new CostAnalysis(p);
+
+        assertEquals(CHAIN_LENGTH, analysis.actions("instr"
+                + (CHAIN_LENGTH - 1)));
+        assertEquals(CHAIN_LENGTH, analysis.bodyActions());
+        assertEquals(0, analysis.testsPerTurn());
+        assertFalse(analysis.isRecursive("instr0"));
+    }
+
+}
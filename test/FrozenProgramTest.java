@@ -0,0 +1,197 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+
+/**
+ * JUnit test fixture for {@code FrozenProgram}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class FrozenProgramTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * Number of reader threads.
+     */
+    private static final int THREADS = 16;
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Returns the number of CALL nodes in the tree rooted at {@code node}.
+     *
+     * @param frozen
+     *            the snapshot
+     * @param node
+     *            the root node
+     * @return the number of CALL nodes
+     */
+    private static int calls(FrozenProgram frozen, int node) {
+        int count = 0;
+        if (frozen.kind(node) == Kind.CALL) {
+            count = 1;
+        }
+        for (int i = 0; i < frozen.childCount(node); i++) {
+            count += calls(frozen, frozen.child(node, i));
+        }
+        return count;
+    }
+
+    /**
+     * Test that freezing leaves the program unchanged and that a copy of the
+     * snapshot equals it.
+     */
+    @Test
+    public final void testCopy() {
+        String[] fileNames = { FILE_NAME, "test/program-empty-context.bl",
+            "test/program-empty-body.bl" };
+        for (String fileName : fileNames) {
+            Program p = program(fileName);
+            FrozenProgram frozen = FrozenProgram.freeze(p);
+            assertEquals(program(fileName), p);
+            Program copy = new Program1();
+            frozen.copyTo(copy);
+            assertEquals(p, copy);
+            assertEquals(frozen, FrozenProgram.freeze(copy));
+        }
+    }
+
+    /**
+     * Test that snapshots of different programs, and other objects, are not
+     * equal to a snapshot.
+     */
+    @Test
+    public final void testNotEquals() {
+        FrozenProgram frozen = FrozenProgram.freeze(program(FILE_NAME));
+        assertEquals(frozen, frozen);
+        assertFalse(frozen.equals(null));
+        assertFalse(frozen.equals("Test"));
+        assertFalse(frozen.equals(FrozenProgram
+                .freeze(program("test/program-empty-context.bl"))));
+        Program p = program(FILE_NAME);
+        p.setName("Other");
+        assertFalse(frozen.equals(FrozenProgram.freeze(p)));
+    }
+
+    /**
+     * Test of reading the nodes.
+     */
+    @Test
+    public final void testNodes() {
+        FrozenProgram frozen = FrozenProgram.freeze(program(FILE_NAME));
+        assertEquals("Test", frozen.name());
+        assertEquals(2, frozen.instructionCount());
+        assertEquals(21, frozen.size());
+
+        int one = frozen.instruction("one");
+        assertEquals(Kind.BLOCK, frozen.kind(one));
+        assertEquals(2, frozen.childCount(one));
+        int move = frozen.child(one, 0);
+        assertEquals("move", frozen.call(move));
+        assertEquals(SymbolTable.MOVE, frozen.callId(move));
+
+        int body = frozen.body();
+        int loop = frozen.child(body, 1);
+        assertEquals(Kind.WHILE, frozen.kind(loop));
+        assertEquals(Condition.TRUE, frozen.condition(loop));
+        assertEquals(-1, frozen.instruction("three"));
+        assertEquals(-1, frozen.instruction(SymbolTable.MOVE));
+        int two = frozen.id("two");
+        assertEquals(frozen.instruction("two"), frozen.instruction(two));
+    }
+
+    /**
+     * Test that snapshots sharing a symbol table agree on ids.
+     */
+    @Test
+    public final void testSharedSymbols() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("x");
+        FrozenProgram f1 = FrozenProgram.freeze(program(FILE_NAME), symbols);
+        FrozenProgram f2 = FrozenProgram.freeze(program(FILE_NAME), symbols);
+        assertEquals(symbols.id("one"), f1.id("one"));
+        assertEquals(f1.id("two"), f2.id("two"));
+        assertEquals(f1, f2);
+    }
+
+    /**
+     * Test that the content hash does not depend on the symbol table and
+     * tells different programs apart.
+     */
+    @Test
+    public final void testContentHash() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("x");
+        symbols.intern("two");
+        FrozenProgram f1 = FrozenProgram.freeze(program(FILE_NAME));
+        FrozenProgram f2 = FrozenProgram.freeze(program(FILE_NAME), symbols);
+        assertEquals(f1.contentHash(), f2.contentHash());
+        Program p = program(FILE_NAME);
+        p.setName("Other");
+        assertTrue(f1.contentHash() != FrozenProgram.freeze(p).contentHash());
+        assertTrue(f1.contentHash() != FrozenProgram
+                .freeze(program("test/program-empty-body.bl")).contentHash());
+    }
+
+    /**
+     * Test of reading one snapshot from many threads at once.
+     *
+     * @throws InterruptedException
+     *             if interrupted while joining
+     */
+    @Test
+    public final void testConcurrentReads() throws InterruptedException {
+        final FrozenProgram frozen = FrozenProgram
+                .freeze(program(FILE_NAME));
+        final int expected = calls(frozen, frozen.body());
+        final AtomicInteger good = new AtomicInteger();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                boolean ok = true;
+                for (int i = 0; i < 1000; i++) {
+                    ok &= calls(frozen, frozen.body()) == expected;
+                }
+                if (ok) {
+                    good.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(THREADS, good.get());
+        assertTrue(expected > 0);
+    }
+
+}
@@ -0,0 +1,71 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Grammar}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class GrammarTest {
+
+    /**
+     * Test of the table generated for the BL grammar.
+     */
+    @Test
+    public final void testBlTable() {
+        Grammar g = Grammar.BL;
+        int statement = g.nonterminal("statement");
+        int statements = g.nonterminal("statements");
+        int ifTail = g.nonterminal("ifTail");
+        assertTrue(statement >= g.terminalCount());
+        assertTrue(g.production(statement, g.terminal("IF")) >= 0);
+        assertTrue(g.production(statement, g.terminal("WHILE")) >= 0);
+        assertTrue(g.production(statement, g.terminal("<identifier>")) >= 0);
+        assertEquals(-1, g.production(statement, g.terminal("END")));
+        /*
+         * statements is empty before END, ELSE and the end of input
+         */
+        int empty = g.production(statements, g.terminal("END"));
+        assertEquals(g.rightStart(empty), g.rightEnd(empty));
+        assertEquals(empty, g.production(statements, g.terminal("ELSE")));
+        assertEquals(empty, g.production(statements, g.terminal("$")));
+        assertTrue(g.production(ifTail, g.terminal("ELSE")) != g
+                .production(ifTail, g.terminal("END")));
+        assertEquals("@call", g.name(g.action("call")));
+    }
+
+    /**
+     * Test of a grammar extended with a new statement.
+     */
+    @Test
+    public final void testExtension() {
+        Grammar g = new Grammar(Grammar.BL_SPECIFICATION.replace(
+                "| <identifier> @call\n",
+                "| <identifier> @call\n" + "| REPEAT <identifier> TIMES block"
+                        + " END REPEAT @repeat\n"));
+        int statement = g.nonterminal("statement");
+        assertTrue(g.production(statement, g.terminal("REPEAT")) >= 0);
+        assertEquals(Grammar.BL.productionCount() + 1, g.productionCount());
+    }
+
+    /**
+     * Test that a grammar that is not LL(1) is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testConflict() {
+        new Grammar("%start s\n" + "s ::= a x\n" + "  | a y\n"
+                + "a ::= A\n");
+    }
+
+    /**
+     * Test that a nonterminal without a rule is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testUndefinedNonterminal() {
+        new Grammar("%start s\n" + "s ::= A missing\n");
+    }
+
+}
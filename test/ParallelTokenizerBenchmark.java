@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Benchmark of how {@code ParallelTokenizer} scales with the number of
+ * threads, on a large generated input: the time to tokenize it with
+ * {@code TokenPositions.tokens}, then with {@code ParallelTokenizer} on 1, 2,
+ * 4 and 8 threads, reading the input as a stream and as a file.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParallelTokenizerBenchmark {
+
+    /**
+     * Default size of the input, in MiB.
+     */
+    private static final int DEFAULT_MIB = 32;
+
+    /**
+     * Thread counts measured.
+     */
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    /**
+     * Number of runs before measuring.
+     */
+    private static final int WARMUP = 3;
+
+    /**
+     * Number of runs measured.
+     */
+    private static final int RUNS = 7;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelTokenizerBenchmark() {
+    }
+
+    /**
+     * A tokenization of a file.
+     */
+    private interface Run {
+
+        /**
+         * Tokenizes file {@code fileName}.
+         *
+         * @param fileName
+         *            the name of the file
+         */
+        void run(String fileName);
+
+    }
+
+    /**
+     * Runs {@code run} and reports the median and the fastest of its times.
+     *
+     * @param out
+     *            the output stream
+     * @param label
+     *            the label of the run
+     * @param run
+     *            the run
+     * @param fileName
+     *            the name of the file tokenized
+     * @return the median time, in nanoseconds
+     */
+    private static long measure(SimpleWriter out, String label, Run run,
+            String fileName) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run(fileName);
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run(fileName);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long median = times[RUNS / 2];
+        out.println(label + ": median " + median / 1_000_000 + " ms, best "
+                + times[0] / 1_000_000 + " ms");
+        return median;
+    }
+
+    /**
+     * Returns the tokenizer that lexes on {@code threads} threads, counting
+     * the calling thread.
+     *
+     * @param threads
+     *            the number of threads
+     * @return the tokenizer
+     */
+    private static ParallelTokenizer tokenizer(int threads) {
+        ParallelTokenizer tokenizer;
+        if (threads == 1) {
+            tokenizer = new ParallelTokenizer(Integer.MAX_VALUE);
+        } else {
+            tokenizer = new ParallelTokenizer(1,
+                    new ForkJoinPool(threads - 1));
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the first, if any, is the size of
+     *            the input in MiB
+     * @throws IOException
+     *             if the input cannot be written to a file
+     */
+    public static void main(String[] args) throws IOException {
+        SimpleWriter out = new SimpleWriter1L();
+        int mib = DEFAULT_MIB;
+        if (args.length > 0) {
+            mib = Integer.parseInt(args[0]);
+        }
+        String program = PerfCorpus.program(PerfCorpus.Shape.WIDE);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < (long) mib << 20) {
+            text.append(program);
+        }
+        String fileName = PerfCorpus.write(text.toString());
+        text = null;
+        out.println("*** Tokenizing " + mib + " MiB on "
+                + Runtime.getRuntime().availableProcessors()
+                + " processors ***");
+        measure(out, "TokenPositions.tokens", name -> {
+            SimpleReader file = new SimpleReader1L(name);
+            new TokenPositions().tokens(file);
+            file.close();
+        }, fileName);
+        long base = 0;
+        for (int threads : THREADS) {
+            ParallelTokenizer tokenizer = tokenizer(threads);
+            measure(out, threads + " threads, stream", name -> {
+                SimpleReader file = new SimpleReader1L(name);
+                tokenizer.tokens(file, new TokenPositions());
+                file.close();
+            }, fileName);
+            long time = measure(out, threads + " threads, file",
+                    name -> tokenizer.tokens(name, new TokenPositions()),
+                    fileName);
+            if (threads == 1) {
+                base = time;
+            }
+            out.println(threads + " threads, file: speedup "
+                    + String.format("%.2f", (double) base / time));
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,170 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code ParallelTokenizer}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ParallelTokenizerTest {
+
+    /**
+     * Number of threads of the pool the tests lex in.
+     */
+    private static final int THREADS = 7;
+
+    /**
+     * The pool the tests lex in; its threads are daemon threads.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(THREADS);
+
+    /**
+     * Checks that {@code tokens} and {@code positions} are
+     * {@code expectedTokens} and {@code expected}.
+     *
+     * @param expectedTokens
+     *            the expected tokens
+     * @param expected
+     *            the expected positions
+     * @param tokens
+     *            the tokens
+     * @param positions
+     *            the positions
+     */
+    private static void assertSameTokens(Queue<String> expectedTokens,
+            TokenPositions expected, Queue<String> tokens,
+            TokenPositions positions) {
+        assertEquals(expectedTokens, tokens);
+        assertEquals(expected.length(), positions.length());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals("token " + i, expected.line(i), positions.line(i));
+            assertEquals("token " + i, expected.column(i),
+                    positions.column(i));
+            assertEquals("token " + i, expected.offset(i),
+                    positions.offset(i));
+        }
+    }
+
+    /**
+     * Checks that {@code tokenizer} gives the tokens and positions of
+     * {@code TokenPositions.tokens} for file {@code fileName}, read as a
+     * stream and as a file.
+     *
+     * @param tokenizer
+     *            the tokenizer
+     * @param fileName
+     *            the name of the file
+     */
+    private static void check(ParallelTokenizer tokenizer, String fileName) {
+        TokenPositions expected = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> expectedTokens = expected.tokens(file);
+        file.close();
+        TokenPositions positions = new TokenPositions();
+        file = new SimpleReader1L(fileName);
+        Queue<String> tokens = tokenizer.tokens(file, positions);
+        file.close();
+        assertSameTokens(expectedTokens, expected, tokens, positions);
+        tokens = tokenizer.tokens(fileName, positions);
+        assertSameTokens(expectedTokens, expected, tokens, positions);
+    }
+
+    /**
+     * Test of tokens below the threshold, on one thread.
+     */
+    @Test
+    public final void testTokensBelowThreshold() {
+        check(new ParallelTokenizer(), "test/program.bl");
+    }
+
+    /**
+     * Test of tokens in parallel on a small program, with chunks ending in
+     * the middle of lines.
+     */
+    @Test
+    public final void testTokensSmall() {
+        check(new ParallelTokenizer(1, POOL), "test/program.bl");
+        check(new ParallelTokenizer(1, POOL), "test/statement.bl");
+    }
+
+    /**
+     * Test of tokens in parallel on the large generated programs.
+     *
+     * @throws IOException
+     *             if a program cannot be written to a file
+     */
+    @Test
+    public final void testTokensGenerated() throws IOException {
+        ParallelTokenizer tokenizer = new ParallelTokenizer(1, POOL);
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            check(tokenizer, PerfCorpus.write(PerfCorpus.program(shape)));
+        }
+    }
+
+    /**
+     * Test of tokens in parallel on input with blank lines, runs of
+     * whitespace and more chunks than tokens.
+     *
+     * @throws IOException
+     *             if the input cannot be written to a file
+     */
+    @Test
+    public final void testTokensWhitespace() throws IOException {
+        ParallelTokenizer tokenizer = new ParallelTokenizer(1, POOL);
+        check(tokenizer, PerfCorpus.write(""));
+        check(tokenizer, PerfCorpus.write("\n\n\n"));
+        check(tokenizer, PerfCorpus.write("one"));
+        check(tokenizer, PerfCorpus.write("  \t one\n\n   two three  \n"));
+        check(tokenizer, PerfCorpus.write("\n   aVeryLongTokenIndeed\n\tx"));
+    }
+
+    /**
+     * Test of tokens in parallel on input with "\r\n" and "\r" line
+     * terminators and characters of more than one byte, the latter written
+     * and read as UTF-8 whatever the platform charset.
+     *
+     * @throws IOException
+     *             if the input cannot be written to or read from a file
+     */
+    @Test
+    public final void testTokensTerminatorsAndBytes() throws IOException {
+        ParallelTokenizer tokenizer = new ParallelTokenizer(1, POOL);
+        check(tokenizer, PerfCorpus.write("one\r\ntwo\r\n\r\n three\r\n"));
+        check(tokenizer, PerfCorpus.write("one\rtwo\r\rthree"));
+        String text = "\u00e9t\u00e9 \u65e5\u672c\r\n\ud83d\ude00 x\n";
+        Path file = Files.createTempFile("parallel", ".bl");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(text,
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        TokenPositions positions = new TokenPositions();
+        Queue<String> tokens = tokenizer.tokens(file.toString(), positions);
+        String[] expectedTokens = { "\u00e9t\u00e9", "\u65e5\u672c",
+            "\ud83d\ude00", "x", Tokenizer.END_OF_INPUT };
+        int[] lines = { 1, 1, 2, 2, 2 };
+        int[] columns = { 1, 5, 1, 4, 5 };
+        long[] offsets = { 0, 6, 14, 19, 20 };
+        assertEquals(expectedTokens.length, tokens.length());
+        assertEquals(expectedTokens.length, positions.length());
+        for (int i = 0; i < expectedTokens.length; i++) {
+            assertEquals(expectedTokens[i], tokens.dequeue());
+            assertEquals("token " + i, lines[i], positions.line(i));
+            assertEquals("token " + i, columns[i], positions.column(i));
+            assertEquals("token " + i, offsets[i], positions.offset(i));
+        }
+    }
+
+}
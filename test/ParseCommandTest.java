@@ -0,0 +1,245 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code ParseCommand}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ParseCommandTest {
+
+    /**
+     * The standard output of the last run.
+     */
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    /**
+     * The standard error of the last run.
+     */
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    /**
+     * Runs the command with arguments {@code args} and returns its exit code.
+     *
+     * @param args
+     *            the command line arguments
+     * @return the exit code
+     */
+    private int run(String... args) {
+        this.out.reset();
+        this.err.reset();
+        PrintStream errStream = new PrintStream(this.err, true);
+        int code = ParseCommand.run(args, Channels.newChannel(this.out),
+                errStream);
+        errStream.flush();
+        return code;
+    }
+
+    /**
+     * Returns the standard error of the last run.
+     *
+     * @return the diagnostics printed
+     */
+    private String err() {
+        return new String(this.err.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test of checking a valid program.
+     */
+    @Test
+    public final void testCheckValid() {
+        assertEquals(0, this.run("test/program.bl"));
+        assertEquals(0, this.out.size());
+        assertEquals("", this.err());
+    }
+
+    /**
+     * Test of checking several valid programs with the explicit flag.
+     */
+    @Test
+    public final void testCheckValidSeveral() {
+        assertEquals(0, this.run("--check", "test/program.bl",
+                "test/program-empty-body.bl", "test/program-empty-context.bl"));
+        assertEquals("", this.err());
+    }
+
+    /**
+     * Test of checking an invalid program among valid ones.
+     */
+    @Test
+    public final void testCheckInvalid() {
+        assertEquals(1, this.run("test/program.bl",
+                "test/program-missing-begin.bl", "test/program-empty-body.bl"));
+        String err = this.err();
+        assertTrue(err.startsWith("test/program-missing-begin.bl: "));
+        assertEquals(1, err.split("\n").length);
+    }
+
+    /**
+     * Test of checking valid and invalid statements.
+     */
+    @Test
+    public final void testCheckStatement() {
+        assertEquals(0, this.run("--statement", "test/statement.bl",
+                "test/statement-single-call.bl"));
+        assertEquals(1,
+                this.run("--statement", "test/statement-extra-end.bl"));
+        assertTrue(this.err().startsWith("test/statement-extra-end.bl: "));
+    }
+
+    /**
+     * Test that every invalid input is reported as a syntax error, not as a
+     * failure of the parser.
+     */
+    @Test
+    public final void testCheckInvalidAll() {
+        String[] programs = { "test/program-extra-token.bl",
+                "test/program-invalid-end.bl",
+                "test/program-invalid-instruction.bl",
+                "test/program-missing-begin.bl",
+                "test/program-repeat-instruction.bl" };
+        for (String name : programs) {
+            assertEquals(name, 1, this.run(name));
+            assertTrue(name, !this.err().contains("internal error"));
+        }
+        String[] statements = { "test/statement-extra-end.bl",
+                "test/statement-invalid-call.bl",
+                "test/statement-invalid-condition.bl",
+                "test/statement-missing-end.bl" };
+        for (String name : statements) {
+            assertEquals(name, 1, this.run("--statement", name));
+            assertTrue(name, !this.err().contains("internal error"));
+        }
+    }
+
+    /**
+     * Test of an output that cannot be written.
+     */
+    @Test
+    public final void testWriteError() {
+        WritableByteChannel closed = new WritableByteChannel() {
+            @Override
+            public boolean isOpen() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        this.err.reset();
+        PrintStream errStream = new PrintStream(this.err, true);
+        int code = ParseCommand.run(
+                new String[] { "--print", "test/program.bl" }, closed,
+                errStream);
+        errStream.flush();
+        assertEquals(2, code);
+        assertTrue(this.err().contains("disk full"));
+    }
+
+    /**
+     * Test of a file that cannot be read.
+     */
+    @Test
+    public final void testMissingFile() {
+        assertEquals(2, this.run("test/program-missing-begin.bl",
+                "test/no-such-file.bl"));
+        assertTrue(this.err().contains("test/no-such-file.bl: cannot be read"));
+    }
+
+    /**
+     * Test that input nested too deeply for the stack of the parser is an
+     * internal error, which a later unreadable file does not lower.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public final void testDeepNesting() throws IOException {
+        final int depth = 100_000;
+        StringBuilder deep = new StringBuilder("PROGRAM Deep IS BEGIN\n");
+        for (int i = 0; i < depth; i++) {
+            deep.append("WHILE true DO\n");
+        }
+        deep.append("move\n");
+        for (int i = 0; i < depth; i++) {
+            deep.append("END WHILE\n");
+        }
+        deep.append("END Deep\n");
+        Path file = Files.createTempFile("deep", ".bl");
+        Files.write(file, deep.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, this.run(file.toString(), "test/no-such-file.bl"));
+        assertTrue(this.err().contains("internal error"));
+        Files.delete(file);
+    }
+
+    /**
+     * Test of an unknown flag.
+     */
+    @Test
+    public final void testUnknownFlag() {
+        assertEquals(2, this.run("--frobnicate", "test/program.bl"));
+        assertTrue(this.err().startsWith("usage: "));
+    }
+
+    /**
+     * Test of printing a program, which parses back to the same program.
+     */
+    @Test
+    public final void testPrint() {
+        assertEquals(0, this.run("--print", "test/program.bl"));
+        SimpleReader file = new SimpleReader1L("test/program.bl");
+        Program expected = new Program1();
+        expected.parse(file);
+        file.close();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrettyPrinter printer = new PrettyPrinter(Channels.newChannel(bytes));
+        printer.print(expected);
+        printer.flush();
+        assertArrayEquals(bytes.toByteArray(), this.out.toByteArray());
+    }
+
+    /**
+     * Test of printing a program in minified form.
+     */
+    @Test
+    public final void testMinify() {
+        assertEquals(0, this.run("--minify", "test/program.bl"));
+        SimpleReader file = new SimpleReader1L("test/program.bl");
+        Program expected = new Program1();
+        expected.parse(file);
+        file.close();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrettyPrinter printer = new PrettyPrinter(Channels.newChannel(bytes),
+                true);
+        printer.print(expected);
+        printer.flush();
+        assertArrayEquals(bytes.toByteArray(), this.out.toByteArray());
+    }
+
+}
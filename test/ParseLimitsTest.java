@@ -0,0 +1,336 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit stress test fixture for the caps in {@code ParseLimits}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ParseLimitsTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * The name of the file of generated input written by the tests, a new
+     * temporary file.
+     */
+    private static final String OUTPUT_FILE_NAME = tempFileName();
+
+    /**
+     * Size of the hostile inputs: far beyond every cap in {@code LIMITS}.
+     */
+    private static final int HOSTILE_SIZE = 200_000;
+
+    /**
+     * Time within which a hostile input must be rejected, in milliseconds.
+     */
+    private static final long TIMEOUT = 10_000;
+
+    /**
+     * The BL files tokenized by the tests.
+     */
+    private static final String[] BL_FILE_NAMES = { FILE_NAME,
+        "test/bundle.bl", "test/program-cost.bl",
+        "test/program-invalid-instruction.bl", "test/statement.bl",
+        "test/statement-nested-while.bl", "test/statement-invalid-call.bl" };
+
+    /**
+     * The message reporting nesting over the depth cap, without the cap.
+     */
+    private static final String DEPTH_ERROR = ""
+            + "Error: Statements are nested deeper than the limit of ";
+
+    /**
+     * Limits used by the tests.
+     */
+    private static final ParseLimits LIMITS = new ParseLimits(10_000, 64,
+            100);
+
+    /**
+     * The message reporting input over the token cap of {@code LIMITS}.
+     */
+    private static final String TOKENS_ERROR = ""
+            + "Error: Input exceeds the limit of 10000 tokens";
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("limits", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Runs {@code parse} and returns the message of the error it reports.
+     *
+     * @param parse
+     *            the parse, which must report an error
+     * @return the message of the error
+     */
+    private static String error(Runnable parse) {
+        String message = null;
+        try {
+            parse.run();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertTrue("no error reported", message != null);
+        return message;
+    }
+
+    /**
+     * Returns the tokens of a program whose body is {@code depth} nested
+     * WHILE statements.
+     *
+     * @param depth
+     *            the nesting depth
+     * @return the tokens of the program
+     */
+    private static Queue<String> deepProgram(int depth) {
+        Queue<String> tokens = new Queue1L<>();
+        tokens.enqueue("PROGRAM");
+        tokens.enqueue("Deep");
+        tokens.enqueue("IS");
+        tokens.enqueue("BEGIN");
+        for (int i = 0; i < depth; i++) {
+            tokens.enqueue("WHILE");
+            tokens.enqueue("true");
+            tokens.enqueue("DO");
+        }
+        tokens.enqueue("move");
+        for (int i = 0; i < depth; i++) {
+            tokens.enqueue("END");
+            tokens.enqueue("WHILE");
+        }
+        tokens.enqueue("END");
+        tokens.enqueue("Deep");
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens of a program with {@code count} instructions.
+     *
+     * @param count
+     *            the number of instructions
+     * @return the tokens of the program
+     */
+    private static Queue<String> wideProgram(int count) {
+        Queue<String> tokens = new Queue1L<>();
+        tokens.enqueue("PROGRAM");
+        tokens.enqueue("Wide");
+        tokens.enqueue("IS");
+        for (int i = 0; i < count; i++) {
+            tokens.enqueue("INSTRUCTION");
+            tokens.enqueue("i" + i);
+            tokens.enqueue("IS");
+            tokens.enqueue("move");
+            tokens.enqueue("END");
+            tokens.enqueue("i" + i);
+        }
+        tokens.enqueue("BEGIN");
+        tokens.enqueue("END");
+        tokens.enqueue("Wide");
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        return tokens;
+    }
+
+    /**
+     * Test that input within the limits parses as without limits.
+     */
+    @Test
+    public final void testWithinLimits() {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        Program pTest = new Program1Parse1(LIMITS);
+        file = new SimpleReader1L(FILE_NAME);
+        pTest.parse(file);
+        file.close();
+        assertEquals(pRef, pTest);
+    }
+
+    /**
+     * Test that nesting at the depth cap is accepted.
+     */
+    @Test
+    public final void testDepthAtLimit() {
+        Program p = new Program1Parse1(LIMITS);
+        p.parse(deepProgram(LIMITS.maxDepth()));
+        assertEquals("Deep", p.name());
+    }
+
+    /**
+     * Test that very deep nesting is rejected promptly.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testDepthOverLimit() {
+        String message = error(() -> new Program1Parse1(
+                new ParseLimits(Integer.MAX_VALUE, LIMITS.maxDepth(),
+                        LIMITS.maxInstructions()))
+                                .parse(deepProgram(HOSTILE_SIZE)));
+        assertEquals(DEPTH_ERROR + LIMITS.maxDepth(), message);
+    }
+
+    /**
+     * Test that very deep nesting is rejected in lazy mode when the body is
+     * used.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testDepthOverLimitLazy() {
+        Queue<String> deep = deepProgram(HOSTILE_SIZE);
+        // drop "PROGRAM Deep IS BEGIN" to leave the body
+        for (int i = 0; i < 4; i++) {
+            deep.dequeue();
+        }
+        String message = error(() -> new LazyStatement(deep, LIMITS).kind());
+        assertEquals(DEPTH_ERROR + LIMITS.maxDepth(), message);
+    }
+
+    /**
+     * Test that very deep nesting in a statement is rejected.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testStatementDepthOverLimit() {
+        Queue<String> deep = deepProgram(LIMITS.maxDepth() + 1);
+        // drop "PROGRAM Deep IS BEGIN" to leave the body
+        for (int i = 0; i < 4; i++) {
+            deep.dequeue();
+        }
+        String message = error(
+                () -> new Statement1Parse1().parseBlock(deep, LIMITS));
+        assertEquals(DEPTH_ERROR + LIMITS.maxDepth(), message);
+    }
+
+    /**
+     * Test that a program with too many instructions is rejected promptly.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testInstructionsOverLimit() {
+        String message = error(() -> new Program1Parse1(
+                new ParseLimits(Integer.MAX_VALUE, LIMITS.maxDepth(),
+                        LIMITS.maxInstructions()))
+                                .parse(wideProgram(HOSTILE_SIZE)));
+        assertEquals("Error: Program exceeds the limit of "
+                + LIMITS.maxInstructions() + " instructions", message);
+    }
+
+    /**
+     * Test that too many tokens are rejected before they are parsed.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testTokensOverLimit() {
+        String message = error(() -> new Program1Parse1(LIMITS)
+                .parse(wideProgram(HOSTILE_SIZE)));
+        assertEquals(TOKENS_ERROR, message);
+    }
+
+    /**
+     * Test that too many tokens are rejected while the input is read.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testTokensOverLimitWhileReading() {
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        for (int i = 0; i < HOSTILE_SIZE; i++) {
+            out.println("move move move move");
+        }
+        out.close();
+        SimpleReader in = new SimpleReader1L(OUTPUT_FILE_NAME);
+        String message = error(() -> LIMITS.tokens(in));
+        assertEquals(TOKENS_ERROR, message);
+        assertTrue(!in.atEOS());
+        in.close();
+    }
+
+    /**
+     * Test that a line longer than the character cap is rejected while it
+     * is read, before the rest of the line.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testCharsOverLimitWhileReading() {
+        final long maxChars = 1_000;
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        for (int i = 0; i < HOSTILE_SIZE; i++) {
+            out.print("m");
+        }
+        out.println();
+        out.close();
+        SimpleReader in = new SimpleReader1L(OUTPUT_FILE_NAME);
+        String message = error(() -> new ParseLimits(Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, maxChars).tokens(in));
+        assertEquals("Error: Input exceeds the limit of " + maxChars
+                + " characters", message);
+        assertTrue(!in.atEOS());
+        in.close();
+    }
+
+    /**
+     * Test that input of exactly the character cap is accepted, counting
+     * the line separators.
+     */
+    @Test
+    public final void testCharsAtLimit() {
+        final String text = "move  turnleft\nskip";
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        out.print(text);
+        out.close();
+        final long maxChars = text.length();
+        ParseLimits limits = new ParseLimits(Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, maxChars);
+        SimpleReader in = new SimpleReader1L(OUTPUT_FILE_NAME);
+        Queue<String> tokens = limits.tokens(in);
+        in.close();
+        assertEquals(4, tokens.length());
+        assertEquals("move", tokens.dequeue());
+        assertEquals("turnleft", tokens.dequeue());
+        assertEquals("skip", tokens.dequeue());
+        assertEquals(Tokenizer.END_OF_INPUT, tokens.dequeue());
+    }
+
+    /**
+     * Test that {@code ParseLimits.tokens} tokenizes input within the limit
+     * like {@code Tokenizer.tokens}.
+     */
+    @Test
+    public final void testTokensMatchTokenizer() {
+        for (String fileName : BL_FILE_NAMES) {
+            SimpleReader file = new SimpleReader1L(fileName);
+            Queue<String> expected = Tokenizer.tokens(file);
+            file.close();
+            file = new SimpleReader1L(fileName);
+            Queue<String> actual = ParseLimits.UNLIMITED.tokens(file);
+            file.close();
+            assertEquals(fileName, expected, actual);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+import java.lang.management.ManagementFactory;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Benchmark of the memory allocated per parse when many small programs are
+ * parsed in a loop: with the baseline parser {@code Program1}, with
+ * {@code Program1Parse1} on its own, and with a {@code ParseSession}.
+ * Allocation is measured per thread with
+ * {@code com.sun.management.ThreadMXBean}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ParseSessionBenchmark {
+
+    /**
+     * Number of parses run before measuring.
+     */
+    private static final int WARMUP = 20_000;
+
+    /**
+     * Number of parses measured.
+     */
+    private static final int PARSES = 100_000;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParseSessionBenchmark() {
+    }
+
+    /**
+     * A loop of parses.
+     */
+    private interface Loop {
+
+        /**
+         * Runs {@code count} parses of {@code fileName}.
+         *
+         * @param fileName
+         *            the name of the file parsed
+         * @param count
+         *            the number of parses
+         */
+        void run(String fileName, int count);
+
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes allocated
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs {@code loop} and reports the bytes allocated per parse.
+     *
+     * @param out
+     *            the output stream
+     * @param label
+     *            the label of the loop
+     * @param loop
+     *            the loop
+     * @param fileName
+     *            the name of the file parsed
+     */
+    private static void measure(SimpleWriter out, String label, Loop loop,
+            String fileName) {
+        loop.run(fileName, WARMUP);
+        long before = allocatedBytes();
+        long start = System.nanoTime();
+        loop.run(fileName, PARSES);
+        long time = System.nanoTime() - start;
+        long bytes = allocatedBytes() - before;
+        out.println(label + ": " + bytes / PARSES + " bytes/parse, "
+                + time / PARSES + " ns/parse");
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the first, if any, is the name of
+     *            the file parsed
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        String fileName = "test/program.bl";
+        if (args.length > 0) {
+            fileName = args[0];
+        }
+        out.println("*** Allocation per parse of " + fileName + " ***");
+        measure(out, "baseline (new Program1, Tokenizer.tokens)",
+                (name, count) -> {
+                    for (int i = 0; i < count; i++) {
+                        Program p = new Program1();
+                        SimpleReader file = new SimpleReader1L(name);
+                        p.parse(file);
+                        file.close();
+                    }
+                }, fileName);
+        measure(out, "new Program1Parse1, Tokenizer.tokens",
+                (name, count) -> {
+                    for (int i = 0; i < count; i++) {
+                        Program p = new Program1Parse1();
+                        SimpleReader file = new SimpleReader1L(name);
+                        p.parse(file);
+                        file.close();
+                    }
+                }, fileName);
+        final ParseSession session = new ParseSession();
+        measure(out, "ParseSession, new program", (name, count) -> {
+            for (int i = 0; i < count; i++) {
+                Program1Parse1 p = new Program1Parse1();
+                SimpleReader file = new SimpleReader1L(name);
+                session.parse(file, p);
+                file.close();
+            }
+        }, fileName);
+        final Program1Parse1 reused = new Program1Parse1();
+        measure(out, "ParseSession, reused program",
+                (name, count) -> {
+                    for (int i = 0; i < count; i++) {
+                        SimpleReader file = new SimpleReader1L(name);
+                        session.parse(file, reused);
+                        file.close();
+                    }
+                }, fileName);
+        out.close();
+    }
+
+}
@@ -0,0 +1,266 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code ParseSession} and {@code TokenQueue}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ParseSessionTest {
+
+    /**
+     * Names of files containing valid BL programs.
+     */
+    private static final String[] FILE_NAMES = { "test/program.bl",
+        "test/program-empty-context.bl", "test/program-empty-body.bl" };
+
+    /**
+     * Returns the program in file {@code fileName}, parsed by
+     * {@code Program1}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program reference(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Parses file {@code fileName} into {@code p} with {@code session}.
+     *
+     * @param session
+     *            the session
+     * @param fileName
+     *            the name of the file
+     * @param p
+     *            the parsed program
+     */
+    private static void parse(ParseSession session, String fileName,
+            Program1Parse1 p) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        session.parse(file, p);
+        file.close();
+    }
+
+    /**
+     * Test that the session tokenizes like {@code Tokenizer.tokens}.
+     */
+    @Test
+    public final void testTokens() {
+        ParseSession session = new ParseSession();
+        for (String fileName : FILE_NAMES) {
+            SimpleReader file = new SimpleReader1L(fileName);
+            Queue<String> tokensRef = Tokenizer.tokens(file);
+            file.close();
+            file = new SimpleReader1L(fileName);
+            Queue<String> tokens = session.tokens(file);
+            file.close();
+            assertEquals(tokensRef.length(), tokens.length());
+            while (tokensRef.length() > 0) {
+                assertEquals(tokensRef.dequeue(), tokens.dequeue());
+            }
+        }
+    }
+
+    /**
+     * Test that repeated tokens are shared.
+     */
+    @Test
+    public final void testTokenCache() {
+        ParseSession session = new ParseSession();
+        SimpleReader file = new SimpleReader1L(FILE_NAMES[0]);
+        String first = session.tokens(file).front();
+        file.close();
+        file = new SimpleReader1L(FILE_NAMES[0]);
+        assertSame(first, session.tokens(file).front());
+        file.close();
+    }
+
+    /**
+     * Test of parsing many programs, into new and reused programs.
+     */
+    @Test
+    public final void testParseMany() {
+        ParseSession session = new ParseSession();
+        Program1Parse1 reused = new Program1Parse1();
+        for (int i = 0; i < 3; i++) {
+            for (String fileName : FILE_NAMES) {
+                Program1Parse1 p = new Program1Parse1();
+                parse(session, fileName, p);
+                assertEquals(reference(fileName), p);
+                parse(session, fileName, reused);
+                assertEquals(reference(fileName), reused);
+                assertSame(session.symbols(), p.symbols());
+            }
+        }
+        int one = session.symbols().id("one");
+        Program1Parse1 p = new Program1Parse1();
+        parse(session, FILE_NAMES[0], p);
+        assertTrue(p.instruction(one) != null);
+    }
+
+    /**
+     * Test that a failed parse does not disturb the next one.
+     */
+    @Test
+    public final void testParseAfterError() {
+        ParseSession session = new ParseSession();
+        Program1Parse1 p = new Program1Parse1();
+        boolean failed = false;
+        try {
+            parse(session, "test/program-invalid-end.bl", p);
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        parse(session, FILE_NAMES[0], p);
+        assertEquals(reference(FILE_NAMES[0]), p);
+    }
+
+    /**
+     * Test that a parse that fails inside nested statements leaves no depth
+     * for the next one, and that the programs parsed with the reused state
+     * keep their own statements.
+     *
+     * @throws IOException
+     *             if a program cannot be written
+     */
+    @Test
+    public final void testParseAfterNestedError() throws IOException {
+        Path broken = Files.createTempFile("broken", ".bl");
+        Files.write(broken, List.of("PROGRAM Broken IS BEGIN",
+                "WHILE true DO IF random THEN move END WHILE", "END Broken"));
+        Path nested = Files.createTempFile("nested", ".bl");
+        Files.write(nested, List.of("PROGRAM Nested IS BEGIN",
+                "WHILE true DO IF random THEN move END IF END WHILE",
+                "END Nested"));
+        ParseSession session = new ParseSession(new ParseLimits(
+                Integer.MAX_VALUE, 2, Integer.MAX_VALUE));
+        Program1Parse1 first = new Program1Parse1();
+        parse(session, FILE_NAMES[0], first);
+        boolean failed = false;
+        try {
+            parse(session, broken.toString(), new Program1Parse1());
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        Program1Parse1 p = new Program1Parse1();
+        parse(session, nested.toString(), p);
+        assertEquals(reference(nested.toString()), p);
+        assertEquals(reference(FILE_NAMES[0]), first);
+        Files.delete(broken);
+        Files.delete(nested);
+    }
+
+    /**
+     * Test that a session parse does not keep the program on the session
+     * symbol table once the program parses on its own.
+     */
+    @Test
+    public final void testParseLeavesProgramSymbols() {
+        ParseSession session = new ParseSession();
+        Program1Parse1 p = new Program1Parse1();
+        parse(session, FILE_NAMES[0], p);
+        assertSame(session.symbols(), p.symbols());
+        int size = session.symbols().size();
+        SimpleReader file = new SimpleReader1L(FILE_NAMES[0]);
+        p.parse(file);
+        file.close();
+        assertTrue(p.symbols() != session.symbols());
+        assertEquals(size, session.symbols().size());
+        assertEquals(reference(FILE_NAMES[0]), p);
+    }
+
+    /**
+     * Test that the session symbol table is replaced once it is full.
+     *
+     * @throws IOException
+     *             if the generated program cannot be written
+     */
+    @Test
+    public final void testSymbolsBounded() throws IOException {
+        Path wide = Files.createTempFile("wide", ".bl");
+        List<String> lines = new ArrayList<>();
+        lines.add("PROGRAM Wide IS");
+        for (int i = 0; i < ParseSession.MAX_SYMBOLS; i++) {
+            lines.add("INSTRUCTION i" + i + " IS move END i" + i);
+        }
+        lines.add("BEGIN END Wide");
+        Files.write(wide, lines);
+        ParseSession session = new ParseSession();
+        Program1Parse1 pWide = new Program1Parse1();
+        parse(session, wide.toString(), pWide);
+        Files.delete(wide);
+        SymbolTable full = session.symbols();
+        assertTrue(full.size() > ParseSession.MAX_SYMBOLS);
+
+        Program1Parse1 p = new Program1Parse1();
+        parse(session, FILE_NAMES[0], p);
+        assertTrue(session.symbols() != full);
+        assertSame(session.symbols(), p.symbols());
+        assertSame(full, pWide.symbols());
+        assertTrue(session.symbols().size() < SymbolTable.PRIMITIVE_COUNT
+                + ParseSession.MAX_SYMBOLS);
+        assertEquals(reference(FILE_NAMES[0]), p);
+    }
+
+    /**
+     * Test of parsing with limits.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testLimits() {
+        ParseSession session = new ParseSession(new ParseLimits(10, 10, 10));
+        parse(session, FILE_NAMES[0], new Program1Parse1());
+    }
+
+    /**
+     * Test of a token queue that wraps around and grows.
+     */
+    @Test
+    public final void testTokenQueue() {
+        final int n = 1000;
+        TokenQueue q = new TokenQueue();
+        for (int i = 0; i < n; i++) {
+            q.enqueue("t" + (2 * i));
+            q.enqueue("t" + (2 * i + 1));
+            assertEquals("t" + i, q.front());
+            assertEquals("t" + i, q.dequeue());
+        }
+        assertEquals(n, q.length());
+        assertEquals("t" + n, q.replaceFront("c"));
+        int i = n;
+        for (String x : q) {
+            assertEquals(i == n ? "c" : "t" + i, x);
+            i++;
+        }
+        assertEquals(2 * n, i);
+        q.clear();
+        assertEquals(0, q.length());
+        q.enqueue("d");
+        assertEquals("d", q.front());
+    }
+
+}
@@ -0,0 +1,280 @@
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.junit.Assume;
+
+/**
+ * Baseline of the performance tests, and the measurements they take against
+ * it. A measurement is the time and the memory allocated per token to parse
+ * one generated input; it fails its test if it exceeds the baseline by more
+ * than its margin. The margin of the bytes, which vary by a few percent from
+ * run to run, is the fraction given by the system property
+ * {@code perf.margin}, 0.25 by default. The time, even as the fastest of
+ * several rounds, varies by up to 3x from run to run on a shared machine, so
+ * its margin is the fraction given by {@code perf.timeMargin}, 3 by default:
+ * it catches a parse that became several times slower, not small drifts.
+ *
+ * <p>
+ * The performance tests run only when the system property {@code perf} is
+ * true, as {@code PerfSuite} sets it, so the normal test run skips them.
+ * Every run writes the measurements it took to the file named by the system
+ * property {@code perf.output}, or else to a new temporary file, in the
+ * format of the baseline file {@code test/perf-baseline.properties}. To
+ * accept a run as the new baseline, copy its entries over into the baseline
+ * file. Measurements without an entry in the baseline are recorded but never
+ * fail.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class PerfBaseline {
+
+    /**
+     * The name of the baseline file.
+     */
+    private static final String BASELINE_FILE_NAME = "test/perf-baseline.properties";
+
+    /**
+     * The file the measurements are written to.
+     */
+    private static final Path OUTPUT_FILE = outputFile();
+
+    /**
+     * Default allowed regression of the bytes, as a fraction of the
+     * baseline.
+     */
+    private static final double DEFAULT_MARGIN = 0.25;
+
+    /**
+     * Default allowed regression of the time, as a fraction of the baseline;
+     * larger than the spread of the times between runs.
+     */
+    private static final double DEFAULT_TIME_MARGIN = 3;
+
+    /**
+     * Number of parses run before measuring, enough for the parse to be
+     * compiled by the JIT compiler.
+     */
+    private static final int WARMUP = 50;
+
+    /**
+     * Number of rounds measured; the fastest counts.
+     */
+    private static final int ROUNDS = 10;
+
+    /**
+     * The baseline.
+     */
+    private static final Properties BASELINE = load();
+
+    /**
+     * The measurements taken so far by this run.
+     */
+    private static final Properties MEASURED = new Properties();
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PerfBaseline() {
+    }
+
+    /**
+     * Returns the baseline read from the baseline file, or no baseline if
+     * there is no such file.
+     *
+     * @return the baseline
+     */
+    private static Properties load() {
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(BASELINE_FILE_NAME)) {
+            baseline.load(in);
+        } catch (FileNotFoundException e) {
+            /*
+             * No baseline: every measurement is only recorded
+             */
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return baseline;
+    }
+
+    /**
+     * Returns the file named by the system property {@code perf.output}, or a
+     * new temporary file if it is not set.
+     *
+     * @return the output file
+     */
+    private static Path outputFile() {
+        String name = System.getProperty("perf.output");
+        try {
+            Path file;
+            if (name != null) {
+                file = Paths.get(name);
+            } else {
+                file = Files.createTempFile("bench_output", ".txt");
+            }
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the allowed regression given by system property {@code name},
+     * or {@code defaultMargin} if it is not set, as a fraction of the
+     * baseline.
+     *
+     * @param name
+     *            the name of the system property
+     * @param defaultMargin
+     *            the default margin
+     * @return the margin
+     */
+    private static double margin(String name, double defaultMargin) {
+        return Double.parseDouble(System.getProperty(name,
+                Double.toString(defaultMargin)));
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes allocated
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Records {@code value} as the measurement named {@code key} and writes
+     * all the measurements so far to the output file.
+     *
+     * @param key
+     *            the name of the measurement
+     * @param value
+     *            the value measured
+     */
+    private static synchronized void record(String key, long value) {
+        MEASURED.setProperty(key, Long.toString(value));
+        try (OutputStream out = new FileOutputStream(OUTPUT_FILE.toFile())) {
+            MEASURED.store(out, "Performance measurements");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records {@code value} as the measurement named {@code key}, and fails
+     * if it exceeds the baseline by more than {@code margin}.
+     *
+     * @param key
+     *            the name of the measurement
+     * @param value
+     *            the value measured
+     * @param unit
+     *            the unit of the value, for the failure message
+     * @param margin
+     *            the allowed regression, as a fraction of the baseline
+     */
+    private static void check(String key, long value, String unit,
+            double margin) {
+        record(key, value);
+        String stored = BASELINE.getProperty(key);
+        if (stored != null) {
+            long baseline = Long.parseLong(stored.trim());
+            long allowed = (long) Math.ceil(baseline * (1 + margin));
+            assertTrue(key + ": " + value + " " + unit + " exceeds baseline "
+                    + baseline + " " + unit + " by more than the margin",
+                    value <= allowed);
+        }
+    }
+
+    /*
+     * Public members ---------------------------------------------------------
+     */
+
+    /**
+     * A parse of one input, run again and again by a measurement.
+     */
+    public interface Parse {
+
+        /**
+         * Runs the parse once.
+         */
+        void run();
+
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Skips the calling test unless the system property {@code perf} is true.
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("performance tier, run with -Dperf=true",
+                Boolean.getBoolean("perf"));
+    }
+
+    /**
+     * Returns the file the measurements are written to.
+     *
+     * @return the output file
+     */
+    public static Path output() {
+        return OUTPUT_FILE;
+    }
+
+    /**
+     * Measures {@code parse}, an input of {@code tokenCount} tokens, and
+     * checks the time and allocation per token against the baseline entries
+     * {@code key + ".ns"} and {@code key + ".bytes"}. The time in nanoseconds
+     * per token is taken from the fastest of several rounds, after a warmup;
+     * the bytes per token are taken from the current thread only, so tests
+     * may run in parallel.
+     *
+     * @param key
+     *            the name of the measurement
+     * @param tokenCount
+     *            the number of tokens of the input
+     * @param parse
+     *            the parse
+     * @requires tokenCount > 0
+     */
+    public static void measure(String key, int tokenCount, Parse parse) {
+        assert key != null : "Violation of: key is not null";
+        assert tokenCount > 0 : "Violation of: tokenCount > 0";
+        assert parse != null : "Violation of: parse is not null";
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run();
+        }
+        long best = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            parse.run();
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            bytes = Math.min(bytes, allocatedBytes() - before);
+        }
+        check(key + ".ns", (best + tokenCount - 1) / tokenCount, "ns/token",
+                margin("perf.timeMargin", DEFAULT_TIME_MARGIN));
+        check(key + ".bytes", (bytes + tokenCount - 1) / tokenCount,
+                "bytes/token", margin("perf.margin", DEFAULT_MARGIN));
+    }
+
+}
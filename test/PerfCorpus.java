@@ -0,0 +1,289 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generator of the large BL inputs parsed by the performance tests. Every
+ * input comes in three shapes: wide (many instructions, or many statements
+ * side by side in each block), deep (IF and WHILE statements nested many
+ * levels down) and long (one long sequence of simple statements).
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class PerfCorpus {
+
+    /**
+     * Shape of a generated input.
+     */
+    public enum Shape {
+        /**
+         * Many instructions, or many statements side by side in each block.
+         */
+        WIDE,
+
+        /**
+         * IF and WHILE statements nested many levels down.
+         */
+        DEEP,
+
+        /**
+         * One long sequence of simple statements.
+         */
+        LONG
+    }
+
+    /**
+     * Number of instructions of a wide program.
+     */
+    private static final int WIDE_INSTRUCTIONS = 500;
+
+    /**
+     * Number of statements side by side in each block of a wide input.
+     */
+    private static final int WIDE_STATEMENTS = 40;
+
+    /**
+     * Nesting depth of a deep input.
+     */
+    private static final int DEEP_NESTING = 200;
+
+    /**
+     * Number of statements of a long input.
+     */
+    private static final int LONG_STATEMENTS = 20_000;
+
+    /**
+     * The conditions, in the order they are used.
+     */
+    private static final String[] CONDITIONS = { "next-is-empty",
+        "next-is-not-empty", "next-is-wall", "next-is-not-wall",
+        "next-is-friend", "next-is-not-friend", "next-is-enemy",
+        "next-is-not-enemy", "random", "true" };
+
+    /**
+     * The primitive calls, in the order they are used.
+     */
+    private static final String[] PRIMITIVES = { "move", "turnleft",
+        "turnright", "infect", "skip" };
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PerfCorpus() {
+    }
+
+    /**
+     * Appends {@code level} levels of indentation to {@code text}.
+     *
+     * @param text
+     *            the text
+     * @param level
+     *            the number of levels
+     * @updates text
+     */
+    private static void indent(StringBuilder text, int level) {
+        for (int i = 0; i < level; i++) {
+            text.append("    ");
+        }
+    }
+
+    /**
+     * Appends {@code count} simple statements to {@code text}, at indentation
+     * {@code level}, calling the primitives and {@code calls} in turn and
+     * wrapping every fourth call in an IF.
+     *
+     * @param text
+     *            the text
+     * @param level
+     *            the indentation level
+     * @param count
+     *            the number of statements
+     * @param calls
+     *            the instruction names that may be called
+     * @updates text
+     */
+    private static void statements(StringBuilder text, int level, int count,
+            String[] calls) {
+        int callCount = PRIMITIVES.length + calls.length;
+        for (int i = 0; i < count; i++) {
+            int k = i % callCount;
+            String call;
+            if (k < PRIMITIVES.length) {
+                call = PRIMITIVES[k];
+            } else {
+                call = calls[k - PRIMITIVES.length];
+            }
+            if (i % 4 == 3) {
+                indent(text, level);
+                text.append("IF ").append(CONDITIONS[i % CONDITIONS.length])
+                        .append(" THEN\n");
+                indent(text, level + 1);
+                text.append(call).append('\n');
+                indent(text, level);
+                text.append("END IF\n");
+            } else {
+                indent(text, level);
+                text.append(call).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Appends a statement nested {@code depth} levels down to {@code text},
+     * at indentation {@code level}, alternating WHILE, IF and IF_ELSE.
+     *
+     * @param text
+     *            the text
+     * @param level
+     *            the indentation level
+     * @param depth
+     *            the nesting depth
+     * @updates text
+     */
+    private static void nested(StringBuilder text, int level, int depth) {
+        for (int d = 0; d < depth; d++) {
+            indent(text, level + d);
+            String condition = CONDITIONS[d % CONDITIONS.length];
+            if (d % 3 == 0) {
+                text.append("WHILE ").append(condition).append(" DO\n");
+            } else {
+                text.append("IF ").append(condition).append(" THEN\n");
+            }
+        }
+        indent(text, level + depth);
+        text.append("move\n");
+        for (int d = depth - 1; d >= 0; d--) {
+            if (d % 3 == 0) {
+                indent(text, level + d);
+                text.append("END WHILE\n");
+            } else if (d % 3 == 1) {
+                indent(text, level + d);
+                text.append("END IF\n");
+            } else {
+                indent(text, level + d);
+                text.append("ELSE\n");
+                indent(text, level + d + 1);
+                text.append("skip\n");
+                indent(text, level + d);
+                text.append("END IF\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the body text of a statement of shape {@code shape}, at
+     * indentation {@code level}, that may call {@code calls}.
+     *
+     * @param shape
+     *            the shape
+     * @param level
+     *            the indentation level
+     * @param calls
+     *            the instruction names that may be called
+     * @return the text
+     */
+    private static String block(Shape shape, int level, String[] calls) {
+        StringBuilder text = new StringBuilder();
+        switch (shape) {
+            case WIDE:
+                statements(text, level, WIDE_STATEMENTS, calls);
+                indent(text, level);
+                text.append("IF next-is-enemy THEN\n");
+                statements(text, level + 1, WIDE_STATEMENTS, calls);
+                indent(text, level);
+                text.append("ELSE\n");
+                statements(text, level + 1, WIDE_STATEMENTS, calls);
+                indent(text, level);
+                text.append("END IF\n");
+                break;
+            case DEEP:
+                nested(text, level, DEEP_NESTING);
+                break;
+            default:
+                statements(text, level, LONG_STATEMENTS, calls);
+                break;
+        }
+        return text.toString();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns the text of a BL program of shape {@code shape}.
+     *
+     * @param shape
+     *            the shape
+     * @return the text of the program
+     * @ensures [program is a syntactically valid BL program of shape shape]
+     */
+    public static String program(Shape shape) {
+        assert shape != null : "Violation of: shape is not null";
+        int instructionCount = 1;
+        if (shape == Shape.WIDE) {
+            instructionCount = WIDE_INSTRUCTIONS;
+        }
+        String[] names = new String[instructionCount];
+        for (int i = 0; i < instructionCount; i++) {
+            names[i] = "instr" + i;
+        }
+        StringBuilder text = new StringBuilder("PROGRAM Perf IS\n\n");
+        for (int i = 0; i < instructionCount; i++) {
+            /*
+             * An instruction may call only the ones defined before it, so the
+             * program has no recursion
+             */
+            String[] calls = new String[Math.min(i, 2)];
+            for (int k = 0; k < calls.length; k++) {
+                calls[k] = names[i - 1 - k];
+            }
+            text.append("  INSTRUCTION ").append(names[i]).append(" IS\n");
+            if (shape == Shape.WIDE) {
+                statements(text, 2, 4, calls);
+            } else {
+                text.append(block(shape, 2, calls));
+            }
+            text.append("  END ").append(names[i]).append("\n\n");
+        }
+        String[] calls = { names[instructionCount - 1] };
+        text.append("BEGIN\n");
+        text.append(block(shape, 1, calls));
+        text.append("END Perf\n");
+        return text.toString();
+    }
+
+    /**
+     * Returns the text of a BL statement of shape {@code shape}: a sequence of
+     * statements, as parsed by {@code Statement.parseBlock}.
+     *
+     * @param shape
+     *            the shape
+     * @return the text of the statement
+     * @ensures [statement is a syntactically valid BL block of shape shape]
+     */
+    public static String statement(Shape shape) {
+        assert shape != null : "Violation of: shape is not null";
+        return block(shape, 0, new String[] { "helper" });
+    }
+
+    /**
+     * Writes {@code text} to a new temporary file and returns its name. The
+     * file is deleted when the virtual machine exits.
+     *
+     * @param text
+     *            the text
+     * @return the name of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static String write(String text) throws IOException {
+        Path file = Files.createTempFile("perf", ".bl");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Runs the performance test tier, one test class after another, so that no
+ * measurement competes with another for the processors. The tier is skipped
+ * by the normal test run; this sets the system property {@code perf} that
+ * enables it.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class PerfSuite {
+
+    /**
+     * The test classes of the tier.
+     */
+    private static final Class<?>[] CLASSES = { Program1Parse1PerfTest.class,
+        Program1Parse2PerfTest.class, ProgramEventParserPerfTest.class,
+        Statement1Parse1PerfTest.class, Statement1Parse2PerfTest.class };
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PerfSuite() {
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        System.setProperty("perf", "true");
+        Result result = JUnitCore.runClasses(CLASSES);
+        for (Failure failure : result.getFailures()) {
+            out.println(failure.toString());
+        }
+        out.println(result.getRunCount() + " tests, "
+                + result.getFailureCount() + " failures, "
+                + "measurements in " + PerfBaseline.output());
+        out.close();
+        if (!result.wasSuccessful()) {
+            System.exit(1);
+        }
+    }
+
+}
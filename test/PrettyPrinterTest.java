@@ -0,0 +1,182 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.statement.Statement1;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code PrettyPrinter}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class PrettyPrinterTest {
+
+    /**
+     * The name of the file the reference output is written to, a new
+     * temporary file.
+     */
+    private static final String OUTPUT_FILE_NAME = tempFileName();
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("pretty", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Returns the contents of {@code OUTPUT_FILE_NAME}.
+     *
+     * @return the bytes of the file
+     */
+    private static byte[] output() {
+        try {
+            return Files.readAllBytes(Paths.get(OUTPUT_FILE_NAME));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the output of a {@code PrettyPrinter} printing {@code p}.
+     *
+     * @param p
+     *            the program
+     * @param minified
+     *            whether the output is minified
+     * @return the bytes printed
+     */
+    private static byte[] print(Program p, boolean minified) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrettyPrinter printer = new PrettyPrinter(Channels.newChannel(bytes),
+                minified);
+        printer.print(p);
+        printer.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Checks that {@code PrettyPrinter} prints the program in file
+     * {@code fileName} exactly as {@code prettyPrint} does.
+     *
+     * @param fileName
+     *            the name of the file
+     */
+    private static void checkIdentical(String fileName) {
+        Program p = program(fileName);
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        p.prettyPrint(out);
+        out.close();
+        assertArrayEquals(output(), print(p, false));
+        assertEquals(program(fileName), p);
+    }
+
+    /**
+     * Test of normal mode on a program with instructions.
+     */
+    @Test
+    public final void testIdentical() {
+        checkIdentical("test/program.bl");
+    }
+
+    /**
+     * Test of normal mode on a program with an empty context.
+     */
+    @Test
+    public final void testIdenticalEmptyContext() {
+        checkIdentical("test/program-empty-context.bl");
+    }
+
+    /**
+     * Test of normal mode on a program with an empty body.
+     */
+    @Test
+    public final void testIdenticalEmptyBody() {
+        checkIdentical("test/program-empty-body.bl");
+    }
+
+    /**
+     * Test of printing a statement.
+     */
+    @Test
+    public final void testStatement() {
+        Statement s = new Statement1();
+        SimpleReader file = new SimpleReader1L("test/statement.bl");
+        s.parseBlock(Tokenizer.tokens(file));
+        file.close();
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        s.prettyPrint(out, 2);
+        out.close();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrettyPrinter printer = new PrettyPrinter(Channels.newChannel(bytes));
+        printer.print(s, 2);
+        printer.flush();
+        assertArrayEquals(output(), bytes.toByteArray());
+    }
+
+    /**
+     * Test that minified output is one line that parses back to the same
+     * program.
+     */
+    @Test
+    public final void testMinified() {
+        Program p = program("test/program.bl");
+        String text = new String(print(p, true), StandardCharsets.UTF_8);
+        String line = text.trim();
+        assertEquals(-1, line.indexOf('\n'));
+        assertEquals(-1, line.indexOf("  "));
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        out.print(text);
+        out.close();
+        assertEquals(p, program(OUTPUT_FILE_NAME));
+
+        SimpleReader file = new SimpleReader1L("test/program.bl");
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        assertEquals(tokens.length() - 1, line.split(" ").length);
+    }
+
+}
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * Customized JUnit test fixture for {@code Program1Parse1} in lazy mode.
+ */
+public class Program1Parse1LazyTest extends ProgramTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * The number of threads racing to use an instruction body first.
+     */
+    private static final int THREADS = 8;
+
+    @Override
+    protected final Program constructorTest() {
+        return new Program1Parse1(true);
+    }
+
+    @Override
+    protected final Program constructorRef() {
+        return new Program1();
+    }
+
+    /**
+     * Parses {@code FILE_NAME} in lazy mode and returns its context.
+     *
+     * @return the context of the parsed program
+     */
+    private static Map<String, Statement> parseContext() {
+        Program p = new Program1Parse1(true);
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        p.parse(tokens);
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        return context;
+    }
+
+    /**
+     * Test that instruction bodies are not parsed by {@code parse}.
+     */
+    @Test
+    public final void testBodiesNotParsedUntilUsed() {
+        Map<String, Statement> context = parseContext();
+        LazyStatement one = (LazyStatement) context.value("one");
+        LazyStatement two = (LazyStatement) context.value("two");
+        assertFalse(one.isParsed());
+        assertFalse(two.isParsed());
+        assertEquals(2, one.lengthOfBlock());
+        assertTrue(one.isParsed());
+        assertFalse(two.isParsed());
+    }
+
+    /**
+     * Test that concurrent first uses of a body all see the parsed block,
+     * and that the block is parsed exactly once.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public final void testConcurrentFirstUse() throws InterruptedException {
+        Map<String, Statement> context = parseContext();
+        final LazyStatement two = (LazyStatement) context.value("two");
+        final int[] seen = new int[THREADS];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int k = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                seen[k] = two.lengthOfBlock();
+            });
+            threads[i].start();
+        }
+        assertEquals(0, two.parseCount());
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int length : seen) {
+            assertEquals(2, length);
+        }
+        assertEquals(1, two.parseCount());
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        Map<String, Statement> contextRef = pRef.newContext();
+        pRef.swapContext(contextRef);
+        assertEquals(contextRef.value("two"), two);
+    }
+
+    /**
+     * Test that a syntax error inside a body is reported on first use.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testBodyErrorReportedOnUse() {
+        Queue<String> tokens = new Queue1L<>();
+        for (String t : ("PROGRAM Test IS INSTRUCTION one IS IF true move "
+                + "END IF END one BEGIN END Test").split(" ")) {
+            tokens.enqueue(t);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        Program p = new Program1Parse1(true);
+        p.parse(tokens);
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        context.value("one").kind();
+    }
+
+}
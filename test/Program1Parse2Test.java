@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * Customized JUnit test fixture for {@code Program1Parse2}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class Program1Parse2Test extends ProgramTest {
+
+    @Override
+    protected final Program constructorTest() {
+        return new Program1Parse2();
+    }
+
+    @Override
+    protected final Program constructorRef() {
+        return new Program1();
+    }
+
+    /**
+     * Returns the tokens of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the tokens
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Checks that {@code Program1Parse2} parses file {@code fileName} like
+     * the reference implementation and leaves the end of input.
+     *
+     * @param fileName
+     *            the name of the file
+     */
+    private void checkValid(String fileName) {
+        Program pRef = this.constructorRef();
+        pRef.parse(tokens(fileName));
+        Program pTest = this.constructorTest();
+        Queue<String> tokens = tokens(fileName);
+        pTest.parse(tokens);
+        assertEquals(pRef, pTest);
+        assertEquals(1, tokens.length());
+    }
+
+    /**
+     * Test of parse on the program with costs and the large generated
+     * programs.
+     *
+     * @throws IOException
+     *             if a program cannot be written to a file
+     */
+    @Test
+    public final void testParseGenerated() throws IOException {
+        this.checkValid("test/program-cost.bl");
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            this.checkValid(PerfCorpus.write(PerfCorpus.program(shape)));
+        }
+    }
+
+    /**
+     * Test of parse with a program name that is not an identifier, which
+     * {@code Program1Parse1} accepts too.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseKeywordName() throws IOException {
+        this.checkValid(PerfCorpus.write(
+                "PROGRAM WHILE IS\nBEGIN\n  move\nEND WHILE\n"));
+        this.checkValid(PerfCorpus.write(
+                "PROGRAM next-is-wall IS\nBEGIN\nEND next-is-wall\n"));
+    }
+
+    /**
+     * Test of parse with a different name at the end of a program whose name
+     * is not an identifier.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorKeywordName() throws IOException {
+        this.constructorTest().parse(tokens(PerfCorpus
+                .write("PROGRAM WHILE IS\nBEGIN\nEND IF\n")));
+    }
+
+}
@@ -0,0 +1,178 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * JUnit test fixture for {@code ProgramBundle}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramBundleTest {
+
+    /**
+     * The name of a file containing a bundle of the programs in
+     * {@code FILE_NAMES}, in order.
+     */
+    private static final String BUNDLE_FILE_NAME = "test/bundle.bl";
+
+    /**
+     * The names of files containing the programs of the bundle.
+     */
+    private static final String[] FILE_NAMES = { "test/program.bl",
+        "test/program-empty-context.bl", "test/program-empty-body.bl" };
+
+    /**
+     * The name of the index file written by the tests, a new temporary file.
+     */
+    private static final String INDEX_FILE_NAME = tempFileName();
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("bundle", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Parses the {@code i}-th program of the bundle with the reference
+     * implementation.
+     *
+     * @param i
+     *            the position of the program
+     * @return the parsed program
+     */
+    private static Program parseRef(int i) {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(FILE_NAMES[i]);
+        pRef.parse(file);
+        file.close();
+        return pRef;
+    }
+
+    /**
+     * Test of iterating over the programs of the bundle.
+     */
+    @Test
+    public final void testIterator() {
+        Iterator<Program> it = new ProgramBundle(BUNDLE_FILE_NAME).iterator();
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            assertEquals(true, it.hasNext());
+            assertEquals(parseRef(i), it.next());
+        }
+        assertEquals(false, it.hasNext());
+    }
+
+    /**
+     * Test that closing an iterator abandoned before the last program ends
+     * the iteration.
+     */
+    @Test
+    public final void testIteratorClose() {
+        ProgramBundle.Programs it = new ProgramBundle(BUNDLE_FILE_NAME)
+                .iterator();
+        assertEquals(parseRef(0), it.next());
+        it.close();
+        assertEquals(false, it.hasNext());
+    }
+
+    /**
+     * Test that whitespace characters of more than one byte separate tokens
+     * and count all their bytes in the offsets.
+     *
+     * @throws IOException
+     *             if the bundle cannot be written
+     */
+    @Test
+    public final void testMultibyteWhitespace() throws IOException {
+        String[] programs = { "PROGRAM A IS BEGIN move END A",
+            "PROGRAM B IS BEGIN turnleft END B" };
+        String first = programs[0].replace(" IS", "\u3000IS") + "\u2003";
+        String second = programs[1].replace(" ", "\u3000") + "\n";
+        String fileName = tempFileName();
+        Files.write(Paths.get(fileName),
+                (first + second).getBytes(StandardCharsets.UTF_8));
+        ProgramBundle bundle = new ProgramBundle(fileName);
+        long[] offsets = { 0, first.getBytes(StandardCharsets.UTF_8).length };
+        assertEquals(offsets.length, bundle.size());
+        for (int i = 0; i < programs.length; i++) {
+            String refFileName = tempFileName();
+            Files.write(Paths.get(refFileName),
+                    programs[i].getBytes(StandardCharsets.UTF_8));
+            Program pRef = new Program1();
+            SimpleReader file = new SimpleReader1L(refFileName);
+            pRef.parse(file);
+            file.close();
+            assertEquals(offsets[i], bundle.offsets()[i]);
+            assertEquals(pRef, bundle.program(i));
+        }
+    }
+
+    /**
+     * Test of handing the programs of the bundle to a callback.
+     */
+    @Test
+    public final void testForEach() {
+        final List<Program> programs = new ArrayList<>();
+        new ProgramBundle(BUNDLE_FILE_NAME).forEach(p -> programs.add(p));
+        assertEquals(FILE_NAMES.length, programs.size());
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            assertEquals(parseRef(i), programs.get(i));
+        }
+    }
+
+    /**
+     * Test of random access to the programs of the bundle.
+     */
+    @Test
+    public final void testRandomAccess() {
+        ProgramBundle bundle = new ProgramBundle(BUNDLE_FILE_NAME);
+        assertEquals(FILE_NAMES.length, bundle.size());
+        for (int i = FILE_NAMES.length - 1; i >= 0; i--) {
+            assertEquals(parseRef(i), bundle.program(i));
+        }
+    }
+
+    /**
+     * Test that a saved index gives the same random access.
+     */
+    @Test
+    public final void testWriteReadIndex() {
+        ProgramBundle bundle = new ProgramBundle(BUNDLE_FILE_NAME);
+        SimpleWriter out = new SimpleWriter1L(INDEX_FILE_NAME);
+        bundle.writeIndex(out);
+        out.close();
+        ProgramBundle reopened = new ProgramBundle(BUNDLE_FILE_NAME);
+        SimpleReader in = new SimpleReader1L(INDEX_FILE_NAME);
+        reopened.readIndex(in);
+        in.close();
+        assertEquals(FILE_NAMES.length, reopened.size());
+        assertEquals(parseRef(1), reopened.program(1));
+    }
+
+}
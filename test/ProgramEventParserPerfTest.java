@@ -0,0 +1,133 @@
+import java.io.IOException;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit performance test fixture for {@code ProgramEventParser}, on large
+ * generated programs. The tokens are refilled into one {@code TokenQueue}
+ * before every parse and the handler ignores the events, so the bytes
+ * measured per token are those of the parser alone; their baseline entries
+ * hold them near zero.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class ProgramEventParserPerfTest {
+
+    /**
+     * Handler that ignores every event.
+     */
+    private static final class Ignore implements ProgramEventParser.Handler {
+
+        @Override
+        public void startProgram(int name) {
+        }
+
+        @Override
+        public void startInstruction(int name) {
+        }
+
+        @Override
+        public void startBody() {
+        }
+
+        @Override
+        public void startIf(Condition condition) {
+        }
+
+        @Override
+        public void startElse() {
+        }
+
+        @Override
+        public void startWhile(Condition condition) {
+        }
+
+        @Override
+        public void call(int instruction) {
+        }
+
+        @Override
+        public void end() {
+        }
+
+    }
+
+    /**
+     * Parses a program of shape {@code shape} and measures the parse.
+     *
+     * @param shape
+     *            the shape of the program
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    private void parseAndMeasure(PerfCorpus.Shape shape) throws IOException {
+        PerfBaseline.assumeEnabled();
+        /*
+         * Setup
+         */
+        String fileName = PerfCorpus.write(PerfCorpus.program(shape));
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> read = Tokenizer.tokens(file);
+        file.close();
+        final String[] tokens = new String[read.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = read.dequeue();
+        }
+        final TokenQueue queue = new TokenQueue();
+        final ProgramEventParser parser = new ProgramEventParser();
+        final Ignore handler = new Ignore();
+        /*
+         * The measurement
+         */
+        String key = this.getClass().getSimpleName() + "."
+                + shape.name().toLowerCase();
+        PerfBaseline.measure(key, tokens.length - 1, () -> {
+            queue.clear();
+            for (String token : tokens) {
+                queue.enqueue(token);
+            }
+            parser.parse(queue, handler);
+        });
+    }
+
+    /**
+     * Test of parse on a program with many instructions.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseWide() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.WIDE);
+    }
+
+    /**
+     * Test of parse on a program with deeply nested statements.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseDeep() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.DEEP);
+    }
+
+    /**
+     * Test of parse on a program with long blocks.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseLong() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.LONG);
+    }
+
+}
@@ -0,0 +1,365 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code ProgramEventParser}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramEventParserTest {
+
+    /**
+     * Handler that builds the program reported by the events, to compare it
+     * with the program built by the reference implementation.
+     */
+    private static final class Builder implements ProgramEventParser.Handler {
+
+        /**
+         * Maximum number of open blocks.
+         */
+        private static final int MAX_DEPTH = 1024;
+
+        /**
+         * The symbol table of the parser.
+         */
+        private final SymbolTable symbols;
+
+        /**
+         * The program built.
+         */
+        private final Program program = new Program1();
+
+        /**
+         * The context built.
+         */
+        private final Map<String, Statement> context = this.program
+                .newContext();
+
+        /**
+         * The open blocks, innermost last.
+         */
+        private final Statement[] blocks = new Statement[MAX_DEPTH];
+
+        /**
+         * The conditions of the open statements, by depth of their blocks.
+         */
+        private final Condition[] conditions = new Condition[MAX_DEPTH];
+
+        /**
+         * Whether the open statement at each depth is a WHILE statement.
+         */
+        private final boolean[] whiles = new boolean[MAX_DEPTH];
+
+        /**
+         * The first blocks of the open IF statements with an ELSE block, by
+         * depth of their ELSE blocks.
+         */
+        private final Statement[] thens = new Statement[MAX_DEPTH];
+
+        /**
+         * Number of open blocks.
+         */
+        private int depth = 0;
+
+        /**
+         * The name of the instruction being built, or {@code null} for the
+         * body.
+         */
+        private String instruction = null;
+
+        /**
+         * Constructor.
+         *
+         * @param symbols
+         *            the symbol table of the parser
+         */
+        Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * Opens a new block.
+         */
+        private void open() {
+            this.blocks[this.depth] = this.program.newBody();
+            this.thens[this.depth] = null;
+            this.depth++;
+        }
+
+        /**
+         * Adds {@code s} to the end of the innermost open block.
+         *
+         * @param s
+         *            the statement
+         */
+        private void add(Statement s) {
+            Statement block = this.blocks[this.depth - 1];
+            block.addToBlock(block.lengthOfBlock(), s);
+        }
+
+        @Override
+        public void startProgram(int name) {
+            this.program.setName(this.symbols.name(name));
+        }
+
+        @Override
+        public void startInstruction(int name) {
+            this.instruction = this.symbols.name(name);
+            this.open();
+        }
+
+        @Override
+        public void startBody() {
+            this.instruction = null;
+            this.open();
+        }
+
+        @Override
+        public void startIf(Condition condition) {
+            this.conditions[this.depth] = condition;
+            this.whiles[this.depth] = false;
+            this.open();
+        }
+
+        @Override
+        public void startElse() {
+            Statement then = this.blocks[this.depth - 1];
+            this.blocks[this.depth - 1] = this.program.newBody();
+            this.thens[this.depth - 1] = then;
+        }
+
+        @Override
+        public void startWhile(Condition condition) {
+            this.conditions[this.depth] = condition;
+            this.whiles[this.depth] = true;
+            this.open();
+        }
+
+        @Override
+        public void call(int instruction) {
+            Statement s = this.program.newBody();
+            s.assembleCall(this.symbols.name(instruction));
+            this.add(s);
+        }
+
+        @Override
+        public void end() {
+            if (this.depth == 0) {
+                this.program.swapContext(this.context);
+            } else {
+                this.depth--;
+                Statement block = this.blocks[this.depth];
+                if (this.depth == 0) {
+                    if (this.instruction == null) {
+                        this.program.swapBody(block);
+                    } else {
+                        this.context.add(this.instruction, block);
+                    }
+                } else {
+                    Statement s = block.newInstance();
+                    Condition c = this.conditions[this.depth];
+                    if (this.whiles[this.depth]) {
+                        s.assembleWhile(c, block);
+                    } else if (this.thens[this.depth] != null) {
+                        s.assembleIfElse(c, this.thens[this.depth], block);
+                    } else {
+                        s.assembleIf(c, block);
+                    }
+                    this.add(s);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Returns the tokens of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the tokens
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Parses file {@code fileName} with {@code parser} into a new
+     * {@code Builder} and returns the builder.
+     *
+     * @param parser
+     *            the parser
+     * @param fileName
+     *            the name of the file
+     * @return the builder
+     */
+    private static Builder parse(ProgramEventParser parser, String fileName) {
+        Builder builder = new Builder(parser.symbols());
+        parser.parse(tokens(fileName), builder);
+        return builder;
+    }
+
+    /**
+     * Checks that the events of the parse of file {@code fileName} build the
+     * program built by the reference implementation.
+     *
+     * @param parser
+     *            the parser
+     * @param fileName
+     *            the name of the file
+     */
+    private static void checkValid(ProgramEventParser parser,
+            String fileName) {
+        Program pRef = new Program1();
+        pRef.parse(tokens(fileName));
+        Builder builder = new Builder(parser.symbols());
+        Queue<String> tokens = tokens(fileName);
+        parser.parse(tokens, builder);
+        assertEquals(pRef, builder.program);
+        assertEquals(0, builder.depth);
+        assertEquals(1, tokens.length());
+    }
+
+    /**
+     * Test of parse on syntactically valid input, with one parser reused
+     * from one file to the next.
+     */
+    @Test
+    public final void testParseValid() {
+        ProgramEventParser parser = new ProgramEventParser();
+        checkValid(parser, "test/program.bl");
+        checkValid(parser, "test/program-empty-body.bl");
+        checkValid(parser, "test/program-empty-context.bl");
+        checkValid(parser, "test/program-cost.bl");
+        checkValid(parser, "test/program.bl");
+    }
+
+    /**
+     * Test of parse on the large generated programs.
+     *
+     * @throws IOException
+     *             if a program cannot be written to a file
+     */
+    @Test
+    public final void testParseGenerated() throws IOException {
+        ProgramEventParser parser = new ProgramEventParser();
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            checkValid(parser, PerfCorpus.write(PerfCorpus.program(shape)));
+        }
+    }
+
+    /**
+     * Test that the ids of primitive calls are the reserved ones.
+     */
+    @Test
+    public final void testPrimitiveIds() {
+        ProgramEventParser parser = new ProgramEventParser();
+        parse(parser, "test/program.bl");
+        assertEquals(SymbolTable.MOVE, parser.symbols().id("move"));
+        assertEquals(SymbolTable.INFECT, parser.symbols().id("infect"));
+    }
+
+    /**
+     * Test that the symbol table is replaced once a parse leaves it full,
+     * and that the parses before and after it are reported in the table
+     * they started with.
+     *
+     * @throws IOException
+     *             if the generated program cannot be written
+     */
+    @Test
+    public final void testSymbolsBounded() throws IOException {
+        Path wide = Files.createTempFile("wide", ".bl");
+        List<String> lines = new ArrayList<>();
+        lines.add("PROGRAM Wide IS");
+        for (int i = 0; i < ParseSession.MAX_SYMBOLS; i++) {
+            lines.add("INSTRUCTION i" + i + " IS move END i" + i);
+        }
+        lines.add("BEGIN END Wide");
+        Files.write(wide, lines);
+        ProgramEventParser parser = new ProgramEventParser();
+        SymbolTable first = parser.symbols();
+        checkValid(parser, wide.toString());
+        Files.delete(wide);
+        assertTrue(parser.symbols() != first);
+        assertTrue(first.size() > ParseSession.MAX_SYMBOLS);
+        assertEquals(SymbolTable.PRIMITIVE_COUNT, parser.symbols().size());
+        checkValid(parser, "test/program.bl");
+        checkValid(parser, "test/program-cost.bl");
+    }
+
+    /**
+     * Test of parse with an extra token after the program.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorExtraToken() {
+        parse(new ProgramEventParser(), "test/program-extra-token.bl");
+    }
+
+    /**
+     * Test of parse with a different name at the end of the program.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorInvalidEnd() {
+        parse(new ProgramEventParser(), "test/program-invalid-end.bl");
+    }
+
+    /**
+     * Test of parse without "BEGIN".
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorMissingBegin() {
+        parse(new ProgramEventParser(), "test/program-missing-begin.bl");
+    }
+
+    /**
+     * Test of parse with two instructions of the same name, after a parse
+     * that declared the same instruction.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorRepeatInstruction() {
+        ProgramEventParser parser = new ProgramEventParser();
+        checkValid(parser, "test/program.bl");
+        parse(parser, "test/program-repeat-instruction.bl");
+    }
+
+    /**
+     * Test of parse with a different name at the end of an instruction.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorInvalidInstruction() {
+        parse(new ProgramEventParser(), "test/program-invalid-instruction.bl");
+    }
+
+    /**
+     * Test of parse with statements nested deeper than the limit.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testParseErrorDepth() {
+        parse(new ProgramEventParser(new ParseLimits(Integer.MAX_VALUE, 1,
+                Integer.MAX_VALUE)), "test/program.bl");
+    }
+
+}
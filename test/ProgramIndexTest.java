@@ -0,0 +1,126 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * JUnit test fixture for {@code ProgramIndex}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramIndexTest {
+
+    /**
+     * The names of files containing (possibly invalid) BL programs.
+     */
+    private static final String FILE_NAME_1 = "test/program.bl",
+            FILE_NAME_2 = "test/program-empty-context.bl",
+            FILE_NAME_3 = "test/program-invalid-end.bl";
+
+    /**
+     * The name of the index file written by the tests, a new temporary file.
+     */
+    private static final String INDEX_FILE_NAME = tempFileName();
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("index", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Scans the program in {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the index record of the program
+     */
+    private static ProgramIndex scan(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        ProgramIndex record = ProgramIndex.scan(file);
+        file.close();
+        return record;
+    }
+
+    /**
+     * Test of scan on a program with instructions.
+     */
+    @Test
+    public final void testScanExample() {
+        ProgramIndex record = scan(FILE_NAME_1);
+        assertEquals("Test", record.name());
+        assertEquals(2, record.instructionCount());
+        assertEquals("one", record.instructionName(0));
+        assertEquals(2, record.instructionSize(0));
+        assertEquals("two", record.instructionName(1));
+        assertEquals(5, record.instructionSize(1));
+        assertEquals(7, record.bodySize());
+        assertTrue(record.callsPrimitive("move"));
+        assertTrue(record.callsPrimitive("turnleft"));
+        assertTrue(record.callsPrimitive("infect"));
+        assertFalse(record.callsPrimitive("turnright"));
+        assertFalse(record.callsPrimitive("skip"));
+    }
+
+    /**
+     * Test of scan on a program without instructions.
+     */
+    @Test
+    public final void testScanEmptyContext() {
+        ProgramIndex record = scan(FILE_NAME_2);
+        assertEquals(0, record.instructionCount());
+        assertEquals(7, record.bodySize());
+    }
+
+    /**
+     * Test of scan on a program whose END name does not match.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testScanErrorInvalidEnd() {
+        scan(FILE_NAME_3);
+    }
+
+    /**
+     * Test that records written to an index file load back unchanged.
+     */
+    @Test
+    public final void testWriteLoad() {
+        SimpleWriter out = new SimpleWriter1L(INDEX_FILE_NAME);
+        scan(FILE_NAME_1).writeTo(out);
+        out.close();
+        SimpleReader in = new SimpleReader1L(INDEX_FILE_NAME);
+        Map<String, ProgramIndex> index = ProgramIndex.load(in);
+        in.close();
+        assertEquals(1, index.size());
+        ProgramIndex record = index.value("Test");
+        assertEquals(2, record.instructionCount());
+        assertEquals("two", record.instructionName(1));
+        assertEquals(5, record.instructionSize(1));
+        assertEquals(7, record.bodySize());
+        assertTrue(record.callsPrimitive("infect"));
+        assertFalse(record.callsPrimitive("skip"));
+    }
+
+}
@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit performance test fixture for {@code Program}'s parse, on large
+ * generated programs. Each test checks the program parsed against the
+ * reference implementation, then measures the parse against the baseline kept
+ * by {@code PerfBaseline}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public abstract class ProgramPerfTest {
+
+    /**
+     * Invokes the {@code Program} constructor for the implementation under
+     * test and returns the result.
+     *
+     * @return the new program
+     * @ensures constructorTest = ("Unnamed", {}, compose((BLOCK, ?, ?), <>))
+     */
+    protected abstract Program constructorTest();
+
+    /**
+     * Invokes the {@code Program} constructor for the reference implementation
+     * and returns the result.
+     *
+     * @return the new program
+     * @ensures constructorRef = ("Unnamed", {}, compose((BLOCK, ?, ?), <>))
+     */
+    protected abstract Program constructorRef();
+
+    /**
+     * Parses a program of shape {@code shape} with the implementation under
+     * test and the reference implementation, checks they agree, and measures
+     * the parse of the implementation under test.
+     *
+     * @param shape
+     *            the shape of the program
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    private void parseAndMeasure(PerfCorpus.Shape shape) throws IOException {
+        PerfBaseline.assumeEnabled();
+        /*
+         * Setup
+         */
+        final String fileName = PerfCorpus.write(PerfCorpus.program(shape));
+        SimpleReader file = new SimpleReader1L(fileName);
+        int tokenCount = Tokenizer.tokens(file).length() - 1;
+        file.close();
+        Program pRef = this.constructorRef();
+        file = new SimpleReader1L(fileName);
+        pRef.parse(file);
+        file.close();
+        Program pTest = this.constructorTest();
+        file = new SimpleReader1L(fileName);
+        pTest.parse(file);
+        file.close();
+        assertEquals(pRef, pTest);
+        /*
+         * The measurement
+         */
+        String key = this.getClass().getSimpleName() + "."
+                + shape.name().toLowerCase();
+        PerfBaseline.measure(key, tokenCount, () -> {
+            Program p = this.constructorTest();
+            SimpleReader in = new SimpleReader1L(fileName);
+            p.parse(in);
+            in.close();
+        });
+    }
+
+    /**
+     * Test of parse on a program with many instructions.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseWide() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.WIDE);
+    }
+
+    /**
+     * Test of parse on a program with deeply nested statements.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseDeep() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.DEEP);
+    }
+
+    /**
+     * Test of parse on a program with long blocks.
+     *
+     * @throws IOException
+     *             if the program cannot be written to a file
+     */
+    @Test
+    public final void testParseLong() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.LONG);
+    }
+
+}
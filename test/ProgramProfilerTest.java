@@ -0,0 +1,285 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code ProgramProfiler}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramProfilerTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * The name of the file the report is written to, a new temporary file.
+     */
+    private static final String OUTPUT_FILE_NAME = tempFileName();
+
+    /**
+     * Turns of two passes through the WHILE loop of the program in
+     * {@code FILE_NAME}, after the first infect, for {@code Bug}.
+     */
+    private static final int TWO_PASSES = 31;
+
+    /**
+     * Time within which a run that would never end must be reported, in
+     * milliseconds.
+     */
+    private static final long TIMEOUT = 10_000;
+
+    /**
+     * Programs whose runs stop calling primitive instructions.
+     */
+    private static final String[] IDLE_PROGRAMS = {
+        "PROGRAM Idle IS BEGIN END Idle",
+        "PROGRAM Idle IS BEGIN IF next-is-wall THEN move END IF END Idle",
+        "PROGRAM Idle IS BEGIN move WHILE true DO END WHILE END Idle" };
+
+    /**
+     * Programs with recursive instructions that call themselves after every
+     * turn.
+     */
+    private static final String[] RECURSIVE_PROGRAMS = {
+        "PROGRAM R IS INSTRUCTION r IS move r END r BEGIN r END R",
+        "PROGRAM R IS INSTRUCTION a IS move b END a "
+                + "INSTRUCTION b IS IF true THEN a END IF END b "
+                + "BEGIN a END R" };
+
+    /**
+     * The message reporting instruction calls nested too deep.
+     */
+    private static final String DEEP_CALLS_ERROR = ""
+            + "Error: Instruction calls are nested deeper than the limit of "
+            + ProgramProfiler.MAX_CALL_DEPTH;
+
+    /**
+     * The message reporting a run that stopped calling primitives.
+     */
+    private static final String IDLE_ERROR = ""
+            + "Error: No primitive instruction called in "
+            + ProgramProfiler.MAX_IDLE_STEPS + " steps";
+
+    /**
+     * Bug that sees an empty cell next to it, and counts its turns.
+     */
+    private static final class Bug implements ProgramProfiler.Bug {
+
+        /**
+         * Number of turns taken.
+         */
+        private int turns = 0;
+
+        @Override
+        public boolean test(Condition c) {
+            return c == Condition.TRUE || c == Condition.NEXT_IS_EMPTY;
+        }
+
+        @Override
+        public void act(int primitive) {
+            assertTrue(SymbolTable.isPrimitive(primitive));
+            this.turns++;
+        }
+
+    }
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("profile", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Parses {@code FILE_NAME} into {@code p}, recording its spans in
+     * {@code map}.
+     *
+     * @param p
+     *            the program
+     * @param map
+     *            the source map
+     */
+    private static void parse(Program1Parse1 p, SourceMap map) {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        p.parse(tokens, positions, map);
+    }
+
+    /**
+     * Returns the program with text {@code text}.
+     *
+     * @param text
+     *            the BL text of the program
+     * @return the parsed program
+     */
+    private static Program programOf(String text) {
+        Queue<String> tokens = new Queue1L<>();
+        for (String token : text.trim().split("\\s+")) {
+            tokens.enqueue(token);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        Program p = new Program1();
+        p.parse(tokens);
+        return p;
+    }
+
+    /**
+     * Runs {@code run} and returns the message of the error it reports.
+     *
+     * @param run
+     *            the run, which must report an error
+     * @return the message of the error
+     */
+    private static String error(Runnable run) {
+        String message = null;
+        try {
+            run.run();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertTrue("no error reported", message != null);
+        return message;
+    }
+
+    /**
+     * Test of run on whole passes through the loop.
+     */
+    @Test
+    public final void testRunCounts() {
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap map = new SourceMap();
+        parse(p, map);
+        ProgramProfiler profiler = new ProgramProfiler(p, map);
+        Bug bug = new Bug();
+        profiler.run(bug, TWO_PASSES);
+
+        assertEquals(TWO_PASSES, bug.turns);
+        assertEquals(map.size(), profiler.size());
+        int body = map.bodyNode();
+        assertEquals(1, profiler.count(body));
+        assertEquals(1, profiler.count(body + 2));
+        assertEquals(2, profiler.count(body + 3));
+        assertEquals(2, profiler.count(body + 6));
+        int one = map.instructionNode("one");
+        assertEquals(14, profiler.count(one));
+        assertEquals(14, profiler.count(one + 1));
+        int two = map.instructionNode("two");
+        assertEquals(4, profiler.count(two));
+        assertEquals(0, profiler.count(two + 3));
+        assertEquals(4, profiler.count(two + 5));
+    }
+
+    /**
+     * Test that run stops as soon as the turns run out.
+     */
+    @Test
+    public final void testRunStopsAfterTurns() {
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap map = new SourceMap();
+        parse(p, map);
+        ProgramProfiler profiler = new ProgramProfiler(p, map);
+        Bug bug = new Bug();
+        profiler.run(bug, 1);
+
+        assertEquals(1, bug.turns);
+        int body = map.bodyNode();
+        assertEquals(1, profiler.count(body + 1));
+        assertEquals(0, profiler.count(body + 2));
+        profiler.run(bug, 1);
+        assertEquals(2, profiler.count(body + 1));
+        profiler.reset();
+        assertEquals(0, profiler.count(body + 1));
+    }
+
+    /**
+     * Test of report.
+     *
+     * @throws IOException
+     *             if the report cannot be read back
+     */
+    @Test
+    public final void testReport() throws IOException {
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap map = new SourceMap();
+        parse(p, map);
+        ProgramProfiler profiler = new ProgramProfiler(p, map);
+        profiler.run(new Bug(), TWO_PASSES);
+        SimpleWriter out = new SimpleWriter1L(OUTPUT_FILE_NAME);
+        profiler.report(out, 3);
+        out.close();
+
+        String[] lines = new String(
+                Files.readAllBytes(Paths.get(OUTPUT_FILE_NAME)),
+                StandardCharsets.UTF_8).split("\\R");
+        assertEquals(1 + 1 + 2 + 1 + 3, lines.length);
+        assertEquals("*** Profile of Test ***", lines[0]);
+        assertEquals("14  one (4:6)", lines[2].trim());
+        assertEquals("4  two (9:5)", lines[3].trim());
+        assertEquals("Hot spots:", lines[4]);
+        assertTrue(lines[5].trim().startsWith("14  "));
+        assertTrue(lines[5].contains("one: "));
+    }
+
+    /**
+     * Test that a run that stops calling primitive instructions is reported
+     * instead of running forever.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRunWithoutPrimitive() {
+        for (String text : IDLE_PROGRAMS) {
+            ProgramProfiler profiler = new ProgramProfiler(programOf(text),
+                    new SourceMap());
+            assertEquals(text, IDLE_ERROR,
+                    error(() -> profiler.run(new Bug(), 2)));
+        }
+    }
+
+    /**
+     * Test that a recursive instruction that nests too deep is reported
+     * instead of overflowing the stack.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRecursive() {
+        for (String text : RECURSIVE_PROGRAMS) {
+            ProgramProfiler profiler = new ProgramProfiler(programOf(text),
+                    new SourceMap());
+            String message = error(() -> profiler.run(new Bug(),
+                    2 * ProgramProfiler.MAX_CALL_DEPTH));
+            assertEquals(text, DEEP_CALLS_ERROR, message);
+        }
+    }
+
+}
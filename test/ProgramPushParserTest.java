@@ -0,0 +1,143 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * JUnit test fixture for {@code ProgramPushParser}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramPushParserTest {
+
+    /**
+     * The names of files containing (possibly invalid) BL programs.
+     */
+    private static final String FILE_NAME_1 = "test/program.bl",
+            FILE_NAME_2 = "test/program-extra-token.bl",
+            FILE_NAME_3 = "test/program-repeat-instruction.bl";
+
+    /**
+     * Parses {@code fileName} with the reference implementation.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program parseRef(String fileName) {
+        Program pRef = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        pRef.parse(file);
+        file.close();
+        return pRef;
+    }
+
+    /**
+     * Reads all bytes of {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the bytes of the file
+     */
+    private static byte[] read(String fileName) {
+        try {
+            return Files.readAllBytes(Paths.get(fileName));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Feeds {@code bytes} to a new push parser in chunks of
+     * {@code chunkSize} bytes and returns the finished program.
+     *
+     * @param bytes
+     *            the bytes of the program
+     * @param chunkSize
+     *            the size of the chunks
+     * @return the parsed program
+     */
+    private static Program pushBytes(byte[] bytes, int chunkSize) {
+        ProgramPushParser parser = new ProgramPushParser(new Program1Parse1());
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            parser.feed(bytes, i, Math.min(chunkSize, bytes.length - i));
+        }
+        return parser.finish();
+    }
+
+    /**
+     * Test of byte chunks of every size from one byte to the whole file.
+     */
+    @Test
+    public final void testByteChunks() {
+        Program pRef = parseRef(FILE_NAME_1);
+        byte[] bytes = read(FILE_NAME_1);
+        for (int size = 1; size <= bytes.length; size++) {
+            assertEquals(pRef, pushBytes(bytes, size));
+        }
+    }
+
+    /**
+     * Test of character chunks that split every token.
+     */
+    @Test
+    public final void testCharChunks() {
+        Program pRef = parseRef(FILE_NAME_1);
+        String text = new String(read(FILE_NAME_1), StandardCharsets.UTF_8);
+        ProgramPushParser parser = new ProgramPushParser(new Program1Parse1());
+        for (int i = 0; i < text.length(); i += 2) {
+            parser.feed(text.subSequence(i, Math.min(i + 2, text.length())));
+        }
+        assertEquals(pRef, parser.finish());
+    }
+
+    /**
+     * Test of a multi-byte character split across byte chunks.
+     */
+    @Test
+    public final void testSplitCharacter() {
+        byte[] bytes = ("PROGRAM T\u00e9st IS BEGIN move END T\u00e9st")
+                .getBytes(StandardCharsets.UTF_8);
+        Program p = pushBytes(bytes, 1);
+        assertEquals("T\u00e9st", p.name());
+    }
+
+    /**
+     * Test that tokens after the end of the program are reported.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testErrorExtraToken() {
+        pushBytes(read(FILE_NAME_2), 1);
+    }
+
+    /**
+     * Test that a repeated instruction is reported before the input ends.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testErrorReportedBeforeFinish() {
+        byte[] bytes = read(FILE_NAME_3);
+        ProgramPushParser parser = new ProgramPushParser(new Program1Parse1());
+        parser.feed(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Test that input ending inside the program is reported.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testErrorTruncated() {
+        byte[] bytes = read(FILE_NAME_1);
+        pushBytes(Arrays.copyOf(bytes, bytes.length / 2), 1);
+    }
+
+}
@@ -0,0 +1,260 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.StatementKernel.Condition;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code ProgramRun}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramRunTest {
+
+    /**
+     * Number of turns of each run.
+     */
+    private static final int TURNS = 10_000;
+
+    /**
+     * Time within which a run that would never end must be reported, in
+     * milliseconds.
+     */
+    private static final long TIMEOUT = 10_000;
+
+    /**
+     * Programs whose runs stop calling primitive instructions.
+     */
+    private static final String[] IDLE_PROGRAMS = {
+        "PROGRAM Idle IS BEGIN END Idle",
+        "PROGRAM Idle IS BEGIN IF random THEN END IF END Idle",
+        "PROGRAM Idle IS BEGIN move WHILE true DO END WHILE END Idle" };
+
+    /**
+     * The message reporting a run that stopped calling primitives.
+     */
+    private static final String IDLE_ERROR = ""
+            + "Error: No primitive instruction called in "
+            + ProgramProfiler.MAX_IDLE_STEPS + " steps";
+
+    /**
+     * Programs with recursive instructions that call themselves after every
+     * turn.
+     */
+    private static final String[] RECURSIVE_PROGRAMS = {
+        "PROGRAM R IS INSTRUCTION r IS move r END r BEGIN r END R",
+        "PROGRAM R IS INSTRUCTION a IS move b END a "
+                + "INSTRUCTION b IS IF true THEN a END IF END b "
+                + "BEGIN a END R" };
+
+    /**
+     * The message reporting instruction calls nested too deep.
+     */
+    private static final String DEEP_CALLS_ERROR = ""
+            + "Error: Instruction calls are nested deeper than the limit of "
+            + ProgramProfiler.MAX_CALL_DEPTH;
+
+    /**
+     * Bug that sees random surroundings and records its turns.
+     */
+    private static final class Bug implements ProgramProfiler.Bug {
+
+        /**
+         * The random numbers.
+         */
+        private final Random random = new Random(0);
+
+        /**
+         * The primitive instructions performed, in order.
+         */
+        private final List<Integer> turns = new ArrayList<>();
+
+        @Override
+        public boolean test(Condition c) {
+            return c == Condition.TRUE || this.random.nextBoolean();
+        }
+
+        @Override
+        public void act(int primitive) {
+            this.turns.add(primitive);
+        }
+
+    }
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Checks that running {@code p} in steps of {@code step} turns performs
+     * the same turns as the interpreter of {@code ProgramProfiler} in one
+     * call.
+     *
+     * @param p
+     *            the program
+     * @param step
+     *            the number of turns of each step
+     */
+    private static void checkRun(Program p, int step) {
+        Bug expected = new Bug();
+        new ProgramProfiler(p, new SourceMap()).run(expected, TURNS);
+        Bug bug = new Bug();
+        ProgramRun run = new ProgramRun(FrozenProgram.freeze(p));
+        while (run.turns() < TURNS) {
+            run.run(bug, Math.min(step, TURNS - run.turns()));
+        }
+        assertEquals(TURNS, bug.turns.size());
+        assertEquals(expected.turns, bug.turns);
+    }
+
+    /**
+     * Returns the program with text {@code text}.
+     *
+     * @param text
+     *            the BL text of the program
+     * @return the parsed program
+     */
+    private static Program programOf(String text) {
+        Queue<String> tokens = new Queue1L<>();
+        for (String token : text.trim().split("\\s+")) {
+            tokens.enqueue(token);
+        }
+        tokens.enqueue(Tokenizer.END_OF_INPUT);
+        Program p = new Program1();
+        p.parse(tokens);
+        return p;
+    }
+
+    /**
+     * Runs {@code run} and returns the message of the error it reports.
+     *
+     * @param run
+     *            the run, which must report an error
+     * @return the message of the error
+     */
+    private static String error(Runnable run) {
+        String message = null;
+        try {
+            run.run();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertTrue("no error reported", message != null);
+        return message;
+    }
+
+    /**
+     * Test of run in one call and in steps on small programs.
+     */
+    @Test
+    public final void testRun() {
+        for (String fileName : new String[] { "test/program.bl",
+            "test/bundle.bl" }) {
+            checkRun(program(fileName), TURNS);
+            checkRun(program(fileName), 1);
+            checkRun(program(fileName), 7);
+        }
+    }
+
+    /**
+     * Test of run in steps on the large generated programs.
+     *
+     * @throws IOException
+     *             if a program cannot be written to a file
+     */
+    @Test
+    public final void testRunGenerated() throws IOException {
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            checkRun(program(PerfCorpus.write(PerfCorpus.program(shape))),
+                    13);
+        }
+    }
+
+    /**
+     * Test of a call of an undefined instruction.
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testRunUndefined() {
+        Program p = new Program1();
+        Statement body = p.newBody();
+        Statement call = body.newInstance();
+        call.assembleCall("missing");
+        body.addToBlock(0, call);
+        p.swapBody(body);
+        new ProgramRun(FrozenProgram.freeze(p)).run(new Bug(), TURNS);
+    }
+
+    /**
+     * Test that a run that stops calling primitive instructions is reported
+     * instead of running forever.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRunWithoutPrimitive() {
+        for (String text : IDLE_PROGRAMS) {
+            ProgramRun run = new ProgramRun(
+                    FrozenProgram.freeze(programOf(text)));
+            assertEquals(text, IDLE_ERROR, error(() -> run.run(new Bug(), 2)));
+        }
+    }
+
+    /**
+     * Test that a recursive instruction that nests too deep is reported
+     * after the turns {@code ProgramProfiler} performs, also by a run
+     * resumed from its stack, instead of growing the stack.
+     */
+    @Test(timeout = TIMEOUT)
+    public final void testRecursive() {
+        final int half = ProgramProfiler.MAX_CALL_DEPTH / 2;
+        final int turns = 2 * ProgramProfiler.MAX_CALL_DEPTH;
+        for (String text : RECURSIVE_PROGRAMS) {
+            Program p = programOf(text);
+            Bug expected = new Bug();
+            assertEquals(text, DEEP_CALLS_ERROR,
+                    error(() -> new ProgramProfiler(p, new SourceMap())
+                            .run(expected, turns)));
+            FrozenProgram program = FrozenProgram.freeze(p);
+            Bug bug = new Bug();
+            ProgramRun first = new ProgramRun(program);
+            first.run(bug, half);
+            int depth = first.depth();
+            int[] nodes = new int[depth];
+            int[] next = new int[depth];
+            for (int i = 0; i < depth; i++) {
+                nodes[i] = first.node(i);
+                next[i] = first.next(i);
+            }
+            ProgramRun resumed = new ProgramRun(program, half, nodes, next,
+                    depth);
+            assertEquals(text, DEEP_CALLS_ERROR,
+                    error(() -> resumed.run(bug, turns - half)));
+            assertEquals(text, expected.turns, bug.turns);
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.StatementKernel.Condition;
+import components.statement.StatementKernel.Kind;
+
+/**
+ * JUnit test fixture for {@code ProgramStore}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramStoreTest {
+
+    /**
+     * The name of the store file, a new temporary file.
+     */
+    private static final String STORE_FILE_NAME = tempFileName();
+
+    /**
+     * Names of files containing valid BL programs.
+     */
+    private static final String[] FILE_NAMES = { "test/program.bl",
+        "test/program-empty-context.bl", "test/program-empty-body.bl" };
+
+    /**
+     * Small segment size, so that records are spread over several segments.
+     */
+    private static final int SMALL_SEGMENT_SIZE = 1024;
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("store", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the parsed program
+     */
+    private static Program program(String fileName) {
+        Program p = new Program1Parse1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return p;
+    }
+
+    /**
+     * Checks that program {@code i} of {@code store} is the program in file
+     * {@code fileName}.
+     *
+     * @param store
+     *            the store
+     * @param i
+     *            the program number
+     * @param fileName
+     *            the name of the file
+     */
+    private static void checkProgram(ProgramStore store, int i,
+            String fileName) {
+        Program p = new Program1();
+        store.program(i, p);
+        assertEquals(program(fileName), p);
+    }
+
+    /**
+     * Test of adding programs to an in-memory store and copying them back.
+     */
+    @Test
+    public final void testInMemory() {
+        ProgramStore store = ProgramStore.inMemory();
+        for (String fileName : FILE_NAMES) {
+            store.add(program(fileName));
+        }
+        assertEquals(FILE_NAMES.length, store.size());
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            checkProgram(store, i, FILE_NAMES[i]);
+        }
+        store.close();
+    }
+
+    /**
+     * Test that a name longer than 32767 bytes is read back whole, and that
+     * a name longer than 65535 bytes is rejected when added.
+     */
+    @Test
+    public final void testLongNames() {
+        ProgramStore store = ProgramStore.inMemory();
+        Program p = new Program1();
+        String name = "n".repeat(40_000);
+        p.setName(name);
+        store.add(p);
+        ProgramStore.Cursor cursor = store.cursor();
+        cursor.moveTo(0);
+        assertEquals(name, cursor.name());
+        Program q = new Program1();
+        store.program(0, q);
+        assertEquals(p, q);
+
+        p.setName("n".repeat(70_000));
+        boolean rejected = false;
+        try {
+            store.add(p);
+        } catch (RuntimeException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    /**
+     * Test of walking a program with a cursor.
+     */
+    @Test
+    public final void testCursor() {
+        ProgramStore store = ProgramStore.inMemory();
+        store.add(program(FILE_NAMES[0]));
+        ProgramStore.Cursor cursor = store.cursor();
+        cursor.moveTo(0);
+        assertEquals("Test", cursor.name());
+        assertEquals(21, cursor.nodeCount());
+        assertEquals(2, cursor.instructionCount());
+
+        assertEquals(Kind.BLOCK, cursor.kind());
+        assertTrue(cursor.firstChild());
+        assertEquals(Kind.CALL, cursor.kind());
+        assertEquals(SymbolTable.INFECT, cursor.callId());
+        assertEquals("infect", cursor.symbol(cursor.callId()));
+        assertTrue(cursor.nextSibling());
+        assertEquals(Kind.WHILE, cursor.kind());
+        assertEquals(Condition.TRUE, cursor.condition());
+        assertTrue(!cursor.nextSibling());
+        assertTrue(cursor.parent());
+        assertTrue(!cursor.parent());
+        assertEquals(2, cursor.childCount());
+
+        int calls = 0;
+        for (int k = 0; k < cursor.instructionCount(); k++) {
+            cursor.instruction(k);
+            assertTrue(cursor.firstChild());
+            do {
+                if (cursor.kind() == Kind.CALL) {
+                    calls++;
+                }
+            } while (cursor.nextSibling());
+        }
+        assertEquals(2 + 1, calls);
+        store.close();
+    }
+
+    /**
+     * Test of a file-backed store with records spread over several segments,
+     * reopened after closing.
+     */
+    @Test
+    public final void testReopen() {
+        new File(STORE_FILE_NAME).delete();
+        ProgramStore store = ProgramStore.open(STORE_FILE_NAME,
+                SMALL_SEGMENT_SIZE);
+        final int copies = 4;
+        for (int c = 0; c < copies; c++) {
+            for (String fileName : FILE_NAMES) {
+                store.add(program(fileName));
+            }
+        }
+        store.close();
+
+        store = ProgramStore.open(STORE_FILE_NAME);
+        assertEquals(copies * FILE_NAMES.length, store.size());
+        for (int i = 0; i < store.size(); i++) {
+            checkProgram(store, i, FILE_NAMES[i % FILE_NAMES.length]);
+        }
+        store.add(program(FILE_NAMES[0]));
+        store.close();
+        store = ProgramStore.open(STORE_FILE_NAME);
+        assertEquals(copies * FILE_NAMES.length + 1, store.size());
+        checkProgram(store, store.size() - 1, FILE_NAMES[0]);
+        store.close();
+        new File(STORE_FILE_NAME).delete();
+    }
+
+    /**
+     * Test that a file-backed store with the default segment size is only as
+     * large as its records, and that its mapping grows as records are added.
+     */
+    @Test
+    public final void testGrowth() {
+        new File(STORE_FILE_NAME).delete();
+        ProgramStore store = ProgramStore.open(STORE_FILE_NAME);
+        store.close();
+        final long empty = new File(STORE_FILE_NAME).length();
+        final long small = 1 << 20;
+        assertTrue(empty < small);
+
+        store = ProgramStore.open(STORE_FILE_NAME);
+        final int copies = 200;
+        for (int c = 0; c < copies; c++) {
+            for (String fileName : FILE_NAMES) {
+                store.add(program(fileName));
+            }
+        }
+        store.close();
+        long length = new File(STORE_FILE_NAME).length();
+        assertTrue(empty < length && length < small);
+
+        store = ProgramStore.open(STORE_FILE_NAME);
+        assertEquals(copies * FILE_NAMES.length, store.size());
+        for (int i = 0; i < store.size(); i++) {
+            checkProgram(store, i, FILE_NAMES[i % FILE_NAMES.length]);
+        }
+        store.close();
+        new File(STORE_FILE_NAME).delete();
+    }
+
+}
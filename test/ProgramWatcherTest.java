@@ -0,0 +1,337 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ProgramWatcher}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class ProgramWatcherTest {
+
+    /**
+     * Debounce delay used by the tests, in milliseconds.
+     */
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    /**
+     * How long to wait for an expected report, in seconds.
+     */
+    private static final long TIMEOUT_SECONDS = 20;
+
+    /**
+     * How long to wait to be sure no report follows, in milliseconds.
+     */
+    private static final long QUIET_MILLIS = 1000;
+
+    /**
+     * Listener that queues the reports it hears of as strings.
+     */
+    private static final class Recorder implements ProgramWatcher.Listener {
+
+        /**
+         * The reports, as "changed name valid" or "removed name".
+         */
+        private final BlockingQueue<String> reports = new LinkedBlockingQueue<>();
+
+        @Override
+        public void changed(Path file, ProgramWatcher.Result result) {
+            this.reports.add("changed " + file.getFileName() + " "
+                    + result.isValid());
+        }
+
+        @Override
+        public void removed(Path file) {
+            this.reports.add("removed " + file.getFileName());
+        }
+
+        /**
+         * Returns the next report, waiting for it if needed.
+         *
+         * @return the next report, or {@code null} if none came in time
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        String next() throws InterruptedException {
+            return this.reports.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Returns the next {@code count} reports, in any order, waiting for
+         * them if needed.
+         *
+         * @param count
+         *            the number of reports
+         * @return the reports; {@code null} for those that did not come in
+         *         time
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        Set<String> next(int count) throws InterruptedException {
+            Set<String> reports = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                reports.add(this.next());
+            }
+            return reports;
+        }
+
+        /**
+         * Returns the next report if one comes soon.
+         *
+         * @return the next report, or {@code null}
+         * @throws InterruptedException
+         *             if interrupted while waiting
+         */
+        String quiet() throws InterruptedException {
+            return this.reports.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    /**
+     * Returns the contents of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the contents
+     * @throws IOException
+     *             if reading fails
+     */
+    private static byte[] contents(String fileName) throws IOException {
+        return Files.readAllBytes(Paths.get(fileName));
+    }
+
+    /**
+     * Test of the reports of a watched tree as files change.
+     *
+     * @throws IOException
+     *             if a file operation fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public final void testWatch() throws IOException, InterruptedException {
+        byte[] valid = contents("test/program.bl");
+        byte[] invalid = contents("test/program-invalid-end.bl");
+        Path dir = Files.createTempDirectory("bl-watch");
+        Path a = dir.resolve("a.bl");
+        Path other = dir.resolve("notes.txt");
+        Files.write(a, valid);
+        Recorder recorder = new Recorder();
+        ProgramWatcher watcher = new ProgramWatcher(dir, 2, DEBOUNCE_MILLIS,
+                recorder);
+        try {
+            watcher.start();
+            assertEquals("changed a.bl true", recorder.next());
+            assertEquals("Test", watcher.result(a).program().name());
+
+            // a burst of writes is one reparse, reported once
+            for (int i = 0; i < 5; i++) {
+                Files.write(a, invalid);
+            }
+            assertEquals("changed a.bl false", recorder.next());
+            assertTrue(watcher.result(a).diagnostic().length() > 0);
+            assertNull(recorder.quiet());
+
+            // unchanged results and other files are not reported
+            Files.write(a, invalid);
+            Files.write(other, "x".getBytes(StandardCharsets.UTF_8));
+            assertNull(recorder.quiet());
+
+            // new files, also in new directories, and removed files
+            Path sub = Files.createDirectory(dir.resolve("sub"));
+            Path b = sub.resolve("b.bl");
+            Files.write(b, valid);
+            assertEquals("changed b.bl true", recorder.next());
+            Files.delete(a);
+            assertEquals("removed a.bl", recorder.next());
+            assertNull(watcher.result(a));
+            Files.delete(b);
+            assertEquals("removed b.bl", recorder.next());
+            Files.delete(sub);
+        } finally {
+            watcher.close();
+            Files.deleteIfExists(other);
+            Files.deleteIfExists(a);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Test that nesting too deep for the stack and input that violates an
+     * assertion of the parser are diagnostics, and that the worker goes on
+     * parsing afterwards.
+     *
+     * @throws IOException
+     *             if a file operation fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public final void testHostileInput()
+            throws IOException, InterruptedException {
+        final int depth = 100_000;
+        byte[] valid = contents("test/program.bl");
+        byte[] missingBegin = contents("test/program-missing-begin.bl");
+        StringBuilder deep = new StringBuilder("PROGRAM Deep IS BEGIN\n");
+        for (int i = 0; i < depth; i++) {
+            deep.append("WHILE true DO\n");
+        }
+        deep.append("move\n");
+        for (int i = 0; i < depth; i++) {
+            deep.append("END WHILE\n");
+        }
+        deep.append("END Deep\n");
+        Path dir = Files.createTempDirectory("bl-watch");
+        Path a = dir.resolve("a.bl");
+        Files.write(a, valid);
+        Recorder recorder = new Recorder();
+        ProgramWatcher watcher = new ProgramWatcher(dir, 1, DEBOUNCE_MILLIS,
+                recorder);
+        try {
+            watcher.start();
+            assertEquals("changed a.bl true", recorder.next());
+            Files.write(a, deep.toString().getBytes(StandardCharsets.UTF_8));
+            assertEquals("changed a.bl false", recorder.next());
+            String diagnostic = watcher.result(a).diagnostic();
+            assertTrue(diagnostic, diagnostic
+                    .startsWith("Error: Statements are nested deeper"));
+            Files.write(a, missingBegin);
+            assertEquals("changed a.bl false", recorder.next());
+            Files.write(a, valid);
+            assertEquals("changed a.bl true", recorder.next());
+        } finally {
+            watcher.close();
+            Files.deleteIfExists(a);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Test that the files below a directory moved out of the tree, or
+     * deleted, are reported removed, and that the moved directory is no
+     * longer watched.
+     *
+     * @throws IOException
+     *             if a file operation fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public final void testDeleteDirectory()
+            throws IOException, InterruptedException {
+        byte[] valid = contents("test/program.bl");
+        byte[] invalid = contents("test/program-invalid-end.bl");
+        Path dir = Files.createTempDirectory("bl-watch");
+        Path outside = Files.createTempDirectory("bl-watch-outside");
+        Path sub = Files.createDirectories(dir.resolve("sub/deeper"))
+                .getParent();
+        Files.write(sub.resolve("b.bl"), valid);
+        Files.write(sub.resolve("deeper/c.bl"), valid);
+        Path other = Files.createDirectory(dir.resolve("other"));
+        Files.write(other.resolve("d.bl"), valid);
+        Recorder recorder = new Recorder();
+        ProgramWatcher watcher = new ProgramWatcher(dir, 2, DEBOUNCE_MILLIS,
+                recorder);
+        Path moved = outside.resolve("sub");
+        try {
+            watcher.start();
+            assertEquals(
+                    new HashSet<>(Arrays.asList("changed b.bl true",
+                            "changed c.bl true", "changed d.bl true")),
+                    recorder.next(3));
+
+            // a move out of the tree gives no event for the files below
+            Files.move(sub, moved);
+            assertEquals(
+                    new HashSet<>(
+                            Arrays.asList("removed b.bl", "removed c.bl")),
+                    recorder.next(2));
+            assertNull(watcher.result(sub.resolve("deeper/c.bl")));
+            Files.write(moved.resolve("deeper/c.bl"), invalid);
+            assertNull(recorder.quiet());
+
+            // nor, depending on the order of the events, may a deletion
+            Files.delete(other.resolve("d.bl"));
+            Files.delete(other);
+            assertEquals("removed d.bl", recorder.next());
+            assertNull(recorder.quiet());
+        } finally {
+            watcher.close();
+            Files.deleteIfExists(moved.resolve("deeper/c.bl"));
+            Files.deleteIfExists(moved.resolve("deeper"));
+            Files.deleteIfExists(moved.resolve("b.bl"));
+            Files.deleteIfExists(moved);
+            Files.deleteIfExists(outside);
+            Files.deleteIfExists(other.resolve("d.bl"));
+            Files.deleteIfExists(other);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Test that lost events, as after an overflow of the watch service, are
+     * made up for by looking at every file again: a change written through
+     * a hard link outside the tree, of which the directory hears nothing, is
+     * reported.
+     *
+     * @throws IOException
+     *             if a file operation fails
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    @Test
+    public final void testLostEvents()
+            throws IOException, InterruptedException {
+        byte[] valid = contents("test/program.bl");
+        byte[] invalid = contents("test/program-invalid-end.bl");
+        Path dir = Files.createTempDirectory("bl-watch");
+        Path outside = Files.createTempDirectory("bl-watch-outside");
+        Path a = dir.resolve("a.bl");
+        Path link = outside.resolve("a.bl");
+        Files.write(a, valid);
+        try {
+            Files.createLink(link, a);
+        } catch (IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        }
+        Recorder recorder = new Recorder();
+        ProgramWatcher watcher = new ProgramWatcher(dir, 2, DEBOUNCE_MILLIS,
+                recorder);
+        try {
+            watcher.start();
+            assertEquals("changed a.bl true", recorder.next());
+            Files.write(link, invalid);
+            watcher.lostEvents();
+            assertEquals("changed a.bl false", recorder.next());
+            assertNull(recorder.quiet());
+
+            // files that did not change are not reported again
+            watcher.lostEvents();
+            assertNull(recorder.quiet());
+        } finally {
+            watcher.close();
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(outside);
+            Files.deleteIfExists(a);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+}
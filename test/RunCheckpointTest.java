@@ -0,0 +1,366 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.StatementKernel.Condition;
+
+/**
+ * JUnit test fixture for {@code RunCheckpoint}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class RunCheckpointTest {
+
+    /**
+     * The name of the checkpoint file, a new temporary file.
+     */
+    private static final String CHECKPOINT_FILE_NAME = tempFileName();
+
+    /**
+     * Number of turns before and after the checkpoint.
+     */
+    private static final int TURNS = 5_000;
+
+    /**
+     * The programs of the runs.
+     */
+    private static final String[] FILE_NAMES = { "test/program.bl",
+        "test/bundle.bl", "test/program-cost.bl" };
+
+    /**
+     * Bug whose surroundings come from a linear congruential generator, so
+     * that its whole state is one {@code long}, and that records its turns.
+     */
+    private static final class Bug implements ProgramProfiler.Bug {
+
+        /**
+         * The state of the generator.
+         */
+        private long seed;
+
+        /**
+         * The primitive instructions performed, in order.
+         */
+        private final List<Integer> turns = new ArrayList<>();
+
+        /**
+         * Constructor.
+         *
+         * @param seed
+         *            the state of the generator
+         */
+        Bug(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean test(Condition c) {
+            this.seed = this.seed * 6364136223846793005L + 1442695040888963407L;
+            return c == Condition.TRUE || this.seed < 0;
+        }
+
+        @Override
+        public void act(int primitive) {
+            this.turns.add(primitive);
+        }
+
+    }
+
+    /**
+     * Returns the name of a new, empty temporary file, deleted when the
+     * virtual machine exits.
+     *
+     * @return the name of the file
+     */
+    private static String tempFileName() {
+        try {
+            Path file = Files.createTempFile("checkpoint", ".txt");
+            file.toFile().deleteOnExit();
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the snapshot of the program in file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the snapshot of the parsed program
+     */
+    private static FrozenProgram program(String fileName) {
+        Program p = new Program1();
+        SimpleReader file = new SimpleReader1L(fileName);
+        p.parse(file);
+        file.close();
+        return FrozenProgram.freeze(p);
+    }
+
+    /**
+     * Test that runs resumed from a checkpoint perform the same turns as the
+     * runs that went on after it was saved.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     */
+    @Test
+    public final void testResume()
+            throws InterruptedException, ExecutionException {
+        int n = FILE_NAMES.length;
+        ProgramRun[] runs = new ProgramRun[n];
+        Bug[] bugs = new Bug[n];
+        for (int i = 0; i < n; i++) {
+            runs[i] = new ProgramRun(program(FILE_NAMES[i]));
+            bugs[i] = new Bug(i);
+            runs[i].run(bugs[i], TURNS + i);
+        }
+        ByteBuffer world = ByteBuffer.allocate(n * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (Bug bug : bugs) {
+            world.putLong(bug.seed);
+        }
+        world.flip();
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        writer.save(runs, world).get();
+        writer.close();
+        for (int i = 0; i < n; i++) {
+            bugs[i].turns.clear();
+            runs[i].run(bugs[i], TURNS);
+        }
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(CHECKPOINT_FILE_NAME);
+        assertEquals(n, checkpoint.size());
+        ByteBuffer saved = checkpoint.world();
+        assertEquals(n * Long.BYTES, saved.remaining());
+        for (int i = 0; i < n; i++) {
+            FrozenProgram program = program(FILE_NAMES[i]);
+            assertEquals(program.contentHash(), checkpoint.contentHash(i));
+            assertEquals(TURNS + i, checkpoint.turns(i));
+            ProgramRun run = checkpoint.resume(i, program);
+            assertEquals(TURNS + i, run.turns());
+            Bug bug = new Bug(saved.getLong(i * Long.BYTES));
+            run.run(bug, TURNS);
+            assertEquals(bugs[i].turns, bug.turns);
+        }
+    }
+
+    /**
+     * Test that each checkpoint replaces the one before.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     */
+    @Test
+    public final void testReplace()
+            throws InterruptedException, ExecutionException {
+        ProgramRun run = new ProgramRun(program(FILE_NAMES[0]));
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        for (int k = 1; k <= 3; k++) {
+            run.run(new Bug(k), TURNS);
+            writer.save(new ProgramRun[] { run }, ByteBuffer.allocate(k));
+        }
+        writer.close();
+        RunCheckpoint checkpoint = RunCheckpoint.open(CHECKPOINT_FILE_NAME);
+        assertEquals(1, checkpoint.size());
+        assertEquals(3 * TURNS, checkpoint.turns(0));
+        assertEquals(3, checkpoint.world().remaining());
+    }
+
+    /**
+     * Test that checkpoints saved faster than they are written replace the
+     * ones waiting, and that every future is done once the last is on disk.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     */
+    @Test
+    public final void testSavesMerged()
+            throws InterruptedException, ExecutionException {
+        final int saves = 200;
+        ProgramRun run = new ProgramRun(program(FILE_NAMES[0]));
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        List<Future<?>> saved = new ArrayList<>();
+        for (int k = 1; k <= saves; k++) {
+            run.run(new Bug(k), 1);
+            saved.add(writer.save(new ProgramRun[] { run },
+                    ByteBuffer.allocate(saves - k)));
+        }
+        saved.get(saves - 1).get();
+        for (Future<?> f : saved) {
+            assertTrue(f.isDone());
+        }
+        writer.close();
+        RunCheckpoint checkpoint = RunCheckpoint.open(CHECKPOINT_FILE_NAME);
+        assertEquals(saves, checkpoint.turns(0));
+        assertEquals(0, checkpoint.world().remaining());
+    }
+
+    /**
+     * Test of resuming a run with another program.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testResumeOtherProgram()
+            throws InterruptedException, ExecutionException {
+        ProgramRun run = new ProgramRun(program(FILE_NAMES[0]));
+        run.run(new Bug(0), TURNS);
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        writer.save(new ProgramRun[] { run }, ByteBuffer.allocate(0)).get();
+        writer.close();
+        RunCheckpoint.open(CHECKPOINT_FILE_NAME).resume(0,
+                program(FILE_NAMES[2]));
+    }
+
+    /**
+     * Test of opening a file that is not a checkpoint.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testOpenInvalid() throws IOException {
+        new File(CHECKPOINT_FILE_NAME).delete();
+        Files.write(Paths.get(CHECKPOINT_FILE_NAME),
+                new byte[] { 'P', 'R', 'O', 'G', 'R', 'A', 'M' });
+        RunCheckpoint.open(CHECKPOINT_FILE_NAME);
+    }
+
+    /**
+     * Test that the world may change as soon as a checkpoint is saved.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     */
+    @Test
+    public final void testWorldChangedAfterSave()
+            throws InterruptedException, ExecutionException {
+        final int worldSize = 1 << 20;
+        ProgramRun run = new ProgramRun(program(FILE_NAMES[0]));
+        run.run(new Bug(0), TURNS);
+        ByteBuffer world = ByteBuffer.allocate(worldSize);
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        Future<?> saved = writer.save(new ProgramRun[] { run }, world);
+        // the write has only just been queued: change every byte at once
+        Arrays.fill(world.array(), (byte) 1);
+        saved.get();
+        writer.close();
+        ByteBuffer savedWorld = RunCheckpoint.open(CHECKPOINT_FILE_NAME)
+                .world();
+        assertEquals(worldSize, savedWorld.remaining());
+        while (savedWorld.hasRemaining()) {
+            assertEquals(0, savedWorld.get());
+        }
+    }
+
+    /**
+     * Test that a checkpoint that cannot be written is reported by the
+     * writer and leaves no temporary file.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Test
+    public final void testWriteFailure() throws IOException {
+        // a non-empty directory cannot be replaced by the checkpoint
+        Path target = Files.createTempDirectory("checkpoint");
+        Path inside = Files.createFile(target.resolve("file"));
+        ProgramRun run = new ProgramRun(program(FILE_NAMES[0]));
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                target.toString());
+        Future<?> saved = writer.save(new ProgramRun[] { run },
+                ByteBuffer.allocate(0));
+        boolean failed = false;
+        try {
+            saved.get();
+        } catch (InterruptedException | ExecutionException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        failed = false;
+        try {
+            writer.close();
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        assertTrue(!Files.exists(
+                target.resolveSibling(target.getFileName() + ".tmp")));
+        Files.delete(inside);
+        Files.delete(target);
+    }
+
+    /**
+     * Test of resuming a run whose stack has a position past the end of its
+     * block.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the checkpoint
+     * @throws ExecutionException
+     *             if the checkpoint cannot be written
+     * @throws IOException
+     *             if the checkpoint cannot be changed
+     */
+    @Test(expected = RuntimeException.class)
+    public final void testResumeInvalidNext()
+            throws InterruptedException, ExecutionException, IOException {
+        FrozenProgram program = program(FILE_NAMES[0]);
+        ProgramRun run = new ProgramRun(program);
+        run.run(new Bug(0), TURNS);
+        assertTrue(run.depth() > 0);
+        RunCheckpoint.Writer writer = new RunCheckpoint.Writer(
+                CHECKPOINT_FILE_NAME);
+        writer.save(new ProgramRun[] { run }, ByteBuffer.allocate(0)).get();
+        writer.close();
+        // the position of the bottom frame: header, then the run record
+        final int next = 32 + 20 + 4;
+        try (FileChannel channel = FileChannel.open(
+                Paths.get(CHECKPOINT_FILE_NAME), StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(program.childCount(run.node(0)) + 1);
+            bytes.flip();
+            channel.write(bytes, next);
+        }
+        RunCheckpoint.open(CHECKPOINT_FILE_NAME).resume(0, program);
+    }
+
+}
@@ -0,0 +1,329 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import components.program.Program;
+import components.program.Program1;
+import components.map.Map;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.Statement1;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit test fixture for {@code TokenPositions} and {@code SourceMap}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class SourceMapTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * The name of a file containing a valid BL block.
+     */
+    private static final String STATEMENT_FILE_NAME = "test/statement.bl";
+
+    /**
+     * Number of statement nodes in the program in {@code FILE_NAME}.
+     */
+    private static final int NODE_COUNT = 21;
+
+    /**
+     * Returns the bytes of {@code FILE_NAME}.
+     *
+     * @return the bytes of the file
+     */
+    private static byte[] bytes() {
+        try {
+            return Files.readAllBytes(Paths.get(FILE_NAME));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the text of bytes {@code start} to {@code end} of
+     * {@code FILE_NAME}.
+     *
+     * @param start
+     *            the byte offset of the first byte
+     * @param end
+     *            the byte offset just past the last byte
+     * @return the text between the offsets
+     */
+    private static String text(long start, long end) {
+        return new String(bytes(), (int) start, (int) (end - start),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the name of a new temporary file containing {@code text}.
+     *
+     * @param text
+     *            the contents of the file
+     * @return the name of the file
+     */
+    private static String write(String text) {
+        try {
+            Path file = Files.createTempFile("source-map", ".bl");
+            file.toFile().deleteOnExit();
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            return file.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the message of the error reported by {@code parse}.
+     *
+     * @param parse
+     *            the parse
+     * @return the error message
+     */
+    private static String error(Runnable parse) {
+        String message = null;
+        try {
+            parse.run();
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+        }
+        assertTrue("no error reported", message != null);
+        return message;
+    }
+
+    /**
+     * Returns the source text of node {@code node} of {@code map}.
+     *
+     * @param map
+     *            the source map
+     * @param node
+     *            the number of the node
+     * @return the source text of the node
+     */
+    private static String nodeText(SourceMap map, int node) {
+        return text(map.startOffset(node), map.endOffset(node));
+    }
+
+    /**
+     * Test of positions with lines, columns and offsets past 32 bits.
+     */
+    @Test
+    public final void testLargePositions() {
+        TokenPositions positions = new TokenPositions();
+        positions.add(1, 1, 0);
+        positions.add(2_000_000_000, 1_000_000, 5_000_000_000L);
+        assertEquals(2, positions.length());
+        assertEquals(2_000_000_000, positions.line(1));
+        assertEquals(1_000_000, positions.column(1));
+        assertEquals(5_000_000_000L, positions.offset(1));
+        assertEquals(1, positions.line(0));
+        assertEquals(1, positions.column(0));
+        assertEquals(0, positions.offset(0));
+    }
+
+    /**
+     * Test that the tokens and offsets agree with the text and with
+     * {@code Tokenizer.tokens}.
+     */
+    @Test
+    public final void testTokenPositions() {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokensRef = Tokenizer.tokens(file);
+        file.close();
+        assertEquals(tokensRef.length(), tokens.length());
+        assertEquals(tokens.length(), positions.length());
+        for (int i = 0; i < positions.length() - 1; i++) {
+            String token = tokens.dequeue();
+            assertEquals(tokensRef.dequeue(), token);
+            long offset = positions.offset(i);
+            assertEquals(token, text(offset, offset + token.length()));
+        }
+        assertEquals(4, positions.line(6));
+        assertEquals(6, positions.column(6));
+    }
+
+    /**
+     * Test that "\r\n" and "\r" line terminators count as one line and as
+     * many bytes as they have.
+     */
+    @Test
+    public final void testLineTerminators() {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        positions.tokens(file);
+        file.close();
+        String text = new String(bytes(), StandardCharsets.UTF_8);
+        String[] crlfNames = { write(text.replace("\n", "\r\n")),
+            write(text.replace("\n", "\r")) };
+        for (String crlfName : crlfNames) {
+            TokenPositions crlf = new TokenPositions();
+            file = new SimpleReader1L(crlfName);
+            crlf.tokens(file);
+            file.close();
+            assertEquals(positions.length(), crlf.length());
+            int extra = crlfName.equals(crlfNames[0]) ? 1 : 0;
+            for (int i = 0; i < positions.length(); i++) {
+                assertEquals(positions.line(i), crlf.line(i));
+                assertEquals(positions.column(i), crlf.column(i));
+                assertEquals(positions.offset(i)
+                        + extra * (positions.line(i) - 1), crlf.offset(i));
+            }
+        }
+    }
+
+    /**
+     * Test that offsets count the bytes of characters of more than one byte,
+     * and columns count characters, on a file written and read as UTF-8
+     * whatever the platform charset.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public final void testByteOffsets() throws IOException {
+        String fileName = write("\u00e9 x\n\u65e5\u672c y \ud83d\ude00 z");
+        byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+        TokenPositions positions = new TokenPositions();
+        Queue<String> tokens = new ParallelTokenizer().tokens(fileName,
+                positions);
+        assertEquals(7, tokens.length());
+        long[] offsets = { 0, 3, 5, 12, 14, 19, 20 };
+        int[] columns = { 1, 3, 1, 4, 6, 9, 10 };
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(offsets[i], positions.offset(i));
+            assertEquals(columns[i], positions.column(i));
+            String token = tokens.dequeue();
+            if (!token.equals(Tokenizer.END_OF_INPUT)) {
+                int length = token.getBytes(StandardCharsets.UTF_8).length;
+                assertEquals(token, new String(bytes, (int) offsets[i],
+                        length, StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(2, positions.line(6));
+    }
+
+    /**
+     * Test that the errors found at the token after the last one consumed are
+     * reported at that token.
+     */
+    @Test
+    public final void testErrorPositions() {
+        String text = new String(bytes(), StandardCharsets.UTF_8);
+        String[] fileNames = { write(text + "extra\n"),
+            write(text.replace("infect", "IS")) };
+        String[] wheres = { "(line 29, column 1)", "(line 19, column 3)" };
+        for (int k = 0; k < fileNames.length; k++) {
+            TokenPositions positions = new TokenPositions();
+            SimpleReader file = new SimpleReader1L(fileNames[k]);
+            Queue<String> tokens = positions.tokens(file);
+            file.close();
+            String message = error(() -> new Program1Parse1().parse(tokens,
+                    positions, new SourceMap()));
+            assertTrue(message, message.endsWith(wheres[k]));
+        }
+    }
+
+    /**
+     * Test of the spans recorded while parsing.
+     */
+    @Test
+    public final void testSpans() {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        Program1Parse1 pTest = new Program1Parse1();
+        SourceMap map = new SourceMap();
+        pTest.parse(tokens, positions, map);
+
+        Program pRef = new Program1();
+        file = new SimpleReader1L(FILE_NAME);
+        pRef.parse(file);
+        file.close();
+        assertEquals(pRef, pTest);
+
+        assertEquals(NODE_COUNT, map.size());
+        int one = map.instructionNode("one");
+        assertEquals("move\n     turnleft", nodeText(map, one));
+        assertEquals("turnleft", nodeText(map, one + 2));
+        int two = map.instructionNode("two");
+        String ifText = nodeText(map, two + 2);
+        assertTrue(ifText.startsWith("IF next-is-not-empty THEN"));
+        assertTrue(ifText.endsWith("END IF"));
+        int body = map.bodyNode();
+        assertEquals(19, map.startLine(body));
+        assertEquals(3, map.startColumn(body));
+        assertTrue(nodeText(map, body).startsWith("infect"));
+        assertTrue(nodeText(map, body).endsWith("END WHILE"));
+    }
+
+    /**
+     * Test that an empty block has an empty span.
+     */
+    @Test
+    public final void testEmptyBlockSpan() {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L("test/program-empty-body.bl");
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        SourceMap map = new SourceMap();
+        new Program1Parse1().parse(tokens, positions, map);
+        int body = map.bodyNode();
+        assertEquals(map.startOffset(body), map.endOffset(body));
+    }
+
+    /**
+     * Test that the statements of a program parsed with positions can be
+     * parsed into again, without the positions or the source map.
+     */
+    @Test
+    public final void testReparseAfterSpans() {
+        TokenPositions positions = new TokenPositions();
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        Queue<String> tokens = positions.tokens(file);
+        file.close();
+        Program1Parse1 p = new Program1Parse1();
+        SourceMap map = new SourceMap();
+        p.parse(tokens, positions, map);
+
+        Statement sRef = new Statement1();
+        file = new SimpleReader1L(STATEMENT_FILE_NAME);
+        sRef.parseBlock(Tokenizer.tokens(file));
+        file.close();
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        for (Map.Pair<String, Statement> instruction : context) {
+            file = new SimpleReader1L(STATEMENT_FILE_NAME);
+            instruction.value().parseBlock(Tokenizer.tokens(file));
+            file.close();
+            assertEquals(sRef, instruction.value());
+        }
+        Statement body = p.newBody();
+        p.swapBody(body);
+        file = new SimpleReader1L(STATEMENT_FILE_NAME);
+        body.parseBlock(Tokenizer.tokens(file));
+        file.close();
+        assertEquals(sRef, body);
+        assertEquals(NODE_COUNT, map.size());
+    }
+
+}
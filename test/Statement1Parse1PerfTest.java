@@ -0,0 +1,19 @@
+import components.statement.Statement;
+import components.statement.Statement1;
+
+/**
+ * Customized JUnit performance test fixture for {@code Statement1Parse1}.
+ */
+public class Statement1Parse1PerfTest extends StatementPerfTest {
+
+    @Override
+    protected final Statement constructorTest() {
+        return new Statement1Parse1();
+    }
+
+    @Override
+    protected final Statement constructorRef() {
+        return new Statement1();
+    }
+
+}
@@ -0,0 +1,19 @@
+import components.statement.Statement;
+import components.statement.Statement1;
+
+/**
+ * Customized JUnit performance test fixture for {@code Statement1Parse2}.
+ */
+public class Statement1Parse2PerfTest extends StatementPerfTest {
+
+    @Override
+    protected final Statement constructorTest() {
+        return new Statement1Parse2();
+    }
+
+    @Override
+    protected final Statement constructorRef() {
+        return new Statement1();
+    }
+
+}
@@ -0,0 +1,60 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.statement.Statement1;
+import components.utilities.Tokenizer;
+
+/**
+ * Customized JUnit test fixture for {@code Statement1Parse2}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class Statement1Parse2Test extends StatementTest {
+
+    @Override
+    protected final Statement constructorTest() {
+        return new Statement1Parse2();
+    }
+
+    @Override
+    protected final Statement constructorRef() {
+        return new Statement1();
+    }
+
+    /**
+     * Returns the tokens of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the tokens
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Test of parseBlock stopping at the first token that cannot start a
+     * statement, where the reference implementation stops.
+     */
+    @Test
+    public final void testParseBlockStops() {
+        Statement sRef = this.constructorRef();
+        Queue<String> tokensRef = tokens("test/statement-extra-end.bl");
+        sRef.parseBlock(tokensRef);
+        Statement sTest = this.constructorTest();
+        Queue<String> tokens = tokens("test/statement-extra-end.bl");
+        sTest.parseBlock(tokens);
+        assertEquals(sRef, sTest);
+        assertEquals(tokensRef, tokens);
+    }
+
+}
@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * JUnit performance test fixture for {@code Statement}'s parseBlock, on large
+ * generated statements. Each test checks the statement parsed against the
+ * reference implementation, then measures the parse against the baseline kept
+ * by {@code PerfBaseline}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public abstract class StatementPerfTest {
+
+    /**
+     * Invokes the {@code Statement} constructor for the implementation under
+     * test and returns the result.
+     *
+     * @return the new statement
+     * @ensures constructorTest = compose((BLOCK, ?, ?), <>)
+     */
+    protected abstract Statement constructorTest();
+
+    /**
+     * Invokes the {@code Statement} constructor for the reference
+     * implementation and returns the result.
+     *
+     * @return the new statement
+     * @ensures constructorRef = compose((BLOCK, ?, ?), <>)
+     */
+    protected abstract Statement constructorRef();
+
+    /**
+     * Parses a block of shape {@code shape} with the implementation under test
+     * and the reference implementation, checks they agree, and measures the
+     * parse of the implementation under test.
+     *
+     * @param shape
+     *            the shape of the block
+     * @throws IOException
+     *             if the block cannot be written to a file
+     */
+    private void parseAndMeasure(PerfCorpus.Shape shape) throws IOException {
+        PerfBaseline.assumeEnabled();
+        /*
+         * Setup
+         */
+        final String fileName = PerfCorpus.write(PerfCorpus.statement(shape));
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        int tokenCount = tokens.length() - 1;
+        Statement sRef = this.constructorRef();
+        sRef.parseBlock(tokens);
+        Statement sTest = this.constructorTest();
+        file = new SimpleReader1L(fileName);
+        tokens = Tokenizer.tokens(file);
+        file.close();
+        sTest.parseBlock(tokens);
+        assertEquals(sRef, sTest);
+        /*
+         * The measurement
+         */
+        String key = this.getClass().getSimpleName() + "."
+                + shape.name().toLowerCase();
+        PerfBaseline.measure(key, tokenCount, () -> {
+            Statement s = this.constructorTest();
+            SimpleReader in = new SimpleReader1L(fileName);
+            Queue<String> input = Tokenizer.tokens(in);
+            in.close();
+            s.parseBlock(input);
+        });
+    }
+
+    /**
+     * Test of parseBlock on a block with many statements side by side.
+     *
+     * @throws IOException
+     *             if the block cannot be written to a file
+     */
+    @Test
+    public final void testParseWide() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.WIDE);
+    }
+
+    /**
+     * Test of parseBlock on a block with deeply nested statements.
+     *
+     * @throws IOException
+     *             if the block cannot be written to a file
+     */
+    @Test
+    public final void testParseDeep() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.DEEP);
+    }
+
+    /**
+     * Test of parseBlock on a long block.
+     *
+     * @throws IOException
+     *             if the block cannot be written to a file
+     */
+    @Test
+    public final void testParseLong() throws IOException {
+        this.parseAndMeasure(PerfCorpus.Shape.LONG);
+    }
+
+}
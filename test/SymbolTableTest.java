@@ -0,0 +1,160 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.program.Program;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.statement.Statement;
+
+/**
+ * JUnit test fixture for {@code SymbolTable} and the symbol table of
+ * {@code Program1Parse1}.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public class SymbolTableTest {
+
+    /**
+     * The name of a file containing a valid BL program.
+     */
+    private static final String FILE_NAME = "test/program.bl";
+
+    /**
+     * Parses {@code FILE_NAME} into {@code p}.
+     *
+     * @param p
+     *            the program
+     */
+    private static void parse(Program p) {
+        SimpleReader file = new SimpleReader1L(FILE_NAME);
+        p.parse(file);
+        file.close();
+    }
+
+    /**
+     * Test of the reserved ids.
+     */
+    @Test
+    public final void testPrimitives() {
+        SymbolTable symbols = new SymbolTable();
+        assertEquals(SymbolTable.PRIMITIVE_COUNT, symbols.size());
+        assertEquals(SymbolTable.MOVE, symbols.id("move"));
+        assertEquals(SymbolTable.TURNLEFT, symbols.id("turnleft"));
+        assertEquals(SymbolTable.TURNRIGHT, symbols.id("turnright"));
+        assertEquals(SymbolTable.INFECT, symbols.id("infect"));
+        assertEquals(SymbolTable.SKIP, symbols.intern("skip"));
+        assertTrue(SymbolTable.isPrimitive(SymbolTable.SKIP));
+        assertEquals(-1, symbols.id("one"));
+    }
+
+    /**
+     * Test of intern.
+     */
+    @Test
+    public final void testIntern() {
+        SymbolTable symbols = new SymbolTable();
+        int one = symbols.intern(new String("one"));
+        int two = symbols.intern("two");
+        assertEquals(SymbolTable.PRIMITIVE_COUNT, one);
+        assertEquals(one + 1, two);
+        assertEquals(one, symbols.intern(new String("one")));
+        assertEquals("one", symbols.name(one));
+        assertSame(symbols.name(one), symbols.name(symbols.id("one")));
+        assertTrue(!SymbolTable.isPrimitive(one));
+    }
+
+    /**
+     * Test that the context of a parsed program can be looked up by id and
+     * that CALL statements hold the interned names.
+     */
+    @Test
+    public final void testInstructionById() {
+        Program1Parse1 p = new Program1Parse1();
+        parse(p);
+        SymbolTable symbols = p.symbols();
+        int one = symbols.id("one");
+        int two = symbols.id("two");
+        assertTrue(one >= SymbolTable.PRIMITIVE_COUNT);
+        assertTrue(two >= SymbolTable.PRIMITIVE_COUNT);
+        assertNull(p.instruction(SymbolTable.MOVE));
+        assertNull(p.instruction(symbols.size() + 1));
+
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        Statement oneBody = context.value("one");
+        Statement twoBody = context.value("two");
+        p.swapContext(context);
+        assertSame(oneBody, p.instruction(one));
+        assertSame(twoBody, p.instruction(two));
+        Statement call = oneBody.removeFromBlock(0);
+        assertSame(symbols.name(SymbolTable.MOVE), call.disassembleCall());
+    }
+
+    /**
+     * Test that a lookup by id after the context was changed since the parse
+     * is caught as a precondition violation, and that a new parse makes the
+     * lookup valid again.
+     */
+    @Test
+    public final void testInstructionByIdAfterChanges() {
+        Program1Parse1 p = new Program1Parse1();
+        parse(p);
+        int one = p.symbols().id("one");
+        Map<String, Statement> context = p.newContext();
+        p.swapContext(context);
+        boolean caught = false;
+        try {
+            p.instruction(one);
+        } catch (AssertionError e) {
+            caught = true;
+        }
+        assertTrue(caught);
+
+        parse(p);
+        one = p.symbols().id("one");
+        context = p.newContext();
+        p.swapContext(context);
+        Statement oneBody = context.value("one");
+        p.swapContext(context);
+        assertSame(oneBody, p.instruction(one));
+    }
+
+    /**
+     * Test that programs sharing a symbol table get the same ids.
+     */
+    @Test
+    public final void testShared() {
+        SymbolTable symbols = new SymbolTable();
+        Program1Parse1 p1 = new Program1Parse1();
+        p1.shareSymbols(symbols);
+        parse(p1);
+        int size = symbols.size();
+        Program1Parse1 p2 = new Program1Parse1();
+        p2.shareSymbols(symbols);
+        parse(p2);
+        assertSame(symbols, p2.symbols());
+        assertEquals(size, symbols.size());
+        int one = symbols.id("one");
+        assertEquals(p1.instruction(one), p2.instruction(one));
+    }
+
+    /**
+     * Test that an unshared table is replaced by each parse.
+     */
+    @Test
+    public final void testOwned() {
+        Program1Parse1 p = new Program1Parse1();
+        parse(p);
+        SymbolTable first = p.symbols();
+        parse(p);
+        assertTrue(first != p.symbols());
+        assertEquals(first.size(), p.symbols().size());
+    }
+
+}
@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import components.program.Program;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.statement.Statement;
+import components.utilities.Tokenizer;
+
+/**
+ * Benchmark of the table-driven parsers against the hand-written ones: the
+ * time per token to parse each generated program with {@code Program1Parse1}
+ * and {@code Program1Parse2}, and each generated block with
+ * {@code Statement1Parse1} and {@code Statement1Parse2}, from tokens
+ * already read, and the ratio of the table-driven time to the hand-written
+ * one.
+ *
+ * @author Ben Walls, Matthew Chandran
+ *
+ */
+public final class TableParserBenchmark {
+
+    /**
+     * Number of parses before measuring.
+     */
+    private static final int WARMUP = 50;
+
+    /**
+     * Number of parses measured.
+     */
+    private static final int RUNS = 21;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private TableParserBenchmark() {
+    }
+
+    /**
+     * A parse of a copy of the tokens of an input.
+     */
+    private interface Parse {
+
+        /**
+         * Parses {@code tokens}.
+         *
+         * @param tokens
+         *            the input tokens
+         * @updates tokens
+         */
+        void run(Queue<String> tokens);
+
+    }
+
+    /**
+     * Returns the tokens of file {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the tokens
+     */
+    private static Queue<String> tokens(String fileName) {
+        SimpleReader file = new SimpleReader1L(fileName);
+        Queue<String> tokens = Tokenizer.tokens(file);
+        file.close();
+        return tokens;
+    }
+
+    /**
+     * Runs {@code parse} on copies of {@code tokens} and returns the median
+     * time per token, in nanoseconds.
+     *
+     * @param parse
+     *            the parse
+     * @param tokens
+     *            the input tokens
+     * @return the median time per token
+     */
+    private static double measure(Parse parse, Queue<String> tokens) {
+        List<Queue<String>> copies = copies(tokens, WARMUP + RUNS);
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run(copies.get(i));
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            parse.run(copies.get(WARMUP + i));
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return (double) times[RUNS / 2] / (tokens.length() - 1);
+    }
+
+    /**
+     * Returns {@code count} copies of {@code tokens}, made before any parse
+     * is timed.
+     *
+     * @param tokens
+     *            the tokens
+     * @param count
+     *            the number of copies
+     * @return the copies
+     */
+    private static List<Queue<String>> copies(Queue<String> tokens,
+            int count) {
+        List<Queue<String>> copies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Queue<String> copy = tokens.newInstance();
+            for (String token : tokens) {
+                copy.enqueue(token);
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Measures the hand-written parse {@code parse1} and the table-driven
+     * parse {@code parse2} of {@code tokens}, and reports both times and
+     * their ratio.
+     *
+     * @param out
+     *            the output stream
+     * @param label
+     *            the label of the input
+     * @param tokens
+     *            the input tokens
+     * @param parse1
+     *            the hand-written parse
+     * @param parse2
+     *            the table-driven parse
+     */
+    private static void compare(SimpleWriter out, String label,
+            Queue<String> tokens, Parse parse1, Parse parse2) {
+        double time1 = measure(parse1, tokens);
+        double time2 = measure(parse2, tokens);
+        out.println(label + " (" + (tokens.length() - 1) + " tokens): Parse1 "
+                + String.format("%.1f", time1) + " ns/token, Parse2 "
+                + String.format("%.1f", time2) + " ns/token, ratio "
+                + String.format("%.2f", time2 / time1));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws IOException
+     *             if an input cannot be written to a file
+     */
+    public static void main(String[] args) throws IOException {
+        SimpleWriter out = new SimpleWriter1L();
+        out.println("*** Median time per token, Parse2 / Parse1 ***");
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            Queue<String> tokens = tokens(
+                    PerfCorpus.write(PerfCorpus.program(shape)));
+            compare(out, "program, " + shape, tokens, t -> {
+                Program p = new Program1Parse1();
+                p.parse(t);
+            }, t -> {
+                Program p = new Program1Parse2();
+                p.parse(t);
+            });
+        }
+        for (PerfCorpus.Shape shape : PerfCorpus.Shape.values()) {
+            Queue<String> tokens = tokens(
+                    PerfCorpus.write(PerfCorpus.statement(shape)));
+            compare(out, "block, " + shape, tokens, t -> {
+                Statement s = new Statement1Parse1();
+                s.parseBlock(t);
+            }, t -> {
+                Statement s = new Statement1Parse2();
+                s.parseBlock(t);
+            });
+        }
+        out.close();
+    }
+
+}